@@ -0,0 +1,937 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.comcast.cereal.Cerealizable;
+import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.annotations.CerealClass;
+import com.comcast.cereal.annotations.CerealObject;
+import com.comcast.cereal.annotations.Ignore;
+import com.comcast.cereal.convert.ClassCerealizer;
+import com.comcast.cereal.convert.DefaultCerealizer;
+
+/**
+ * Annotation processor that generates a {@link ClassCerealizer} for every class that is marked
+ * with {@link CerealObject} or has members marked with {@link Cereal}. The generated cerealizer
+ * finds the same members that {@link ClassCerealizer} would find by scanning the class with
+ * reflection and applies the same rules to them, but reads and writes them with plain field
+ * accesses and method calls. Every generated cerealizer is registered as a
+ * <code>com.comcast.cereal.convert.ClassCerealizer</code> service, which is where
+ * {@link CerealFactory} looks for them.
+ * 
+ * <p>
+ * Fields that can not be assigned from the package of the class, such as private or final
+ * fields, are looked up with reflection by the generated cerealizer while every other member is
+ * still accessed directly. Classes whose methods or declaring classes can not be reached are
+ * skipped with a warning and keep being scanned with reflection at runtime.
+ * </p>
+ * 
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+@SupportedAnnotationTypes({ "com.comcast.cereal.annotations.CerealObject",
+        "com.comcast.cereal.annotations.Cereal" })
+public class CerealProcessor extends AbstractProcessor {
+
+    private static final String SERVICE = "META-INF/services/" + ClassCerealizer.class.getName();
+    private static final String SUFFIX = "_Cerealizer";
+    private static final String FIELD_ACCESS = "com.comcast.cereal.impl.FieldAccess";
+    private static final String METHOD_ACCESS = "com.comcast.cereal.impl.MethodAccess";
+    private static final String PRIMITIVE_ACCESS = "com.comcast.cereal.impl.PrimitiveFieldAccess";
+
+    private final Set<String> generated = new TreeSet<String>();
+
+    /*
+     * (non-Javadoc)
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+     * javax.annotation.processing.RoundEnvironment)
+     */
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(CerealObject.class)) {
+            if (element instanceof TypeElement) {
+                types.add((TypeElement) element);
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(Cereal.class)) {
+            if (element.getEnclosingElement() instanceof TypeElement) {
+                types.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement type : types) {
+            try {
+                new Generator(type).generate();
+            } catch (IOException ioex) {
+                error(type, "Failed to write the cerealizer: " + ioex.getMessage());
+            }
+        }
+
+        if (roundEnv.processingOver() && !generated.isEmpty()) {
+            writeServices();
+        }
+        return false;
+    }
+
+    /**
+     * Write the service file that lists every generated cerealizer, keeping the entries of an
+     * earlier build.
+     */
+    private void writeServices() {
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    existing.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    if (!line.trim().isEmpty()) {
+                        generated.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ioex) {
+            /* There are no earlier entries */
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            Writer writer = file.openWriter();
+            try {
+                for (String name : generated) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ioex) {
+            processingEnv.getMessager().printMessage(Kind.ERROR,
+                    "Failed to write " + SERVICE + ": " + ioex.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    /**
+     * Generates the cerealizer for a single class.
+     */
+    private class Generator {
+        private final Elements elements = processingEnv.getElementUtils();
+        private final Types types = processingEnv.getTypeUtils();
+
+        private final TypeElement type;
+        private final String packageName;
+
+        /* The members found so far, by name, following the rules of ClassCerealizer */
+        private final Map<String, Member> delegates = new LinkedHashMap<String, Member>();
+        private final Map<String, Integer> tags = new HashMap<String, Integer>();
+
+        /* Why the cerealizer can not be generated or null if it can */
+        private String problem;
+        private boolean failed;
+
+        private Generator(TypeElement type) {
+            this.type = type;
+            this.packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        }
+
+        private void generate() throws IOException {
+            if (!isSupported()) {
+                return;
+            }
+
+            scanForAccess(type, null == getMirror(type, CerealObject.class));
+            if (failed) {
+                return;
+            }
+
+            for (Member member : delegates.values()) {
+                member.check();
+            }
+            if (null != problem) {
+                warn("because " + problem);
+                return;
+            }
+
+            write();
+        }
+
+        /**
+         * Returns <code>true</code> if the {@link CerealFactory} would use a
+         * {@link ClassCerealizer} for the type and the type can be reached from its package.
+         */
+        private boolean isSupported() {
+            if (ElementKind.CLASS != type.getKind()) {
+                return false;
+            } else if ((NestingKind.TOP_LEVEL != type.getNestingKind()
+                    && NestingKind.MEMBER != type.getNestingKind())
+                    || (NestingKind.MEMBER == type.getNestingKind() && !type.getModifiers()
+                            .contains(Modifier.STATIC))
+                    || !isAccessible(type)) {
+                warn("because it can not be reached from its package");
+                return false;
+            }
+
+            return (null == getMirror(type, CerealClass.class))
+                    && !isSubtype(Cerealizable.class) && !isSubtype(java.util.Collection.class)
+                    && !isSubtype(java.util.Map.class);
+        }
+
+        private void warn(String reason) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "No cerealizer is generated for '" + type.getQualifiedName() + "' " + reason,
+                    type);
+        }
+
+        private boolean isSubtype(Class<?> clazz) {
+            return isSubtype(type.asType(), clazz);
+        }
+
+        private boolean isSubtype(TypeMirror mirror, Class<?> clazz) {
+            TypeElement element = elements.getTypeElement(clazz.getName());
+            return (null != element)
+                    && types.isAssignable(types.erasure(mirror), types.erasure(element.asType()));
+        }
+
+        /**
+         * Find the members of the given class in the same order as
+         * <code>ClassCerealizer.scanForAccess</code> does.
+         */
+        private void scanForAccess(TypeElement clazz, boolean scanAll) {
+            for (VariableElement field : ElementFilter.fieldsIn(clazz.getEnclosedElements())) {
+                AnnotationMirror info = getMirror(field, Cereal.class);
+                if (null != info) {
+                    String name = (String) getValue(info, "name");
+                    name = "".equals(name) ? field.getSimpleName().toString() : name;
+                    delegates.put(name, new FieldMember(field, info));
+                    putTag(name, info, field, true);
+                    continue;
+                }
+
+                if (scanAll) {
+                    Set<Modifier> mods = field.getModifiers();
+                    if ((null == getMirror(field, Ignore.class))
+                            && !mods.contains(Modifier.TRANSIENT)
+                            && !mods.contains(Modifier.STATIC)) {
+                        String name = field.getSimpleName().toString();
+                        delegates.put(name, new FieldMember(field, null));
+                        putTag(name, null, field, true);
+                    }
+                }
+            }
+
+            for (ExecutableElement method : ElementFilter.methodsIn(clazz.getEnclosedElements())) {
+                AnnotationMirror info = getMirror(method, Cereal.class);
+                if (null == info) {
+                    continue;
+                }
+
+                String name = (String) getValue(info, "name");
+                if ("".equals(name)) {
+                    fail(method, "@Cereal annotation on '" + method
+                            + "' must have a declared name");
+                    continue;
+                }
+
+                Boolean setter = isMethodSetter(method);
+                if (null == setter) {
+                    fail(method, "Method is not a valid java bean setter or getter: '" + method
+                            + "'");
+                    continue;
+                }
+
+                Member existing = delegates.get(name);
+                MethodMember access;
+                if (existing instanceof MethodMember) {
+                    access = (MethodMember) existing;
+                } else if (null != existing) {
+                    fail(method, "The name '" + name + "' is used by both a field and '" + method
+                            + "'");
+                    continue;
+                } else {
+                    access = new MethodMember(method, info, setter);
+                    delegates.put(name, access);
+                }
+                putTag(name, info, method, false);
+
+                if (setter) {
+                    access.setter = method;
+                    access.setterInfo = info;
+                } else {
+                    access.getter = method;
+                }
+            }
+
+            for (TypeMirror iface : clazz.getInterfaces()) {
+                scanForAccess((TypeElement) types.asElement(iface), scanAll);
+            }
+            TypeMirror superclass = clazz.getSuperclass();
+            if (TypeKind.DECLARED == superclass.getKind()) {
+                TypeElement element = (TypeElement) types.asElement(superclass);
+                if (!Object.class.getName().equals(element.getQualifiedName().toString())) {
+                    scanForAccess(element, scanAll);
+                }
+            }
+        }
+
+        /**
+         * Returns <code>true</code> for a setter, <code>false</code> for a getter and
+         * <code>null</code> for any other method.
+         */
+        private Boolean isMethodSetter(ExecutableElement method) {
+            String name = method.getSimpleName().toString();
+            boolean returnsVoid = TypeKind.VOID == method.getReturnType().getKind();
+
+            if (name.startsWith("set") && method.getParameters().size() == 1 && returnsVoid) {
+                return true;
+            } else if (name.startsWith("get") && method.getParameters().isEmpty() && !returnsVoid) {
+                return false;
+            } else {
+                return null;
+            }
+        }
+
+        /**
+         * Record a tag the same way <code>ClassCerealizer.putTag</code> does.
+         */
+        private void putTag(String name, AnnotationMirror info, Element member, boolean replace) {
+            int tag = (null == info) ? 0 : (Integer) getValue(info, "tag");
+            if (tag < 0) {
+                fail(member, "The tag on '" + member + "' must be positive");
+                return;
+            }
+
+            Integer existing = replace ? tags.remove(name) : tags.get(name);
+            if (tag == 0) {
+                return;
+            } else if (!replace && (null != existing) && (existing != tag)) {
+                fail(member, "The tag on '" + member + "' does not match the tag " + existing
+                        + " on its other method");
+                return;
+            }
+            tags.put(name, tag);
+        }
+
+        private void fail(Element element, String message) {
+            error(element, message);
+            failed = true;
+        }
+
+        private void write() throws IOException {
+            String typeName = typeName(type.asType());
+            String simpleName = type.getQualifiedName().toString();
+            if (!packageName.isEmpty()) {
+                simpleName = simpleName.substring(packageName.length() + 1);
+            }
+            simpleName = simpleName.replace('.', '_') + SUFFIX;
+            String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "."
+                    + simpleName;
+
+            Source out = new Source();
+            out.line("/*");
+            out.line(" * Generated by " + CerealProcessor.class.getName() + ". Do not edit.");
+            out.line(" */");
+            if (!packageName.isEmpty()) {
+                out.line("package " + packageName + ";");
+            }
+            out.line();
+            out.line("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })");
+            out.open("public final class " + simpleName + " extends "
+                    + ClassCerealizer.class.getName() + "<" + typeName + "> {");
+            out.line();
+            out.open("public " + simpleName + "() {");
+            out.line("super(" + typeName + ".class);");
+            out.close("}");
+            out.line();
+            out.line("@Override");
+            out.open("protected void scan() throws com.comcast.cereal.CerealException {");
+            int index = 0;
+            for (Map.Entry<String, Member> entry : delegates.entrySet()) {
+                String variable = "access" + index++;
+                Integer tag = tags.get(entry.getKey());
+                entry.getValue().write(out, variable, entry.getKey(), (null == tag) ? 0 : tag);
+            }
+            out.close("}");
+            out.close("}");
+
+            Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type)
+                    .openWriter();
+            try {
+                writer.write(out.toString());
+            } finally {
+                writer.close();
+            }
+            generated.add(qualifiedName);
+        }
+
+        /**
+         * Get the expression that finds the cerealizer of a member, matching
+         * <code>ClassCerealizer.getCerealizer(Cereal, Class, Class)</code>.
+         */
+        private String getCerealizer(AnnotationMirror info, TypeMirror memberType,
+                String genericClass) {
+            String cerealizer = DefaultCerealizer.class.getName() + ".class";
+            String valueType = "void.class";
+            String valueSubtype = "void.class";
+            if (null != info) {
+                cerealizer = classLiteral((TypeMirror) getValue(info, "cerealizer"));
+                valueType = classLiteral((TypeMirror) getValue(info, "type"));
+                valueSubtype = classLiteral((TypeMirror) getValue(info, "subtype"));
+            }
+            return "getCerealizer(" + cerealizer + ", " + valueType + ", " + valueSubtype + ", "
+                    + classLiteral(memberType) + ", " + genericClass + ")";
+        }
+
+        /**
+         * Get the class literal that <code>ReflectionHelper.getGenericClass</code> would return
+         * for the given type argument or <code>null</code>.
+         */
+        private String genericClass(TypeMirror mirror, int arg) {
+            if (TypeKind.DECLARED != mirror.getKind()) {
+                return "null";
+            }
+
+            List<? extends TypeMirror> args = ((DeclaredType) mirror).getTypeArguments();
+            if (args.size() <= arg) {
+                return "null";
+            }
+
+            TypeMirror argument = args.get(arg);
+            TypeMirror component = argument;
+            while (TypeKind.ARRAY == component.getKind()) {
+                component = ((ArrayType) component).getComponentType();
+            }
+            if (component.getKind().isPrimitive()
+                    || (TypeKind.DECLARED == component.getKind() && ((DeclaredType) component)
+                            .getTypeArguments().isEmpty())) {
+                return check(argument) ? classLiteral(argument) : "null";
+            }
+            return "null";
+        }
+
+        private String classLiteral(TypeMirror mirror) {
+            if (TypeKind.VOID == mirror.getKind()) {
+                return "void.class";
+            }
+            return typeName(mirror) + ".class";
+        }
+
+        private String typeName(TypeMirror mirror) {
+            return types.erasure(mirror).toString();
+        }
+
+        /**
+         * Get the cast that turns a converted value into the given type.
+         */
+        private String cast(TypeMirror mirror) {
+            if (mirror.getKind().isPrimitive()) {
+                return "(" + types.boxedClass((PrimitiveType) mirror).getQualifiedName() + ") ";
+            }
+            return "(" + typeName(mirror) + ") ";
+        }
+
+        /**
+         * Get the name that the <code>PrimitiveFieldAccess</code> variant for the given type and
+         * its primitive accessors use, such as <code>Int</code>, or <code>null</code> if there is
+         * no variant for the type.
+         */
+        private String primitiveKind(TypeMirror mirror) {
+            switch (mirror.getKind()) {
+            case INT:
+                return "Int";
+            case LONG:
+                return "Long";
+            case DOUBLE:
+                return "Double";
+            case BOOLEAN:
+                return "Boolean";
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Get the expression that a member of the given element is accessed on.
+         */
+        private String receiver(Element member, String variable) {
+            String owner = typeName(member.getEnclosingElement().asType());
+            if (member.getModifiers().contains(Modifier.STATIC)) {
+                return owner;
+            }
+            return "((" + owner + ") " + variable + ")";
+        }
+
+        /**
+         * Returns <code>true</code> if the given type is accessible.
+         */
+        private boolean check(TypeMirror mirror) {
+            TypeMirror erased = types.erasure(mirror);
+            while (TypeKind.ARRAY == erased.getKind()) {
+                erased = ((ArrayType) erased).getComponentType();
+            }
+            if (TypeKind.DECLARED == erased.getKind()
+                    && !isAccessible((TypeElement) types.asElement(erased))) {
+                return false;
+            }
+            return true;
+        }
+
+        private void check(TypeMirror mirror, Element member) {
+            if (null == problem && !check(mirror)) {
+                problem = "the type '" + mirror + "' of '" + member + "' is not accessible";
+            }
+        }
+
+        private void check(Element member) {
+            if (null == problem && !isAccessible(member)) {
+                problem = "'" + member + "' in '" + member.getEnclosingElement()
+                        + "' is not accessible";
+            }
+        }
+
+        private boolean isAccessible(Element member) {
+            Set<Modifier> mods = member.getModifiers();
+            return !mods.contains(Modifier.PRIVATE)
+                    && (mods.contains(Modifier.PUBLIC) || isInPackage(member))
+                    && isAccessible((TypeElement) member.getEnclosingElement());
+        }
+
+        private boolean isAccessible(TypeElement element) {
+            for (Element e = element; e instanceof TypeElement; e = e.getEnclosingElement()) {
+                Set<Modifier> mods = e.getModifiers();
+                if (mods.contains(Modifier.PRIVATE)
+                        || (!mods.contains(Modifier.PUBLIC) && !isInPackage(e))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isInPackage(Element element) {
+            return packageName.equals(elements.getPackageOf(element).getQualifiedName()
+                    .toString());
+        }
+
+        /**
+         * A member that is converted.
+         */
+        private abstract class Member {
+
+            /**
+             * Record why the member can not be reached from the generated cerealizer, if it can
+             * not.
+             */
+            abstract void check();
+
+            /**
+             * Write the statements that create the access object for this member into a local
+             * variable with the given name and add it with the given name and tag.
+             */
+            abstract void write(Source out, String variable, String name, int tag);
+        }
+
+        private void putAccess(Source out, String variable, String name, int tag) {
+            out.line("putAccess(" + quote(name) + ", " + variable + ", " + tag + ");");
+        }
+
+        private class FieldMember extends Member {
+            private final VariableElement field;
+            private final AnnotationMirror info;
+
+            /* If the field is looked up with reflection because it can not be assigned directly */
+            private boolean reflective;
+
+            private FieldMember(VariableElement field, AnnotationMirror info) {
+                this.field = field;
+                this.info = info;
+            }
+
+            void check() {
+                TypeElement owner = (TypeElement) field.getEnclosingElement();
+                if (null == problem && !isAccessible(owner)) {
+                    problem = "'" + owner + "' is not accessible";
+                }
+                reflective = !isAccessible(field) || !Generator.this.check(field.asType())
+                        || field.getModifiers().contains(Modifier.FINAL)
+                        || ((null != info) && !isAccessible(info));
+            }
+
+            void write(Source out, String variable, String name, int tag) {
+                if (reflective) {
+                    out.line("putFieldAccess(" + classLiteral(field.getEnclosingElement().asType())
+                            + ", " + quote(field.getSimpleName().toString()) + ");");
+                    return;
+                }
+
+                TypeMirror fieldType = field.asType();
+                int genericArg = isSubtype(fieldType, java.util.Map.class) ? 1 : 0;
+                String cerealizer = getCerealizer(info, fieldType, genericClass(fieldType,
+                        genericArg));
+                boolean requireValue = true;
+                String defaultValue = "null";
+                String defaultObjectClass = "null";
+                boolean cerealizerOverride = false;
+                if (null != info) {
+                    requireValue = (Boolean) getValue(info, "requireValue");
+                    defaultValue = first(info, "defaultValue");
+                    defaultObjectClass = first(info, "defaultObjectClass");
+                    cerealizerOverride = !DefaultCerealizer.class.getName().equals(
+                            typeName((TypeMirror) getValue(info, "cerealizer")));
+                }
+
+                String member = quote(field.getEnclosingElement() + "." + field.getSimpleName());
+                String owner = classLiteral(field.getEnclosingElement().asType());
+                String kind = cerealizerOverride ? null : primitiveKind(fieldType);
+                if (null == kind) {
+                    out.line(FIELD_ACCESS + " " + variable + " = new " + FIELD_ACCESS + "("
+                            + member + ",");
+                    writeFieldAccess(out, owner, cerealizer, requireValue, defaultValue,
+                            defaultObjectClass, cerealizerOverride);
+                    putAccess(out, variable, name, tag);
+                    return;
+                }
+
+                /* Primitive fields use the same access objects as ClassCerealizer would */
+                String cerealizerVariable = "cerealizer" + variable.substring("access".length());
+                out.line("com.comcast.cereal.Cerealizer " + cerealizerVariable + " = "
+                        + cerealizer + ";");
+                out.line(FIELD_ACCESS + " " + variable + ";");
+                out.open("if (isPrimitiveAccess(" + classLiteral(fieldType) + ", "
+                        + cerealizerVariable + ")) {");
+                out.line(variable + " = new " + PRIMITIVE_ACCESS + "." + kind + "FieldAccess("
+                        + member + ",");
+                out.line("        " + owner + ", " + cerealizerVariable + ",");
+                out.line("        " + requireValue + ", " + defaultValue + ", "
+                        + defaultObjectClass + ", getCerealFactory()) {");
+                out.indent();
+                out.line("@Override");
+                out.open("protected " + fieldType + " get" + kind + "(Object source) {");
+                out.line("return " + receiver(field, "source") + "." + field.getSimpleName()
+                        + ";");
+                out.close("}");
+                out.line();
+                out.line("@Override");
+                out.open("protected void put" + kind + "(Object target, " + fieldType
+                        + " value) {");
+                out.line(receiver(field, "target") + "." + field.getSimpleName() + " = value;");
+                out.close("}");
+                out.line();
+                writeGetAndPut(out);
+                out.close("};");
+                out.close("} else {");
+                out.indent();
+                out.line(variable + " = new " + FIELD_ACCESS + "(" + member + ",");
+                writeFieldAccess(out, owner, cerealizerVariable, requireValue, defaultValue,
+                        defaultObjectClass, cerealizerOverride);
+                out.close("}");
+                putAccess(out, variable, name, tag);
+            }
+            /**
+             * Write the arguments that follow the description of an anonymous field access and
+             * its body.
+             */
+            private void writeFieldAccess(Source out, String owner, String cerealizer,
+                    boolean requireValue, String defaultValue, String defaultObjectClass,
+                    boolean cerealizerOverride) {
+                out.line("        " + owner + ", " + classLiteral(field.asType()) + ",");
+                out.line("        " + cerealizer + ",");
+                out.line("        " + requireValue + ", " + defaultValue + ", "
+                        + defaultObjectClass + ", getCerealFactory(), " + cerealizerOverride
+                        + ") {");
+                out.indent();
+                writeGetAndPut(out);
+                out.close("};");
+            }
+
+            /**
+             * Write the boxing <code>get</code> and <code>put</code> overrides of the field.
+             */
+            private void writeGetAndPut(Source out) {
+                out.line("@Override");
+                out.open("protected Object get(Object source) {");
+                out.line("return " + receiver(field, "source") + "." + field.getSimpleName()
+                        + ";");
+                out.close("}");
+                out.line();
+                out.line("@Override");
+                out.open("protected void put(Object target, Object value) {");
+                out.line(receiver(field, "target") + "." + field.getSimpleName() + " = "
+                        + cast(field.asType()) + "value;");
+                out.close("}");
+            }
+        }
+
+        private class MethodMember extends Member {
+            private final AnnotationMirror info;
+            private final TypeMirror memberType;
+            private ExecutableElement getter;
+            private ExecutableElement setter;
+            private AnnotationMirror setterInfo;
+
+            private MethodMember(ExecutableElement method, AnnotationMirror info, boolean setter) {
+                this.info = info;
+                this.memberType = setter ? method.getParameters().get(0).asType() : method
+                        .getReturnType();
+            }
+
+            void check() {
+                checkInfo(info, (null == getter) ? setter : getter);
+                Generator.this.check(memberType, (null == getter) ? setter : getter);
+                if (null != getter) {
+                    Generator.this.check(getter);
+                }
+                if (null != setter) {
+                    Generator.this.check(setter);
+                    Generator.this.check(setter.getParameters().get(0).asType(), setter);
+                }
+            }
+
+            void write(Source out, String variable, String name, int tag) {
+                String cerealizer = getCerealizer(info, memberType, genericClass(memberType, 0));
+                String getterName = (null == getter) ? "null" : quote(describe(getter));
+                String setterName = (null == setter) ? "null" : quote(describe(setter));
+                TypeMirror setterType = (null == setter) ? null : setter.getParameters().get(0)
+                        .asType();
+
+                out.line(METHOD_ACCESS + " " + variable + " = new " + METHOD_ACCESS + "("
+                        + cerealizer + ",");
+                out.line("        " + getterName + ", " + setterName + ", "
+                        + ((null == setterType) ? "null" : classLiteral(setterType)) + ") {");
+                out.indent();
+                if (null != getter) {
+                    out.line("@Override");
+                    out.open("protected Object invokeGetter(Object source) {");
+                    out.line("return " + receiver(getter, "source") + "." + getter.getSimpleName()
+                            + "();");
+                    out.close("}");
+                }
+                if (null != setter) {
+                    if (null != getter) {
+                        out.line();
+                    }
+                    out.line("@Override");
+                    out.open("protected void invokeSetter(Object target, Object value) {");
+                    out.line(receiver(setter, "target") + "." + setter.getSimpleName() + "("
+                            + cast(setterType) + "value);");
+                    out.close("}");
+                }
+                out.close("};");
+                if (null != setter) {
+                    out.line(variable + ".setRequireValue("
+                            + getValue(setterInfo, "requireValue") + ");");
+                    out.line(variable + ".setDefaultValue(" + first(setterInfo, "defaultValue")
+                            + ");");
+                }
+                putAccess(out, variable, name, tag);
+            }
+
+            private String describe(ExecutableElement method) {
+                return method.getEnclosingElement() + "." + method;
+            }
+        }
+
+        /**
+         * Returns <code>true</code> if the classes named by a {@link Cereal} annotation are
+         * accessible.
+         */
+        private boolean isAccessible(AnnotationMirror info) {
+            boolean accessible = check((TypeMirror) getValue(info, "cerealizer"))
+                    && check((TypeMirror) getValue(info, "type"))
+                    && check((TypeMirror) getValue(info, "subtype"));
+            for (AnnotationValue value : getList(info, "defaultObjectClass")) {
+                accessible &= check((TypeMirror) value.getValue());
+            }
+            return accessible;
+        }
+
+        /**
+         * Check that the classes named by a {@link Cereal} annotation are accessible.
+         */
+        private void checkInfo(AnnotationMirror info, Element member) {
+            check((TypeMirror) getValue(info, "cerealizer"), member);
+            check((TypeMirror) getValue(info, "type"), member);
+            check((TypeMirror) getValue(info, "subtype"), member);
+            for (AnnotationValue value : getList(info, "defaultObjectClass")) {
+                check((TypeMirror) value.getValue(), member);
+            }
+        }
+
+        /**
+         * Get the first element of an array value as a literal or <code>null</code>, like
+         * <code>ClassCerealizer.getDefaultValue</code> and
+         * <code>ClassCerealizer.getDefaultObjectClass</code>.
+         */
+        private String first(AnnotationMirror info, String name) {
+            List<? extends AnnotationValue> list = getList(info, name);
+            if (list.isEmpty()) {
+                return "null";
+            }
+            Object value = list.get(0).getValue();
+            return (value instanceof TypeMirror) ? classLiteral((TypeMirror) value)
+                    : quote((String) value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<? extends AnnotationValue> getList(AnnotationMirror info, String name) {
+            return (List<? extends AnnotationValue>) getValue(info, name);
+        }
+
+        private Object getValue(AnnotationMirror info, String name) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements
+                    .getElementValuesWithDefaults(info).entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(name)) {
+                    return entry.getValue().getValue();
+                }
+            }
+            return null;
+        }
+
+        private AnnotationMirror getMirror(Element element, Class<?> annotation) {
+            for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+                TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+                if (annotationType.getQualifiedName().contentEquals(annotation.getName())) {
+                    return mirror;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the given string as a java string literal.
+     */
+    static String quote(String string) {
+        StringBuilder builder = new StringBuilder(string.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c > 0x7E) {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Builds the indented lines of a generated source file.
+     */
+    private static class Source {
+        private final StringBuilder builder = new StringBuilder();
+        private final List<String> indents = new ArrayList<String>();
+
+        private void line() {
+            builder.append('\n');
+        }
+
+        private void line(String line) {
+            for (String indent : indents) {
+                builder.append(indent);
+            }
+            builder.append(line).append('\n');
+        }
+
+        private void indent() {
+            indents.add("    ");
+        }
+
+        private void open(String line) {
+            line(line);
+            indent();
+        }
+
+        private void close(String line) {
+            indents.remove(indents.size() - 1);
+            line(line);
+        }
+
+        public String toString() {
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.processor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.Cerealizer;
+import com.comcast.cereal.engines.AbstractCerealEngine;
+import com.comcast.cereal.engines.BinaryCerealEngine;
+import com.comcast.cereal.engines.JsonCerealEngine;
+import com.comcast.cereal.convert.ClassCerealizer;
+import com.comcast.cereal.convert.PrimitiveCerealizer.IntegerCerealizer;
+import com.comcast.cereal.impl.CerealAccess;
+import com.comcast.cereal.impl.FieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.BooleanFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.DoubleFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.IntFieldAccess;
+import com.comcast.cereal.processor.model.Child;
+import com.comcast.cereal.processor.model.Hidden;
+import com.comcast.cereal.processor.model.Plain;
+import com.comcast.cereal.processor.model.Point;
+
+/**
+ * Verifies that the cerealizers generated for the model classes convert exactly like those that
+ * scan the classes with reflection.
+ */
+public class CerealProcessorTest {
+
+    private static final Class<?>[] TYPES = { Point.class, Plain.class, Child.class,
+            Hidden.class };
+
+    private static final String CHILD = "{\"name\":\"child\",\"nums\":[1,2,3],"
+            + "\"tags\":[\"d\",\"e\"],"
+            + "\"points\":{\"a\":{\"x\":1,\"why\":2,\"label\":\"a\",\"size\":3}},"
+            + "\"point\":{\"x\":4,\"size\":5},\"ratio\":0.5,\"initial\":\"c\",\"flag\":true,"
+            + "\"parent\":{\"name\":\"parent\",\"nums\":null,\"tags\":null,\"points\":null,"
+            + "\"point\":null,\"ratio\":1.5,\"initial\":\"p\",\"parent\":null}}";
+
+    @DataProvider(name = "settings")
+    public Object[][] settings() {
+        return new Object[][] { { false }, { true } };
+    }
+
+    @Test
+    public void testGenerated() throws Exception {
+        CerealFactory factory = new JsonCerealEngine().getCerealFactory();
+        assertEquals(factory.getCerealizer(Point.class).getClass().getName(),
+                Point.class.getName() + "_Cerealizer");
+        assertEquals(factory.getCerealizer(Plain.class).getClass().getName(),
+                Plain.class.getName() + "_Cerealizer");
+        assertEquals(factory.getCerealizer(Child.class).getClass().getName(),
+                Child.class.getName() + "_Cerealizer");
+
+        /* Private and final fields are looked up with reflection by the generated cerealizer */
+        assertEquals(factory.getCerealizer(Hidden.class).getClass().getName(),
+                Hidden.class.getName() + "_Cerealizer");
+    }
+
+    @Test
+    public void testPrimitiveAccess() throws Exception {
+        CerealFactory factory = new JsonCerealEngine().getCerealFactory();
+        CerealAccess x = getAccess(factory.getCerealizer(Point.class), "x");
+        assertEquals(x.getClass().getSuperclass(), IntFieldAccess.class);
+        assertEquals(x.getClass().getEnclosingClass().getSimpleName(), "Point_Cerealizer");
+
+        Cerealizer<Child, ?> child = factory.getCerealizer(Child.class);
+        assertEquals(getAccess(child, "ratio").getClass().getSuperclass(),
+                DoubleFieldAccess.class);
+        assertEquals(getAccess(child, "flag").getClass().getSuperclass(),
+                BooleanFieldAccess.class);
+        assertEquals(getAccess(child, "initial").getClass().getSuperclass(), FieldAccess.class);
+
+        /* Generated accesses have no field to resolve method handles for */
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.getCerealFactory().setUseMethodHandles(true);
+        Point point = engine.readFromString("{\"x\":7,\"size\":2}", Point.class);
+        assertEquals(point.x, 7);
+        assertEquals(engine.writeToString(point), new JsonCerealEngine().writeToString(point));
+
+        /* A custom runtime cerealizer for the boxed type needs the boxed access */
+        factory = new JsonCerealEngine().getCerealFactory();
+        factory.addCerealizer(Integer.class, new IntegerCerealizer() {
+        });
+        x = getAccess(factory.getCerealizer(Point.class), "x");
+        assertEquals(x.getClass().getSuperclass(), FieldAccess.class);
+    }
+
+    @Test(dataProvider = "settings")
+    public void testMatchesReflection(boolean stream) throws Exception {
+        JsonCerealEngine generated = engine(new JsonCerealEngine(), stream);
+        JsonCerealEngine reflection = reflection(new JsonCerealEngine(), stream);
+
+        Child child = reflection.readFromString(CHILD, Child.class);
+        child.flag = true;
+        String expected = reflection.writeToString(child);
+        assertEquals(generated.writeToString(child), expected);
+        assertEquals(reflection.writeToString(generated.readFromString(expected, Child.class)),
+                expected);
+
+        Hidden hidden = new Hidden();
+        hidden.name = "name";
+        hidden.setSecret("secret");
+        hidden.notes.add("note");
+        expected = reflection.writeToString(hidden);
+        assertEquals(generated.writeToString(hidden), expected);
+        assertEquals(reflection.writeToString(generated.readFromString(expected, Hidden.class)),
+                expected);
+    }
+
+    @Test(dataProvider = "settings")
+    public void testDefaultsAndRequiredValues(boolean stream) throws Exception {
+        for (JsonCerealEngine engine : new JsonCerealEngine[] {
+                engine(new JsonCerealEngine(), stream),
+                reflection(new JsonCerealEngine(), stream) }) {
+            Point point = engine.readFromString("{\"x\":1,\"size\":2}", Point.class);
+            assertEquals(point.x, 1);
+            assertEquals(point.getSize(), 2);
+            assertEquals(engine.writeToString(point), engine.writeToString(engine.readFromString(
+                    "{\"x\":1,\"size\":2,\"label\":\"none\",\"why\":null}", Point.class)));
+
+            try {
+                engine.readFromString("{\"size\":2}", Point.class);
+                assertTrue(false, "Expected the missing value to fail");
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+        }
+    }
+
+    @Test
+    public void testTags() throws Exception {
+        BinaryCerealEngine generated = engine(new BinaryCerealEngine(true), false);
+        BinaryCerealEngine reflection = reflection(new BinaryCerealEngine(true), false);
+
+        Point point = new JsonCerealEngine().readFromString(
+                "{\"x\":1,\"why\":2,\"label\":\"a\",\"size\":3}", Point.class);
+        byte[] bytes = reflection.writeToBytes(point);
+        assertTrue(bytes.length > 0);
+
+        String chars = new String(bytes, "ISO-8859-1");
+        assertTrue(!chars.contains("size") && chars.contains("label"));
+        assertEquals(generated.writeToBytes(point), bytes);
+        assertEquals(reflection.writeToBytes(generated.readFromBytes(bytes, Point.class)), bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CerealAccess getAccess(Cerealizer<?, ?> cerealizer, String name)
+            throws Exception {
+        Field delegates = ClassCerealizer.class.getDeclaredField("delegates");
+        delegates.setAccessible(true);
+        return ((Map<String, CerealAccess>) delegates.get(cerealizer)).get(name);
+    }
+
+    private static <E extends AbstractCerealEngine> E engine(E engine, boolean stream) {
+        CerealSettings settings = new CerealSettings();
+        settings.setStreamWrites(stream);
+        settings.setStreamReads(stream);
+        engine.setSettings(settings);
+        return engine;
+    }
+
+    /**
+     * Set up the given engine to scan the model classes with reflection even though cerealizers
+     * were generated for them.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static <E extends AbstractCerealEngine> E reflection(E engine, boolean stream)
+            throws CerealException {
+        CerealFactory factory = engine.getCerealFactory();
+        List<ClassCerealizer> cerealizers = new ArrayList<ClassCerealizer>();
+        for (Class<?> type : TYPES) {
+            ClassCerealizer cerealizer = new ClassCerealizer(type);
+            cerealizer.setCerealFactory(factory);
+            factory.addCerealizer(type, cerealizer);
+            cerealizers.add(cerealizer);
+        }
+        for (ClassCerealizer cerealizer : cerealizers) {
+            cerealizer.initialize();
+        }
+        return engine(engine, stream);
+    }
+}
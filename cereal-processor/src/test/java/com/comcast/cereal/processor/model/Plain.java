@@ -0,0 +1,39 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.processor.model;
+
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.annotations.Ignore;
+
+public class Plain {
+
+    public static int COUNT = 0;
+
+    public String name;
+    @Cereal(name = "nums")
+    public List<Integer> numbers;
+    public Map<String, Point> points;
+    public String[] tags;
+    public Point point;
+    double ratio;
+    char initial;
+    transient int skipped;
+    @Ignore
+    public String ignored;
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.processor.model;
+
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.annotations.CerealObject;
+
+@CerealObject
+public class Point {
+
+    @Cereal(tag = 1)
+    public int x;
+
+    @Cereal(name = "why", requireValue = false, tag = 2)
+    Integer y;
+
+    @Cereal(defaultValue = "none")
+    protected String label;
+
+    /* Not converted because only annotated members are */
+    public String ignored;
+
+    private long size;
+
+    @Cereal(name = "size", tag = 3)
+    public long getSize() {
+        return size;
+    }
+
+    @Cereal(name = "size", tag = 3)
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
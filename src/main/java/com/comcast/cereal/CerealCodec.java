@@ -0,0 +1,90 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A <i>CerealCodec</i> compresses (or otherwise encodes) the bytes that an engine writes and
+ * decodes them again when they are read. An engine encodes with the codec from
+ * {@link CerealSettings#getCodec()} and decodes input that starts with its header. Once
+ * {@link CerealSettings#setDetectCodecs(boolean)} is turned on, every known codec is checked
+ * against the first bytes of the input as well, so encoded input is decoded no matter which codec
+ * wrote it.
+ *
+ * <p>
+ * GZIP and DEFLATE are built in. Other codecs are found with {@link java.util.ServiceLoader} by
+ * listing their class names in a <code>META-INF/services/com.comcast.cereal.CerealCodec</code>
+ * resource, and need a public no argument constructor to be found that way.
+ * </p>
+ *
+ * @see com.comcast.cereal.impl.GzipCodec
+ * @see com.comcast.cereal.impl.DeflateCodec
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface CerealCodec {
+
+    /**
+     * Get the number of bytes that {@link #matches(byte[], int)} needs to recognize the output of
+     * this codec.
+     *
+     * @return the length of the header
+     */
+    int getHeaderLength();
+
+    /**
+     * Check if input that starts with the given bytes was encoded by this codec.
+     *
+     * @param header
+     *            the first bytes of the input
+     * @param length
+     *            the number of bytes in the header, which is less than
+     *            {@link #getHeaderLength()} only if the input is that short
+     *
+     * @return <code>true</code> if the input should be decoded by this codec
+     */
+    boolean matches(byte[] header, int length);
+
+    /**
+     * Wrap the given output stream so that everything written to it is encoded. Closing the
+     * returned stream must finish the encoded output and close the given stream.
+     *
+     * @param outputStream
+     *            where to write the encoded bytes
+     *
+     * @return the stream to write the plain bytes to
+     *
+     * @throws IOException
+     *             if the encoding could not be started
+     */
+    OutputStream encode(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wrap the given input stream so that reading from it decodes the input.
+     *
+     * @param inputStream
+     *            the encoded input, starting with the header
+     *
+     * @return the stream to read the plain bytes from
+     *
+     * @throws IOException
+     *             if the input could not be decoded
+     */
+    InputStream decode(InputStream inputStream) throws IOException;
+}
@@ -15,11 +15,15 @@
  */
 package com.comcast.cereal;
 
+import java.lang.reflect.Constructor;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 import com.comcast.cereal.annotations.CerealClass;
 import com.comcast.cereal.convert.ArrayCerealizer;
@@ -51,6 +55,11 @@ import com.comcast.cereal.engines.CerealEngine;
  */
 public class CerealFactory {
 
+    /*
+     * The maps below are filled lazily as types are converted, so every method that touches them
+     * is synchronized on this factory for the asynchronous calls of an engine that share it
+     */
+
     /* This is a mapping of types to cached base type and class cerealizers */
     private final Map<TypeSubtype, Cerealizer<?, ?>> map;
 
@@ -60,6 +69,12 @@ public class CerealFactory {
     /* This is a cache of the Dynamic Cerealizer */
     private DynamicCerealizer dc;
 
+    /* Whether new class cerealizers call fields and methods through method handles */
+    private boolean useMethodHandles = false;
+
+    /* The constructors of the generated class cerealizers by the type they convert */
+    private Map<Class<?>, Constructor<?>> generated;
+
     /**
      * Construct a new {@link CerealFactory} and initialize the types supported by default (see
      * {@link Cerealizer} for that list) to use a {@link SimpleCerealizer}.
@@ -116,6 +131,30 @@ public class CerealFactory {
         this.cacheCerealizer(new ByteArrayCerealizer());
     }
 
+    /**
+     * Returns <code>true</code> if the {@link ClassCerealizer}s created by this factory read and
+     * write fields and bean methods through method handles.
+     * 
+     * @return <code>true</code> if method handles are used
+     */
+    public boolean shouldUseMethodHandles() {
+        return useMethodHandles;
+    }
+
+    /**
+     * Change whether the {@link ClassCerealizer}s created by this factory read and write fields
+     * and bean methods through method handles that are resolved once per member instead of
+     * through reflection on every call. Members that can not be reached through a handle keep
+     * using reflection. This only applies to cerealizers created after it is called, so it should
+     * be set before the first conversion.
+     * 
+     * @param useMethodHandles
+     *            <code>true</code> to use method handles
+     */
+    public void setUseMethodHandles(boolean useMethodHandles) {
+        this.useMethodHandles = useMethodHandles;
+    }
+
     /**
      * Get a cached version of a Cerealizer that is capable of converting to and from the specific
      * java type.
@@ -150,7 +189,8 @@ public class CerealFactory {
      *             given type
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    public <J> Cerealizer<J, ?> getCerealizer(Class<J> type, Class<?> subtype) throws CerealException {
+    public synchronized <J> Cerealizer<J, ?> getCerealizer(Class<J> type, Class<?> subtype)
+            throws CerealException {
         TypeSubtype typeSubtype = new TypeSubtype(type, subtype);
         if (map.containsKey(typeSubtype)) {
             return (Cerealizer<J, ?>) map.get(typeSubtype);
@@ -213,7 +253,7 @@ public class CerealFactory {
 
             return cerealizer;
         } else {
-            ClassCerealizer<J> cerealizer = new ClassCerealizer<J>(type);
+            ClassCerealizer<J> cerealizer = newClassCerealizer(type);
 
             /*
              * Need to insert the Cerealizer into the map before initializing because
@@ -228,6 +268,72 @@ public class CerealFactory {
         }
     }
     
+    /**
+     * Create a new {@link ClassCerealizer} for the given type. If a cerealizer was generated for
+     * the type at compile time and registered with {@link ServiceLoader} (as a
+     * <code>com.comcast.cereal.convert.ClassCerealizer</code> service) a new instance of that is
+     * used, otherwise the type is scanned with reflection.
+     * 
+     * @param type
+     *            the java type to convert to and from
+     * 
+     * @return the uninitialized cerealizer
+     * 
+     * @throws CerealException
+     *             if the generated cerealizer could not be created
+     */
+    @SuppressWarnings("unchecked")
+    private <J> ClassCerealizer<J> newClassCerealizer(Class<J> type) throws CerealException {
+        Constructor<?> constructor = getGenerated().get(type);
+        if (null == constructor) {
+            return new ClassCerealizer<J>(type);
+        }
+
+        try {
+            return (ClassCerealizer<J>) constructor.newInstance();
+        } catch (Exception ex) {
+            throw new CerealException("Failed to create the generated cerealizer '"
+                    + constructor.getDeclaringClass().getName() + "'", ex);
+        }
+    }
+
+    /**
+     * Find the generated class cerealizers registered with {@link ServiceLoader} the first time
+     * they are needed. Entries that can not be loaded are skipped, so their types are scanned
+     * with reflection instead.
+     */
+    @SuppressWarnings("rawtypes")
+    private Map<Class<?>, Constructor<?>> getGenerated() {
+        if (null != generated) {
+            return generated;
+        }
+
+        generated = new HashMap<Class<?>, Constructor<?>>();
+        Iterator<ClassCerealizer> services = ServiceLoader.load(ClassCerealizer.class,
+                CerealFactory.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!services.hasNext()) {
+                    break;
+                }
+            } catch (ServiceConfigurationError error) {
+                /* The service files can not be read */
+                break;
+            }
+
+            try {
+                ClassCerealizer<?> cerealizer = services.next();
+                generated.put(cerealizer.getJavaType(),
+                        cerealizer.getClass().getDeclaredConstructor());
+            } catch (ServiceConfigurationError error) {
+                /* A stale or broken entry, its type falls back to reflection */
+            } catch (NoSuchMethodException ex) {
+                /* Not possible, ServiceLoader just used the constructor */
+            }
+        }
+        return generated;
+    }
+
     /**
      * Cache an array of cerealizers
      * @param cerealizers The list of cerealizers to cache
@@ -248,7 +354,7 @@ public class CerealFactory {
      * 
      * @see #getCachedCerealizer(Class)
      */
-    public void cacheCerealizer(Cerealizer<?, ?> cerealizer) {
+    public synchronized void cacheCerealizer(Cerealizer<?, ?> cerealizer) {
         if (cerealizer instanceof CerealFactoryAware) {
             ((CerealFactoryAware) cerealizer).setCerealFactory(this);
         }
@@ -268,7 +374,7 @@ public class CerealFactory {
      * @see #cacheCerealizer(Cerealizer)
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    public <C extends Cerealizer> C getCachedCerealizer(Class<C> type) {
+    public synchronized <C extends Cerealizer> C getCachedCerealizer(Class<C> type) {
         return (C) cache.get(type);
     }
     
@@ -310,7 +416,7 @@ public class CerealFactory {
      * @param clazz The class that the cerealizer is for
      * @param cerealizer The cerealizer to use for the given class
      */
-    public <T> void addCerealizer(Class<?> clazz, Cerealizer<?, ?> cerealizer) {
+    public synchronized <T> void addCerealizer(Class<?> clazz, Cerealizer<?, ?> cerealizer) {
         this.map.put(new TypeSubtype(clazz, null), cerealizer);
     }
     
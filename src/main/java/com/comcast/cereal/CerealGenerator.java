@@ -0,0 +1,163 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <i>CerealGenerator</i> receives the cereal-compatible representation of an object one token at
+ * a time and encodes it directly to its target. This allows a {@link StreamingCerealizer} to write
+ * an object without first building the complete {@link Map} / {@link List} representation of it.
+ *
+ * <p>
+ * Objects and lists must declare their size up front so that formats that depend on it (such as
+ * indentation of single entry objects in JSON) can be written without look-ahead.
+ * </p>
+ *
+ * @see StreamingCerealizer
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface CerealGenerator {
+
+    /**
+     * The size of a list whose values are not known up front, such as the values of an
+     * {@link java.util.Iterator}. Only the text generators support this and only for lists.
+     *
+     * @see #writeStartArray(int)
+     */
+    int UNKNOWN_SIZE = -1;
+
+    /**
+     * Get the order in which this generator writes the entries of a cereal {@link Map} whose keys
+     * iterate in the given order. Entries of an object must be written in the returned order.
+     *
+     * @param names
+     *            the keys of the cereal map in iteration order
+     *
+     * @return the keys in the order they should be written
+     */
+    String[] orderNames(String[] names);
+
+    /**
+     * Start writing an object (a cereal {@link Map}).
+     *
+     * @param size
+     *            the number of entries that will be written to this object
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeStartObject(int size) throws CerealException;
+
+    /**
+     * Write the name of the next entry of the current object. This must be followed by exactly one
+     * value, object, list or fork.
+     *
+     * @param name
+     *            the name of the entry
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeName(String name) throws CerealException;
+
+    /**
+     * Finish writing the current object.
+     *
+     * @throws CerealException
+     *             if writing fails or the number of entries written does not match the declared
+     *             size
+     */
+    void writeEndObject() throws CerealException;
+
+    /**
+     * Start writing a list (a cereal {@link List}).
+     *
+     * @param size
+     *            the number of values that will be written to this list or {@link #UNKNOWN_SIZE}
+     *            if that is not known yet
+     *
+     * @throws CerealException
+     *             if writing fails or the generator needs to know the size
+     */
+    void writeStartArray(int size) throws CerealException;
+
+    /**
+     * Finish writing the current list.
+     *
+     * @throws CerealException
+     *             if writing fails or the number of values written does not match the declared size
+     *             (unless it was {@link #UNKNOWN_SIZE})
+     */
+    void writeEndArray() throws CerealException;
+
+    /**
+     * Write a single scalar value. This should be a {@link String}, {@link Number},
+     * {@link Boolean}, {@link Character} or <code>null</code>.
+     *
+     * @param value
+     *            the value to write
+     *
+     * @throws CerealException
+     *             if writing fails or the value can not be encoded
+     */
+    void writeValue(Object value) throws CerealException;
+
+    /**
+     * Write an already converted cereal-compatible object, including all of its children. This is
+     * used for {@link Cerealizer}s that do not support streaming.
+     *
+     * @param cereal
+     *            the cereal-compatible object to write
+     *
+     * @throws CerealException
+     *             if writing fails or the cereal can not be encoded
+     */
+    void writeCereal(Object cereal) throws CerealException;
+
+    /**
+     * Create a generator that records a single value so that it can be written to this generator
+     * later using {@link #writeFork(CerealGenerator)}. Forks are used when the values of an object
+     * must be converted in a different order than they are written.
+     *
+     * @return the new fork
+     *
+     * @throws CerealException
+     *             if the fork can not be created
+     */
+    CerealGenerator fork() throws CerealException;
+
+    /**
+     * Write the value recorded by a generator that was returned from {@link #fork()}.
+     *
+     * @param fork
+     *            the fork to write
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeFork(CerealGenerator fork) throws CerealException;
+
+    /**
+     * Flush anything that is buffered to the underlying target.
+     *
+     * @throws CerealException
+     *             if flushing fails
+     */
+    void flush() throws CerealException;
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <i>CerealParser</i> reads an encoded document one token at a time. This allows a
+ * {@link StreamingCerealizer} to bind values directly into java objects without first building the
+ * complete {@link Map} / {@link List} representation of the document.
+ *
+ * <p>
+ * The parser always has a current token. A value starts with a {@link Token#VALUE},
+ * {@link Token#START_OBJECT} or {@link Token#START_ARRAY} token. Every entry of an object is a
+ * {@link Token#NAME} token followed by a value.
+ * </p>
+ *
+ * @see StreamingCerealizer
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface CerealParser {
+
+    /**
+     * The types of tokens returned from {@link CerealParser#next()}.
+     */
+    public static enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, VALUE, END
+    }
+
+    /**
+     * Advance to the next token.
+     *
+     * @return the new current token
+     *
+     * @throws CerealException
+     *             if reading fails or the document is not formatted correctly
+     */
+    Token next() throws CerealException;
+
+    /**
+     * Get the current token.
+     *
+     * @return the current token or <code>null</code> if {@link #next()} has not yet been called
+     */
+    Token getToken();
+
+    /**
+     * Get the name of the object entry that was last read.
+     *
+     * @return the name of the entry
+     */
+    String getName();
+
+    /**
+     * Get the scalar value of the current {@link Token#VALUE} token. This will be a
+     * {@link String}, {@link Number}, {@link Boolean} or <code>null</code>.
+     *
+     * @return the value
+     */
+    Object getValue();
+
+    /**
+     * Skip the value that starts at the current token, including all of its children, without
+     * converting it. Afterwards, the current token is the last token of the skipped value.
+     *
+     * @throws CerealException
+     *             if reading fails or the document is not formatted correctly
+     */
+    void skipValue() throws CerealException;
+
+    /**
+     * Read the value that starts at the current token into cereal-compatible objects. Afterwards,
+     * the current token is the last token of the value.
+     *
+     * @return the cereal-compatible representation of the value
+     *
+     * @throws CerealException
+     *             if reading fails or the document is not formatted correctly
+     */
+    Object readCereal() throws CerealException;
+}
@@ -24,6 +24,13 @@ package com.comcast.cereal;
 public class CerealSettings {
     private boolean includeClassName = true;
     private boolean useObjectReferences = true;
+    private boolean streamWrites = false;
+    private boolean streamReads = false;
+    private long mappedReadThreshold = 1 << 20;
+    private boolean atomicFileWrites = false;
+    private boolean syncFileWrites = false;
+    private CerealCodec codec = null;
+    private boolean detectCodecs = false;
 
     public boolean shouldIncludeClassName() {
         return includeClassName;
@@ -40,4 +47,155 @@ public class CerealSettings {
 	public void setUseObjectReferences(boolean useObjectReferences) {
 		this.useObjectReferences = useObjectReferences;
 	}
+
+	/**
+	 * Returns <code>true</code> if engines that support it should write objects directly to the
+	 * output instead of first converting them to a complete cereal-compatible representation.
+	 * 
+	 * @return <code>true</code> if writes should be streamed
+	 */
+	public boolean shouldStreamWrites() {
+		return streamWrites;
+	}
+
+	/**
+	 * Turn streaming writes on or off. The output is the same either way, but streaming writes do
+	 * not hold a second copy of the whole object graph in memory while writing.
+	 * 
+	 * @param streamWrites
+	 *            <code>true</code> if writes should be streamed
+	 */
+	public void setStreamWrites(boolean streamWrites) {
+		this.streamWrites = streamWrites;
+	}
+
+	/**
+	 * Returns <code>true</code> if engines that support it should bind the input directly into
+	 * java objects instead of first reading it into a complete cereal-compatible representation.
+	 * 
+	 * @return <code>true</code> if reads should be streamed
+	 */
+	public boolean shouldStreamReads() {
+		return streamReads;
+	}
+
+	/**
+	 * Turn streaming reads on or off. Streaming reads produce the same objects, but values that
+	 * the target classes do not use are skipped instead of being converted.
+	 * 
+	 * @param streamReads
+	 *            <code>true</code> if reads should be streamed
+	 */
+	public void setStreamReads(boolean streamReads) {
+		this.streamReads = streamReads;
+	}
+
+	/**
+	 * Get the size from which files are read by mapping them into memory instead of reading
+	 * them through a stream. This defaults to 1 MB.
+	 * 
+	 * @return the smallest size in bytes of the files that are mapped
+	 */
+	public long getMappedReadThreshold() {
+		return mappedReadThreshold;
+	}
+
+	/**
+	 * Set the size from which files are read by mapping them into memory. Mapping saves copying
+	 * every byte from the kernel into the heap, but costs more to set up than reading a small
+	 * file. Use {@link Long#MAX_VALUE} to never map files.
+	 * 
+	 * @param mappedReadThreshold
+	 *            the smallest size in bytes of the files that should be mapped
+	 */
+	public void setMappedReadThreshold(long mappedReadThreshold) {
+		this.mappedReadThreshold = mappedReadThreshold;
+	}
+
+	/**
+	 * Returns <code>true</code> if files are written to a temporary file that replaces the
+	 * target file once it is complete.
+	 * 
+	 * @return <code>true</code> if file writes are atomic
+	 */
+	public boolean shouldAtomicFileWrites() {
+		return atomicFileWrites;
+	}
+
+	/**
+	 * Turn atomic file writes on or off. With atomic writes, a failure or crash while writing
+	 * leaves the old file in place instead of a truncated one, but the file is replaced by a new
+	 * file rather than overwritten.
+	 * 
+	 * @param atomicFileWrites
+	 *            <code>true</code> if file writes should be atomic
+	 */
+	public void setAtomicFileWrites(boolean atomicFileWrites) {
+		this.atomicFileWrites = atomicFileWrites;
+	}
+
+	/**
+	 * Returns <code>true</code> if written files are forced to the storage device before the
+	 * write returns.
+	 * 
+	 * @return <code>true</code> if file writes are synced
+	 */
+	public boolean shouldSyncFileWrites() {
+		return syncFileWrites;
+	}
+
+	/**
+	 * Turn syncing file writes on or off. A synced file survives a crash of the operating system
+	 * once the write returns. Each file is synced once, after all of it has been written.
+	 * 
+	 * @param syncFileWrites
+	 *            <code>true</code> if file writes should be synced
+	 */
+	public void setSyncFileWrites(boolean syncFileWrites) {
+		this.syncFileWrites = syncFileWrites;
+	}
+
+	/**
+	 * Get the codec that engines encode their byte output with, such as a compression format.
+	 * 
+	 * @return the codec or <code>null</code> if the output is written as is
+	 */
+	public CerealCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Set the codec that engines encode their byte output with. This applies to output streams,
+	 * files, buffers and channels, but not to writers and strings, which hold characters. Byte
+	 * input that starts with the header of the codec is decoded with it when it is read.
+	 * 
+	 * @param codec
+	 *            the codec or <code>null</code> to write the output as is
+	 */
+	public void setCodec(CerealCodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Returns <code>true</code> if engines also check the first bytes of their byte input against
+	 * every other known codec and decode it if one of them matches.
+	 * 
+	 * @return <code>true</code> if input encoded by any known codec is detected
+	 */
+	public boolean shouldDetectCodecs() {
+		return detectCodecs;
+	}
+
+	/**
+	 * Turn the detection of input encoded by codecs other than {@link #getCodec()} on or off. This
+	 * is off by default because plain input can start with bytes that pass the header check of a
+	 * codec, such as <code>x^</code> for DEFLATE, and would then fail to read. Input encoded by
+	 * the codec that is set is decoded either way.
+	 * 
+	 * @param detectCodecs
+	 *            <code>true</code> if input encoded by any known codec should be detected
+	 */
+	public void setDetectCodecs(boolean detectCodecs) {
+		this.detectCodecs = detectCodecs;
+	}
 }
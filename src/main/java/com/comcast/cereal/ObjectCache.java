@@ -15,7 +15,9 @@
  */
 package com.comcast.cereal;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,7 +33,11 @@ public class ObjectCache {
 
     private Map<Object, Map<String, Object>> objectMap = new HashMap<Object, Map<String, Object>>();
     private Map<Integer, Object> idMap = new HashMap<Integer, Object>();
+    private Map<Object, Reference> references = new HashMap<Object, Reference>();
+    private List<PendingFixup> fixups = new ArrayList<PendingFixup>();
     private int nextObjectId = 0;
+    private int firstObjectId = 0;
+    private StreamMode streamMode = StreamMode.NONE;
     /** This doesn't have to do with caching, but it is the easiest way to pass settings */
     private CerealSettings settings;
     
@@ -48,8 +54,124 @@ public class ObjectCache {
      * cerealization or de-cerealization call.
      */
     public void resetCache() {
-        this.objectMap.clear();
+        clear();
         this.nextObjectId = 0;
+        this.firstObjectId = 0;
+    }
+
+    /**
+     * Reset the cache before streaming the next of several values into the same document, such as
+     * the elements of a list that are written one at a time. Everything except the object id
+     * counter is cleared, so that no value references another but the ids stay unique within the
+     * document.
+     */
+    public void startNextValue() {
+        clear();
+        this.firstObjectId = nextObjectId;
+    }
+
+    private void clear() {
+        this.objectMap.clear();
+        this.idMap.clear();
+        this.references.clear();
+        this.fixups.clear();
+        this.streamMode = StreamMode.NONE;
+    }
+
+    /**
+     * Prepare this cache to scan an object graph ahead of a streaming write. A streamed object can
+     * not be modified once it is written, so the scan assigns every object id (following the same
+     * rules as {@link #getReferenceCereal(Object)}) before anything is actually written. Ids are
+     * numbered from where the last {@link #startNextValue()} left off.
+     * 
+     * @see #startStream()
+     */
+    public void startScan() {
+        clear();
+        this.nextObjectId = firstObjectId;
+        this.streamMode = StreamMode.SCAN;
+    }
+
+    /**
+     * Prepare this cache to stream the object graph that was just scanned. The object ids assigned
+     * during the scan are kept so that each object is written with the id it will be referenced
+     * by.
+     * 
+     * @see #startScan()
+     */
+    public void startStream() {
+        this.objectMap.clear();
+        for (Reference reference : references.values()) {
+            reference.written = false;
+        }
+        this.streamMode = StreamMode.STREAM;
+    }
+
+    /**
+     * Returns <code>true</code> if the order objects are visited in matters while streaming. This
+     * is the case while scanning and, if any references were found, while streaming because the
+     * first visit to an object must be the one that writes it in full.
+     * 
+     * @return <code>true</code> if objects must be visited in the same order as
+     *         {@link Cerealizer#cerealize(Object, ObjectCache)} would visit them
+     */
+    public boolean isOrderSensitive() {
+        return (streamMode == StreamMode.SCAN)
+                || (streamMode == StreamMode.STREAM && nextObjectId > firstObjectId);
+    }
+
+    /**
+     * Mark the given object as written by a streaming write. This should be called before any of
+     * the object's values are written.
+     * 
+     * @param java
+     *            the java object being written
+     * 
+     * @return the reference for the object or <code>null</code> if object references are not
+     *         being tracked
+     */
+    public Reference open(Object java) {
+        if (streamMode == StreamMode.NONE || !settings.shouldUseObjectReferences()) {
+            return null;
+        }
+
+        Reference reference = references.get(java);
+        if (null == reference) {
+            reference = new Reference();
+            references.put(java, reference);
+        }
+        reference.written = true;
+        reference.open = true;
+        return reference;
+    }
+
+    /**
+     * Check to see if the given object has already been written by a streaming write. This is the
+     * streaming equivalent of {@link #getReferenceCereal(Object)}.
+     * 
+     * @param java
+     *            the object to search for
+     * 
+     * @return the reference that should be written in place of the object or <code>null</code> if
+     *         it should be written following the default rules
+     */
+    public Reference getReference(Object java) {
+        if (streamMode == StreamMode.NONE || !settings.shouldUseObjectReferences()
+                || (null == java)) {
+            return null;
+        }
+
+        Reference reference = references.get(java);
+        if ((null == reference) || !reference.written) {
+            return null;
+        }
+
+        if (reference.id < 0) {
+            reference.id = nextObjectId;
+            reference.position = reference.open ? reference.cursor : -1;
+            nextObjectId++;
+        }
+        return reference;
     }
 
     /**
@@ -63,6 +185,15 @@ public class ObjectCache {
      */
     public void cache(Object java, Map<String, Object> cereal) {
         objectMap.put(java, cereal);
+
+        /* Non-streaming cerealizers may still be used in the middle of a streaming write */
+        Reference reference = open(java);
+        if (null != reference) {
+            reference.open = false;
+            if (streamMode == StreamMode.STREAM && reference.id >= 0) {
+                cereal.put(KEY_ID, reference.id);
+            }
+        }
     }
 
     /**
@@ -95,6 +226,17 @@ public class ObjectCache {
             return null;
         }
 
+        if (streamMode != StreamMode.NONE && settings.shouldUseObjectReferences()) {
+            Reference reference = getReference(java);
+            if (null == reference) {
+                return null;
+            }
+
+            Map<String, Object> ref = new HashMap<String, Object>(1);
+            ref.put(KEY_REF, reference.getId());
+            return ref;
+        }
+
         Map<String, Object> cereal = objectMap.get(java);
         if (null == cereal) {
             return null;
@@ -147,6 +289,58 @@ public class ObjectCache {
         }
     }
 
+    /**
+     * Get the object with the given id or a placeholder if it has not been read yet. This is the
+     * streaming equivalent of {@link #getReferenceObject(Map)}. A streaming read binds values in
+     * the order they appear in the input, so a reference may be read before the object it points
+     * to.
+     * 
+     * @param id
+     *            the id of the referenced object
+     * 
+     * @return the referenced java object or a {@link ForwardReference} if it has not been read
+     *         yet
+     * 
+     * @see #addFixup(ForwardReference, Fixup)
+     */
+    public Object resolveReference(int id) {
+        if (idMap.containsKey(id)) {
+            return idMap.get(id);
+        } else {
+            return new ForwardReference(id);
+        }
+    }
+
+    /**
+     * Register a fixup that puts the object behind the given forward reference in place once it
+     * has been read. Fixups are applied by {@link #resolveFixups()}.
+     * 
+     * @param reference
+     *            the forward reference
+     * @param fixup
+     *            the fixup to apply once the object is available
+     */
+    public void addFixup(ForwardReference reference, Fixup fixup) {
+        fixups.add(new PendingFixup(reference.getId(), fixup));
+    }
+
+    /**
+     * Apply all of the fixups registered with {@link #addFixup(ForwardReference, Fixup)}. This
+     * should be called once the entire input has been read.
+     * 
+     * @throws CerealException
+     *             if an object was referenced but never read or a fixup failed
+     */
+    public void resolveFixups() throws CerealException {
+        for (PendingFixup pending : fixups) {
+            if (!idMap.containsKey(pending.id)) {
+                throw new CerealException("Could not find referenced object with id " + pending.id);
+            }
+            pending.fixup.resolve(idMap.get(pending.id));
+        }
+        fixups.clear();
+    }
+
     public CerealSettings getSettings() {
         return settings;
     }
@@ -154,4 +348,111 @@ public class ObjectCache {
     public void setSettings(CerealSettings settings) {
         this.settings = settings;
     }
+
+    /**
+     * The state of a single object during a streaming write.
+     * 
+     * @see ObjectCache#open(Object)
+     * @see ObjectCache#getReference(Object)
+     */
+    public static class Reference {
+        private int id = -1;
+        private int position = -1;
+        private int cursor = -1;
+        private boolean open;
+        private boolean written;
+
+        /**
+         * Get the object id of this object.
+         * 
+         * @return the object id or <code>-1</code> if it is never referenced
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Get the position at which the object id was assigned. This matters because the id is
+         * put in the cereal map at that point and changes the order the map iterates in.
+         * 
+         * @return the index of the value that was being written when the id was assigned or
+         *         <code>-1</code> if it was assigned after the object was completely written
+         */
+        public int getIdPosition() {
+            return position;
+        }
+
+        /**
+         * Record the index of the value that is about to be written for this object.
+         * 
+         * @param cursor
+         *            the index of the value
+         */
+        public void setCursor(int cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Mark this object as completely written.
+         */
+        public void close() {
+            this.open = false;
+        }
+    }
+
+    /**
+     * A placeholder for an object that was referenced during a streaming read before the object
+     * itself was read.
+     * 
+     * @see ObjectCache#resolveReference(int)
+     */
+    public static final class ForwardReference {
+        private final int id;
+
+        private ForwardReference(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Get the object id of the referenced object.
+         * 
+         * @return the object id
+         */
+        public int getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Puts a referenced object in place once it has been read.
+     * 
+     * @see ObjectCache#addFixup(ForwardReference, Fixup)
+     */
+    public static interface Fixup {
+
+        /**
+         * Put the referenced object in place.
+         * 
+         * @param object
+         *            the referenced object
+         * 
+         * @throws CerealException
+         *             if the object could not be put in place
+         */
+        void resolve(Object object) throws CerealException;
+    }
+
+    private static class PendingFixup {
+        private final int id;
+        private final Fixup fixup;
+
+        private PendingFixup(int id, Fixup fixup) {
+            this.id = id;
+            this.fixup = fixup;
+        }
+    }
+
+    private static enum StreamMode {
+        NONE, SCAN, STREAM
+    }
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+/**
+ * A {@link CerealGenerator} that can write primitive values without boxing them first. Fields
+ * with a primitive type check for this interface when streaming and fall back to
+ * {@link #writeValue(Object)} on generators that do not implement it. Each method must write
+ * exactly what {@link #writeValue(Object)} writes for the boxed value.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface PrimitiveCerealGenerator extends CerealGenerator {
+
+    /**
+     * Write an integral value. This is used for <code>int</code> and <code>long</code> values.
+     *
+     * @param value
+     *            the value to write
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeLong(long value) throws CerealException;
+
+    /**
+     * Write a <code>double</code> value.
+     *
+     * @param value
+     *            the value to write
+     *
+     * @throws CerealException
+     *             if writing fails or the value can not be represented
+     */
+    void writeDouble(double value) throws CerealException;
+
+    /**
+     * Write a <code>boolean</code> value.
+     *
+     * @param value
+     *            the value to write
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeBoolean(boolean value) throws CerealException;
+}
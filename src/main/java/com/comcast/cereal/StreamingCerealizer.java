@@ -0,0 +1,78 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+/**
+ * A {@link Cerealizer} that is also capable of writing its cereal directly to a
+ * {@link CerealGenerator} and reading it directly from a {@link CerealParser}. The tokens written
+ * must be exactly the same as if the result of {@link Cerealizer#cerealize(Object, ObjectCache)}
+ * had been written with {@link CerealGenerator#writeCereal(Object)}. Likewise, the object read
+ * must be the same as if the result of {@link CerealParser#readCereal()} had been passed to
+ * {@link Cerealizer#deCerealize(Object, ObjectCache)}.
+ *
+ * @param <J>
+ *            the java object type
+ *
+ * @see CerealGenerator
+ * @see CerealParser
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface StreamingCerealizer<J> {
+
+    /**
+     * Convert the given java object and write the result to the generator.
+     *
+     * @param object
+     *            a java object
+     * @param className
+     *            if not <code>null</code> and the object is written as a cereal map, a
+     *            <code>--class</code> entry with this value is written with it. This is the
+     *            equivalent of the caller putting the class name in the cerealized map.
+     * @param generator
+     *            the generator to write to
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @throws CerealException
+     *             if the conversion or writing fails
+     */
+    void write(J object, String className, CerealGenerator generator, ObjectCache objectCache)
+            throws CerealException;
+
+    /**
+     * Read the value that starts at the current token of the parser and convert it to a java
+     * object. Afterwards, the current token is the last token of the value.
+     *
+     * @param parser
+     *            the parser to read from
+     * @param useRuntimeType
+     *            if <code>true</code> and the value is an object with a <code>--class</code>
+     *            entry naming a subclass of the expected type, the object is read as that type.
+     *            This is the equivalent of the caller using
+     *            {@link CerealFactory#getRuntimeCerealizer(Object, Cerealizer)}.
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @return the java object or an {@link ObjectCache.ForwardReference} if the value references
+     *         an object that has not been read yet
+     *
+     * @throws CerealException
+     *             if the reading or conversion fails
+     */
+    Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException;
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+import com.comcast.cereal.annotations.Cereal;
+
+/**
+ * A {@link CerealGenerator} that can write entries of an object by the tag assigned with
+ * {@link Cereal#tag()} instead of by name. Streaming cerealizers check {@link #writesTags()}
+ * before writing tags, so generators that only sometimes support them (such as forks) can
+ * implement this interface unconditionally.
+ *
+ * @see TaggedCerealParser
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface TaggedCerealGenerator extends CerealGenerator {
+
+    /**
+     * Check if this generator writes tags. If this returns <code>false</code>,
+     * {@link #writeTag(int)} must not be called.
+     *
+     * @return <code>true</code> if entries should be written with {@link #writeTag(int)} when
+     *         they have a tag
+     */
+    boolean writesTags();
+
+    /**
+     * Write the tag of the next entry of the current object in place of its name. This must be
+     * followed by exactly one value, object, list or fork.
+     *
+     * @param tag
+     *            the positive tag of the entry
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    void writeTag(int tag) throws CerealException;
+}
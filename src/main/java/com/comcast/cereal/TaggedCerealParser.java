@@ -0,0 +1,38 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+import com.comcast.cereal.annotations.Cereal;
+
+/**
+ * A {@link CerealParser} that can read entries of an object that were written by the tag
+ * assigned with {@link Cereal#tag()} instead of by name. For such an entry, the
+ * {@link Token#NAME} token has a <code>null</code> name and {@link #getTag()} returns the tag.
+ *
+ * @see TaggedCerealGenerator
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public interface TaggedCerealParser extends CerealParser {
+
+    /**
+     * Get the tag of the current entry. This is only defined while the current token is a
+     * {@link Token#NAME}.
+     *
+     * @return the tag if the entry was written as a tag, otherwise <code>0</code>
+     */
+    int getTag();
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal;
+
+/**
+ * An unchecked wrapper for a {@link CerealException}. This is thrown from methods whose signature
+ * can not declare a {@link CerealException}, such as those of {@link java.util.Iterator}.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+@SuppressWarnings("serial")
+public class UncheckedCerealException extends RuntimeException {
+
+    /**
+     * Wrap the given exception.
+     *
+     * @param cause
+     *            the exception that was thrown
+     */
+    public UncheckedCerealException(CerealException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Get the wrapped exception.
+     *
+     * @return the {@link CerealException} that was thrown
+     */
+    @Override
+    public CerealException getCause() {
+        return (CerealException) super.getCause();
+    }
+}
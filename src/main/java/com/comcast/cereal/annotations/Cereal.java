@@ -174,6 +174,17 @@ public @interface Cereal {
      */
     XmlType xmlType() default XmlType.AUTO;
 
+    /**
+     * A stable, positive number that identifies this element. Engines that support it (see
+     * {@link com.comcast.cereal.engines.BinaryCerealEngine#BinaryCerealEngine(boolean)}) write
+     * the tag instead of the name and find the element by its tag when reading, so the tag of an
+     * element must not change once data has been written with it. Tags must be unique within a
+     * class, including its superclasses. Elements without a tag are written by name.
+     *
+     * @return the tag of this element or <code>0</code> (default) if it does not have one
+     */
+    int tag() default 0;
+
     /**
      * The available ways of recording XML information. This is ONLY used with a
      * {@link XmlCerealEngine}.
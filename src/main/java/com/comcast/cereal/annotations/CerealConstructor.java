@@ -0,0 +1,55 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to indicate that objects of a class should be created by passing their values to
+ * this constructor instead of setting them after the object was created. This allows classes
+ * with <code>final</code> fields to be read without changing the fields through reflection.
+ * 
+ * <p>
+ * The values are found following the usual rules for fields and methods, so the constructor
+ * only decides how the object is created. Values that are not passed to the constructor are
+ * still set afterwards and missing values follow {@link Cereal#requireValue()} and
+ * {@link Cereal#defaultValue()}, passing <code>null</code> (or zero for primitives) when a value
+ * is neither required nor has a default. Records are created with their canonical constructor
+ * without this annotation.
+ * </p>
+ * 
+ * <p>
+ * A value passed to a constructor can not reference the object being created or an object that
+ * is read after it, as the object does not exist until all of its arguments do.
+ * </p>
+ * 
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+@Target(ElementType.CONSTRUCTOR)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CerealConstructor {
+
+    /**
+     * The names of the values to pass as the parameters of the constructor, in order. Names are
+     * needed because parameter names are not kept at runtime.
+     * 
+     * @return the name of the value for each parameter
+     */
+    String[] value();
+}
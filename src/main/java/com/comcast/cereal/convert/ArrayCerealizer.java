@@ -20,8 +20,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.StreamingCerealizer;
+import com.comcast.cereal.impl.StreamHelper;
 
 /**
  * Simple wrapper to turn any {@link Cerealizer} into a array converter. This will apply the
@@ -32,7 +37,7 @@ import com.comcast.cereal.ObjectCache;
  *            the array type
  */
 @SuppressWarnings("rawtypes")
-public class ArrayCerealizer<T> implements Cerealizer<T[], List<?>> {
+public class ArrayCerealizer<T> implements Cerealizer<T[], List<?>>, StreamingCerealizer<T[]> {
 
     private Cerealizer cerealizer;
     private Class<?> arrayType;
@@ -67,6 +72,24 @@ public class ArrayCerealizer<T> implements Cerealizer<T[], List<?>> {
         return array;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#read(com.comcast.cereal.CerealParser, boolean,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException {
+        if (Token.START_ARRAY != parser.getToken()) {
+            return StreamHelper.deCerealize(this, parser, false, null, objectCache);
+        }
+
+        List<Object> values = new ArrayList<Object>();
+        while (Token.END_ARRAY != parser.next()) {
+            values.add(StreamHelper.read(cerealizer, parser, false, null, objectCache));
+        }
+        return StreamHelper.toArray(arrayType, values, objectCache);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.Cerealizer#cerealize(java.lang.Object)
@@ -84,4 +107,23 @@ public class ArrayCerealizer<T> implements Cerealizer<T[], List<?>> {
         return list;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#write(java.lang.Object, java.lang.String,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void write(T[] array, String className, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+        if (null == array) {
+            generator.writeValue(null);
+            return;
+        }
+
+        generator.writeStartArray(array.length);
+        for (int i = 0; i < array.length; i++) {
+            StreamHelper.write(cerealizer, array[i], null, generator, objectCache);
+        }
+        generator.writeEndArray();
+    }
+
 }
@@ -15,7 +15,7 @@
  */
 package com.comcast.cereal.convert;
 
-import org.objenesis.ObjenesisHelper;
+import org.objenesis.instantiator.ObjectInstantiator;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
@@ -23,6 +23,7 @@ import com.comcast.cereal.CerealFactoryAware;
 import com.comcast.cereal.Cerealizable;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.impl.ReflectionHelper;
 
 /**
  * A {@link Cerealizer} for wrapping objects that implement {@link Cerealizable}.
@@ -34,6 +35,7 @@ public class CerealizableCerealizer<J extends Cerealizable<C>, C> implements Cer
 
     private Class<J> type;
     private CerealFactory cerealFactory;
+    private ObjectInstantiator instantiator;
 
     /**
      * Construct a new {@link CerealizableCerealizer} for the given type.
@@ -67,12 +69,12 @@ public class CerealizableCerealizer<J extends Cerealizable<C>, C> implements Cer
      */
     @SuppressWarnings("unchecked")
     public J deCerealize(C cereal, ObjectCache objectCache) throws CerealException {
-        J object = null;
-        try {
-            object = type.newInstance();
-        } catch (Exception ex) {
-            object = (J) ObjenesisHelper.newInstance(type);
+        ObjectInstantiator instantiator = this.instantiator;
+        if (null == instantiator) {
+            instantiator = ReflectionHelper.getInstantiator(type);
+            this.instantiator = instantiator;
         }
+        J object = (J) instantiator.newInstance();
 
         if (object instanceof CerealFactoryAware) {
             ((CerealFactoryAware) object).setCerealFactory(cerealFactory);
@@ -17,34 +17,60 @@ package com.comcast.cereal.convert;
 
 import static com.comcast.cereal.impl.ReflectionHelper.getGenericClass;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.objenesis.ObjenesisHelper;
+import org.objenesis.instantiator.ObjectInstantiator;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
 import com.comcast.cereal.CerealFactoryAware;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.Reference;
+import com.comcast.cereal.StreamingCerealizer;
+import com.comcast.cereal.TaggedCerealGenerator;
+import com.comcast.cereal.TaggedCerealParser;
 import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.annotations.CerealConstructor;
 import com.comcast.cereal.annotations.CerealObject;
 import com.comcast.cereal.annotations.Ignore;
+import com.comcast.cereal.convert.PrimitiveCerealizer.BooleanCerealizer;
+import com.comcast.cereal.convert.PrimitiveCerealizer.DoubleCerealizer;
+import com.comcast.cereal.convert.PrimitiveCerealizer.IntegerCerealizer;
+import com.comcast.cereal.convert.PrimitiveCerealizer.LongCerealizer;
 import com.comcast.cereal.engines.CerealEngine;
 import com.comcast.cereal.impl.CerealAccess;
 import com.comcast.cereal.impl.FieldAccess;
 import com.comcast.cereal.impl.MethodAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.BooleanFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.DoubleFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.IntFieldAccess;
+import com.comcast.cereal.impl.PrimitiveFieldAccess.LongFieldAccess;
+import com.comcast.cereal.impl.ReflectionHelper;
+import com.comcast.cereal.impl.StreamHelper;
 
 /**
  * Class to convert java objects to and from the standard cereal
@@ -56,7 +82,7 @@ import com.comcast.cereal.impl.MethodAccess;
  *            the class to convert to and from JSON
  */
 public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<String, Object>>,
-        CerealFactoryAware {
+        StreamingCerealizer<J>, CerealFactoryAware {
     
     private static final Map<Class<?>, Class<?>> DEFAULTS;
     static {
@@ -70,6 +96,27 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
     private Class<J> javaType;
     private CerealFactory cerealFactory;
     private Map<String, CerealAccess> delegates;
+    private Map<String, Integer> tags = new HashMap<String, Integer>();
+
+    /* The delegates in iteration order and the key layouts used when streaming */
+    private String[] names;
+    private CerealAccess[] accesses;
+    private Map<Class<?>, KeyLayout[]> layouts = new ConcurrentHashMap<Class<?>, KeyLayout[]>();
+
+    /* The tag of each delegate in iteration order and the delegate index by sorted tag */
+    private int[] delegateTags;
+    private int[] tagKeys;
+    private int[] tagSlots;
+    private KeyLayout[] taggedLayouts = new KeyLayout[4];
+
+    /* Creates the empty objects, found the first time one is needed */
+    private ObjectInstantiator instantiator;
+
+    /* The constructor that objects are created with instead, if any, and its arguments */
+    private MethodHandle creator;
+    private String[] creatorNames;
+    private Object[] creatorDefaults;
+    private Set<String> creatorParams = new HashSet<String>();
 
     /**
      * The java type that this {@link ClassCerealizer} is converting to and from.
@@ -101,6 +148,87 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
      *             if there was a problem scanning the object and configuring this cerealizer
      */
     public void initialize() throws CerealException {
+        scan();
+        findCreator();
+
+        names = StreamHelper.toArray(delegates.keySet());
+        accesses = new CerealAccess[names.length];
+        for (int i = 0; i < names.length; i++) {
+            accesses[i] = delegates.get(names[i]);
+            if (cerealFactory.shouldUseMethodHandles()) {
+                accesses[i].useMethodHandles();
+            }
+        }
+        indexTags();
+    }
+
+    /**
+     * Find the constructor that objects are created with: the one annotated with
+     * {@link CerealConstructor} or, for records, the canonical constructor. Classes without
+     * either are instantiated empty and have all of their values set.
+     * 
+     * @throws CerealException
+     *             if the constructor does not match the values of this class
+     */
+    private void findCreator() throws CerealException {
+        Constructor<?> constructor = null;
+        String[] params = null;
+        for (Constructor<?> declared : javaType.getDeclaredConstructors()) {
+            CerealConstructor info = declared.getAnnotation(CerealConstructor.class);
+            if (null == info) {
+                continue;
+            } else if (null != constructor) {
+                throw new CerealException("Only one constructor of '" + javaType.getName()
+                        + "' may be annotated with @CerealConstructor");
+            }
+            constructor = declared;
+            params = info.value();
+        }
+
+        if (null == constructor) {
+            constructor = ReflectionHelper.getCanonicalConstructor(javaType);
+            params = ReflectionHelper.getRecordComponentNames(javaType);
+            if (null == constructor) {
+                return;
+            }
+        }
+
+        Class<?>[] types = constructor.getParameterTypes();
+        if (params.length != types.length) {
+            throw new CerealException("The constructor '" + constructor + "' has "
+                    + types.length + " parameters but " + params.length + " names");
+        }
+
+        creatorDefaults = new Object[types.length];
+        for (int i = 0; i < params.length; i++) {
+            if (!delegates.containsKey(params[i])) {
+                throw new CerealException("The constructor '" + constructor
+                        + "' takes the unknown value '" + params[i] + "'");
+            }
+            if (types[i].isPrimitive()) {
+                creatorDefaults[i] = Array.get(Array.newInstance(types[i], 1), 0);
+            }
+            creatorParams.add(params[i]);
+        }
+
+        creator = ReflectionHelper.creatorHandle(constructor);
+        if (null == creator) {
+            throw new CerealException("Can not call the constructor '" + constructor + "'");
+        }
+        creatorNames = params;
+    }
+
+    /**
+     * Find the fields and methods of the java type that are converted and add an access object
+     * for each of them. By default this scans the java type and its supertypes with reflection.
+     * Generated cerealizers override this to add access objects that reach the members directly
+     * through {@link #putAccess(String, CerealAccess, int)}.
+     * 
+     * @throws CerealException
+     *             if there was a problem scanning the java type or configuring internal
+     *             {@link Cerealizer}s
+     */
+    protected void scan() throws CerealException {
         if (null == javaType.getAnnotation(CerealObject.class)) {
             /* Cerealize all fields not marked with @Ignore */
             scanForAccess(javaType, true);
@@ -109,7 +237,249 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
             scanForAccess(javaType, false);
         }
     }
+
+    /**
+     * Add the access object used to convert the value with the given name, replacing any access
+     * object already added with that name.
+     * 
+     * @param name
+     *            the name of the value
+     * @param access
+     *            the access object
+     * @param tag
+     *            the {@link Cereal#tag()} of the value or <code>0</code> if it has none
+     * 
+     * @throws CerealException
+     *             if the tag is negative
+     */
+    protected void putAccess(String name, CerealAccess access, int tag) throws CerealException {
+        delegates.put(name, access);
+        putTag(name, tag, name, true);
+    }
+
+    /**
+     * Get the java type that this cerealizer converts to and from.
+     * 
+     * @return the java type
+     */
+    public Class<J> getJavaType() {
+        return javaType;
+    }
+
+    /**
+     * Get the factory used to look up the cerealizers of the values of this type.
+     * 
+     * @return the cereal factory
+     */
+    protected CerealFactory getCerealFactory() {
+        return cerealFactory;
+    }
+
+    /**
+     * Build the tables used to write and read delegates by their {@link Cereal#tag()}. If no
+     * delegate has a tag, the tables are left empty and this class is always written by name.
+     * 
+     * @throws CerealException
+     *             if two delegates have the same tag
+     */
+    private void indexTags() throws CerealException {
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        delegateTags = new int[names.length];
+        long[] pairs = new long[tags.size()];
+        int count = 0;
+        for (int i = 0; i < names.length; i++) {
+            Integer tag = tags.get(names[i]);
+            if (null != tag) {
+                delegateTags[i] = tag;
+                pairs[count++] = ((long) tag << 32) | i;
+            }
+        }
+
+        Arrays.sort(pairs, 0, count);
+        tagKeys = new int[count];
+        tagSlots = new int[count];
+        for (int i = 0; i < count; i++) {
+            tagKeys[i] = (int) (pairs[i] >>> 32);
+            tagSlots[i] = (int) pairs[i];
+            if (i > 0 && tagKeys[i] == tagKeys[i - 1]) {
+                throw new CerealException("The tag " + tagKeys[i] + " is used by both '"
+                        + names[tagSlots[i - 1]] + "' and '" + names[tagSlots[i]] + "' on '"
+                        + javaType.getName() + "'");
+            }
+        }
+    }
+
+    /**
+     * Get the index of the delegate with the given tag.
+     * 
+     * @param tag
+     *            the tag to look for
+     * 
+     * @return the index into the delegates in iteration order or <code>-1</code> if no delegate
+     *         has the given tag
+     */
+    private int getTagSlot(int tag) {
+        int i = (null == tagKeys) ? -1 : Arrays.binarySearch(tagKeys, tag);
+        return (i < 0) ? -1 : tagSlots[i];
+    }
+
+    /**
+     * Record the tag given by a {@link Cereal} annotation for the delegate with the given name.
+     * 
+     * @param name
+     *            the name of the delegate
+     * @param info
+     *            the annotation or <code>null</code> if there is none
+     * @param member
+     *            the field or method the annotation is on
+     * @param replace
+     *            <code>true</code> if the delegate replaced any earlier delegate with the same
+     *            name, <code>false</code> if it adds a getter or setter to an existing delegate
+     * 
+     * @throws CerealException
+     *             if the tag is negative or conflicts with the tag on the other method
+     */
+    private void putTag(String name, Cereal info, Object member, boolean replace)
+            throws CerealException {
+        putTag(name, (null == info) ? 0 : info.tag(), member, replace);
+    }
+
+    private void putTag(String name, int tag, Object member, boolean replace)
+            throws CerealException {
+        if (tag < 0) {
+            throw new CerealException("The tag on '" + member + "' must be positive");
+        }
+
+        Integer existing = replace ? tags.remove(name) : tags.get(name);
+        if (tag == 0) {
+            return;
+        } else if (!replace && (null != existing) && (existing != tag)) {
+            throw new CerealException("The tag on '" + member + "' does not match the tag "
+                    + existing + " on its other method");
+        }
+        tags.put(name, tag);
+    }
     
+    /**
+     * Create the access object for the given field. Fields with a primitive type that use the
+     * standard cerealizer for it (also when boxed, as values are written with the runtime
+     * cerealizer) get a {@link PrimitiveFieldAccess} that avoids boxing where it can.
+     */
+    @SuppressWarnings("rawtypes")
+    private FieldAccess newFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+            String defaultValue, Class<?> defaultObjectClass, boolean cerealizerOverride)
+            throws CerealException {
+        if (!cerealizerOverride && isPrimitiveAccess(field.getType(), cerealizer)) {
+            Class<?> type = field.getType();
+            if (int.class == type) {
+                return new IntFieldAccess(field, cerealizer, requireValue, defaultValue,
+                        defaultObjectClass, cerealFactory);
+            } else if (long.class == type) {
+                return new LongFieldAccess(field, cerealizer, requireValue, defaultValue,
+                        defaultObjectClass, cerealFactory);
+            } else if (double.class == type) {
+                return new DoubleFieldAccess(field, cerealizer, requireValue, defaultValue,
+                        defaultObjectClass, cerealFactory);
+            } else {
+                return new BooleanFieldAccess(field, cerealizer, requireValue, defaultValue,
+                        defaultObjectClass, cerealFactory);
+            }
+        }
+        return new FieldAccess(field, cerealizer, requireValue, defaultValue, defaultObjectClass,
+                cerealFactory, cerealizerOverride);
+    }
+
+    /**
+     * Check if a field of the given type that is converted with the given cerealizer can use a
+     * {@link PrimitiveFieldAccess}. Generated cerealizers use this to choose the same access
+     * objects as {@link #scan()}.
+     * 
+     * @param type
+     *            the type of the field
+     * @param cerealizer
+     *            the cerealizer of the field, which must not be an override
+     * 
+     * @return <code>true</code> if the field has a supported primitive type and both the given
+     *         cerealizer and the runtime cerealizer of its boxed type are the standard ones
+     * 
+     * @throws CerealException
+     *             if the runtime cerealizer could not be found
+     */
+    @SuppressWarnings("rawtypes")
+    protected boolean isPrimitiveAccess(Class<?> type, Cerealizer cerealizer)
+            throws CerealException {
+        if (int.class == type) {
+            return isStandard(cerealizer, Integer.class, IntegerCerealizer.class);
+        } else if (long.class == type) {
+            return isStandard(cerealizer, Long.class, LongCerealizer.class);
+        } else if (double.class == type) {
+            return isStandard(cerealizer, Double.class, DoubleCerealizer.class);
+        } else if (boolean.class == type) {
+            return isStandard(cerealizer, Boolean.class, BooleanCerealizer.class);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private boolean isStandard(Cerealizer cerealizer, Class<?> boxed, Class<?> standard)
+            throws CerealException {
+        return (standard == cerealizer.getClass())
+                && (standard == cerealFactory.getCerealizer(boxed).getClass());
+    }
+
+    /**
+     * Add the access object for a field declared by the given class, found with reflection the
+     * same way {@link #scan()} finds it. Generated cerealizers use this for the fields they can
+     * not reach directly, such as private or final fields.
+     * 
+     * @param declaringClass
+     *            the class that declares the field
+     * @param fieldName
+     *            the name of the field
+     * 
+     * @throws CerealException
+     *             if the field does not exist or there was a problem configuring its
+     *             {@link Cerealizer}
+     */
+    protected void putFieldAccess(Class<?> declaringClass, String fieldName)
+            throws CerealException {
+        Field field;
+        try {
+            field = declaringClass.getDeclaredField(fieldName);
+        } catch (NoSuchFieldException ex) {
+            throw new CerealException("Failed to find the field '" + fieldName + "' in '"
+                    + declaringClass.getName() + "'", ex);
+        }
+        putFieldAccess(field, field.getAnnotation(Cereal.class));
+    }
+
+    /**
+     * Add the access object for the given field using the {@link Cereal} information if it
+     * exists or defaults if it doesn't.
+     */
+    @SuppressWarnings("rawtypes")
+    private void putFieldAccess(Field field, Cereal info) throws CerealException {
+        int genericArg = Map.class.isAssignableFrom(field.getType()) ? 1 : 0;
+        Class<?> genericClass = getGenericClass(field.getGenericType(), genericArg);
+        Cerealizer cerealizer = getCerealizer(info, field.getType(), genericClass);
+
+        FieldAccess access;
+        String name = field.getName();
+        if (null == info) {
+            access = newFieldAccess(field, cerealizer, true, null, null, false);
+        } else {
+            name = ("".equals(info.name()) ? name : info.name());
+            boolean cerealizerOverride = (DefaultCerealizer.class != info.cerealizer());
+            access = newFieldAccess(field, cerealizer, info.requireValue(),
+                    getDefaultValue(info), getDefaultObjectClass(info), cerealizerOverride);
+        }
+        delegates.put(name, access);
+        putTag(name, info, field, true);
+    }
+
     public static String getDefaultValue(Cereal info) {
         String[] array = info.defaultValue();
         return (null == array || array.length < 1) ? null : array[0];
@@ -145,15 +515,7 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
         for (Field field : clazz.getDeclaredFields()) {
             Cereal info = field.getAnnotation(Cereal.class);
             if (null != info) {
-                int genericArg = Map.class.isAssignableFrom(field.getType()) ? 1 : 0;
-                Class<?> genericClass = getGenericClass(field.getGenericType(), genericArg);
-                Cerealizer cerealizer = getCerealizer(info, field.getType(), genericClass);
-                String name = ("".equals(info.name()) ? field.getName() : info.name());
-                boolean cerealizerOverride = (null != info) && (DefaultCerealizer.class != info.cerealizer());
-
-                FieldAccess access = new FieldAccess(field, cerealizer, info.requireValue(), getDefaultValue(info), 
-                		getDefaultObjectClass(info), cerealFactory, cerealizerOverride);
-                delegates.put(name, access);
+                putFieldAccess(field, info);
 
                 // Already put in the field, so we just continue to next field
                 continue;
@@ -162,12 +524,7 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
             if (scanAll) {
                 int mods = field.getModifiers();
                 if (!ignore(field) && !Modifier.isTransient(mods) && !Modifier.isStatic(mods)) {
-                    int genericArg = Map.class.isAssignableFrom(field.getType()) ? 1 : 0;
-                    Class<?> genericClass = getGenericClass(field.getGenericType(), genericArg);
-                    Cerealizer cerealizer = getCerealizer(null, field.getType(), genericClass);
-
-                    FieldAccess access = new FieldAccess(field, cerealizer, true, null, null, cerealFactory, false);
-                    delegates.put(field.getName(), access);
+                    putFieldAccess(field, null);
                 }
             }
         }
@@ -205,6 +562,7 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
                     access = new MethodAccess(cerealizer);
                     delegates.put(info.name(), access);
                 }
+                putTag(info.name(), info, method, false);
 
                 if (setter) {
                     access.setSetter(method);
@@ -270,20 +628,54 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
      * @throws CerealException
      *             if there was a problem creating or initializing the associated Cerealizer
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @SuppressWarnings("rawtypes")
     private Cerealizer getCerealizer(Cereal info, Class<?> type, Class<?> genericClass)
             throws CerealException {
+        if (null == info) {
+            return getCerealizer(DefaultCerealizer.class, void.class, void.class, type,
+                    genericClass);
+        } else {
+            return getCerealizer(info.cerealizer(), info.type(), info.subtype(), type,
+                    genericClass);
+        }
+    }
+
+    /**
+     * Helper method to get a cerealizer of a given type from the values of a {@link Cereal}
+     * annotation.
+     * 
+     * @param cerealizerType
+     *            the {@link Cereal#cerealizer()} value
+     * @param valueType
+     *            the {@link Cereal#type()} value
+     * @param valueSubtype
+     *            the {@link Cereal#subtype()} value
+     * @param type
+     *            the java type
+     * @param genericClass
+     *            the Java 1.5 generic type associated with the appropriate field, argument or
+     *            return type. This is only used if the actual type is a {@link List}.
+     * 
+     * @return the appropriate Cerealizer
+     * 
+     * @throws CerealException
+     *             if there was a problem creating or initializing the associated Cerealizer
+     * 
+     * @see #getCerealizer(Cereal, Class, Class)
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected Cerealizer getCerealizer(Class<? extends Cerealizer> cerealizerType,
+            Class<?> valueType, Class<?> valueSubtype, Class<?> type, Class<?> genericClass)
+            throws CerealException {
         Cerealizer cerealizer = null;
         boolean cerealizerOverride = false;
 
-        if (null != info) {
-            if (DefaultCerealizer.class != info.cerealizer()) {
-                cerealizerOverride = true;
-                cerealizer = newCerealizer(info.cerealizer());
-            } else if (void.class != info.type()) {
-                Class<?> subtype = void.class.equals(info.subtype()) ? null : info.subtype();
-                cerealizer = cerealFactory.getCerealizer(info.type(), subtype);
-            }
+        if (DefaultCerealizer.class != cerealizerType) {
+            cerealizerOverride = true;
+            cerealizer = newCerealizer(cerealizerType);
+        } else if (void.class != valueType) {
+            Class<?> subtype = void.class.equals(valueSubtype) ? null : valueSubtype;
+            cerealizer = cerealFactory.getCerealizer(valueType, subtype);
         }
         
         /* Special case to check for a byte array */
@@ -397,6 +789,163 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
         return cereal;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#write(java.lang.Object, java.lang.String,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void write(J object, String className, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+
+        if (null == object) {
+            generator.writeValue(null);
+            return;
+        }
+
+        /* First check to see if this object has already been written */
+        Reference reference = objectCache.getReference(object);
+        if (null != reference) {
+            StreamHelper.writeReference(reference.getId(), className, generator);
+            return;
+        }
+
+        /* Mark this object as written BEFORE we start recursing over the fields */
+        reference = objectCache.open(object);
+        int idPosition = ((null == reference) || (reference.getId() < 0)) ? -2 : reference
+                .getIdPosition();
+        KeyLayout layout;
+        if ((null != tagKeys) && (generator instanceof TaggedCerealGenerator)
+                && ((TaggedCerealGenerator) generator).writesTags()) {
+            layout = getTaggedLayout(null != className, idPosition != -2);
+        } else {
+            layout = getLayout(null != className, idPosition, generator);
+        }
+
+        generator.writeStartObject(layout.names.length);
+        if ((null != reference) && objectCache.isOrderSensitive() && !layout.natural) {
+            /*
+             * Objects must be visited in the same order as cerealize would visit them, so the
+             * values are converted in that order and written out afterwards.
+             */
+            CerealGenerator[] forks = new CerealGenerator[accesses.length];
+            for (int i = 0; i < accesses.length; i++) {
+                reference.setCursor(i);
+                forks[i] = generator.fork();
+                accesses[i].writeCereal(object, forks[i], objectCache);
+            }
+
+            for (int i = 0; i < layout.slots.length; i++) {
+                int slot = layout.slots[i];
+                layout.writeKey(generator, i);
+                if (slot >= 0) {
+                    generator.writeFork(forks[slot]);
+                } else {
+                    generator.writeValue((slot == KeyLayout.CLASS) ? className : (Object) reference
+                            .getId());
+                }
+            }
+        } else {
+            for (int i = 0; i < layout.slots.length; i++) {
+                int slot = layout.slots[i];
+                layout.writeKey(generator, i);
+                if (slot >= 0) {
+                    if (null != reference) {
+                        reference.setCursor(slot);
+                    }
+                    accesses[slot].writeCereal(object, generator, objectCache);
+                } else {
+                    generator.writeValue((slot == KeyLayout.CLASS) ? className : (Object) reference
+                            .getId());
+                }
+            }
+        }
+        generator.writeEndObject();
+
+        if (null != reference) {
+            reference.close();
+        }
+    }
+
+    /**
+     * Get the order in which the given generator writes the keys of this object. This depends on
+     * whether a class name is included and when the object id (if any) would have been put into
+     * the map returned from {@link #cerealize(Object, ObjectCache)}.
+     * 
+     * @param hasClass
+     *            <code>true</code> if the <code>--class</code> key is included
+     * @param idPosition
+     *            <code>-2</code> if there is no object id, <code>-1</code> if the id is put after
+     *            all other keys or the index of the delegate that was being converted when the id
+     *            was put
+     * @param generator
+     *            the generator that will write the keys
+     * 
+     * @return the key layout
+     */
+    private KeyLayout getLayout(boolean hasClass, int idPosition, CerealGenerator generator) {
+        KeyLayout[] cache = layouts.get(generator.getClass());
+        if (null == cache) {
+            cache = new KeyLayout[2 * (names.length + 2)];
+            layouts.put(generator.getClass(), cache);
+        }
+
+        int index = (hasClass ? names.length + 2 : 0) + idPosition + 2;
+        KeyLayout layout = cache[index];
+        if (null == layout) {
+            /* Rebuild the order the keys are put into the cereal map */
+            List<String> sequence = new ArrayList<String>(names.length + 2);
+            for (int i = 0; i < names.length; i++) {
+                if (i == idPosition) {
+                    sequence.add(ObjectCache.KEY_ID);
+                }
+                sequence.add(names[i]);
+            }
+            if (hasClass) {
+                sequence.add(StreamHelper.KEY_CLASS);
+            }
+            if (idPosition == -1) {
+                sequence.add(ObjectCache.KEY_ID);
+            }
+
+            String[] order = StreamHelper.iterationOrder(StreamHelper.toArray(sequence), -1);
+            layout = new KeyLayout(generator.orderNames(order), Arrays.asList(names), null);
+            cache[index] = layout;
+        }
+        return layout;
+    }
+
+    /**
+     * Get the order in which a generator that writes tags writes the keys of this object. The
+     * <code>--class</code> and <code>--id</code> keys come first so that a reader knows the type
+     * before it has to look up any tags, followed by the delegates in iteration order.
+     * 
+     * @param hasClass
+     *            <code>true</code> if the <code>--class</code> key is included
+     * @param hasId
+     *            <code>true</code> if the <code>--id</code> key is included
+     * 
+     * @return the key layout
+     */
+    private KeyLayout getTaggedLayout(boolean hasClass, boolean hasId) {
+        int index = (hasClass ? 2 : 0) + (hasId ? 1 : 0);
+        KeyLayout layout = taggedLayouts[index];
+        if (null == layout) {
+            List<String> sequence = new ArrayList<String>(names.length + 2);
+            if (hasClass) {
+                sequence.add(StreamHelper.KEY_CLASS);
+            }
+            if (hasId) {
+                sequence.add(ObjectCache.KEY_ID);
+            }
+            sequence.addAll(Arrays.asList(names));
+
+            layout = new KeyLayout(StreamHelper.toArray(sequence), Arrays.asList(names),
+                    delegateTags);
+            taggedLayouts[index] = layout;
+        }
+        return layout;
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.Cerealizer#deCerealize(java.lang.Object)
@@ -413,17 +962,13 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
         if (null != object) {
             return object;
         }
-        
-        try {
-            if (DEFAULTS.containsKey(javaType)) {
-                object = (J) DEFAULTS.get(javaType).newInstance();
-            } else {
-                object = javaType.newInstance();
-            }
-        } catch (Exception ex) {
-            object = (J) ObjenesisHelper.newInstance(javaType);
+
+        if (null != creator) {
+            return construct(Collections.<String, Object> emptyMap(), cereal, objectCache);
         }
         
+        object = newInstance();
+        
         /* If this object has an object id, store it now before we continue */
         if (cereal.containsKey(ObjectCache.KEY_ID)) {
             objectCache.cacheById((Integer) cereal.get(ObjectCache.KEY_ID), object);
@@ -434,6 +979,229 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
         return object;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#read(com.comcast.cereal.CerealParser, boolean,
+     * com.comcast.cereal.ObjectCache)
+     */
+    @SuppressWarnings("unchecked")
+    public Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException {
+        if (Token.START_OBJECT == parser.getToken()) {
+            return bind(parser, new HashMap<String, Object>(), useRuntimeType, objectCache);
+        } else {
+            return deCerealize((Map<String, Object>) parser.readCereal(), objectCache);
+        }
+    }
+
+    /**
+     * Bind the rest of the object the parser is in directly to a new instance. Values for known
+     * fields are converted as they are read and values for unknown fields are skipped.
+     * 
+     * <p>
+     * If <code>useRuntimeType</code> is <code>true</code>, the <code>--class</code> entry may come
+     * after some of the values. Until it is found, values that this class does not know about are
+     * kept in their cereal representation in case the runtime type needs them.
+     * </p>
+     * 
+     * @param parser
+     *            the parser, positioned on the start of the object or on one of its values
+     * @param cereal
+     *            the entries of the object that were already read in their cereal representation
+     * @param useRuntimeType
+     *            if <code>true</code>, a <code>--class</code> entry naming a subclass of this
+     *            type switches to the cerealizer for that subclass
+     * @param objectCache
+     *            the cache used to track object references
+     * 
+     * @return the java object or a {@link ObjectCache.ForwardReference} if the object is a
+     *         reference to an object that has not been read yet
+     * 
+     * @throws CerealException
+     *             if the reading or conversion fails
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Object bind(CerealParser parser, Map<String, Object> cereal, boolean useRuntimeType,
+            ObjectCache objectCache) throws CerealException {
+        ClassCerealizer target = this;
+        boolean typeKnown = !useRuntimeType || Modifier.isFinal(javaType.getModifiers());
+        Map<String, Object> values = new HashMap<String, Object>();
+
+        while (Token.NAME == parser.next()) {
+            String name = parser.getName();
+            if (null == name) {
+                /* The entry was written with its tag */
+                int slot = target.getTagSlot(((TaggedCerealParser) parser).getTag());
+                parser.next();
+                if (slot < 0) {
+                    parser.skipValue();
+                } else {
+                    values.put(target.names[slot], target.accesses[slot].readValue(parser,
+                            objectCache));
+                }
+                continue;
+            }
+            parser.next();
+
+            CerealAccess access = (CerealAccess) target.delegates.get(name);
+            if (null != access) {
+                values.put(name, access.readValue(parser, objectCache));
+            } else if (!typeKnown && StreamHelper.KEY_CLASS.equals(name)) {
+                cereal.put(name, parser.readCereal());
+                typeKnown = true;
+
+                Class<?> runtimeClass = cerealFactory.getRuntimeClass(cereal);
+                if ((null == runtimeClass) || javaType.equals(runtimeClass)
+                        || !javaType.isAssignableFrom(runtimeClass)) {
+                    continue;
+                }
+
+                Cerealizer cerealizer = cerealFactory.getCerealizer(runtimeClass);
+                if (cerealizer instanceof ClassCerealizer) {
+                    target = (ClassCerealizer) cerealizer;
+                    target.retainValues(values, this);
+                } else if (values.isEmpty()) {
+                    StreamHelper.readEntries(parser, cereal);
+                    return cerealizer.deCerealize(cereal, objectCache);
+                } else {
+                    throw new CerealException("Values were already read as '"
+                            + javaType.getName() + "' before the type '"
+                            + runtimeClass.getName() + "' was found");
+                }
+            } else if (!typeKnown || ObjectCache.KEY_ID.equals(name)
+                    || ObjectCache.KEY_REF.equals(name)) {
+                cereal.put(name, parser.readCereal());
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        return target.create(values, cereal, objectCache);
+    }
+
+    /**
+     * Drop the values read by another cerealizer that do not apply to this type. This is used
+     * when the runtime type is found after some values were read.
+     */
+    private void retainValues(Map<String, Object> values, ClassCerealizer<?> source)
+            throws CerealException {
+        Iterator<String> i = values.keySet().iterator();
+        while (i.hasNext()) {
+            String name = i.next();
+            CerealAccess access = delegates.get(name);
+            if (null == access) {
+                i.remove();
+            } else if (!access.getJavaType().equals(source.delegates.get(name).getJavaType())) {
+                throw new CerealException("Values were already read as '"
+                        + source.javaType.getName() + "' before the type '" + javaType.getName()
+                        + "' was found");
+            }
+        }
+    }
+
+    /**
+     * Create the object once all of its values have been read.
+     * 
+     * @param values
+     *            the converted values by name
+     * @param cereal
+     *            the values that are still in their cereal representation by name
+     */
+    private Object create(Map<String, Object> values, Map<String, Object> cereal,
+            ObjectCache objectCache) throws CerealException {
+        if (cereal.containsKey(ObjectCache.KEY_REF)) {
+            return objectCache.resolveReference((Integer) cereal.get(ObjectCache.KEY_REF));
+        }
+
+        if (null != creator) {
+            return construct(values, cereal, objectCache);
+        }
+
+        J object = newInstance();
+        if (cereal.containsKey(ObjectCache.KEY_ID)) {
+            objectCache.cacheById((Integer) cereal.get(ObjectCache.KEY_ID), object);
+        }
+
+        applyValues(values, cereal, object, objectCache);
+        return object;
+    }
+
+    /**
+     * Create the object by passing the values its constructor takes to it and then apply the
+     * rest of the values.
+     * 
+     * @param values
+     *            the converted values by name
+     * @param cereal
+     *            the values that are still in their cereal representation by name
+     */
+    @SuppressWarnings("unchecked")
+    private J construct(Map<String, Object> values, Map<String, Object> cereal,
+            ObjectCache objectCache) throws CerealException {
+        Object[] args = new Object[creatorNames.length];
+        for (int i = 0; i < args.length; i++) {
+            String name = creatorNames[i];
+            CerealAccess access = delegates.get(name);
+            if (values.containsKey(name)) {
+                args[i] = access.convertValue(values.get(name), objectCache);
+            } else if (cereal.containsKey(name)) {
+                args[i] = access.convertCereal(cereal.get(name), objectCache);
+            } else if (access.hasDefaultValue() || access.requireValue()) {
+                args[i] = access.convertCereal(getMissingValue(name, access), objectCache);
+            } else {
+                args[i] = creatorDefaults[i];
+            }
+        }
+
+        J object;
+        try {
+            object = (J) (Object) creator.invokeExact(args);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to construct '" + javaType.getName() + "'",
+                    throwable);
+        }
+        if (cereal.containsKey(ObjectCache.KEY_ID)) {
+            objectCache.cacheById((Integer) cereal.get(ObjectCache.KEY_ID), object);
+        }
+
+        applyValues(values, cereal, object, objectCache);
+        return object;
+    }
+
+    /**
+     * Apply the values that were read to a new object, except for those that were passed to its
+     * constructor.
+     */
+    private void applyValues(Map<String, Object> values, Map<String, Object> cereal, J object,
+            ObjectCache objectCache) throws CerealException {
+        for (String name : delegates.keySet()) {
+            CerealAccess access = delegates.get(name);
+            if (creatorParams.contains(name)) {
+                continue;
+            } else if (values.containsKey(name)) {
+                access.setValue(values.get(name), object, objectCache);
+            } else if (cereal.containsKey(name)) {
+                access.applyCereal(cereal.get(name), object, objectCache);
+            } else {
+                applyMissing(name, access, object, false, objectCache);
+            }
+        }
+    }
+
+    /**
+     * Create a new, empty instance of the java type.
+     */
+    @SuppressWarnings("unchecked")
+    private J newInstance() {
+        ObjectInstantiator instantiator = this.instantiator;
+        if (null == instantiator) {
+            Class<?> type = DEFAULTS.containsKey(javaType) ? DEFAULTS.get(javaType) : javaType;
+            instantiator = ReflectionHelper.getInstantiator(type);
+            this.instantiator = instantiator;
+        }
+        return (J) instantiator.newInstance();
+    }
+
     /**
      * Decerealize the given representation and then apply it ot the target object.
      * 
@@ -460,38 +1228,115 @@ public class ClassCerealizer<J extends Object> implements Cerealizer<J, Map<Stri
         for (String name : delegates.keySet()) {
             CerealAccess access = delegates.get(name);
             
+            if (cereal.containsKey(name)) {
+                access.applyCereal(cereal.get(name), target, objectCache);
+            } else {
+                applyMissing(name, access, target, ignoreMissing, objectCache);
+            }
+        }
+    }
+
+    /**
+     * Apply the rules for a value that is missing from the cereal to the target object.
+     */
+    private void applyMissing(String name, CerealAccess access, J target, boolean ignoreMissing,
+            ObjectCache objectCache) throws CerealException {
+        /*
+         * If the value is missing, skip this access if either we can globally ignore missing
+         * values or this specific Access object doesn't require a value.
+         */
+        if (ignoreMissing) {
             /*
-             * If the value is missing, skip this access if either we can globally ignore missing
-             * values or this specific Access object doesn't require a value.
+             * It is important to look at ignoreMissing BEFORE the default value. Otherwise
+             * updates that didn't include a value could be set back to an original default
+             * value when it wasn't really intended.
              */
-            boolean missing = !cereal.containsKey(name);
-            Object value = null;
-            if (!missing) {
-                value = cereal.get(name);
-            } else if (ignoreMissing) {
-                /*
-                 * It is important to look at ignoreMissing BEFORE the default value. Otherwise
-                 * updates that didn't include a value could be set back to an original default
-                 * value when it wasn't really intended.
-                 */
-                continue;
-            } else if (access.hasDefaultValue()) {
-            	try {
-            		value = access.getDefaultValue();
-            	} catch (CerealException e) {
-            		throw new CerealException("Could not get default value for field '" + name + "'", e);
-            	}
-                /* Check for the special case of "null" */
-                if ("null".equals(value)) {
-                    value = null;
+            return;
+        } else if (!access.hasDefaultValue() && !access.requireValue()) {
+            return;
+        }
+        
+        access.applyCereal(getMissingValue(name, access), target, objectCache);
+    }
+
+    /**
+     * Get the default value to use for a value that is missing from the cereal.
+     * 
+     * @throws CerealException
+     *             if there is no default value, so the value is required
+     */
+    private Object getMissingValue(String name, CerealAccess access) throws CerealException {
+        Object value = null;
+        if (access.hasDefaultValue()) {
+        	try {
+        		value = access.getDefaultValue();
+        	} catch (CerealException e) {
+        		throw new CerealException("Could not get default value for field '" + name + "'", e);
+        	}
+            /* Check for the special case of "null" */
+            if ("null".equals(value)) {
+                value = null;
+            }
+        } else {
+        	throw new CerealException("No value given for required field '" + name + "'");
+        }
+        return value;
+    }
+
+    /**
+     * The order in which the keys of an object are written when streaming.
+     */
+    private static class KeyLayout {
+        private static final int CLASS = -1;
+        private static final int ID = -2;
+
+        private final String[] names;
+        private final int[] slots;
+        private final int[] tags;
+        private final boolean natural;
+
+        /**
+         * @param names
+         *            the keys in the order they are written
+         * @param delegates
+         *            the names of the delegates in iteration order
+         * @param delegateTags
+         *            the tags of the delegates in iteration order or <code>null</code> if all
+         *            keys are written by name
+         */
+        private KeyLayout(String[] names, List<String> delegates, int[] delegateTags) {
+            this.names = names;
+            this.slots = new int[names.length];
+            this.tags = new int[names.length];
+
+            boolean natural = true;
+            int last = -1;
+            for (int i = 0; i < names.length; i++) {
+                if (StreamHelper.KEY_CLASS.equals(names[i])) {
+                    slots[i] = CLASS;
+                } else if (ObjectCache.KEY_ID.equals(names[i])) {
+                    slots[i] = ID;
+                } else {
+                    slots[i] = delegates.indexOf(names[i]);
+                    natural &= (slots[i] > last);
+                    last = slots[i];
+                    if (null != delegateTags) {
+                        tags[i] = delegateTags[slots[i]];
+                    }
                 }
-            } else if (!access.requireValue()) {
-                continue;
+            }
+            this.natural = natural;
+        }
+
+        /**
+         * Write the key at the given position by its tag if it has one or by its name.
+         */
+        private void writeKey(CerealGenerator generator, int i) throws CerealException {
+            if (tags[i] > 0) {
+                ((TaggedCerealGenerator) generator).writeTag(tags[i]);
             } else {
-            	throw new CerealException("No value given for required field '" + name + "'");
+                generator.writeName(names[i]);
             }
-            
-            access.applyCereal(value, target, objectCache);
         }
     }
 }
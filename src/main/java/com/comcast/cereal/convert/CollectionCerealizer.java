@@ -15,6 +15,7 @@
  */
 package com.comcast.cereal.convert;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -28,8 +29,14 @@ import java.util.Set;
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
 import com.comcast.cereal.CerealFactoryAware;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.StreamingCerealizer;
+import com.comcast.cereal.impl.ReflectionHelper;
+import com.comcast.cereal.impl.StreamHelper;
 
 /**
  * Simple wrapper to turn any {@link Cerealizer} into a collection converter. This will apply the internal
@@ -38,7 +45,8 @@ import com.comcast.cereal.ObjectCache;
  * @author Clark Malmgren
  */
 @SuppressWarnings("rawtypes")
-public class CollectionCerealizer implements Cerealizer<Collection, Collection>, CerealFactoryAware {
+public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
+        StreamingCerealizer<Collection>, CerealFactoryAware {
 	public static Map<Class<? extends Collection>, Class<? extends Collection>> INSTANCE_CLASSES 
 		= new HashMap<Class<? extends Collection>, Class<? extends Collection>>();
 	static {
@@ -52,6 +60,7 @@ public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
     private boolean cerealizerOverride = false;
     private Class<? extends Collection> collClass;
     private CerealFactory cerealFactory;
+    private MethodHandle constructor;
 
     /**
      * Create a new {@link CollectionCerealizer} for a {@link Collection}
@@ -86,14 +95,8 @@ public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
             return null;
         }
 
-		Class<? extends Collection> subclass = INSTANCE_CLASSES.containsKey(collClass) ? INSTANCE_CLASSES.get(collClass) : collClass;
-        Collection coll;
-		try {
-			coll = subclass.newInstance();
-		} catch (Exception e) {
-			throw new CerealException("Could not instantiate a collection subclass for '" + subclass.getName() + "'", e);
-		} 
-        for (Object obj : (Collection) cereal) {
+        Collection coll = newCollection();
+        for (Object obj : cereal) {
             Cerealizer cz = cerealizer;
             if (!cerealizerOverride) {
                 cz = cerealFactory.getRuntimeCerealizer(obj, cerealizer);
@@ -103,6 +106,45 @@ public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
         return coll;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#read(com.comcast.cereal.CerealParser, boolean,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException {
+        if (Token.START_ARRAY != parser.getToken()) {
+            return StreamHelper.deCerealize(this, parser, useRuntimeType, cerealFactory, objectCache);
+        }
+
+        Collection coll = newCollection();
+        while (Token.END_ARRAY != parser.next()) {
+            Object value = StreamHelper.read(cerealizer, parser, !cerealizerOverride,
+                    cerealFactory, objectCache);
+            StreamHelper.add(coll, value, objectCache);
+        }
+        return coll;
+    }
+
+    private Collection newCollection() throws CerealException {
+		Class<? extends Collection> subclass = INSTANCE_CLASSES.containsKey(collClass) ? INSTANCE_CLASSES.get(collClass) : collClass;
+		MethodHandle constructor = this.constructor;
+		if (null == constructor) {
+			/* Look the constructor up once instead of for every collection */
+			constructor = ReflectionHelper.constructorHandle(subclass);
+			if (null == constructor) {
+				throw new CerealException("Could not instantiate a collection subclass for '"
+						+ subclass.getName() + "'");
+			}
+			this.constructor = constructor;
+		}
+		try {
+			return (Collection) (Object) constructor.invokeExact();
+		} catch (Throwable e) {
+			throw new CerealException("Could not instantiate a collection subclass for '" + subclass.getName() + "'", e);
+		} 
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.Cerealizer#cerealize(java.lang.Object)
@@ -114,9 +156,10 @@ public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
         }
 
         Collection coll = new ArrayList();
-        for (Object obj : (Collection) object) {
+        for (Object obj : object) {
             
-            Cerealizer cz = cerealizerOverride ? cerealizer : cerealFactory.getCerealizer(obj.getClass());
+            Cerealizer cz = (cerealizerOverride || null == obj) ? cerealizer
+                    : cerealFactory.getCerealizer(obj.getClass());
             boolean includeClassName = objectCache.getSettings().shouldIncludeClassName();
             Object cereal = cz.cerealize(obj, objectCache);
             if (includeClassName && (cereal instanceof Map)) {
@@ -127,6 +170,36 @@ public class CollectionCerealizer implements Cerealizer<Collection, Collection>,
         return coll;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#write(java.lang.Object, java.lang.String,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void write(Collection object, String className, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+        if (null == object) {
+            generator.writeValue(null);
+            return;
+        }
+
+        boolean includeClassName = objectCache.getSettings().shouldIncludeClassName();
+        generator.writeStartArray(object.size());
+        for (Object obj : object) {
+            Cerealizer cz = cerealizer;
+            String elementClassName = null;
+            if (null != obj) {
+                if (!cerealizerOverride) {
+                    cz = cerealFactory.getCerealizer(obj.getClass());
+                }
+                if (includeClassName) {
+                    elementClassName = obj.getClass().getName();
+                }
+            }
+            StreamHelper.write(cz, obj, elementClassName, generator, objectCache);
+        }
+        generator.writeEndArray();
+    }
+
     public void setCerealFactory(CerealFactory cerealFactory) {
         this.cerealFactory = cerealFactory;
     }
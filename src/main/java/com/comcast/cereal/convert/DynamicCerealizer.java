@@ -17,14 +17,21 @@ package com.comcast.cereal.convert;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
 import com.comcast.cereal.CerealFactoryAware;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.Reference;
+import com.comcast.cereal.StreamingCerealizer;
+import com.comcast.cereal.impl.StreamHelper;
 
 /**
  * The <i>DynamicCerealizer</i> cerealizes an object using the object type at runtime. This is
@@ -34,7 +41,8 @@ import com.comcast.cereal.ObjectCache;
  * 
  * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
  */
-public class DynamicCerealizer implements Cerealizer<Object, Object>, CerealFactoryAware {
+public class DynamicCerealizer implements Cerealizer<Object, Object>, StreamingCerealizer<Object>,
+        CerealFactoryAware {
 
     private CerealFactory cerealFactory;
 
@@ -89,6 +97,60 @@ public class DynamicCerealizer implements Cerealizer<Object, Object>, CerealFact
         return cereal;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#write(java.lang.Object, java.lang.String,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void write(Object object, String className, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+        if (null == object) {
+            generator.writeValue(null);
+            return;
+        }
+
+        /* First check to see if this object has already been written */
+        Reference reference = objectCache.getReference(object);
+        if (null != reference) {
+            StreamHelper.writeReference(reference.getId(), className, generator);
+            return;
+        }
+
+        Class<?> type = object.getClass();
+
+        if (Map.class.isAssignableFrom(type)) {
+            MapCerealizer cerealizer = new MapCerealizer();
+            cerealizer.setCerealFactory(cerealFactory);
+            cerealizer.write((Map<?, ?>) object, className, generator, objectCache);
+            return;
+        } else if (Collection.class.isAssignableFrom(type)) {
+            CollectionCerealizer cerealizer = new CollectionCerealizer(this, (Class<? extends Collection>) type);
+            cerealizer.setCerealFactory(cerealFactory);
+            cerealizer.write((Collection) object, className, generator, objectCache);
+            return;
+        }
+
+        Cerealizer cerealizer = cerealFactory.getCerealizer(type);
+        boolean includeClassName = objectCache.getSettings().shouldIncludeClassName();
+        if (cerealizer instanceof StreamingCerealizer) {
+            String typeName = includeClassName ? type.getName() : className;
+            ((StreamingCerealizer) cerealizer).write(object, typeName, generator, objectCache);
+        } else {
+            Object cereal = cerealizer.cerealize(object, objectCache);
+            if (includeClassName && (cereal instanceof Map)) {
+                Map<String, Object> map = (Map<String, Object>) cereal;
+                map.put("--class", type.getName());
+
+                objectCache.cache(object, map);
+            }
+            if ((null != className) && (cereal instanceof Map)) {
+                ((Map) cereal).put("--class", className);
+            }
+            generator.writeCereal(cereal);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.Cerealizer#deCerealize(java.lang.Object)
@@ -131,4 +193,55 @@ public class DynamicCerealizer implements Cerealizer<Object, Object>, CerealFact
         /* Hopefully this was just a simple extraction, it might fail */
         return cereal;
     }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#read(com.comcast.cereal.CerealParser, boolean,
+     * com.comcast.cereal.ObjectCache)
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException {
+        Token token = parser.getToken();
+        if (Token.START_ARRAY == token) {
+            List<Object> rv = new ArrayList<Object>();
+            while (Token.END_ARRAY != parser.next()) {
+                StreamHelper.add(rv, read(parser, useRuntimeType, objectCache), objectCache);
+            }
+            return rv;
+        } else if (Token.START_OBJECT != token) {
+            return parser.getValue();
+        }
+
+        /* Keep the entries as they are until the type is known */
+        Map<String, Object> map = new HashMap<String, Object>();
+        while (Token.NAME == parser.next()) {
+            String name = parser.getName();
+            parser.next();
+            map.put(name, parser.readCereal());
+
+            if ("--class".equals(name)) {
+                try {
+                    String typeName = (String) map.get("--class");
+
+                    Class<?> type = Class.forName(typeName);
+                    Cerealizer cerealizer = cerealFactory.getCerealizer(type);
+                    if (cerealizer instanceof ClassCerealizer) {
+                        return ((ClassCerealizer) cerealizer).bind(parser, map, false, objectCache);
+                    }
+
+                    StreamHelper.readEntries(parser, map);
+                    return cerealizer.deCerealize(map, objectCache);
+                } catch (Exception ex) {
+                    throw new CerealException("Failed to decerealize dynamically", ex);
+                }
+            }
+        }
+
+        /* This might be a reference to an existing object */
+        if (map.containsKey(ObjectCache.KEY_REF)) {
+            return objectCache.resolveReference((Integer) map.get(ObjectCache.KEY_REF));
+        }
+        return map;
+    }
 }
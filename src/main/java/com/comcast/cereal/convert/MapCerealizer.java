@@ -15,25 +15,34 @@
  */
 package com.comcast.cereal.convert;
 
-import java.lang.reflect.Modifier;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.commons.beanutils.ConstructorUtils;
-
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
 import com.comcast.cereal.CerealFactoryAware;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.StreamingCerealizer;
+import com.comcast.cereal.impl.ReflectionHelper;
+import com.comcast.cereal.impl.StreamHelper;
 
 @SuppressWarnings("rawtypes")
-public class MapCerealizer implements Cerealizer<Map<?, ?>, Map<?, ?>>, CerealFactoryAware {
+public class MapCerealizer implements Cerealizer<Map<?, ?>, Map<?, ?>>,
+        StreamingCerealizer<Map<?, ?>>, CerealFactoryAware {
 
     private CerealFactory cerealFactory;
 	private Cerealizer cerealizer;
 	private Class<? extends Map> mapClass = HashMap.class;
+	/* The constructor of the map class or null to create a HashMap */
+	private MethodHandle constructor;
     
     public MapCerealizer() {
     	this(null);
@@ -65,12 +74,7 @@ public class MapCerealizer implements Cerealizer<Map<?, ?>, Map<?, ?>>, CerealFa
 
         DynamicCerealizer dc = cerealFactory.getCachedCerealizer(DynamicCerealizer.class);
         Cerealizer cerealizer = this.cerealizer == null ? dc : this.cerealizer;
-        Map object;
-        try {
-            object = HashMap.class.equals(mapClass) || !isInstantiable(mapClass) ? new HashMap(cereal.size()) : mapClass.newInstance();
-        } catch (Exception e) {
-            throw new CerealException("Failed to instantiate map class " + mapClass.getName(), e);
-        }
+        Map object = newMap(cereal.size());
 
         for (Entry<?, ?> entry : cereal.entrySet()) {
             Object key = dc.deCerealize(entry.getKey(), objectCache);
@@ -84,6 +88,70 @@ public class MapCerealizer implements Cerealizer<Map<?, ?>, Map<?, ?>>, CerealFa
         return object;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#read(com.comcast.cereal.CerealParser, boolean,
+     * com.comcast.cereal.ObjectCache)
+     */
+    @SuppressWarnings("unchecked")
+    public Object read(CerealParser parser, boolean useRuntimeType, ObjectCache objectCache)
+            throws CerealException {
+        if (Token.START_OBJECT != parser.getToken()) {
+            return StreamHelper.deCerealize(this, parser, useRuntimeType, cerealFactory, objectCache);
+        }
+
+        DynamicCerealizer dc = cerealFactory.getCachedCerealizer(DynamicCerealizer.class);
+        Cerealizer cerealizer = this.cerealizer == null ? dc : this.cerealizer;
+
+        Object className = null;
+        List<Object> keys = new ArrayList<Object>();
+        List<Object> values = new ArrayList<Object>();
+        while (Token.NAME == parser.next()) {
+            String key = parser.getName();
+            parser.next();
+            if (StreamHelper.KEY_CLASS.equals(key)) {
+                className = parser.readCereal();
+            } else {
+                keys.add(dc.deCerealize(key, objectCache));
+                values.add(StreamHelper.read(cerealizer, parser, useRuntimeType, cerealFactory,
+                        objectCache));
+            }
+        }
+
+        /*
+         * The runtime type of a map may come after its values, so only the type of the map
+         * changes. The values keep the declared value type, but honor their own runtime type.
+         */
+        MapCerealizer target = this;
+        if (useRuntimeType && (null != className)) {
+            Map<String, Object> cereal = new HashMap<String, Object>(1);
+            cereal.put(StreamHelper.KEY_CLASS, className);
+            Cerealizer runtime = cerealFactory.getRuntimeCerealizer(cereal, this);
+            if (!(runtime instanceof MapCerealizer)) {
+                throw new CerealException("Can not read the map type '" + className
+                        + "' without a MapCerealizer");
+            }
+            target = (MapCerealizer) runtime;
+        }
+
+        Map object = target.newMap(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            StreamHelper.put(object, keys.get(i), values.get(i), objectCache);
+        }
+        return object;
+    }
+
+    private Map newMap(int size) throws CerealException {
+        try {
+            if (null == constructor) {
+                return new HashMap(size);
+            }
+            return (Map) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new CerealException("Failed to instantiate map class " + mapClass.getName(), e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.Cerealizer#cerealize(java.lang.Object)
@@ -107,18 +175,78 @@ public class MapCerealizer implements Cerealizer<Map<?, ?>, Map<?, ?>>, CerealFa
 
         return cereal;
     }
-    
-    private static boolean isInstantiable(Class<?> clazz) {
-        boolean abs = Modifier.isAbstract(clazz.getModifiers());
-        boolean hasConstuctor = ConstructorUtils.getAccessibleConstructor(clazz, new Class[0]) != null;
-        return !clazz.isInterface() && !abs && hasConstuctor;
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.StreamingCerealizer#write(java.lang.Object, java.lang.String,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void write(Map<?, ?> object, String className, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+        if (null == object) {
+            generator.writeValue(null);
+            return;
+        }
+
+        DynamicCerealizer dc = cerealFactory.getCachedCerealizer(DynamicCerealizer.class);
+        Cerealizer cerealizer = this.cerealizer == null ? dc : this.cerealizer;
+
+        /* Convert the keys first so the values can be written in the order the generator needs */
+        List<String> sequence = new ArrayList<String>(object.size() + 1);
+        Map<String, Object> values = new HashMap<String, Object>(object.size());
+        for (Entry<?, ?> entry : object.entrySet()) {
+            String key = String.valueOf(dc.cerealize(entry.getKey(), objectCache));
+            sequence.add(key);
+            values.put(key, entry.getValue());
+        }
+
+        /* Values must be converted in the same order as cerealize if objects are referenced */
+        Map<String, CerealGenerator> forks = null;
+        if (objectCache.isOrderSensitive()) {
+            forks = new HashMap<String, CerealGenerator>(object.size());
+        }
+
+        if (null != className) {
+            sequence.add(StreamHelper.KEY_CLASS);
+        }
+        String[] order = StreamHelper.iterationOrder(StreamHelper.toArray(sequence), object.size());
+        String[] names = generator.orderNames(order);
+
+        generator.writeStartObject(names.length);
+        if (null != forks) {
+            for (String key : sequence) {
+                if (!isClassName(key, className) && !forks.containsKey(key)) {
+                    CerealGenerator fork = generator.fork();
+                    StreamHelper.write(cerealizer, values.get(key), null, fork, objectCache);
+                    forks.put(key, fork);
+                }
+            }
+        }
+
+        for (String key : names) {
+            generator.writeName(key);
+            if (isClassName(key, className)) {
+                generator.writeValue(className);
+            } else if (null != forks) {
+                generator.writeFork(forks.get(key));
+            } else {
+                StreamHelper.write(cerealizer, values.get(key), null, generator, objectCache);
+            }
+        }
+        generator.writeEndObject();
     }
 
+    private static boolean isClassName(String key, String className) {
+        return (null != className) && StreamHelper.KEY_CLASS.equals(key);
+    }
+    
     public Class<? extends Map> getMapClass() {
         return mapClass;
     }
 
     public void setMapClass(Class<? extends Map> mapClass) {
         this.mapClass = mapClass;
+        this.constructor = HashMap.class.equals(mapClass) ? null
+                : ReflectionHelper.constructorHandle(mapClass);
     }
 }
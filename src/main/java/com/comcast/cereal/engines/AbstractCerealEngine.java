@@ -15,28 +15,60 @@
  */
 package com.comcast.cereal.engines;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
+import com.comcast.cereal.CerealCodec;
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
 import com.comcast.cereal.CerealSettings;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.ForwardReference;
 import com.comcast.cereal.convert.ClassCerealizer;
+import com.comcast.cereal.impl.AsyncFileInput;
+import com.comcast.cereal.impl.AsyncFileOutput;
+import com.comcast.cereal.impl.ByteBufferInputStream;
+import com.comcast.cereal.impl.ByteBufferOutputStream;
+import com.comcast.cereal.impl.ChannelOutput;
+import com.comcast.cereal.impl.CodecHelper;
+import com.comcast.cereal.impl.FileOutput;
+import com.comcast.cereal.impl.StreamHelper;
 
 /**
  * Provides common functions for most {@link CerealEngine} implementations as most methods build
@@ -46,8 +78,10 @@ import com.comcast.cereal.convert.ClassCerealizer;
  */
 public abstract class AbstractCerealEngine implements CerealEngine {
 
+
     private CerealFactory cerealFactory;
     private CerealSettings settings = new CerealSettings();
+    private Executor executor;
 
     /**
      * Constructor for an AbstractCerealEngine that will create and store a new
@@ -112,6 +146,158 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      */
     protected abstract Object doRead(Reader reader) throws CerealException;
 
+    /**
+     * Create a generator that writes directly to the given output stream. This is used instead of
+     * {@link #doWrite(OutputStream, Object)} when {@link #shouldStreamWrites()} is
+     * <code>true</code>. Engines that do not support streaming return <code>null</code>.
+     * 
+     * @param outputStream
+     *            the stream to write out to
+     * 
+     * @return the generator or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the generator could not be created
+     */
+    protected CerealGenerator createGenerator(OutputStream outputStream) throws CerealException {
+        return null;
+    }
+
+    /**
+     * Create a generator that writes directly to the given writer. This is used instead of
+     * {@link #doWrite(Writer, Object)} when {@link #shouldStreamWrites()} is
+     * <code>true</code>. Engines that do not support streaming return <code>null</code>.
+     * 
+     * @param writer
+     *            the writer to write out to
+     * 
+     * @return the generator or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the generator could not be created
+     */
+    protected CerealGenerator createGenerator(Writer writer) throws CerealException {
+        return null;
+    }
+
+    /**
+     * Create a parser that reads directly from the given input stream. This is used instead of
+     * {@link #doRead(InputStream)} when {@link #shouldStreamReads()} is
+     * <code>true</code>. Engines that do not support streaming return <code>null</code>.
+     * 
+     * @param inputStream
+     *            the stream to read from
+     * 
+     * @return the parser or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the parser could not be created
+     */
+    protected CerealParser createParser(InputStream inputStream) throws CerealException {
+        return null;
+    }
+
+    /**
+     * Create a parser that reads directly from the given reader. This is used instead of
+     * {@link #doRead(Reader)} when {@link #shouldStreamReads()} is
+     * <code>true</code>. Engines that do not support streaming return <code>null</code>.
+     * 
+     * @param reader
+     *            the reader to read from
+     * 
+     * @return the parser or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the parser could not be created
+     */
+    protected CerealParser createParser(Reader reader) throws CerealException {
+        return null;
+    }
+
+    /**
+     * Create a parser that reads the remaining bytes of the given buffer, such as a file that was
+     * mapped into memory. By default this reads the buffer through
+     * {@link #createParser(InputStream)}.
+     * 
+     * @param buffer
+     *            the buffer to read from
+     * 
+     * @return the parser or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the parser could not be created
+     */
+    protected CerealParser createParser(ByteBuffer buffer) throws CerealException {
+        return createParser(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Actually read the cereal-compatible object from the remaining bytes of the given buffer,
+     * such as a file that was mapped into memory. By default this reads the buffer through
+     * {@link #doRead(InputStream)}.
+     * 
+     * @param buffer
+     *            the buffer to read from
+     * @return the cereal-compatible object representation of the bytes that were read
+     * 
+     * @throws CerealException
+     *             if the contents were not formatted or encoded correctly
+     */
+    protected Object doRead(ByteBuffer buffer) throws CerealException {
+        return doRead(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Create a parser that reads the given string. By default this reads the string through
+     * {@link #createParser(Reader)}.
+     * 
+     * @param string
+     *            the string to read
+     * 
+     * @return the parser or <code>null</code> if streaming is not supported
+     * 
+     * @throws CerealException
+     *             if the parser could not be created
+     */
+    protected CerealParser createParser(String string) throws CerealException {
+        return createParser(new StringReader(string));
+    }
+
+    /**
+     * Actually read the cereal-compatible object from the given string. By default this reads the
+     * string through {@link #doRead(Reader)}.
+     * 
+     * @param string
+     *            the string to read
+     * @return the cereal-compatible object representation of the string
+     * 
+     * @throws CerealException
+     *             if the contents were not formatted correctly
+     */
+    protected Object doRead(String string) throws CerealException {
+        return doRead(new StringReader(string));
+    }
+
+    /**
+     * Check if objects should be written with a generator from <code>createGenerator</code>. By
+     * default this is {@link CerealSettings#shouldStreamWrites()}.
+     * 
+     * @return <code>true</code> if writes should be streamed
+     */
+    protected boolean shouldStreamWrites() {
+        return settings.shouldStreamWrites();
+    }
+
+    /**
+     * Check if objects should be read with a parser from <code>createParser</code>. By default
+     * this is {@link CerealSettings#shouldStreamReads()}.
+     * 
+     * @return <code>true</code> if reads should be streamed
+     */
+    protected boolean shouldStreamReads() {
+        return settings.shouldStreamReads();
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.CerealEngine#getCerealFactory()
@@ -217,19 +403,423 @@ public abstract class AbstractCerealEngine implements CerealEngine {
         }
     }
 
+    /**
+     * Convert the given object and write it directly to the given generator without building the
+     * cereal-compatible representation first. If object references are used, the object graph is
+     * scanned once before writing so every object is written with the id it is referenced by.
+     * 
+     * @param object
+     *            the object to convert
+     * @param clazz
+     *            the class definition to use when converting the object or <code>null</code> to
+     *            use the runtime type of the object
+     * @param generator
+     *            the generator to write to
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing the object
+     */
+    protected void stream(Object object, Class<?> clazz, CerealGenerator generator)
+            throws CerealException {
+        ObjectCache objectCache = new ObjectCache(settings);
+        try {
+            streamValue(object, clazz, generator, objectCache);
+            generator.flush();
+        } finally {
+            objectCache.resetCache();
+        }
+    }
+
+    /**
+     * Write each of the objects returned from the given iterator to the given generator as a
+     * single list, one object at a time. Every object is converted and flushed before the next
+     * one is requested, so only one of them is ever held in memory. Objects do not reference each
+     * other, but the object ids are unique within the list.
+     * 
+     * @param iterator
+     *            the objects to convert
+     * @param clazz
+     *            the class definition to use when converting the objects or <code>null</code> to
+     *            use the runtime type of each object
+     * @param generator
+     *            the generator to write to or <code>null</code> if the engine does not support
+     *            streaming
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing any of the objects
+     */
+    private void streamAll(Iterator<?> iterator, Class<?> clazz, CerealGenerator generator)
+            throws CerealException {
+        if (null == generator) {
+            throw new CerealException(getClass().getSimpleName()
+                    + " can not write objects one at a time");
+        }
+
+        ObjectCache objectCache = new ObjectCache(settings);
+        try {
+            generator.writeStartArray(CerealGenerator.UNKNOWN_SIZE);
+            while (iterator.hasNext()) {
+                Object object = iterator.next();
+                if (null == object) {
+                    generator.writeValue(null);
+                } else {
+                    streamValue(object, clazz, generator, objectCache);
+                }
+                objectCache.startNextValue();
+                generator.flush();
+            }
+            generator.writeEndArray();
+            generator.flush();
+        } finally {
+            objectCache.resetCache();
+        }
+    }
+
+    /**
+     * Convert the given object and write it to the given generator as the next value.
+     */
+    @SuppressWarnings("rawtypes")
+    private void streamValue(Object object, Class<?> clazz, CerealGenerator generator,
+            ObjectCache objectCache) throws CerealException {
+        Class<?> type = (null == clazz) ? object.getClass() : clazz;
+        Cerealizer cerealizer = cerealFactory.getCerealizer(type);
+        String className = (settings.shouldIncludeClassName() && (null != object)) ? object
+                .getClass().getName() : null;
+
+        if (settings.shouldUseObjectReferences()) {
+            objectCache.startScan();
+            StreamHelper.scan(cerealizer, object, className, objectCache);
+        }
+
+        objectCache.startStream();
+        StreamHelper.write(cerealizer, object, className, generator, objectCache);
+    }
+
+    /**
+     * Read the next value from the given parser and bind it directly to a java object without
+     * building the cereal-compatible representation first. Values that the target classes do not
+     * use are skipped.
+     * 
+     * @param parser
+     *            the parser to read from
+     * @param clazz
+     *            the class to convert the value to
+     * 
+     * @return the java object
+     * 
+     * @throws CerealException
+     *             if there was a problem reading or converting the value
+     */
+    protected <T> T bind(CerealParser parser, Class<T> clazz) throws CerealException {
+        parser.next();
+        return bindValue(parser, clazz, getBindCerealizer(clazz), new ObjectCache(settings));
+    }
+
+    /**
+     * Create an iterator that binds each of the values the given parser reads, one after the
+     * other, to a java object of the given class. The parser must read the next value when
+     * {@link CerealParser#next()} is called after a value and {@link Token#END} once there are no
+     * more values.
+     * 
+     * @param parser
+     *            the parser to read from
+     * @param clazz
+     *            the class to convert every value to
+     * @param source
+     *            if not <code>null</code>, what to close once the iterator is exhausted or closed
+     * 
+     * @return the iterator
+     * 
+     * @throws CerealException
+     *             if the cerealizer for the class could not be created
+     */
+    protected <T> CerealIterator<T> iterate(CerealParser parser, Class<T> clazz,
+            Closeable source) throws CerealException {
+        return new CerealIterator<T>(this, parser, clazz, getBindCerealizer(clazz),
+                new ObjectCache(settings), source);
+    }
+
+    /**
+     * Get the cerealizer that {@link #bindValue} needs for the given class.
+     */
+    @SuppressWarnings("rawtypes")
+    Cerealizer getBindCerealizer(Class<?> clazz) throws CerealException {
+        Class<?> type = clazz.isArray() ? clazz.getComponentType() : clazz;
+        return cerealFactory.getCerealizer(type);
+    }
+
+    /**
+     * Bind the value that starts at the current token of the parser to a java object. The object
+     * cache is reset afterwards so that it can be used for the next value.
+     * 
+     * @param parser
+     *            the parser, positioned on the first token of the value
+     * @param clazz
+     *            the class to convert the value to
+     * @param cerealizer
+     *            the cerealizer returned from {@link #getBindCerealizer(Class)} for the class
+     * @param objectCache
+     *            the cache used to track object references
+     * 
+     * @return the java object
+     * 
+     * @throws CerealException
+     *             if there was a problem reading or converting the value
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    <T> T bindValue(CerealParser parser, Class<T> clazz, Cerealizer cerealizer,
+            ObjectCache objectCache) throws CerealException {
+        try {
+            Object object;
+            if (clazz.isArray()) {
+                if (Token.START_ARRAY == parser.getToken()) {
+                    Class arrayType = clazz.getComponentType();
+
+                    List<Object> values = new ArrayList<Object>();
+                    while (Token.END_ARRAY != parser.next()) {
+                        values.add(StreamHelper.read(cerealizer, parser, false, cerealFactory,
+                                objectCache));
+                    }
+                    object = StreamHelper.toArray(arrayType, values, objectCache);
+                } else {
+                    object = StreamHelper.read(cerealFactory.getCerealizer(clazz), parser, false,
+                            cerealFactory, objectCache);
+                }
+            } else if (cerealizer instanceof ClassCerealizer) {
+                object = StreamHelper.read(cerealizer, parser, true, cerealFactory, objectCache);
+            } else {
+                /* Only class cerealizers check that the runtime type is a subclass */
+                object = StreamHelper.read(cerealizer, parser, false, cerealFactory, objectCache);
+            }
+
+            objectCache.resolveFixups();
+            if (object instanceof ForwardReference) {
+                throw new CerealException("Could not find referenced object with id "
+                        + ((ForwardReference) object).getId());
+            }
+            return (T) object;
+        } finally {
+            objectCache.resetCache();
+        }
+    }
+
+    /**
+     * Read an object of the given class from the given input stream, streaming it if possible.
+     */
+    protected <T> T readFrom(InputStream inputStream, Class<T> clazz) throws CerealException {
+        /* The decoder is closed to release it, but the input stream is left to the caller */
+        InputStream input = decode(new CloseShieldInputStream(inputStream));
+        try {
+            CerealParser parser = shouldStreamReads() ? createParser(input) : null;
+            if (null != parser) {
+                return bind(parser, clazz);
+            } else {
+                return deCerealize(doRead(input), clazz);
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Read an object of the given class from the given buffer, streaming it if possible.
+     */
+    private <T> T readFrom(ByteBuffer buffer, Class<T> clazz) throws CerealException {
+        if (isEncoded(buffer)) {
+            return readFrom(new ByteBufferInputStream(buffer), clazz);
+        }
+
+        CerealParser parser = shouldStreamReads() ? createParser(buffer) : null;
+        if (null != parser) {
+            return bind(parser, clazz);
+        } else {
+            return deCerealize(doRead(buffer), clazz);
+        }
+    }
+
+    /**
+     * Read an object of the given class from the given string, streaming it if possible.
+     */
+    private <T> T readFrom(String string, Class<T> clazz) throws CerealException {
+        CerealParser parser = shouldStreamReads() ? createParser(string) : null;
+        if (null != parser) {
+            return bind(parser, clazz);
+        } else {
+            return deCerealize(doRead(string), clazz);
+        }
+    }
+
+    /**
+     * Decode the given input if it was encoded by the codec from the settings or, if detection is
+     * on, by any other known codec.
+     * 
+     * @see CerealSettings#shouldDetectCodecs()
+     */
+    InputStream decode(InputStream inputStream) throws CerealException {
+        CerealCodec codec = settings.getCodec();
+        boolean detect = settings.shouldDetectCodecs();
+        if (null == codec && !detect) {
+            return inputStream;
+        }
+
+        try {
+            return CodecHelper.decode(inputStream, codec, detect);
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to start decoding the input", ioex);
+        }
+    }
+
+    /**
+     * Check if the remaining bytes of the given buffer were encoded by the codec from the settings
+     * or, if detection is on, by any other known codec. Encoded buffers must be read through
+     * {@link #decode(InputStream)}.
+     */
+    boolean isEncoded(ByteBuffer buffer) {
+        CerealCodec codec = settings.getCodec();
+        boolean detect = settings.shouldDetectCodecs();
+        return (null != codec || detect) && null != CodecHelper.detect(buffer, codec, detect);
+    }
+
+    /**
+     * Wrap the given output stream with the codec from the settings. The given stream is not
+     * closed when the encoder is finished.
+     * 
+     * @return the encoder or the given stream if there is no codec
+     * 
+     * @see #finish(OutputStream, OutputStream)
+     */
+    private OutputStream encode(OutputStream outputStream) throws CerealException {
+        CerealCodec codec = settings.getCodec();
+        if (null == codec) {
+            return outputStream;
+        }
+
+        try {
+            return codec.encode(new CloseShieldOutputStream(outputStream));
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to start encoding the output", ioex);
+        }
+    }
+
+    /**
+     * Finish the encoder returned by {@link #encode(OutputStream)} and flush what it wrote to.
+     */
+    private void finish(OutputStream encoded, OutputStream outputStream) throws CerealException {
+        if (encoded != outputStream) {
+            try {
+                encoded.close();
+                outputStream.flush();
+            } catch (IOException ioex) {
+                throw new CerealException("Failed to finish encoding the output", ioex);
+            }
+        }
+    }
+
+    /**
+     * Map the given file into memory if it is at least as large as
+     * {@link CerealSettings#getMappedReadThreshold()}. The mapping stays valid until the buffer is
+     * garbage collected.
+     * 
+     * @param file
+     *            the file to map
+     * 
+     * @return the contents of the file or <code>null</code> if it should be read through a
+     *         stream instead
+     * 
+     * @throws CerealException
+     *             if the file could not be opened
+     */
+    ByteBuffer map(File file) throws CerealException {
+        long length = file.length();
+        if (length < settings.getMappedReadThreshold() || length > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
+                    + " for reading", ioex);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Read an object of the given class from the given reader, streaming it if possible.
+     */
+    private <T> T readFrom(Reader reader, Class<T> clazz) throws CerealException {
+        CerealParser parser = shouldStreamReads() ? createParser(reader) : null;
+        if (null != parser) {
+            return bind(parser, clazz);
+        } else {
+            return deCerealize(doRead(reader), clazz);
+        }
+    }
+
+    /**
+     * Write the given object to the given output stream, encoding it with the codec from the
+     * settings if there is one.
+     */
+    protected void writeTo(OutputStream outputStream, Object object, Class<?> clazz)
+            throws CerealException {
+        OutputStream encoded = encode(outputStream);
+        if (encoded == outputStream) {
+            writePlain(outputStream, object, clazz);
+            return;
+        }
+
+        try {
+            writePlain(new CloseShieldOutputStream(encoded), object, clazz);
+            finish(encoded, outputStream);
+        } finally {
+            IOUtils.closeQuietly(encoded);
+        }
+    }
+
+    /**
+     * Write the given object to the given output stream, streaming it if possible.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void writePlain(OutputStream outputStream, Object object, Class<?> clazz)
+            throws CerealException {
+        CerealGenerator generator = shouldStreamWrites() ? createGenerator(outputStream)
+                : null;
+        if (null != generator) {
+            stream(object, clazz, generator);
+        } else if (null == clazz) {
+            doWrite(outputStream, cerealize(object));
+        } else {
+            doWrite(outputStream, cerealize(object, (Class) clazz));
+        }
+    }
+
+    /**
+     * Write the given object to the given writer, streaming it if possible.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void writeTo(Writer writer, Object object, Class<?> clazz) throws CerealException {
+        CerealGenerator generator = shouldStreamWrites() ? createGenerator(writer) : null;
+        if (null != generator) {
+            stream(object, clazz, generator);
+        } else if (null == clazz) {
+            doWrite(writer, cerealize(object));
+        } else {
+            doWrite(writer, cerealize(object, (Class) clazz));
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.CerealEngine#writeToString(java.lang.Object)
      */
     public String writeToString(Object object) throws CerealException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            Object cereal = cerealize(object);
-            doWrite(baos, cereal);
-            return baos.toString();
-        } finally {
-            IOUtils.closeQuietly(baos);
-        }
+        StringWriter writer = new StringWriter();
+        writeTo(writer, object, null);
+        return writer.toString();
     }
 
     /*
@@ -238,14 +828,9 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * java.lang.Class)
      */
     public <T> String writeToString(T t, Class<T> clazz) throws CerealException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            Object cereal = cerealize(t, clazz);
-            doWrite(baos, cereal);
-            return baos.toString();
-        } finally {
-            IOUtils.closeQuietly(baos);
-        }
+        StringWriter writer = new StringWriter();
+        writeTo(writer, t, clazz);
+        return writer.toString();
     }
 
     /*
@@ -254,7 +839,7 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * java.io.Writer)
      */
     public <T> void write(T t, Class<T> clazz, Writer writer) throws CerealException {
-        doWrite(writer, cerealize(t, clazz));
+        writeTo(writer, t, clazz);
     }
 
     /*
@@ -262,7 +847,7 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.io.Writer)
      */
     public void write(Object object, Writer writer) throws CerealException {
-        doWrite(writer, cerealize(object));
+        writeTo(writer, object, null);
     }
 
     /*
@@ -270,58 +855,167 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * @see com.comcast.cereal.engines.CerealEngine#write(T, java.lang.Class, java.io.File)
      */
     public <T> void write(T t, Class<T> clazz, File file) throws CerealException {
-        OutputStream outputStream;
+        FileOutput output = openFile(file);
         try {
-            outputStream = new FileOutputStream(file);
-        } catch (IOException ioex) {
-            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
-                    + " for writing", ioex);
+            writeTo(new CloseShieldOutputStream(output), t, clazz);
+            output.commit();
+        } finally {
+            IOUtils.closeQuietly(output);
         }
+    }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.io.File)
+     */
+    public void write(Object object, File file) throws CerealException {
+        FileOutput output = openFile(file);
         try {
-            Object cereal = cerealize(t, clazz);
-            doWrite(outputStream, cereal);
+            writeTo(new CloseShieldOutputStream(output), object, null);
+            output.commit();
         } finally {
-            IOUtils.closeQuietly(outputStream);
+            IOUtils.closeQuietly(output);
         }
     }
 
     /*
      * (non-Javadoc)
-     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.io.File)
+     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.lang.Class,
+     * java.nio.ByteBuffer)
      */
-    public void write(Object object, File file) throws CerealException {
-        OutputStream outputStream;
+    public <T> void write(T t, Class<T> clazz, ByteBuffer buffer) throws CerealException {
+        writeTo(buffer, t, clazz);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.nio.ByteBuffer)
+     */
+    public void write(Object object, ByteBuffer buffer) throws CerealException {
+        writeTo(buffer, object, null);
+    }
+
+    /**
+     * Write the given object into the given buffer, leaving the position of the buffer unchanged
+     * if it fails.
+     */
+    private void writeTo(ByteBuffer buffer, Object object, Class<?> clazz) throws CerealException {
+        int position = buffer.position();
+        boolean written = false;
         try {
-            outputStream = new FileOutputStream(file);
-        } catch (IOException ioex) {
-            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
-                    + " for writing", ioex);
+            writeTo(new ByteBufferOutputStream(buffer), object, clazz);
+            written = true;
+        } finally {
+            if (!written) {
+                buffer.position(position);
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object, java.lang.Class,
+     * java.nio.channels.WritableByteChannel)
+     */
+    public <T> void write(T t, Class<T> clazz, WritableByteChannel channel)
+            throws CerealException {
+        ChannelOutput output = new ChannelOutput(channel);
+        try {
+            writeTo(new CloseShieldOutputStream(output), t, clazz);
+            output.commit();
+        } finally {
+            output.close();
         }
+    }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#write(java.lang.Object,
+     * java.nio.channels.WritableByteChannel)
+     */
+    public void write(Object object, WritableByteChannel channel) throws CerealException {
+        ChannelOutput output = new ChannelOutput(channel);
         try {
-            Object cereal = cerealize(object);
-            doWrite(outputStream, cereal);
+            writeTo(new CloseShieldOutputStream(output), object, null);
+            output.commit();
         } finally {
-            IOUtils.closeQuietly(outputStream);
+            output.close();
         }
     }
 
+    /**
+     * Open the given file for a buffered write that follows the file write settings. Some engines
+     * close the stream they write to, so it must be shielded from that until it is committed.
+     * 
+     * @see CerealSettings#shouldAtomicFileWrites()
+     * @see CerealSettings#shouldSyncFileWrites()
+     */
+    private FileOutput openFile(File file) throws CerealException {
+        return new FileOutput(file, settings.shouldAtomicFileWrites(),
+                settings.shouldSyncFileWrites());
+    }
+
     /*
      * (non-Javadoc)
-     * @see com.comcast.cereal.engines.CerealEngine#readFromString(java.lang.String,
-     * java.lang.Class)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAll(java.util.Iterator, java.lang.Class,
+     * java.io.Writer)
      */
-    public <T> T readFromString(String string, Class<T> clazz) throws CerealException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(string.getBytes());
+    public <T> void writeAll(Iterator<? extends T> iterator, Class<T> clazz, Writer writer)
+            throws CerealException {
+        streamAll(iterator, clazz, createGenerator(writer));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAll(java.util.Iterator, java.io.Writer)
+     */
+    public void writeAll(Iterator<?> iterator, Writer writer) throws CerealException {
+        streamAll(iterator, null, createGenerator(writer));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAll(java.util.Iterator, java.lang.Class,
+     * java.io.File)
+     */
+    public <T> void writeAll(Iterator<? extends T> iterator, Class<T> clazz, File file)
+            throws CerealException {
+        writeAllTo(iterator, clazz, file);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAll(java.util.Iterator, java.io.File)
+     */
+    public void writeAll(Iterator<?> iterator, File file) throws CerealException {
+        writeAllTo(iterator, null, file);
+    }
+
+    /**
+     * Write each of the objects returned from the given iterator to the given file.
+     */
+    private void writeAllTo(Iterator<?> iterator, Class<?> clazz, File file)
+            throws CerealException {
+        FileOutput output = openFile(file);
         try {
-            Object cereal = doRead(bais);
-            return deCerealize(cereal, clazz);
+            OutputStream encoded = encode(output);
+            streamAll(iterator, clazz, createGenerator(new CloseShieldOutputStream(encoded)));
+            finish(encoded, output);
+            output.commit();
         } finally {
-            IOUtils.closeQuietly(bais);
+            IOUtils.closeQuietly(output);
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#readFromString(java.lang.String,
+     * java.lang.Class)
+     */
+    public <T> T readFromString(String string, Class<T> clazz) throws CerealException {
+        return readFrom(string, clazz);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.CerealEngine#readFromClasspath(java.lang.String, java.lang.Class)
@@ -329,8 +1023,7 @@ public abstract class AbstractCerealEngine implements CerealEngine {
     public <T> T readFromClasspath(String path, Class<T> clazz) throws CerealException {
         InputStream in = CerealEngine.class.getResourceAsStream(path);
         try {
-            Object cereal = doRead(in);
-            return deCerealize(cereal, clazz);
+            return readFrom(in, clazz);
         } finally {
             IOUtils.closeQuietly(in);
         }
@@ -341,8 +1034,7 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * @see com.comcast.cereal.engines.CerealEngine#read(java.io.Reader, java.lang.Class)
      */
     public <T> T read(Reader reader, Class<T> clazz) throws CerealException {
-        Object cereal = doRead(reader);
-        return deCerealize(cereal, clazz);
+        return readFrom(reader, clazz);
     }
 
     /*
@@ -350,6 +1042,11 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      * @see com.comcast.cereal.engines.CerealEngine#read(java.io.File, java.lang.Class)
      */
     public <T> T read(File file, Class<T> clazz) throws CerealException {
+        ByteBuffer mapped = map(file);
+        if (null != mapped) {
+            return readFrom(mapped, clazz);
+        }
+
         InputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
@@ -359,13 +1056,29 @@ public abstract class AbstractCerealEngine implements CerealEngine {
         }
 
         try {
-            Object cereal = doRead(inputStream);
-            return deCerealize(cereal, clazz);
+            return readFrom(inputStream, clazz);
         } finally {
             IOUtils.closeQuietly(inputStream);
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#read(java.nio.ByteBuffer, java.lang.Class)
+     */
+    public <T> T read(ByteBuffer buffer, Class<T> clazz) throws CerealException {
+        return readFrom(buffer, clazz);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#read(java.nio.channels.ReadableByteChannel,
+     * java.lang.Class)
+     */
+    public <T> T read(ReadableByteChannel channel, Class<T> clazz) throws CerealException {
+        return readFrom(new CloseShieldInputStream(Channels.newInputStream(channel)), clazz);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.CerealEngine#applyFromString(java.lang.String,
@@ -373,16 +1086,11 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      */
     @SuppressWarnings("unchecked")
     public void applyFromString(String string, Object target) throws CerealException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(string.getBytes());
-        try {
-            Object cereal = doRead(bais);
-            if (cereal instanceof Map) {
-                apply((Map<String, Object>) cereal, target);
-            } else {
-                throw new CerealException("CerealEngine.apply* methods can only accept objects.");
-            }
-        } finally {
-            IOUtils.closeQuietly(bais);
+        Object cereal = doRead(string);
+        if (cereal instanceof Map) {
+            apply((Map<String, Object>) cereal, target);
+        } else {
+            throw new CerealException("CerealEngine.apply* methods can only accept objects.");
         }
     }
 
@@ -395,7 +1103,7 @@ public abstract class AbstractCerealEngine implements CerealEngine {
     public void applyFromClasspath(String path, Object target) throws CerealException {
         InputStream in = CerealEngine.class.getResourceAsStream(path);
         try {
-            Object cereal = doRead(in);
+            Object cereal = doRead(decode(in));
             if (cereal instanceof Map) {
                 apply((Map<String, Object>) cereal, target);
             } else {
@@ -426,24 +1134,93 @@ public abstract class AbstractCerealEngine implements CerealEngine {
      */
     @SuppressWarnings("unchecked")
     public void apply(File file, Object target) throws CerealException {
-        InputStream inputStream;
-        try {
-            inputStream = new FileInputStream(file);
-        } catch (IOException ioex) {
-            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
-                    + " for reading", ioex);
-        }
+        Object cereal;
+        ByteBuffer mapped = map(file);
+        if (null != mapped && !isEncoded(mapped)) {
+            cereal = doRead(mapped);
+        } else if (null != mapped) {
+            cereal = doRead(decode(new ByteBufferInputStream(mapped)));
+        } else {
+            InputStream inputStream;
+            try {
+                inputStream = new FileInputStream(file);
+            } catch (IOException ioex) {
+                throw new CerealException("Failed to open the file " + file.getAbsolutePath()
+                        + " for reading", ioex);
+            }
 
-        try {
-            Object cereal = doRead(inputStream);
-            if (cereal instanceof Map) {
-                apply((Map<String, Object>) cereal, target);
-            } else {
-                throw new CerealException("CerealEngine.apply* methods can only accept objects.");
+            try {
+                cereal = doRead(decode(inputStream));
+            } finally {
+                IOUtils.closeQuietly(inputStream);
             }
-        } finally {
-            IOUtils.closeQuietly(inputStream);
         }
+
+        if (cereal instanceof Map) {
+            apply((Map<String, Object>) cereal, target);
+        } else {
+            throw new CerealException("CerealEngine.apply* methods can only accept objects.");
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAsync(java.lang.Object, java.lang.Class,
+     * java.nio.file.Path)
+     */
+    public <T> Future<Void> writeAsync(T t, Class<T> clazz, Path path) {
+        return writeAsyncTo(path, t, clazz);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#writeAsync(java.lang.Object,
+     * java.nio.file.Path)
+     */
+    public Future<Void> writeAsync(Object object, Path path) {
+        return writeAsyncTo(path, object, null);
+    }
+
+    /**
+     * Start writing the given object to the given file on the executor.
+     */
+    private Future<Void> writeAsyncTo(final Path path, final Object object,
+            final Class<?> clazz) {
+        final boolean atomic = settings.shouldAtomicFileWrites();
+        final boolean sync = settings.shouldSyncFileWrites();
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws CerealException {
+                AsyncFileOutput output = new AsyncFileOutput(path.toFile(), atomic, sync);
+                try {
+                    writeTo(new CloseShieldOutputStream(output), object, clazz);
+                    output.commit();
+                    return null;
+                } finally {
+                    output.close();
+                }
+            }
+        });
+        getExecutor().execute(task);
+        return task;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.CerealEngine#readAsync(java.nio.file.Path, java.lang.Class)
+     */
+    public <T> Future<T> readAsync(final Path path, final Class<T> clazz) {
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            public T call() throws CerealException {
+                AsyncFileInput input = new AsyncFileInput(path.toFile());
+                try {
+                    return readFrom(input, clazz);
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            }
+        });
+        getExecutor().execute(task);
+        return task;
     }
 
     public CerealSettings getSettings() {
@@ -453,6 +1230,28 @@ public abstract class AbstractCerealEngine implements CerealEngine {
     public void setSettings(CerealSettings settings) {
         this.settings = settings;
     }
+
+    /**
+     * Get the executor that the conversions of asynchronous calls run on. Unless one was set, this
+     * is a pool of daemon threads shared by every engine.
+     * 
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return (null == executor) ? DefaultExecutor.INSTANCE : executor;
+    }
+
+    /**
+     * Set the executor that the conversions of asynchronous calls run on. Asynchronous calls on
+     * the same engine convert in parallel on an executor with many threads, so the settings and
+     * cerealizers of the engine should not be changed while any of them are running.
+     * 
+     * @param executor
+     *            the executor or <code>null</code> to use the shared default
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
     
     /**
      * Tells this engine to use the given cerealize when cerealizing the given class
@@ -462,4 +1261,21 @@ public abstract class AbstractCerealEngine implements CerealEngine {
     public <T> void addCerealizer(Class<T> clazz, Cerealizer<T, ?> cerealizer) {
     	this.cerealFactory.addCerealizer(clazz, cerealizer);
     }
+
+    /**
+     * Holds the default executor so that its threads are only created once it is needed.
+     */
+    private static class DefaultExecutor {
+        private static final Executor INSTANCE = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "cereal-async-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
 }
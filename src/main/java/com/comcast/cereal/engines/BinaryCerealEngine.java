@@ -0,0 +1,317 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.io.output.WriterOutputStream;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.impl.BinaryGenerator;
+import com.comcast.cereal.impl.BinaryParser;
+import com.comcast.cereal.impl.CerealView;
+import com.comcast.cereal.impl.IndexedBinaryGenerator;
+
+/**
+ * The <i>BinaryCerealEngine</i> converts between a compact, self-describing binary encoding and
+ * Java objects. It encodes the same cereal model as the text engines, so class names and object
+ * references work exactly the same way.
+ *
+ * <p>
+ * A document starts with the byte <code>0xCE</code> and a version byte followed by a single
+ * value. Every value starts with a type byte:
+ * </p>
+ *
+ * <ol start="0">
+ * <li><code>null</code></li>
+ * <li><code>false</code></li>
+ * <li><code>true</code></li>
+ * <li>an integer as a zigzag encoded varint</li>
+ * <li>any other number as an 8 byte IEEE 754 double</li>
+ * <li>a string as a varint byte count followed by its UTF-8 bytes</li>
+ * <li>a <code>byte[]</code> as a varint byte count followed by the bytes</li>
+ * <li>a list ({@link java.util.List}) as a varint count followed by its values</li>
+ * <li>an object ({@link Map}) as a varint count followed by its entries</li>
+ * </ol>
+ *
+ * <p>
+ * Each entry of an object starts with a varint name index. An index of <code>0</code> is
+ * followed by a new name, written like a string, and the names are numbered from
+ * <code>1</code> in the order they first appear in the document. Repeated names are written as
+ * just their index.
+ * </p>
+ *
+ * <p>
+ * An engine created with tags enabled writes objects as type <code>9</code> instead. Entries of
+ * these start with a varint key whose lowest bit is set if the rest is a {@link Cereal#tag()}
+ * and clear if the rest is a name index as above. Classes write the entries that have a tag by
+ * their tag, so the names of tagged fields never appear in the output, and entries without a tag
+ * (including those of classes without any tags) by name. Tags can only be resolved by the class
+ * that declares them, so this engine always streams when tags are enabled and tagged objects
+ * must be read into their class rather than a {@link Map}. Entries with tags that the class does
+ * not know are skipped.
+ * </p>
+ *
+ * <p>
+ * {@link #writeToIndexedBytes(Object)} writes version <code>2</code> instead, an indexed layout
+ * that {@link CerealView} can read values out of without reading the whole document. The header
+ * is followed by the 4 byte big endian offset of the root value, and every offset is counted from
+ * the start of the document. Scalars are written as above, but lists are followed by a 4 byte
+ * count and the 4 byte offset of each value, and objects by a 4 byte count and the offsets of the
+ * name (a string value) and value of each entry, sorted by the UTF-8 bytes of the names. Values
+ * are written before the lists and objects that hold them and each name is written once.
+ * </p>
+ *
+ * <p>
+ * Readers, writers and strings carry every byte as the ISO-8859-1 character with the same
+ * value, so the string methods work as well, but {@link #writeToBytes} and
+ * {@link #readFromBytes} avoid the conversion.
+ * </p>
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class BinaryCerealEngine extends AbstractCerealEngine {
+
+    private static final Charset BYTE_CHARS = Charset.forName("ISO-8859-1");
+
+    private final boolean useTags;
+
+    /**
+     * Create a new BinaryCerealEngine that writes every entry by name.
+     */
+    public BinaryCerealEngine() {
+        this(false);
+    }
+
+    /**
+     * Create a new BinaryCerealEngine.
+     *
+     * @param useTags
+     *            if <code>true</code>, entries with a {@link Cereal#tag()} are written by their
+     *            tag and all reads and writes are streamed
+     */
+    public BinaryCerealEngine(boolean useTags) {
+        this.useTags = useTags;
+    }
+
+    /**
+     * Write the given object to a byte array.
+     *
+     * @param object
+     *            the object to write
+     *
+     * @return the binary encoding of the object
+     *
+     * @throws CerealException
+     *             if the object could not be converted
+     */
+    public byte[] writeToBytes(Object object) throws CerealException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeTo(baos, object, null);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Write the given object to a byte array, converting it as the given class.
+     *
+     * @param t
+     *            the object to write
+     * @param clazz
+     *            the class to convert the object as
+     *
+     * @return the binary encoding of the object
+     *
+     * @throws CerealException
+     *             if the object could not be converted
+     */
+    public <T> byte[] writeToBytes(T t, Class<T> clazz) throws CerealException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeTo(baos, t, clazz);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Read an object of the given class from the given bytes.
+     *
+     * @param bytes
+     *            the binary encoding of the object
+     * @param clazz
+     *            the class to read
+     *
+     * @return the object
+     *
+     * @throws CerealException
+     *             if the bytes could not be read or converted
+     */
+    public <T> T readFromBytes(byte[] bytes, Class<T> clazz) throws CerealException {
+        return readFrom(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    /**
+     * Write the given object to a byte array in the indexed layout, which can be read with a
+     * {@link CerealView}. This always streams the object.
+     *
+     * @param object
+     *            the object to write
+     *
+     * @return the indexed binary encoding of the object
+     *
+     * @throws CerealException
+     *             if the object could not be converted
+     */
+    public byte[] writeToIndexedBytes(Object object) throws CerealException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        stream(object, null, new IndexedBinaryGenerator(baos));
+        return baos.toByteArray();
+    }
+
+    /**
+     * Read an object of the given class from a view of an indexed document. Values that the
+     * class does not use are skipped without being read.
+     *
+     * @param view
+     *            the view of the value to read
+     * @param clazz
+     *            the class to read
+     *
+     * @return the object
+     *
+     * @throws CerealException
+     *             if the value could not be read or converted
+     */
+    public <T> T readFromView(CerealView view, Class<T> clazz) throws CerealException {
+        return bind(view.parser(), clazz);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#writeToString(java.lang.Object)
+     */
+    public String writeToString(Object object) throws CerealException {
+        StringWriter writer = new StringWriter();
+        write(object, writer);
+        return writer.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#writeToString(java.lang.Object,
+     * java.lang.Class)
+     */
+    public <T> String writeToString(T t, Class<T> clazz) throws CerealException {
+        StringWriter writer = new StringWriter();
+        write(t, clazz, writer);
+        return writer.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.InputStream)
+     */
+    protected Object doRead(InputStream inputStream) throws CerealException {
+        BinaryParser parser = new BinaryParser(inputStream);
+        parser.next();
+        return parser.readCereal();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.Reader)
+     */
+    protected Object doRead(Reader reader) throws CerealException {
+        return doRead(new ReaderInputStream(reader, BYTE_CHARS));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doWrite(java.io.OutputStream,
+     * java.lang.Object)
+     */
+    protected void doWrite(OutputStream outputStream, Object cereal) throws CerealException {
+        CerealGenerator generator = createGenerator(outputStream);
+        generator.writeCereal(cereal);
+        generator.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doWrite(java.io.Writer,
+     * java.lang.Object)
+     */
+    protected void doWrite(Writer writer, Object cereal) throws CerealException {
+        doWrite(new WriterOutputStream(writer, BYTE_CHARS), cereal);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.OutputStream)
+     */
+    protected CerealGenerator createGenerator(OutputStream outputStream) throws CerealException {
+        return new BinaryGenerator(outputStream, useTags);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.Writer)
+     */
+    protected CerealGenerator createGenerator(Writer writer) throws CerealException {
+        return createGenerator(new WriterOutputStream(writer, BYTE_CHARS));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.InputStream)
+     */
+    protected CerealParser createParser(InputStream inputStream) throws CerealException {
+        return new BinaryParser(inputStream);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.Reader)
+     */
+    protected CerealParser createParser(Reader reader) throws CerealException {
+        return createParser(new ReaderInputStream(reader, BYTE_CHARS));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#shouldStreamWrites()
+     */
+    protected boolean shouldStreamWrites() {
+        return useTags || super.shouldStreamWrites();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#shouldStreamReads()
+     */
+    protected boolean shouldStreamReads() {
+        return useTags || super.shouldStreamReads();
+    }
+}
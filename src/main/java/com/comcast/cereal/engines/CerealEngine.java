@@ -18,8 +18,14 @@ package com.comcast.cereal.engines;
 import java.io.File;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
@@ -214,6 +220,154 @@ public interface CerealEngine {
      */
     void write(Object object, File file) throws CerealException;
 
+    /**
+     * Cerealize the given object, convert it to the correct representation and write its bytes
+     * into the given buffer, starting at the position of the buffer. Text engines write UTF-8.
+     * The position of the buffer is moved past the bytes that were written.
+     * 
+     * @param t
+     *            the object to convert
+     * @param clazz
+     *            the class definition to use when converting the object. If the full object type is
+     *            a subclass of this type, only this defined class definition (and its superclasses)
+     *            annotations will be used when converting the object.
+     * @param buffer
+     *            the buffer to write to
+     * 
+     * @throws CerealException
+     *             if the conversion failed for any reason or the output does not fit between the
+     *             position and limit of the buffer, in which case the position is left unchanged
+     */
+    <T> void write(T t, Class<T> clazz, ByteBuffer buffer) throws CerealException;
+
+    /**
+     * Cerealize the given object, convert it to the correct representation and write its bytes
+     * into the given buffer, converting it as its runtime type.
+     * 
+     * @param object
+     *            the object to convert
+     * @param buffer
+     *            the buffer to write to
+     * 
+     * @throws CerealException
+     *             if the conversion failed for any reason or the output does not fit between the
+     *             position and limit of the buffer, in which case the position is left unchanged
+     * 
+     * @see #write(Object, Class, ByteBuffer)
+     */
+    void write(Object object, ByteBuffer buffer) throws CerealException;
+
+    /**
+     * Cerealize the given object, convert it to the correct representation and write its bytes to
+     * the given channel. The output is collected in pooled buffers and written with gathering
+     * writes. The channel must be in blocking mode and is not closed.
+     * 
+     * @param t
+     *            the object to convert
+     * @param clazz
+     *            the class definition to use when converting the object. If the full object type is
+     *            a subclass of this type, only this defined class definition (and its superclasses)
+     *            annotations will be used when converting the object.
+     * @param channel
+     *            the channel to write to
+     * 
+     * @throws CerealException
+     *             if the conversion or the write failed for any reason
+     */
+    <T> void write(T t, Class<T> clazz, WritableByteChannel channel) throws CerealException;
+
+    /**
+     * Cerealize the given object, convert it to the correct representation and write its bytes to
+     * the given channel, converting it as its runtime type.
+     * 
+     * @param object
+     *            the object to convert
+     * @param channel
+     *            the channel to write to
+     * 
+     * @throws CerealException
+     *             if the conversion or the write failed for any reason
+     * 
+     * @see #write(Object, Class, WritableByteChannel)
+     */
+    void write(Object object, WritableByteChannel channel) throws CerealException;
+
+    /**
+     * Write each of the objects returned from the given iterator to the given writer as the
+     * elements of a single list, without collecting them first. Every object is converted, written
+     * and flushed before the next one is requested, so any number of objects can be written in
+     * constant memory. Objects written this way never reference each other.
+     * 
+     * @param iterator
+     *            the objects to convert
+     * @param clazz
+     *            the class definition to use when converting the objects. If the full object type
+     *            is a subclass of this type, only this defined class definition (and its
+     *            superclasses) annotations will be used when converting the objects.
+     * @param writer
+     *            the writer where the formatted list should be written
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing any of the objects or this engine
+     *             can not write them one at a time
+     */
+    <T> void writeAll(Iterator<? extends T> iterator, Class<T> clazz, Writer writer)
+            throws CerealException;
+
+    /**
+     * Write each of the objects returned from the given iterator to the given writer as the
+     * elements of a single list, converting each one as its runtime type.
+     * 
+     * @param iterator
+     *            the objects to convert
+     * @param writer
+     *            the writer where the formatted list should be written
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing any of the objects or this engine
+     *             can not write them one at a time
+     * 
+     * @see #writeAll(Iterator, Class, Writer)
+     */
+    void writeAll(Iterator<?> iterator, Writer writer) throws CerealException;
+
+    /**
+     * Write each of the objects returned from the given iterator to the given file as the
+     * elements of a single list.
+     * 
+     * @param iterator
+     *            the objects to convert
+     * @param clazz
+     *            the class definition to use when converting the objects
+     * @param file
+     *            the file where the formatted list should be written
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing any of the objects or this engine
+     *             can not write them one at a time
+     * 
+     * @see #writeAll(Iterator, Class, Writer)
+     */
+    <T> void writeAll(Iterator<? extends T> iterator, Class<T> clazz, File file)
+            throws CerealException;
+
+    /**
+     * Write each of the objects returned from the given iterator to the given file as the
+     * elements of a single list, converting each one as its runtime type.
+     * 
+     * @param iterator
+     *            the objects to convert
+     * @param file
+     *            the file where the formatted list should be written
+     * 
+     * @throws CerealException
+     *             if there was a problem converting or writing any of the objects or this engine
+     *             can not write them one at a time
+     * 
+     * @see #writeAll(Iterator, Class, Writer)
+     */
+    void writeAll(Iterator<?> iterator, File file) throws CerealException;
+
     /**
      * Convert the encoded string into cereal-compatible objects and then de-cerealize that into the
      * correct values.
@@ -291,6 +445,39 @@ public interface CerealEngine {
      */
     <T> T read(File file, Class<T> clazz) throws CerealException;
 
+    /**
+     * Read the remaining bytes of the given buffer and convert them into an object of the given
+     * class. Text engines read UTF-8. Reading may move the position of the buffer.
+     * 
+     * @param buffer
+     *            the buffer to read from
+     * @param clazz
+     *            the class to read
+     * 
+     * @return the object
+     * 
+     * @throws CerealException
+     *             if the bytes were not formatted correctly or the conversion failed
+     */
+    <T> T read(ByteBuffer buffer, Class<T> clazz) throws CerealException;
+
+    /**
+     * Read bytes from the given channel and convert them into an object of the given class. The
+     * channel must be in blocking mode and is not closed.
+     * 
+     * @param channel
+     *            the channel to read from
+     * @param clazz
+     *            the class to read
+     * 
+     * @return the object
+     * 
+     * @throws CerealException
+     *             if the channel could not be read, the bytes were not formatted correctly or the
+     *             conversion failed
+     */
+    <T> T read(ReadableByteChannel channel, Class<T> clazz) throws CerealException;
+
     /**
      * Convert the encoded string into cereal-compatible objects and then de-cerealize that into the
      * correct values. Encoded cereal-values that are missing (the name/key is missing) will not
@@ -370,4 +557,52 @@ public interface CerealEngine {
      */
     void apply(File file, Object target) throws CerealException;
 
+    /**
+     * Cerealize the given object and write it to the given file without blocking the calling
+     * thread. The conversion runs on the engine's executor and each part of the output is written
+     * with asynchronous file I/O as soon as it is ready, so converting and writing overlap. The
+     * file write settings apply just like they do to {@link #write(Object, Class, File)}.
+     * 
+     * @param t
+     *            the object to convert
+     * @param clazz
+     *            the class definition to use when converting the object
+     * @param path
+     *            the file where the formatted output should be written
+     * 
+     * @return a future that completes once the file has been written. If anything failed, getting
+     *         the result throws an {@link java.util.concurrent.ExecutionException} caused by a
+     *         {@link CerealException}.
+     */
+    <T> Future<Void> writeAsync(T t, Class<T> clazz, Path path);
+
+    /**
+     * Cerealize the given object and write it to the given file without blocking the calling
+     * thread, converting it as its runtime type.
+     * 
+     * @param object
+     *            the object to convert
+     * @param path
+     *            the file where the formatted output should be written
+     * 
+     * @return a future that completes once the file has been written
+     * 
+     * @see #writeAsync(Object, Class, Path)
+     */
+    Future<Void> writeAsync(Object object, Path path);
+
+    /**
+     * Read an object of the given class from the given file without blocking the calling thread.
+     * The conversion runs on the engine's executor while the file is read ahead with asynchronous
+     * file I/O.
+     * 
+     * @param path
+     *            the file to read
+     * @param clazz
+     *            the class to read
+     * 
+     * @return a future for the object. If anything failed, getting the result throws an
+     *         {@link java.util.concurrent.ExecutionException} caused by a {@link CerealException}.
+     */
+    <T> Future<T> readAsync(Path path, Class<T> clazz);
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
+import com.comcast.cereal.Cerealizer;
+import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.UncheckedCerealException;
+
+/**
+ * A lazy {@link Iterator} over a sequence of values that are read and converted one at a time, so
+ * that any number of values can be read in constant memory. The cerealizer, object cache and
+ * parser buffers are shared by all values.
+ *
+ * <p>
+ * Failures while reading are thrown as an {@link UncheckedCerealException}. The source is closed
+ * once the last value has been read, when reading fails or when {@link #close()} is called.
+ * </p>
+ *
+ * @param <T>
+ *            the type of the values
+ *
+ * @see JsonCerealEngine#readLines(java.io.Reader, Class)
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class CerealIterator<T> implements Iterator<T>, Closeable {
+
+    private final AbstractCerealEngine engine;
+    private final CerealParser parser;
+    private final Class<T> clazz;
+    @SuppressWarnings("rawtypes")
+    private final Cerealizer cerealizer;
+    private final ObjectCache objectCache;
+    private final Closeable source;
+
+    /* Whether the parser is on the first token of the next value and whether there is one */
+    private boolean ready;
+    private boolean done;
+
+    @SuppressWarnings("rawtypes")
+    CerealIterator(AbstractCerealEngine engine, CerealParser parser, Class<T> clazz,
+            Cerealizer cerealizer, ObjectCache objectCache, Closeable source) {
+        this.engine = engine;
+        this.parser = parser;
+        this.clazz = clazz;
+        this.cerealizer = cerealizer;
+        this.objectCache = objectCache;
+        this.source = source;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+        if (!ready && !done) {
+            try {
+                done = (Token.END == parser.next());
+            } catch (CerealException ex) {
+                throw fail(ex);
+            }
+            ready = true;
+            if (done) {
+                close();
+            }
+        }
+        return !done;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.util.Iterator#next()
+     */
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        ready = false;
+        try {
+            return engine.bindValue(parser, clazz, cerealizer, objectCache);
+        } catch (CerealException ex) {
+            throw fail(ex);
+        }
+    }
+
+    /**
+     * Values can not be removed.
+     *
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop reading and close the source. Afterwards, {@link #hasNext()} returns <code>false</code>.
+     *
+     * @see java.io.Closeable#close()
+     */
+    public void close() {
+        done = true;
+        if (null != source) {
+            try {
+                source.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private UncheckedCerealException fail(CerealException ex) {
+        close();
+        return new UncheckedCerealException(ex);
+    }
+}
@@ -15,19 +15,28 @@
  */
 package com.comcast.cereal.engines;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.io.IOUtils;
 
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
 import com.comcast.cereal.annotations.Cereal;
 import com.comcast.cereal.annotations.CerealObject;
+import com.comcast.cereal.impl.ByteBufferInputStream;
+import com.comcast.cereal.impl.JsonGenerator;
 import com.comcast.cereal.impl.JsonHelper;
+import com.comcast.cereal.impl.JsonParser;
+import com.comcast.cereal.impl.Utf8JsonParser;
+import com.comcast.cereal.impl.Utf8Writer;
 
 /**
  * A <i>JsonCerealEngine</i> is capable of converting between JSON and Java objects.
@@ -59,19 +68,123 @@ public class JsonCerealEngine extends AbstractCerealEngine {
         this.prettyPrint = prettyPrint;
     }
 
+    /**
+     * Lazily read newline delimited JSON (JSON Lines), where every line is a separate JSON value,
+     * from the given reader. Each value is read and converted to an object of the given class
+     * when the iterator gets to it. Whitespace between values, including blank lines, is ignored.
+     * The reader is not closed.
+     * 
+     * @param reader
+     *            the reader to read from
+     * @param clazz
+     *            the class of every value
+     * 
+     * @return an iterator over the values
+     * 
+     * @throws CerealException
+     *             if the cerealizer for the class could not be created
+     */
+    public <T> CerealIterator<T> readLines(Reader reader, Class<T> clazz) throws CerealException {
+        return iterate(new JsonParser(reader, true), clazz, null);
+    }
+
+    /**
+     * Lazily read newline delimited JSON (JSON Lines) in UTF-8 from the given input stream. The
+     * input stream is not closed.
+     * 
+     * @param inputStream
+     *            the input stream to read from
+     * @param clazz
+     *            the class of every value
+     * 
+     * @return an iterator over the values
+     * 
+     * @throws CerealException
+     *             if the cerealizer for the class could not be created
+     * 
+     * @see #readLines(Reader, Class)
+     */
+    public <T> CerealIterator<T> readLines(InputStream inputStream, Class<T> clazz)
+            throws CerealException {
+        return iterate(new Utf8JsonParser(decode(inputStream), true), clazz, null);
+    }
+
+    /**
+     * Lazily read newline delimited JSON (JSON Lines) in UTF-8 from the given file. The file is
+     * closed once the last value has been read or the iterator is closed.
+     * 
+     * @param file
+     *            the file to read from
+     * @param clazz
+     *            the class of every value
+     * 
+     * @return an iterator over the values
+     * 
+     * @throws CerealException
+     *             if the file could not be opened or the cerealizer for the class could not be
+     *             created
+     * 
+     * @see #readLines(Reader, Class)
+     */
+    public <T> CerealIterator<T> readLines(File file, Class<T> clazz) throws CerealException {
+        ByteBuffer mapped = map(file);
+        if (null != mapped && !isEncoded(mapped)) {
+            return iterate(new Utf8JsonParser(mapped, true), clazz, null);
+        } else if (null != mapped) {
+            return readLines(new ByteBufferInputStream(mapped), clazz);
+        }
+
+        InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
+                    + " for reading", ioex);
+        }
+
+        boolean opened = false;
+        try {
+            InputStream input = decode(inputStream);
+            CerealIterator<T> iterator = iterate(new Utf8JsonParser(input, true), clazz, input);
+            opened = true;
+            return iterator;
+        } finally {
+            if (!opened) {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.InputStream)
      */
     protected Object doRead(InputStream inputStream) throws CerealException {
-        Reader reader = new InputStreamReader(inputStream);
         try {
-            return doRead(reader);
+            return new JsonHelper().read(inputStream);
         } finally {
-            IOUtils.closeQuietly(reader);
+            IOUtils.closeQuietly(inputStream);
         }
     }
 
+    /**
+     * JSON is always encoded as UTF-8, which is parsed straight from the buffer.
+     *
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.nio.ByteBuffer)
+     */
+    protected Object doRead(ByteBuffer buffer) throws CerealException {
+        return new JsonHelper().read(new Utf8JsonParser(buffer));
+    }
+
+    /**
+     * The string is parsed in place rather than through a reader.
+     *
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.lang.String)
+     */
+    protected Object doRead(String string) throws CerealException {
+        return new JsonHelper().read(new JsonParser(string));
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.Reader)
@@ -87,7 +200,7 @@ public class JsonCerealEngine extends AbstractCerealEngine {
      * java.lang.Object)
      */
     protected void doWrite(OutputStream outputStream, Object cereal) throws CerealException {
-        Writer writer = new OutputStreamWriter(outputStream);
+        Writer writer = new Utf8Writer(outputStream);
         try {
             doWrite(writer, cereal);
         } finally {
@@ -108,4 +221,54 @@ public class JsonCerealEngine extends AbstractCerealEngine {
             throw new CerealException("Failed while writing to JSON", ex);
         }
     }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.OutputStream)
+     */
+    protected CerealGenerator createGenerator(OutputStream outputStream) throws CerealException {
+        return createGenerator(new Utf8Writer(outputStream));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.Writer)
+     */
+    protected CerealGenerator createGenerator(Writer writer) throws CerealException {
+        return new JsonGenerator(writer, prettyPrint);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.InputStream)
+     */
+    protected CerealParser createParser(InputStream inputStream) throws CerealException {
+        return new Utf8JsonParser(inputStream);
+    }
+
+    /**
+     * JSON is always encoded as UTF-8, which is parsed straight from the buffer.
+     *
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.nio.ByteBuffer)
+     */
+    protected CerealParser createParser(ByteBuffer buffer) throws CerealException {
+        return new Utf8JsonParser(buffer);
+    }
+
+    /**
+     * The string is parsed in place rather than through a reader.
+     *
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.lang.String)
+     */
+    protected CerealParser createParser(String string) throws CerealException {
+        return new JsonParser(string);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.Reader)
+     */
+    protected CerealParser createParser(Reader reader) throws CerealException {
+        return new JsonParser(reader);
+    }
 }
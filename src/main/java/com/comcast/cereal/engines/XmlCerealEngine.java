@@ -17,14 +17,14 @@ package com.comcast.cereal.engines;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Map;
 
-import org.apache.commons.io.input.ReaderInputStream;
-
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.impl.Utf8Writer;
+import com.comcast.cereal.impl.XmlGenerator;
 import com.comcast.cereal.impl.XmlHelper;
 
 /**
@@ -55,6 +55,8 @@ import com.comcast.cereal.impl.XmlHelper;
 public class XmlCerealEngine extends AbstractCerealEngine {
 
     private XmlHelper helper;
+    private boolean prettyPrint;
+    private String rootElementName;
 
     /**
      * Create a new XmlCerealEngine object without indentation.
@@ -87,6 +89,8 @@ public class XmlCerealEngine extends AbstractCerealEngine {
     public XmlCerealEngine(boolean prettyPrint, String name) {
         super();
         this.helper = new XmlHelper(prettyPrint, name);
+        this.prettyPrint = prettyPrint;
+        this.rootElementName = name;
     }
 
     /*
@@ -95,7 +99,7 @@ public class XmlCerealEngine extends AbstractCerealEngine {
      * java.lang.Object)
      */
     protected void doWrite(OutputStream outputStream, Object cereal) throws CerealException {
-        doWrite(new OutputStreamWriter(outputStream), cereal);
+        doWrite(new Utf8Writer(outputStream), cereal);
     }
 
     /*
@@ -111,6 +115,22 @@ public class XmlCerealEngine extends AbstractCerealEngine {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.OutputStream)
+     */
+    protected CerealGenerator createGenerator(OutputStream outputStream) throws CerealException {
+        return createGenerator(new Utf8Writer(outputStream));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.Writer)
+     */
+    protected CerealGenerator createGenerator(Writer writer) throws CerealException {
+        return new XmlGenerator(writer, prettyPrint, rootElementName);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.InputStream)
@@ -128,6 +148,10 @@ public class XmlCerealEngine extends AbstractCerealEngine {
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.Reader)
      */
     protected Object doRead(Reader reader) throws CerealException {
-        return doRead(new ReaderInputStream(reader));
+        try {
+            return helper.read(reader);
+        } catch (Exception ex) {
+            throw new CerealException("Failed while reading XML", ex);
+        }
     }
 }
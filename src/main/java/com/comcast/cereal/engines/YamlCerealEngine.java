@@ -23,16 +23,21 @@ import static org.yaml.snakeyaml.DumperOptions.FlowStyle.BLOCK;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.reader.UnicodeReader;
 
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
 import com.comcast.cereal.annotations.Cereal;
 import com.comcast.cereal.annotations.CerealObject;
+import com.comcast.cereal.impl.Utf8Writer;
+import com.comcast.cereal.impl.YamlGenerator;
+import com.comcast.cereal.impl.YamlParser;
 
 /**
  * A <i>YamlCerealEngine</i> is capable of converting between YAML and Java objects.
@@ -45,6 +50,7 @@ import com.comcast.cereal.annotations.CerealObject;
 public class YamlCerealEngine extends AbstractCerealEngine {
 
     private Yaml yaml;
+    private DumperOptions options;
 
     /**
      * Create a new YamlCerealEngine object without block output and an indent width of 2. Block
@@ -82,6 +88,7 @@ public class YamlCerealEngine extends AbstractCerealEngine {
         options.setDefaultFlowStyle(useBlockFlow ? BLOCK : AUTO);
 
         this.yaml = new Yaml(options);
+        this.options = options;
     }
 
     /*
@@ -90,7 +97,7 @@ public class YamlCerealEngine extends AbstractCerealEngine {
      * java.lang.Object)
      */
     protected void doWrite(OutputStream outputStream, Object cereal) throws CerealException {
-        yaml.dump(cereal, new OutputStreamWriter(outputStream));
+        doWrite(new Utf8Writer(outputStream), cereal);
     }
 
     /*
@@ -99,7 +106,25 @@ public class YamlCerealEngine extends AbstractCerealEngine {
      * java.lang.Object)
      */
     protected void doWrite(Writer writer, Object cereal) throws CerealException {
-        yaml.dump(cereal, writer);
+        CerealGenerator generator = createGenerator(writer);
+        generator.writeCereal(cereal);
+        generator.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.OutputStream)
+     */
+    protected CerealGenerator createGenerator(OutputStream outputStream) throws CerealException {
+        return createGenerator(new Utf8Writer(outputStream));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createGenerator(java.io.Writer)
+     */
+    protected CerealGenerator createGenerator(Writer writer) throws CerealException {
+        return new YamlGenerator(writer, options);
     }
 
     /*
@@ -107,7 +132,10 @@ public class YamlCerealEngine extends AbstractCerealEngine {
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.InputStream)
      */
     protected Object doRead(InputStream inputStream) throws CerealException {
-        return yaml.load(inputStream);
+        /* Yaml keeps state between loads, so the asynchronous calls of an engine take turns */
+        synchronized (yaml) {
+            return yaml.load(inputStream);
+        }
     }
 
     /*
@@ -115,6 +143,24 @@ public class YamlCerealEngine extends AbstractCerealEngine {
      * @see com.comcast.cereal.engines.AbstractCerealEngine#doRead(java.io.Reader)
      */
     protected Object doRead(Reader reader) throws CerealException {
-        return yaml.load(reader);
+        synchronized (yaml) {
+            return yaml.load(reader);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.InputStream)
+     */
+    protected CerealParser createParser(InputStream inputStream) throws CerealException {
+        return createParser(new UnicodeReader(inputStream));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.engines.AbstractCerealEngine#createParser(java.io.Reader)
+     */
+    protected CerealParser createParser(Reader reader) throws CerealException {
+        return new YamlParser(reader);
     }
 }
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+
+/**
+ * The JSON state machine shared by {@link JsonParser}, which reads characters, and
+ * {@link Utf8JsonParser}, which reads UTF-8 bytes. Every character that structures a JSON
+ * document is ASCII, so the subclasses only have to know how to read the text of strings and
+ * unquoted values. Both accept the same input as the <code>org.json</code> library and produce the
+ * same values, so numbers are read as {@link Integer}, {@link Long} or {@link Double} and
+ * unquoted text is read as a {@link String}.
+ *
+ * @see com.comcast.cereal.engines.JsonCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public abstract class AbstractJsonParser implements CerealParser {
+
+    static final int BUFFER_SIZE = 8192;
+    static final int KEY_CACHE_SIZE = 256;
+
+    private static final String UNQUOTED_STOP = ",:]}/\\\"[{;=#";
+
+    /* Characters that end unquoted text, indexed by character */
+    private static final boolean[] STOP = new boolean[128];
+
+    static {
+        for (int i = 0; i < ' '; i++) {
+            STOP[i] = true;
+        }
+        for (int i = 0; i < UNQUOTED_STOP.length(); i++) {
+            STOP[UNQUOTED_STOP.charAt(i)] = true;
+        }
+    }
+
+    private final boolean multipleValues;
+
+    /* Whether each open container is an object (true) or an array (false) */
+    private boolean[] objects = new boolean[16];
+    private int depth;
+
+    private Token token;
+    private String name;
+    private Object value;
+
+    /**
+     * Create a new parser.
+     *
+     * @param multipleValues
+     *            if <code>true</code>, the input is a sequence of values separated by whitespace
+     *            (such as newline delimited JSON). Calling {@link #next()} after a value starts
+     *            the next one and {@link Token#END} is only returned at the end of the input.
+     */
+    AbstractJsonParser(boolean multipleValues) {
+        this.multipleValues = multipleValues;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#next()
+     */
+    public Token next() throws CerealException {
+        if (null == token) {
+            return readRootValue();
+        } else if (Token.NAME == token) {
+            return readValue();
+        }
+
+        int c;
+        switch (token) {
+        case START_OBJECT:
+            c = nextClean();
+            if (c == '}') {
+                return end(Token.END_OBJECT);
+            }
+            back();
+            return readName();
+        case START_ARRAY:
+            c = nextClean();
+            if (c == ']') {
+                return end(Token.END_ARRAY);
+            }
+            back();
+            return readElement();
+        case END:
+            return token;
+        default:
+            break;
+        }
+
+        /* A value was just completed, see what follows it */
+        if (depth == 0) {
+            return multipleValues ? readRootValue() : (token = Token.END);
+        }
+
+        c = nextClean();
+        if (objects[depth - 1]) {
+            if (c == ',' || c == ';') {
+                if (nextClean() == '}') {
+                    return end(Token.END_OBJECT);
+                }
+                back();
+                return readName();
+            } else if (c == '}') {
+                return end(Token.END_OBJECT);
+            }
+            throw syntaxError("Expected a ',' or '}'");
+        } else {
+            if (c == ',') {
+                if (nextClean() == ']') {
+                    return end(Token.END_ARRAY);
+                }
+                back();
+                return readElement();
+            } else if (c == ']') {
+                return end(Token.END_ARRAY);
+            }
+            throw syntaxError("Expected a ',' or ']'");
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getToken()
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getValue()
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#skipValue()
+     */
+    public void skipValue() throws CerealException {
+        if (Token.START_OBJECT == token || Token.START_ARRAY == token) {
+            int target = depth - 1;
+            while (depth > target) {
+                if (Token.END == next()) {
+                    throw syntaxError("Unexpected end of input");
+                }
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#readCereal()
+     */
+    public Object readCereal() throws CerealException {
+        switch (token) {
+        case VALUE:
+            return value;
+        case START_OBJECT:
+            Map<String, Object> map = new HashMap<String, Object>();
+            while (Token.NAME == next()) {
+                String key = name;
+                if (map.containsKey(key)) {
+                    throw syntaxError("Duplicate key \"" + key + "\"");
+                }
+                next();
+                map.put(key, readCereal());
+            }
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<Object>();
+            while (Token.END_ARRAY != next()) {
+                list.add(readCereal());
+            }
+            return list;
+        default:
+            throw syntaxError("Expected a value");
+        }
+    }
+
+    /**
+     * Get the next character that is not whitespace or <code>0</code> at the end of the input.
+     * Characters that are not ASCII may be returned as any value above <code>127</code>.
+     */
+    abstract int nextClean() throws CerealException;
+
+    /**
+     * Step back so that the character that was just read is read again.
+     */
+    abstract void back();
+
+    /**
+     * Read the rest of a quoted string. The opening quote has already been read.
+     */
+    abstract String readString(int quote) throws CerealException;
+
+    /**
+     * Read the rest of a quoted object key. The opening quote has already been read. This is the
+     * same as {@link #readString(int)}, but repeated keys should share a single string.
+     */
+    abstract String readKey(int quote) throws CerealException;
+
+    /**
+     * Read unquoted text that starts with the character that was just read and convert it to a
+     * value with {@link #toValue(char[], int, int)}. The first character is never a stop
+     * character.
+     */
+    abstract Object readUnquoted() throws CerealException;
+
+    /**
+     * Create an exception for a syntax error at the current position.
+     */
+    abstract CerealException syntaxError(String message);
+
+    private Token end(Token end) {
+        depth--;
+        return token = end;
+    }
+
+    private Token push(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+        return token = object ? Token.START_OBJECT : Token.START_ARRAY;
+    }
+
+    /**
+     * Read the name of the next entry in an object, including the ':' that follows it.
+     */
+    private Token readName() throws CerealException {
+        int c = nextClean();
+        if (c == 0) {
+            throw syntaxError("A JSONObject text must end with '}'");
+        } else if (c == '"' || c == '\'') {
+            name = readKey(c);
+        } else if (c == '{' || c == '[') {
+            throw syntaxError("Expected a key");
+        } else {
+            name = String.valueOf(readUnquoted(c));
+        }
+
+        if (nextClean() != ':') {
+            throw syntaxError("Expected a ':' after a key");
+        }
+        return token = Token.NAME;
+    }
+
+    /**
+     * Read the next element of an array. A missing element is read as <code>null</code>.
+     */
+    private Token readElement() throws CerealException {
+        if (nextClean() == ',') {
+            back();
+            value = null;
+            return token = Token.VALUE;
+        }
+        back();
+        return readValue();
+    }
+
+    /**
+     * Read a value that is not in an object or array. If there can be multiple values, the end of
+     * the input is read as {@link Token#END} instead.
+     */
+    private Token readRootValue() throws CerealException {
+        if (multipleValues) {
+            if (nextClean() == 0) {
+                return token = Token.END;
+            }
+            back();
+        }
+        return readValue();
+    }
+
+    private Token readValue() throws CerealException {
+        int c = nextClean();
+        switch (c) {
+        case '"':
+        case '\'':
+            value = readString(c);
+            return token = Token.VALUE;
+        case '{':
+            return push(true);
+        case '[':
+            return push(false);
+        default:
+            value = readUnquoted(c);
+            return token = Token.VALUE;
+        }
+    }
+
+    /**
+     * Read unquoted text starting with the given character, which was just read.
+     */
+    private Object readUnquoted(int first) throws CerealException {
+        if (first == 0 || isStop(first)) {
+            if (first != 0) {
+                back();
+            }
+            throw syntaxError("Missing value");
+        }
+        return readUnquoted();
+    }
+
+    static boolean isStop(int c) {
+        return c < 128 && STOP[c];
+    }
+
+    /**
+     * Convert unquoted text to a value. Plain integers are converted directly from the characters,
+     * everything else is handled by {@link #stringToValue(String)}.
+     */
+    static Object toValue(char[] chars, int start, int length) {
+        /* Trailing spaces are part of unquoted text but are trimmed from the value */
+        while (length > 0 && chars[start + length - 1] <= ' ') {
+            length--;
+        }
+
+        int end = start + length;
+        int i = chars[start] == '-' ? start + 1 : start;
+        int digits = end - i;
+
+        /*
+         * Integers are only numbers if they match their canonical form, so there can be no leading
+         * zeros and no negative zero. At most 18 digits always fit in a long.
+         */
+        if (digits > 0 && digits <= 18 && (chars[i] != '0' || (digits == 1 && i == start))) {
+            long number = 0;
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                number = number * 10 + (c - '0');
+            }
+            if (i == end) {
+                if (chars[start] == '-') {
+                    number = -number;
+                }
+                if (number == (int) number) {
+                    return Integer.valueOf((int) number);
+                }
+                return Long.valueOf(number);
+            }
+        }
+
+        return stringToValue(new String(chars, start, length));
+    }
+
+    /**
+     * Convert unquoted text to a value following the same rules as
+     * <code>org.json.JSONObject.stringToValue</code>.
+     */
+    static Object stringToValue(String string) {
+        if (string.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        } else if (string.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        } else if (string.equalsIgnoreCase("null")) {
+            return null;
+        }
+
+        /* If it might be a number, try converting it, otherwise it is just a string */
+        char b = string.charAt(0);
+        if ((b >= '0' && b <= '9') || b == '-') {
+            try {
+                if (string.indexOf('.') > -1 || string.indexOf('e') > -1
+                        || string.indexOf('E') > -1) {
+                    Double d = Double.valueOf(string);
+                    if (!d.isInfinite() && !d.isNaN()) {
+                        return d;
+                    }
+                } else {
+                    Long l = Long.valueOf(string);
+                    if (string.equals(l.toString())) {
+                        if (l.longValue() == l.intValue()) {
+                            return Integer.valueOf(l.intValue());
+                        } else {
+                            return l;
+                        }
+                    }
+                }
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return string;
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.comcast.cereal.CerealException;
+
+/**
+ * An {@link InputStream} from a file that reads ahead with an {@link AsynchronousFileChannel}.
+ * While one buffer is being consumed the next one is already being read, so whatever consumes the
+ * input rarely has to wait for the file.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class AsyncFileInput extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AsynchronousFileChannel channel;
+    private ByteBuffer current = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer next = ByteBuffer.allocate(BUFFER_SIZE);
+    private Future<Integer> pending;
+    private long position;
+
+    /**
+     * Open the given file for reading and start reading its first buffer.
+     *
+     * @param file
+     *            the file to read
+     *
+     * @throws CerealException
+     *             if the file could not be opened
+     */
+    public AsyncFileInput(File file) throws CerealException {
+        try {
+            this.channel = AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to open the file " + file.getAbsolutePath()
+                    + " for reading", ioex);
+        }
+        current.limit(0);
+        pending = channel.read(next, position);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+        if (!current.hasRemaining() && !advance()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        } else if (!current.hasRemaining() && !advance()) {
+            return -1;
+        }
+
+        int count = Math.min(length, current.remaining());
+        current.get(bytes, offset, count);
+        return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() {
+        return current.remaining();
+    }
+
+    /**
+     * Stop reading and close the file.
+     *
+     * @see java.io.InputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+        pending = null;
+        channel.close();
+    }
+
+    /**
+     * Wait for the buffer that is being read, switch to it and start reading the one after it.
+     *
+     * @return <code>false</code> at the end of the file
+     */
+    private boolean advance() throws IOException {
+        while (null != pending) {
+            int count = await(pending);
+            if (count < 0) {
+                pending = null;
+                return false;
+            }
+            position += count;
+
+            ByteBuffer filled = next;
+            next = current;
+            current = filled;
+            current.flip();
+            next.clear();
+            pending = channel.read(next, position);
+
+            if (current.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException eex) {
+            throw new IOException("Failed to read the file", eex.getCause());
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the file");
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+
+import com.comcast.cereal.CerealException;
+
+/**
+ * An {@link OutputStream} to a file that writes each buffer with an {@link AsynchronousFileChannel}
+ * as soon as it is full, so that whatever produces the output keeps going while earlier buffers
+ * are written. A few buffers are in flight at a time and the producer only waits once all of them
+ * are. The buffers are borrowed from the same pool as {@link ChannelOutput} and returned when
+ * the stream is committed or closed. Like {@link FileOutput}, the file is only replaced once the
+ * stream is committed and the atomic and sync modes work the same way.
+ *
+ * @see FileOutput
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class AsyncFileOutput extends OutputStream {
+
+    private static final int MAX_BUFFERS = 8;
+
+    private final File file;
+    private final File temp;
+    private final boolean sync;
+    private final AsynchronousFileChannel channel;
+    private final Queue<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+    private final Queue<PendingWrite> pending = new ArrayDeque<PendingWrite>();
+    private int allocated;
+    private ByteBuffer buffer;
+    private long position;
+    private boolean closed;
+
+    /**
+     * Open the given file for writing.
+     *
+     * @param file
+     *            the file to write
+     * @param atomic
+     *            if <code>true</code>, the file is replaced in a single step when the stream is
+     *            committed
+     * @param sync
+     *            if <code>true</code>, the file is forced to the storage device when the stream is
+     *            committed
+     *
+     * @throws CerealException
+     *             if the file could not be opened
+     */
+    public AsyncFileOutput(File file, boolean atomic, boolean sync) throws CerealException {
+        this.file = file.getAbsoluteFile();
+        this.sync = sync;
+        File temp = null;
+        try {
+            temp = atomic ? FileOutput.createTemp(this.file) : null;
+            this.channel = AsynchronousFileChannel.open((atomic ? temp : this.file).toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException ioex) {
+            if (null != temp) {
+                temp.delete();
+            }
+            throw new CerealException("Failed to open the file " + this.file.getPath()
+                    + " for writing", ioex);
+        }
+        this.temp = temp;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        if (null == buffer || !buffer.hasRemaining()) {
+            nextBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (null == buffer || !buffer.hasRemaining()) {
+                nextBuffer();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Start writing whatever is buffered. This does not wait for the write or sync the file.
+     *
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        if (null != buffer) {
+            submit();
+        }
+    }
+
+    /**
+     * Wait for every write to finish and then finish the file. In atomic mode, this is when the
+     * file is replaced.
+     *
+     * @throws CerealException
+     *             if the file could not be written, in which case the target is left as it was
+     *             in atomic mode
+     */
+    public void commit() throws CerealException {
+        try {
+            flush();
+            while (!pending.isEmpty()) {
+                complete(pending.poll());
+            }
+            if (sync) {
+                channel.force(true);
+            }
+            closed = true;
+            release();
+            channel.close();
+
+            if (null != temp) {
+                FileOutput.replace(temp, file, sync);
+            }
+        } catch (IOException ioex) {
+            abandon();
+            throw new CerealException("Failed while writing the file " + file.getPath(), ioex);
+        }
+    }
+
+    /**
+     * Close the file. If it was not committed, whatever has not been written is dropped and in
+     * atomic mode the temporary file is deleted, leaving the target as it was.
+     *
+     * @see java.io.OutputStream#close()
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            abandon();
+        }
+    }
+
+    private void abandon() {
+        closed = true;
+        release();
+        IOUtils.closeQuietly(channel);
+        if (null != temp) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Return the buffers that are not being written to the pool. The buffers of writes that are
+     * still pending are left to the garbage collector, as the channel may still read them.
+     */
+    private void release() {
+        if (null != buffer) {
+            free.add(buffer);
+            buffer = null;
+        }
+        while (!free.isEmpty()) {
+            ChannelOutput.giveBack(free.poll());
+        }
+        pending.clear();
+    }
+
+    /**
+     * Start writing the current buffer, if there is one, and get an empty buffer to continue with.
+     */
+    private void nextBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("The file output is closed");
+        } else if (null != buffer) {
+            submit();
+        }
+
+        if (free.isEmpty()) {
+            if (allocated < MAX_BUFFERS) {
+                free.add(ChannelOutput.borrow());
+                allocated++;
+            } else {
+                complete(pending.poll());
+            }
+        }
+        buffer = free.poll();
+    }
+
+    /**
+     * Start writing the current buffer at the end of what was written so far.
+     */
+    private void submit() {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            pending.add(new PendingWrite(buffer, position, channel.write(buffer, position)));
+            position += buffer.limit();
+        } else {
+            buffer.clear();
+            free.add(buffer);
+        }
+        buffer = null;
+    }
+
+    /**
+     * Wait for the given write to finish, writing whatever was left if it was only partially
+     * written, and make its buffer available again.
+     */
+    private void complete(PendingWrite write) throws IOException {
+        ByteBuffer bytes = write.buffer;
+        await(write.future);
+        while (bytes.hasRemaining()) {
+            await(channel.write(bytes, write.position + bytes.position()));
+        }
+        bytes.clear();
+        free.add(bytes);
+    }
+
+    private static void await(Future<Integer> future) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException eex) {
+            throw new IOException("Failed to write to the file", eex.getCause());
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to the file");
+        }
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer buffer;
+        private final long position;
+        private final Future<Integer> future;
+
+        private PendingWrite(ByteBuffer buffer, long position, Future<Integer> future) {
+            this.buffer = buffer;
+            this.position = position;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.PrimitiveCerealGenerator;
+import com.comcast.cereal.TaggedCerealGenerator;
+import com.comcast.cereal.engines.BinaryCerealEngine;
+
+/**
+ * A {@link CerealGenerator} that writes the compact binary encoding documented on
+ * {@link BinaryCerealEngine} to an {@link OutputStream} through a reusable buffer.
+ *
+ * @see BinaryCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class BinaryGenerator implements TaggedCerealGenerator, PrimitiveCerealGenerator {
+
+    static final int MAGIC = 0xCE;
+    static final int VERSION = 1;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_FALSE = 1;
+    static final int TYPE_TRUE = 2;
+    static final int TYPE_INTEGER = 3;
+    static final int TYPE_DOUBLE = 4;
+    static final int TYPE_STRING = 5;
+    static final int TYPE_BYTES = 6;
+    static final int TYPE_LIST = 7;
+    static final int TYPE_OBJECT = 8;
+    static final int TYPE_TAGGED_OBJECT = 9;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream outputStream;
+    private final boolean writesTags;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean started;
+
+    /* The index of every name written so far, names are only written in full once */
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+    /* The declared size and number of values written of every open object or list */
+    private int depth;
+    private int[] sizes = new int[16];
+    private int[] counts = new int[16];
+    private boolean[] objects = new boolean[16];
+
+    /**
+     * Create a new BinaryGenerator that writes a single document to the given output stream.
+     *
+     * @param outputStream
+     *            where to write the binary output to
+     */
+    public BinaryGenerator(OutputStream outputStream) {
+        this(outputStream, false);
+    }
+
+    /**
+     * Create a new BinaryGenerator that writes a single document to the given output stream.
+     *
+     * @param outputStream
+     *            where to write the binary output to
+     * @param writesTags
+     *            if <code>true</code>, all objects are written as tagged objects so that entries
+     *            can be written with {@link #writeTag(int)}
+     */
+    public BinaryGenerator(OutputStream outputStream, boolean writesTags) {
+        this.outputStream = outputStream;
+        this.writesTags = writesTags;
+    }
+
+    /**
+     * Entries are written in the same order the cereal {@link Map} iterates its keys.
+     *
+     * @see com.comcast.cereal.CerealGenerator#orderNames(java.lang.String[])
+     */
+    public String[] orderNames(String[] names) {
+        return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartObject(int)
+     */
+    public void writeStartObject(int size) throws CerealException {
+        startContainer(writesTags ? TYPE_TAGGED_OBJECT : TYPE_OBJECT, size, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeName(java.lang.String)
+     */
+    public void writeName(String name) throws CerealException {
+        counts[depth - 1]++;
+        Integer index = names.get(name);
+        if (null == index) {
+            names.put(name, names.size() + 1);
+            writeVarLong(0);
+            writeString(name);
+        } else {
+            writeVarLong(writesTags ? (long) index << 1 : index);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.TaggedCerealGenerator#writesTags()
+     */
+    public boolean writesTags() {
+        return writesTags;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.TaggedCerealGenerator#writeTag(int)
+     */
+    public void writeTag(int tag) throws CerealException {
+        if (!writesTags) {
+            throw new CerealException("This generator does not write tags");
+        }
+        counts[depth - 1]++;
+        writeVarLong(((long) tag << 1) | 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndObject()
+     */
+    public void writeEndObject() throws CerealException {
+        endContainer();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartArray(int)
+     */
+    public void writeStartArray(int size) throws CerealException {
+        if (size == UNKNOWN_SIZE) {
+            throw new CerealException("Binary cereal needs the size of every list up front");
+        }
+        startContainer(TYPE_LIST, size, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndArray()
+     */
+    public void writeEndArray() throws CerealException {
+        endContainer();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeValue(java.lang.Object)
+     */
+    public void writeValue(Object value) throws CerealException {
+        beforeValue();
+
+        if (null == value) {
+            write(TYPE_NULL);
+        } else if (value instanceof String) {
+            write(TYPE_STRING);
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            write(((Boolean) value) ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte
+                || (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64)) {
+            writeInteger(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writeReal(((Number) value).doubleValue());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            write(TYPE_BYTES);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        } else {
+            write(TYPE_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeLong(long)
+     */
+    public void writeLong(long value) throws CerealException {
+        beforeValue();
+        writeInteger(value);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeDouble(double)
+     */
+    public void writeDouble(double value) throws CerealException {
+        beforeValue();
+        writeReal(value);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeBoolean(boolean)
+     */
+    public void writeBoolean(boolean value) throws CerealException {
+        beforeValue();
+        write(value ? TYPE_TRUE : TYPE_FALSE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeCereal(java.lang.Object)
+     */
+    public void writeCereal(Object cereal) throws CerealException {
+        RecordingGenerator.writeCereal(this, cereal);
+    }
+
+    /**
+     * Forks record their values and are written when the fork is, so that names are added to
+     * the name table in the order they appear in the output.
+     *
+     * @see com.comcast.cereal.CerealGenerator#fork()
+     */
+    public CerealGenerator fork() throws CerealException {
+        return new RecordingGenerator(writesTags);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeFork(com.comcast.cereal.CerealGenerator)
+     */
+    public void writeFork(CerealGenerator fork) throws CerealException {
+        ((RecordingGenerator) fork).replay(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#flush()
+     */
+    public void flush() throws CerealException {
+        drain();
+        try {
+            outputStream.flush();
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing binary cereal", ioex);
+        }
+    }
+
+    /**
+     * Start an object or list of the given type.
+     */
+    private void startContainer(int type, int size, boolean object) throws CerealException {
+        beforeValue();
+        write(type);
+        writeVarLong(size);
+
+        if (depth == sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        sizes[depth] = size;
+        counts[depth] = 0;
+        objects[depth] = object;
+        depth++;
+    }
+
+    /**
+     * End the current object or list.
+     */
+    private void endContainer() throws CerealException {
+        depth--;
+        if (counts[depth] != sizes[depth]) {
+            throw new CerealException("Expected " + sizes[depth] + " values but " + counts[depth]
+                    + " were written");
+        }
+    }
+
+    /**
+     * Write the header before the root value and count the values of the current list.
+     */
+    private void beforeValue() throws CerealException {
+        if (!started) {
+            started = true;
+            write(MAGIC);
+            write(VERSION);
+        }
+        if (depth > 0 && !objects[depth - 1]) {
+            counts[depth - 1]++;
+        }
+    }
+
+    private void writeString(String string) throws CerealException {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarLong(bytes.length);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write an unsigned variable length integer, seven bits at a time with the lowest bits first.
+     */
+    private void writeInteger(long value) throws CerealException {
+        write(TYPE_INTEGER);
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeReal(double value) throws CerealException {
+        write(TYPE_DOUBLE);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            write((int) (bits >>> shift));
+        }
+    }
+
+    private void writeVarLong(long value) throws CerealException {
+        while ((value & ~0x7FL) != 0) {
+            write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    private void write(int b) throws CerealException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws CerealException {
+        if (length > buffer.length - position) {
+            drain();
+            if (length > buffer.length) {
+                try {
+                    outputStream.write(bytes, offset, length);
+                } catch (IOException ioex) {
+                    throw new CerealException("Failed while writing binary cereal", ioex);
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void drain() throws CerealException {
+        try {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing binary cereal", ioex);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import static com.comcast.cereal.impl.BinaryGenerator.MAGIC;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_BYTES;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_DOUBLE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_FALSE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_INTEGER;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_LIST;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_NULL;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_OBJECT;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_STRING;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_TAGGED_OBJECT;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_TRUE;
+import static com.comcast.cereal.impl.BinaryGenerator.UTF_8;
+import static com.comcast.cereal.impl.BinaryGenerator.VERSION;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.TaggedCerealParser;
+import com.comcast.cereal.engines.BinaryCerealEngine;
+
+/**
+ * A {@link CerealParser} that reads the compact binary encoding documented on
+ * {@link BinaryCerealEngine} from an {@link InputStream} through a reusable buffer. Integers are
+ * read as an {@link Integer} if they fit and as a {@link Long} otherwise.
+ *
+ * @see BinaryCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class BinaryParser implements TaggedCerealParser {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream inputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    /* Every name read so far, in the order they were first written */
+    private final List<String> names = new ArrayList<String>();
+
+    /* Whether each open container is an object (true) or an array (false) */
+    private boolean[] objects = new boolean[16];
+    private boolean[] tagged = new boolean[16];
+    private int[] remaining = new int[16];
+    private int depth;
+
+    private Token token;
+    private String name;
+    private int tag;
+    private Object value;
+
+    /**
+     * Create a new BinaryParser that reads from the given input stream.
+     *
+     * @param inputStream
+     *            where to read the binary input from
+     */
+    public BinaryParser(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#next()
+     */
+    public Token next() throws CerealException {
+        if (null == token) {
+            if (read() != MAGIC) {
+                throw new CerealException("The input is not binary cereal");
+            }
+            int version = read();
+            if (version != VERSION) {
+                throw new CerealException("Unsupported binary cereal version " + version);
+            }
+            return readValue();
+        } else if (Token.NAME == token) {
+            return readValue();
+        } else if (Token.END == token) {
+            return token;
+        } else if (depth == 0) {
+            return token = Token.END;
+        }
+
+        if (remaining[depth - 1] == 0) {
+            depth--;
+            return token = objects[depth] ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+
+        remaining[depth - 1]--;
+        if (!objects[depth - 1]) {
+            return readValue();
+        }
+
+        long key = readVarLong();
+        if (tagged[depth - 1]) {
+            if ((key & 1) == 1) {
+                name = null;
+                tag = checkTag(key >>> 1);
+                return token = Token.NAME;
+            }
+            key >>>= 1;
+        }
+
+        tag = 0;
+        int index = (key > Integer.MAX_VALUE) ? -1 : (int) key;
+        if (index == 0) {
+            name = readString();
+            names.add(name);
+        } else if (index > 0 && index <= names.size()) {
+            name = names.get(index - 1);
+        } else {
+            throw new CerealException("Unknown name index " + key);
+        }
+        return token = Token.NAME;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getToken()
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.TaggedCerealParser#getTag()
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getValue()
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#skipValue()
+     */
+    public void skipValue() throws CerealException {
+        if (Token.START_OBJECT == token || Token.START_ARRAY == token) {
+            int target = depth - 1;
+            while (depth > target) {
+                next();
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#readCereal()
+     */
+    public Object readCereal() throws CerealException {
+        switch (token) {
+        case VALUE:
+            return value;
+        case START_OBJECT:
+            Map<String, Object> map = new HashMap<String, Object>();
+            while (Token.NAME == next()) {
+                String key = name;
+                if (null == key) {
+                    throw new CerealException("The entry with tag " + tag
+                            + " can only be read into a class that declares its tag");
+                }
+                next();
+                map.put(key, readCereal());
+            }
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<Object>();
+            while (Token.END_ARRAY != next()) {
+                list.add(readCereal());
+            }
+            return list;
+        default:
+            throw new CerealException("Expected a value but found " + token);
+        }
+    }
+
+    private Token readValue() throws CerealException {
+        int type = read();
+        switch (type) {
+        case TYPE_NULL:
+            value = null;
+            break;
+        case TYPE_FALSE:
+            value = Boolean.FALSE;
+            break;
+        case TYPE_TRUE:
+            value = Boolean.TRUE;
+            break;
+        case TYPE_INTEGER:
+            long zigzag = readVarLong();
+            long l = (zigzag >>> 1) ^ -(zigzag & 1);
+            value = (l == (int) l) ? (Object) Integer.valueOf((int) l) : (Object) Long.valueOf(l);
+            break;
+        case TYPE_DOUBLE:
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | read();
+            }
+            value = Double.longBitsToDouble(bits);
+            break;
+        case TYPE_STRING:
+            value = readString();
+            break;
+        case TYPE_BYTES:
+            byte[] bytes = new byte[readLength()];
+            read(bytes);
+            value = bytes;
+            break;
+        case TYPE_LIST:
+            return push(false, false, readLength());
+        case TYPE_OBJECT:
+        case TYPE_TAGGED_OBJECT:
+            return push(true, TYPE_TAGGED_OBJECT == type, readLength());
+        default:
+            throw new CerealException("Unknown binary cereal type " + type);
+        }
+        return token = Token.VALUE;
+    }
+
+    private Token push(boolean object, boolean withTags, int size) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+            tagged = Arrays.copyOf(tagged, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        objects[depth] = object;
+        tagged[depth] = withTags;
+        remaining[depth] = size;
+        depth++;
+        return token = object ? Token.START_OBJECT : Token.START_ARRAY;
+    }
+
+    private String readString() throws CerealException {
+        int length = readLength();
+        if (length <= limit - position) {
+            String string = new String(buffer, position, length, UTF_8);
+            position += length;
+            return string;
+        }
+        byte[] bytes = new byte[length];
+        read(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Read a variable length integer that is used as a size or index.
+     */
+    private int readLength() throws CerealException {
+        long length = readVarLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new CerealException("Invalid binary cereal length " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Check a tag that was read from a tagged object.
+     */
+    private int checkTag(long tag) throws CerealException {
+        if (tag < 1 || tag > Integer.MAX_VALUE) {
+            throw new CerealException("Invalid binary cereal tag " + tag);
+        }
+        return (int) tag;
+    }
+
+    /**
+     * Read an unsigned variable length integer, seven bits at a time with the lowest bits first.
+     */
+    private long readVarLong() throws CerealException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = read();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CerealException("Malformed binary cereal integer");
+    }
+
+    private int read() throws CerealException {
+        if (position == limit && !fill()) {
+            throw new CerealException("Unexpected end of binary cereal input");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private void read(byte[] bytes) throws CerealException {
+        int offset = Math.min(bytes.length, limit - position);
+        System.arraycopy(buffer, position, bytes, 0, offset);
+        position += offset;
+        try {
+            while (offset < bytes.length) {
+                int count = inputStream.read(bytes, offset, bytes.length - offset);
+                if (count < 0) {
+                    throw new CerealException("Unexpected end of binary cereal input");
+                }
+                offset += count;
+            }
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to read binary cereal", ioex);
+        }
+    }
+
+    private boolean fill() throws CerealException {
+        try {
+            int count = inputStream.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(count, 0);
+            return count > 0;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to read binary cereal", ioex);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link Reader} that decodes the remaining bytes of a {@link ByteBuffer}, such as a file that
+ * was mapped into memory, straight into the character arrays it is read into. Unlike an
+ * {@link java.io.InputStreamReader}, the bytes are never copied into an intermediate buffer.
+ * Malformed input is replaced the same way an {@link java.io.InputStreamReader} does it.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class ByteBufferReader extends Reader {
+
+    private final ByteBuffer buffer;
+    private final CharsetDecoder decoder;
+
+    /* Holds the second half of a surrogate pair that was decoded during a single character read */
+    private final CharBuffer pair = CharBuffer.allocate(2);
+    private boolean flushed;
+
+    /**
+     * Create a new ByteBufferReader that decodes the given buffer.
+     *
+     * @param buffer
+     *            the buffer to decode the bytes from its position to its limit of
+     * @param charset
+     *            the charset of the bytes
+     */
+    public ByteBufferReader(ByteBuffer buffer, Charset charset) {
+        this.buffer = buffer;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.pair.flip();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Reader#read(char[], int, int)
+     */
+    @Override
+    public int read(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (length == 1 || pair.hasRemaining()) {
+            /* A single character may be half of a surrogate pair */
+            if (!pair.hasRemaining()) {
+                pair.clear();
+                decode(pair);
+                pair.flip();
+            }
+            if (!pair.hasRemaining()) {
+                return -1;
+            }
+            chars[offset] = pair.get();
+            return 1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+        decode(out);
+        int count = out.position() - offset;
+        return (count == 0) ? -1 : count;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Reader#close()
+     */
+    @Override
+    public void close() {
+        /* The buffer is released by the garbage collector */
+    }
+
+    /**
+     * Decode as many characters as fit into the given buffer, which must have room for at least
+     * two characters.
+     */
+    private void decode(CharBuffer out) {
+        if (flushed) {
+            return;
+        }
+
+        CoderResult result = decoder.decode(buffer, out, true);
+        if (result.isUnderflow()) {
+            decoder.flush(out);
+            flushed = !buffer.hasRemaining();
+        }
+    }
+}
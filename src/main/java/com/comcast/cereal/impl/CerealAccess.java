@@ -19,6 +19,8 @@ import java.io.StringReader;
 import java.lang.reflect.Constructor;
 
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
 
@@ -87,6 +89,14 @@ public abstract class CerealAccess {
 		this.defaultObjectClass = defaultObjectClass;
 	}
 
+	/**
+	 * Resolve method handles for the members this access object reads and writes so that they
+	 * are no longer called through reflection. Members that can not be reached through a handle
+	 * keep using reflection. By default this does nothing.
+	 */
+	public void useMethodHandles() {
+	}
+
 	/**
 	 * Convert the given cereal and then apply (write) the java object in the appropriate fashion to
 	 * the given target object.
@@ -102,6 +112,41 @@ public abstract class CerealAccess {
 	public abstract void applyCereal(Object cereal, Object target, ObjectCache objectCache)
 			throws CerealException;
 
+	/**
+	 * Convert the given cereal into the java object that
+	 * {@link #applyCereal(Object, Object, ObjectCache)} would apply, without applying it. This is
+	 * used to collect the arguments of a constructor. By default this is not supported.
+	 * 
+	 * @param cereal
+	 *            the cereal to convert
+	 * 
+	 * @return the converted value
+	 * 
+	 * @throws CerealException
+	 *             if there was a problem converting the value
+	 */
+	public Object convertCereal(Object cereal, ObjectCache objectCache) throws CerealException {
+		throw new CerealException("Values of type '" + getJavaType().getName()
+				+ "' can not be passed to a constructor");
+	}
+
+	/**
+	 * Convert a value returned from {@link #readValue(CerealParser, ObjectCache)} into the java
+	 * object that {@link #setValue(Object, Object, ObjectCache)} would apply, without applying it.
+	 * By default this is the same as {@link #convertCereal(Object, ObjectCache)}.
+	 * 
+	 * @param value
+	 *            the value to convert
+	 * 
+	 * @return the converted value
+	 * 
+	 * @throws CerealException
+	 *             if there was a problem converting the value
+	 */
+	public Object convertValue(Object value, ObjectCache objectCache) throws CerealException {
+		return convertCereal(value, objectCache);
+	}
+
 	/**
 	 * Read a java object from the given source object and then convert it.
 	 * 
@@ -115,6 +160,59 @@ public abstract class CerealAccess {
 	 */
 	public abstract Object getCereal(Object source, ObjectCache objectCache) throws CerealException;
 
+	/**
+	 * Read a java object from the given source object, convert it and write the result to the
+	 * given generator. By default this writes the value returned from
+	 * {@link #getCereal(Object, ObjectCache)}.
+	 * 
+	 * @param source
+	 *            the object to read the value from
+	 * @param generator
+	 *            the generator to write the converted value to
+	 * 
+	 * @throws CerealException
+	 *             if there was a problem getting the value, converting it or writing it
+	 */
+	public void writeCereal(Object source, CerealGenerator generator, ObjectCache objectCache)
+			throws CerealException {
+		generator.writeCereal(getCereal(source, objectCache));
+	}
+
+	/**
+	 * Read the value that starts at the current token of the parser and convert it. The result is
+	 * later given to {@link #setValue(Object, Object, ObjectCache)}. By default this reads the
+	 * cereal representation of the value without converting it.
+	 * 
+	 * @param parser
+	 *            the parser to read the value from
+	 * 
+	 * @return the converted value
+	 * 
+	 * @throws CerealException
+	 *             if there was a problem reading or converting the value
+	 */
+	public Object readValue(CerealParser parser, ObjectCache objectCache) throws CerealException {
+		return parser.readCereal();
+	}
+
+	/**
+	 * Apply (write) a value returned from {@link #readValue(CerealParser, ObjectCache)} to the
+	 * given target object. By default this is the same as
+	 * {@link #applyCereal(Object, Object, ObjectCache)}.
+	 * 
+	 * @param value
+	 *            the value to apply
+	 * @param target
+	 *            the object to apply the value to
+	 * 
+	 * @throws CerealException
+	 *             if there was a problem applying the value
+	 */
+	public void setValue(Object value, Object target, ObjectCache objectCache)
+			throws CerealException {
+		applyCereal(value, target, objectCache);
+	}
+
 	/**
 	 * Returns <code>true</code> if this particular CerealAccess object is directed to require a
 	 * value when applying cereal.
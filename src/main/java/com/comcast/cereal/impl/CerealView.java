@@ -0,0 +1,490 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import static com.comcast.cereal.impl.BinaryGenerator.MAGIC;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_BYTES;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_DOUBLE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_FALSE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_INTEGER;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_LIST;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_NULL;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_OBJECT;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_STRING;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_TRUE;
+import static com.comcast.cereal.impl.BinaryGenerator.UTF_8;
+import static com.comcast.cereal.impl.IndexedBinaryGenerator.HEADER_SIZE;
+import static com.comcast.cereal.impl.IndexedBinaryGenerator.VERSION;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.engines.BinaryCerealEngine;
+
+/**
+ * A read-only view of a single value in a document written in the indexed binary layout of the
+ * {@link BinaryCerealEngine}. Values are read straight out of the underlying {@link ByteBuffer}
+ * when they are asked for, so looking up a few entries of a large document does not read the rest
+ * of it. Objects are found by a binary search over their sorted entries and list elements by their
+ * offset, without any copying.
+ *
+ * <p>
+ * Views are cheap to create and never change the position or limit of the buffer. To convert a
+ * view to a java object, use {@link BinaryCerealEngine#readFromView(CerealView, Class)} or
+ * {@link #toCereal()}.
+ * </p>
+ *
+ * @see BinaryCerealEngine#writeToIndexedBytes(Object)
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class CerealView {
+
+    /**
+     * The types of values a view can represent.
+     */
+    public static enum Type {
+        NULL, BOOLEAN, INTEGER, DOUBLE, STRING, BYTES, LIST, OBJECT
+    }
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final Type type;
+
+    /**
+     * Create a view of the root value of the indexed document that starts at the current
+     * position of the given buffer. The buffer can be a heap or direct buffer.
+     *
+     * @param buffer
+     *            the buffer holding the document
+     *
+     * @return a view of the root value
+     *
+     * @throws CerealException
+     *             if the buffer does not start with an indexed binary document
+     */
+    public static CerealView wrap(ByteBuffer buffer) throws CerealException {
+        ByteBuffer document = buffer.slice();
+        if (document.remaining() < HEADER_SIZE || (document.get(0) & 0xFF) != MAGIC) {
+            throw new CerealException("The input is not binary cereal");
+        } else if (document.get(1) != VERSION) {
+            throw new CerealException("Only indexed binary cereal (version " + VERSION
+                    + ") can be viewed, not version " + document.get(1));
+        }
+        return new CerealView(document, document.getInt(2));
+    }
+
+    private CerealView(ByteBuffer buffer, int offset) throws CerealException {
+        if (offset < HEADER_SIZE || offset >= buffer.limit()) {
+            throw new CerealException("Invalid binary cereal offset " + offset);
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+
+        int code = buffer.get(offset);
+        switch (code) {
+        case TYPE_NULL:
+            type = Type.NULL;
+            break;
+        case TYPE_FALSE:
+        case TYPE_TRUE:
+            type = Type.BOOLEAN;
+            break;
+        case TYPE_INTEGER:
+            type = Type.INTEGER;
+            break;
+        case TYPE_DOUBLE:
+            type = Type.DOUBLE;
+            break;
+        case TYPE_STRING:
+            type = Type.STRING;
+            break;
+        case TYPE_BYTES:
+            type = Type.BYTES;
+            break;
+        case TYPE_LIST:
+            type = Type.LIST;
+            break;
+        case TYPE_OBJECT:
+            type = Type.OBJECT;
+            break;
+        default:
+            throw new CerealException("Unknown binary cereal type " + code);
+        }
+    }
+
+    /**
+     * Get the type of this value.
+     *
+     * @return the type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Check if this value is <code>null</code>.
+     *
+     * @return <code>true</code> if this value is <code>null</code>
+     */
+    public boolean isNull() {
+        return Type.NULL == type;
+    }
+
+    /**
+     * Get the number of elements of a list or entries of an object.
+     *
+     * @return the size
+     *
+     * @throws CerealException
+     *             if this is not a list or an object
+     */
+    public int size() throws CerealException {
+        if (Type.LIST != type && Type.OBJECT != type) {
+            throw new CerealException("Expected a LIST or OBJECT but found " + type);
+        }
+        int size = readInt(offset + 1);
+        int width = (Type.LIST == type) ? 4 : 8;
+        if (size < 0 || size > (buffer.limit() - offset - 5) / width) {
+            throw new CerealException("Invalid binary cereal size " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Get an element of a list or the value of an entry of an object. Entries of an object are
+     * sorted by the UTF-8 bytes of their names.
+     *
+     * @param index
+     *            the index of the element or entry
+     *
+     * @return a view of the value
+     *
+     * @throws CerealException
+     *             if this is not a list or an object or the index is out of range
+     */
+    public CerealView get(int index) throws CerealException {
+        checkIndex(index);
+        if (Type.LIST == type) {
+            return new CerealView(buffer, buffer.getInt(offset + 5 + 4 * index));
+        }
+        return new CerealView(buffer, buffer.getInt(offset + 9 + 8 * index));
+    }
+
+    /**
+     * Get the name of an entry of an object.
+     *
+     * @param index
+     *            the index of the entry
+     *
+     * @return the name
+     *
+     * @throws CerealException
+     *             if this is not an object or the index is out of range
+     */
+    public String getName(int index) throws CerealException {
+        expect(Type.OBJECT);
+        checkIndex(index);
+        return readString(buffer.getInt(offset + 5 + 8 * index) + 1);
+    }
+
+    /**
+     * Get the value of the entry of an object with the given name.
+     *
+     * @param name
+     *            the name of the entry
+     *
+     * @return a view of the value or <code>null</code> if the object has no such entry
+     *
+     * @throws CerealException
+     *             if this is not an object
+     */
+    public CerealView get(String name) throws CerealException {
+        int index = indexOf(name);
+        return (index < 0) ? null : get(index);
+    }
+
+    /**
+     * Check if an object has an entry with the given name.
+     *
+     * @param name
+     *            the name of the entry
+     *
+     * @return <code>true</code> if the entry exists
+     *
+     * @throws CerealException
+     *             if this is not an object
+     */
+    public boolean has(String name) throws CerealException {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Get a scalar value the way a {@link CerealParser} would return it. Integers are an
+     * {@link Integer} if they fit and a {@link Long} otherwise.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is a list or an object
+     */
+    public Object getValue() throws CerealException {
+        switch (type) {
+        case NULL:
+            return null;
+        case BOOLEAN:
+            return getBoolean();
+        case INTEGER:
+            long l = getLong();
+            return (l == (int) l) ? (Object) Integer.valueOf((int) l) : (Object) Long.valueOf(l);
+        case DOUBLE:
+            return getDouble();
+        case STRING:
+            return getString();
+        case BYTES:
+            return getBytes();
+        default:
+            throw new CerealException("Expected a value but found " + type);
+        }
+    }
+
+    /**
+     * Get a boolean value.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is not a boolean
+     */
+    public boolean getBoolean() throws CerealException {
+        expect(Type.BOOLEAN);
+        return buffer.get(offset) == TYPE_TRUE;
+    }
+
+    /**
+     * Get an integer value.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is not an integer
+     */
+    public long getLong() throws CerealException {
+        expect(Type.INTEGER);
+        long zigzag = 0;
+        int position = offset + 1;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(position++);
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new CerealException("Malformed binary cereal integer");
+    }
+
+    /**
+     * Get a numeric value as a double.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is not a number
+     */
+    public double getDouble() throws CerealException {
+        if (Type.INTEGER == type) {
+            return getLong();
+        }
+        expect(Type.DOUBLE);
+        if (offset + 9 > buffer.limit()) {
+            throw new CerealException("Unexpected end of binary cereal input");
+        }
+        return Double.longBitsToDouble(buffer.getLong(offset + 1));
+    }
+
+    /**
+     * Get a string value.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is not a string
+     */
+    public String getString() throws CerealException {
+        expect(Type.STRING);
+        return readString(offset + 1);
+    }
+
+    /**
+     * Get a copy of a <code>byte[]</code> value.
+     *
+     * @return the value
+     *
+     * @throws CerealException
+     *             if this is not a <code>byte[]</code>
+     */
+    public byte[] getBytes() throws CerealException {
+        expect(Type.BYTES);
+        int[] length = readLength(offset + 1);
+        byte[] bytes = new byte[length[0]];
+        ByteBuffer source = buffer.duplicate();
+        source.position(length[1]);
+        source.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read this value and everything in it into its cereal representation.
+     *
+     * @return the {@link Map}, {@link List} or scalar value
+     *
+     * @throws CerealException
+     *             if the document is malformed
+     */
+    public Object toCereal() throws CerealException {
+        switch (type) {
+        case OBJECT:
+            int entries = size();
+            Map<String, Object> map = new HashMap<String, Object>();
+            for (int i = 0; i < entries; i++) {
+                map.put(getName(i), get(i).toCereal());
+            }
+            return map;
+        case LIST:
+            int elements = size();
+            List<Object> list = new ArrayList<Object>(elements);
+            for (int i = 0; i < elements; i++) {
+                list.add(get(i).toCereal());
+            }
+            return list;
+        default:
+            return getValue();
+        }
+    }
+
+    /**
+     * Create a parser that reads this value. This allows a view to be bound directly to a java
+     * object by a streaming cerealizer.
+     *
+     * @return a new parser that starts before this value
+     */
+    public CerealParser parser() {
+        return new ViewParser(this);
+    }
+
+    /**
+     * Find the index of the entry with the given name by a binary search over the sorted entries.
+     */
+    private int indexOf(String name) throws CerealException {
+        expect(Type.OBJECT);
+        byte[] key = name.getBytes(UTF_8);
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = compareName(buffer.getInt(offset + 5 + 8 * middle) + 1, key);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare the bytes of the string at the given position to the given key.
+     */
+    private int compareName(int position, byte[] key) throws CerealException {
+        int[] length = readLength(position);
+        int common = Math.min(length[0], key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(length[1] + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length[0] - key.length;
+    }
+
+    private String readString(int position) throws CerealException {
+        int[] length = readLength(position);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + length[1], length[0], UTF_8);
+        }
+        byte[] bytes = new byte[length[0]];
+        ByteBuffer source = buffer.duplicate();
+        source.position(length[1]);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Read a varint length at the given position.
+     *
+     * @return the length and the position of the first byte after it
+     */
+    private int[] readLength(int position) throws CerealException {
+        long length = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(position++);
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length > buffer.limit() - position) {
+                    throw new CerealException("Invalid binary cereal length " + length);
+                }
+                return new int[] { (int) length, position };
+            }
+        }
+        throw new CerealException("Malformed binary cereal integer");
+    }
+
+    private int readInt(int position) throws CerealException {
+        if (position + 4 > buffer.limit()) {
+            throw new CerealException("Unexpected end of binary cereal input");
+        }
+        return buffer.getInt(position);
+    }
+
+    private int readByte(int position) throws CerealException {
+        if (position < 0 || position >= buffer.limit()) {
+            throw new CerealException("Unexpected end of binary cereal input");
+        }
+        return buffer.get(position);
+    }
+
+    private void checkIndex(int index) throws CerealException {
+        int size = size();
+        if (index < 0 || index >= size) {
+            throw new CerealException("Index " + index + " is out of range for a " + type
+                    + " of size " + size);
+        }
+    }
+
+    private void expect(Type expected) throws CerealException {
+        if (expected != type) {
+            throw new CerealException("Expected a " + expected + " but found " + type);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.comcast.cereal.CerealException;
+
+/**
+ * An {@link OutputStream} to a {@link WritableByteChannel} that collects the output in direct
+ * buffers borrowed from a shared pool. Full buffers are written to the channel together with a
+ * single gathering write (if the channel is a {@link GatheringByteChannel}) whenever the stream is
+ * flushed or all of its buffers are full, and returned to the pool when it is closed. The channel
+ * must be in blocking mode and is never closed by this stream.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class ChannelOutput extends OutputStream {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_BUFFERS = 16;
+    private static final int MAX_POOLED = 64;
+
+    /* Buffers that are not in use by any stream */
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<ByteBuffer>(
+            MAX_POOLED);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer[] buffers = new ByteBuffer[MAX_BUFFERS];
+    private int count;
+    private ByteBuffer current;
+    private boolean closed;
+
+    /**
+     * Create a new ChannelOutput that writes to the given channel.
+     *
+     * @param channel
+     *            the channel to write to, which must be in blocking mode
+     */
+    public ChannelOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        if (null == current || !current.hasRemaining()) {
+            nextBuffer();
+        }
+        current.put((byte) b);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (null == current || !current.hasRemaining()) {
+                nextBuffer();
+            }
+            int chunk = Math.min(length, current.remaining());
+            current.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Write everything that has been collected to the channel.
+     *
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!closed) {
+            drain();
+        }
+    }
+
+    /**
+     * Write everything that has been collected to the channel and return the buffers to the pool.
+     *
+     * @throws CerealException
+     *             if the channel could not be written
+     */
+    public void commit() throws CerealException {
+        try {
+            flush();
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing to the channel", ioex);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Return the buffers to the pool. Anything that was not flushed is dropped.
+     *
+     * @see java.io.OutputStream#close()
+     */
+    @Override
+    public void close() {
+        closed = true;
+        current = null;
+        count = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            if (null != buffers[i]) {
+                giveBack(buffers[i]);
+                buffers[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Take a buffer from the shared pool, allocating a new one if the pool is empty. Other
+     * streams that write through direct buffers share the pool through this.
+     */
+    static ByteBuffer borrow() {
+        ByteBuffer buffer = POOL.poll();
+        return (null == buffer) ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buffer;
+    }
+
+    /**
+     * Clear the given buffer and return it to the shared pool, dropping it if the pool is full.
+     */
+    static void giveBack(ByteBuffer buffer) {
+        buffer.clear();
+        POOL.offer(buffer);
+    }
+
+    private void nextBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("The channel output is closed");
+        } else if (count == MAX_BUFFERS) {
+            drain();
+        }
+
+        if (null == buffers[count]) {
+            buffers[count] = borrow();
+        }
+        current = buffers[count++];
+    }
+
+    /**
+     * Write every buffer that is in use to the channel and clear them for reuse.
+     */
+    private void drain() throws IOException {
+        for (int i = 0; i < count; i++) {
+            buffers[i].flip();
+        }
+
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < count) {
+                if (buffers[first].hasRemaining()) {
+                    gathering.write(buffers, first, count - first);
+                } else {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers[i]);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            buffers[i].clear();
+        }
+        count = 0;
+        current = null;
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import com.comcast.cereal.CerealCodec;
+
+/**
+ * Helper class for recognizing input that was encoded by a {@link CerealCodec}. The built in
+ * codecs and every codec that {@link ServiceLoader} can find are known.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class CodecHelper {
+
+    private static final List<CerealCodec> CODECS;
+    private static final int HEADER_LENGTH;
+
+    static {
+        List<CerealCodec> codecs = new ArrayList<CerealCodec>();
+        codecs.add(new GzipCodec());
+        codecs.add(new DeflateCodec());
+        for (CerealCodec codec : ServiceLoader.load(CerealCodec.class,
+                CerealCodec.class.getClassLoader())) {
+            codecs.add(codec);
+        }
+
+        int length = 0;
+        for (CerealCodec codec : codecs) {
+            length = Math.max(length, codec.getHeaderLength());
+        }
+
+        CODECS = Collections.unmodifiableList(codecs);
+        HEADER_LENGTH = length;
+    }
+
+    /**
+     * Get every known codec.
+     *
+     * @return the built in codecs followed by those found by {@link ServiceLoader}
+     */
+    public static List<CerealCodec> getCodecs() {
+        return CODECS;
+    }
+
+    /**
+     * Find the codec that encoded input starting with the given bytes.
+     *
+     * @param header
+     *            the first bytes of the input
+     * @param length
+     *            the number of bytes in the header
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     *
+     * @return the codec or <code>null</code> if the input is not encoded
+     */
+    public static CerealCodec detect(byte[] header, int length, CerealCodec preferred) {
+        return detect(header, length, preferred, true);
+    }
+
+    /**
+     * Find the codec that encoded input starting with the given bytes, optionally only checking
+     * the preferred codec.
+     *
+     * @param header
+     *            the first bytes of the input
+     * @param length
+     *            the number of bytes in the header
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     * @param known
+     *            if <code>true</code>, the known codecs are checked as well
+     *
+     * @return the codec or <code>null</code> if the input is not encoded
+     */
+    public static CerealCodec detect(byte[] header, int length, CerealCodec preferred,
+            boolean known) {
+        if (null != preferred && preferred.matches(header, length)) {
+            return preferred;
+        } else if (!known) {
+            return null;
+        }
+        for (CerealCodec codec : CODECS) {
+            if (codec.matches(header, length)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the codec that encoded the remaining bytes of the given buffer without moving its
+     * position.
+     *
+     * @param buffer
+     *            the input
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     *
+     * @return the codec or <code>null</code> if the input is not encoded
+     */
+    public static CerealCodec detect(ByteBuffer buffer, CerealCodec preferred) {
+        return detect(buffer, preferred, true);
+    }
+
+    /**
+     * Find the codec that encoded the remaining bytes of the given buffer without moving its
+     * position, optionally only checking the preferred codec.
+     *
+     * @param buffer
+     *            the input
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     * @param known
+     *            if <code>true</code>, the known codecs are checked as well
+     *
+     * @return the codec or <code>null</code> if the input is not encoded
+     */
+    public static CerealCodec detect(ByteBuffer buffer, CerealCodec preferred, boolean known) {
+        int max = Math.max(HEADER_LENGTH, (null == preferred) ? 0 : preferred.getHeaderLength());
+        byte[] header = new byte[Math.min(max, buffer.remaining())];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = buffer.get(buffer.position() + i);
+        }
+        return detect(header, header.length, preferred, known);
+    }
+
+    /**
+     * Decode the given input stream if it was encoded by a codec. The header is read to find the
+     * codec and then pushed back, so nothing is lost either way.
+     *
+     * @param inputStream
+     *            the input
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     *
+     * @return the decoded input
+     *
+     * @throws IOException
+     *             if the header could not be read or the decoding could not be started
+     */
+    public static InputStream decode(InputStream inputStream, CerealCodec preferred)
+            throws IOException {
+        return decode(inputStream, preferred, true);
+    }
+
+    /**
+     * Decode the given input stream if it was encoded by a codec, optionally only checking the
+     * preferred codec. The header is read to find the codec and then pushed back, so nothing is
+     * lost either way.
+     *
+     * @param inputStream
+     *            the input
+     * @param preferred
+     *            a codec to check before the known codecs or <code>null</code>
+     * @param known
+     *            if <code>true</code>, the known codecs are checked as well
+     *
+     * @return the decoded input
+     *
+     * @throws IOException
+     *             if the header could not be read or the decoding could not be started
+     */
+    public static InputStream decode(InputStream inputStream, CerealCodec preferred,
+            boolean known) throws IOException {
+        int max = Math.max(HEADER_LENGTH, (null == preferred) ? 0 : preferred.getHeaderLength());
+        PushbackInputStream pushback = new PushbackInputStream(inputStream, max);
+        byte[] header = new byte[max];
+        int length = 0;
+        while (length < max) {
+            int count = pushback.read(header, length, max - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        pushback.unread(header, 0, length);
+
+        CerealCodec codec = detect(header, length, preferred, known);
+        return (null == codec) ? pushback : codec.decode(pushback);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.comcast.cereal.CerealCodec;
+
+/**
+ * A {@link CerealCodec} for DEFLATE compressed data in the zlib format (RFC 1950), which is what
+ * {@link Deflater} writes by default. Raw DEFLATE has no header to recognize, so it is not
+ * supported. The zlib header is recognized by its compression method and check bits, which the
+ * two characters <code>x^</code> happen to pass as well, so this codec should only be set, or
+ * detection turned on with {@link com.comcast.cereal.CerealSettings#setDetectCodecs(boolean)}, if
+ * plain input can not start with them.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class DeflateCodec implements CerealCodec {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final int level;
+    private final int bufferSize;
+
+    /**
+     * Create a new DeflateCodec with the default compression level.
+     */
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new DeflateCodec.
+     *
+     * @param level
+     *            the compression level from <code>0</code> to <code>9</code> or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @param bufferSize
+     *            the size of the buffer that compressed bytes are collected in before they are
+     *            written and that compressed bytes are read into
+     */
+    public DeflateCodec(int level, int bufferSize) {
+        this.level = level;
+        this.bufferSize = bufferSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#getHeaderLength()
+     */
+    public int getHeaderLength() {
+        return 2;
+    }
+
+    /**
+     * The compression method must be DEFLATE with the 32K window that every common encoder uses,
+     * no preset dictionary may be used and the header must pass its check.
+     *
+     * @see com.comcast.cereal.CerealCodec#matches(byte[], int)
+     */
+    public boolean matches(byte[] header, int length) {
+        if (length < 2) {
+            return false;
+        }
+        int cmf = header[0] & 0xFF;
+        int flg = header[1] & 0xFF;
+        return cmf == 0x78 && (flg & 0x20) == 0 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#encode(java.io.OutputStream)
+     */
+    public OutputStream encode(OutputStream outputStream) throws IOException {
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(outputStream, deflater, bufferSize) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#decode(java.io.InputStream)
+     */
+    public InputStream decode(InputStream inputStream) throws IOException {
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(inputStream, inflater, bufferSize) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
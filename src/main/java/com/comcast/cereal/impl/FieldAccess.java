@@ -15,13 +15,18 @@
  */
 package com.comcast.cereal.impl;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.util.Map;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.Fixup;
+import com.comcast.cereal.ObjectCache.ForwardReference;
 
 /**
  * Provides CerealAccess for object {@link Field}s.
@@ -32,8 +37,13 @@ import com.comcast.cereal.ObjectCache;
 public class FieldAccess extends CerealAccess {
 
     private Field field;
+    private String member;
+    private Class<?> declaringClass;
+    private Class<?> type;
     private CerealFactory cerealFactory;
     private boolean cerealizerOverride = false;
+    private MethodHandle getter;
+    private MethodHandle setter;
 
     /**
      * Construct a new FieldAccess object that targets the given field and uses the given cerealizer
@@ -56,28 +66,133 @@ public class FieldAccess extends CerealAccess {
      */
     public FieldAccess(Field field, Cerealizer cerealizer, boolean requireValue, String defaultValue, 
             Class<?> defaultObjectClass, CerealFactory cerealFactory, boolean cerealizerOverride) {
-        super(cerealizer, requireValue, defaultValue, defaultObjectClass);
+        this(field.toString(), field.getDeclaringClass(), field.getType(), cerealizer,
+                requireValue, defaultValue, defaultObjectClass, cerealFactory, cerealizerOverride);
         this.field = field;
+    }
+
+    /**
+     * Construct a new FieldAccess object for a subclass that reads and writes the field itself by
+     * overriding {@link #get(Object)} and {@link #put(Object, Object)}. This is used by generated
+     * cerealizers, which access their fields directly instead of through reflection.
+     * 
+     * @param member
+     *            the description of the field used in error messages
+     * @param declaringClass
+     *            the class that declares the field
+     * @param type
+     *            the type of the field
+     * 
+     * @see #FieldAccess(Field, Cerealizer, boolean, String, Class, CerealFactory, boolean)
+     */
+    protected FieldAccess(String member, Class<?> declaringClass, Class<?> type,
+            Cerealizer cerealizer, boolean requireValue, String defaultValue,
+            Class<?> defaultObjectClass, CerealFactory cerealFactory, boolean cerealizerOverride) {
+        super(cerealizer, requireValue, defaultValue, defaultObjectClass);
+        this.member = member;
+        this.declaringClass = declaringClass;
+        this.type = type;
         this.cerealFactory = cerealFactory;
         this.cerealizerOverride = cerealizerOverride;
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#useMethodHandles()
+     */
+    public void useMethodHandles() {
+        if (null == field) {
+            return;
+        }
+        this.getter = ReflectionHelper.getterHandle(field);
+        this.setter = ReflectionHelper.setterHandle(field);
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.impl.CerealAccess#applyCereal(java.lang.Object, java.lang.Object)
      */
     public void applyCereal(Object cereal, Object target, ObjectCache objectCache) throws CerealException {
+        Object value = convertCereal(cereal, objectCache);
+        try {
+            put(target, value);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to set the value of '" + member + "'",
+                    throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#convertCereal(java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object convertCereal(Object cereal, ObjectCache objectCache) throws CerealException {
         try {
             Cerealizer cz = cerealizer;
             if (!cerealizerOverride) {
                 cz = cerealFactory.getRuntimeCerealizer(cereal, cerealizer);
             }
             Object value = cz.deCerealize(cereal, objectCache);
+            return ReflectionHelper.convert(value, getJavaType());
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to set the value of '" + member + "'",
+                    throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#convertValue(java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object convertValue(Object value, ObjectCache objectCache) throws CerealException {
+        if (value instanceof ForwardReference) {
+            throw new CerealException("The value of '" + member
+                    + "' references an object that has not been read yet");
+        }
+        return ReflectionHelper.convert(value, getJavaType());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#readValue(com.comcast.cereal.CerealParser,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object readValue(CerealParser parser, ObjectCache objectCache) throws CerealException {
+        try {
+            return StreamHelper.read(cerealizer, parser, !cerealizerOverride, cerealFactory,
+                    objectCache);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to set the value of '" + member + "'",
+                    throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#setValue(java.lang.Object, java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public void setValue(Object value, final Object target, ObjectCache objectCache)
+            throws CerealException {
+        if (value instanceof ForwardReference) {
+            objectCache.addFixup((ForwardReference) value, new Fixup() {
+                public void resolve(Object object) throws CerealException {
+                    set(object, target);
+                }
+            });
+        } else {
+            set(value, target);
+        }
+    }
+
+    private void set(Object value, Object target) throws CerealException {
+        try {
             value = ReflectionHelper.convert(value, getJavaType());
-            field.setAccessible(true);
-            field.set(target, value);
+            put(target, value);
         } catch (Throwable throwable) {
-            throw new CerealException("Failed to set the value of '" + field.toString() + "'",
+            throw new CerealException("Failed to set the value of '" + member + "'",
                     throwable);
         }
     }
@@ -88,10 +203,9 @@ public class FieldAccess extends CerealAccess {
      */
     public Object getCereal(Object source, ObjectCache objectCache) throws CerealException {
         try {
-            field.setAccessible(true);
-            Object value = field.get(source);
+            Object value = get(source);
             Cerealizer cz = cerealizer;
-            Class<?> fieldClass = value == null ? field.getDeclaringClass() : value.getClass();
+            Class<?> fieldClass = value == null ? declaringClass : value.getClass();
             if (!cerealizerOverride && (value != null)) {
                 cz = cerealFactory.getCerealizer(fieldClass);
             }
@@ -101,16 +215,79 @@ public class FieldAccess extends CerealAccess {
             }
             return cereal;
         } catch (Throwable throwable) {
-            throw new CerealException("Failed to get the value from '" + field.toString() + "'",
+            throw new CerealException("Failed to get the value from '" + member + "'",
+                    throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#writeCereal(java.lang.Object,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void writeCereal(Object source, CerealGenerator generator, ObjectCache objectCache)
+            throws CerealException {
+        try {
+            Object value = get(source);
+            Cerealizer cz = cerealizer;
+            Class<?> fieldClass = value == null ? declaringClass : value.getClass();
+            if (!cerealizerOverride && (value != null)) {
+                cz = cerealFactory.getCerealizer(fieldClass);
+            }
+            String className = objectCache.getSettings().shouldIncludeClassName() ? fieldClass
+                    .getName() : null;
+            StreamHelper.write(cz, value, className, generator, objectCache);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to get the value from '" + member + "'",
                     throwable);
         }
     }
     
+    /**
+     * Read the value of the field from the given object.
+     * 
+     * @param source
+     *            the object to read from
+     * 
+     * @return the value of the field
+     * 
+     * @throws Throwable
+     *             if the field could not be read
+     */
+    protected Object get(Object source) throws Throwable {
+        if (null != getter) {
+            return (Object) getter.invokeExact(source);
+        }
+        field.setAccessible(true);
+        return field.get(source);
+    }
+
+    /**
+     * Write the given value, which has already been converted to the type of the field, to the
+     * field of the given object.
+     * 
+     * @param target
+     *            the object to write to
+     * @param value
+     *            the value to write
+     * 
+     * @throws Throwable
+     *             if the field could not be written
+     */
+    protected void put(Object target, Object value) throws Throwable {
+        if (null != setter) {
+            setter.invokeExact(target, value);
+        } else {
+            field.setAccessible(true);
+            field.set(target, value);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.impl.CerealAccess#getJavaType()
      */
     public Class getJavaType() {
-        return field.getType();
+        return type;
     }
 }
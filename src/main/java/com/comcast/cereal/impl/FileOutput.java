@@ -0,0 +1,241 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+import org.apache.commons.io.IOUtils;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+
+/**
+ * A buffered {@link OutputStream} to a file that only replaces the file once it is committed.
+ * Closing it without calling {@link #commit()} abandons whatever was written.
+ *
+ * <p>
+ * In atomic mode, everything is written to a temporary file next to the target, which is renamed
+ * over the target on commit. Readers see either the old or the new contents and a crash while
+ * writing leaves the old file in place. With sync on, the contents (and in atomic mode, the
+ * rename) are forced to the storage device before {@link #commit()} returns. The file is synced
+ * once when it is committed no matter how often the stream is flushed.
+ * </p>
+ *
+ * @see CerealSettings#setAtomicFileWrites(boolean)
+ * @see CerealSettings#setSyncFileWrites(boolean)
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class FileOutput extends OutputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final File temp;
+    private final boolean sync;
+    private final FileOutputStream fileStream;
+    private final OutputStream outputStream;
+    private boolean closed;
+
+    /**
+     * Open the given file for writing.
+     *
+     * @param file
+     *            the file to write
+     * @param atomic
+     *            if <code>true</code>, the file is replaced in a single step when the stream is
+     *            committed
+     * @param sync
+     *            if <code>true</code>, the file is forced to the storage device when the stream is
+     *            committed
+     *
+     * @throws CerealException
+     *             if the file could not be opened
+     */
+    public FileOutput(File file, boolean atomic, boolean sync) throws CerealException {
+        this.file = file.getAbsoluteFile();
+        this.sync = sync;
+        try {
+            this.temp = atomic ? createTemp(this.file) : null;
+            this.fileStream = new FileOutputStream(atomic ? temp : file);
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to open the file " + this.file.getPath()
+                    + " for writing", ioex);
+        }
+        this.outputStream = new BufferedOutputStream(fileStream, BUFFER_SIZE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(int b) throws IOException {
+        outputStream.write(b);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        outputStream.write(bytes, offset, length);
+    }
+
+    /**
+     * Write out the buffer. This does not sync the file.
+     *
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Finish writing the file. In atomic mode, this is when the file is replaced.
+     *
+     * @throws CerealException
+     *             if the file could not be written, in which case the target is left as it was
+     *             in atomic mode
+     */
+    public void commit() throws CerealException {
+        try {
+            outputStream.flush();
+            if (sync) {
+                fileStream.getChannel().force(true);
+            }
+            closed = true;
+            fileStream.close();
+
+            if (null != temp) {
+                replace(temp, file, sync);
+            }
+        } catch (IOException ioex) {
+            abandon();
+            throw new CerealException("Failed while writing the file " + file.getPath(), ioex);
+        }
+    }
+
+    /**
+     * Close the file. If it was not committed, whatever is still buffered is dropped and in atomic
+     * mode the temporary file is deleted, leaving the target as it was.
+     *
+     * @see java.io.OutputStream#close()
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            abandon();
+        }
+    }
+
+    private void abandon() {
+        closed = true;
+        IOUtils.closeQuietly(fileStream);
+        if (null != temp) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Create a hidden temporary file next to the given target.
+     *
+     * @param file
+     *            the absolute target
+     *
+     * @return the temporary file
+     *
+     * @throws IOException
+     *             if the file could not be created
+     */
+    static File createTemp(File file) throws IOException {
+        return File.createTempFile("." + file.getName() + ".", ".tmp", file.getParentFile());
+    }
+
+    /**
+     * Rename the given temporary file over the target in a single step if the file system can.
+     * The temporary file first gets the POSIX permissions of the target it replaces, as temporary
+     * files are created readable by their owner only.
+     *
+     * @param temp
+     *            the temporary file, which must be closed
+     * @param file
+     *            the target
+     * @param sync
+     *            if <code>true</code>, the rename is forced to the storage device
+     *
+     * @throws IOException
+     *             if the file could not be renamed
+     */
+    static void replace(File temp, File file, boolean sync) throws IOException {
+        copyPermissions(file.toPath(), temp.toPath());
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnsex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (sync) {
+            syncDirectory(file);
+        }
+    }
+
+    /**
+     * Copy the POSIX permissions of the given target to the given file. Nothing is copied if the
+     * target does not exist or its file system does not support POSIX permissions.
+     */
+    private static void copyPermissions(Path target, Path file) throws IOException {
+        if (!Files.exists(target)
+                || !Files.getFileStore(target).supportsFileAttributeView(
+                        PosixFileAttributeView.class)) {
+            return;
+        }
+
+        try {
+            Files.setPosixFilePermissions(file, Files.getPosixFilePermissions(target));
+        } catch (NoSuchFileException nsfex) {
+            /* The target was removed in the meantime, so there is nothing to keep */
+        }
+    }
+
+    /**
+     * Force a rename to the storage device. Not every platform can open a directory, in which
+     * case the rename is left to the file system.
+     */
+    private static void syncDirectory(File file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.getParentFile().toPath(), StandardOpenOption.READ);
+            channel.force(true);
+        } catch (IOException ignore) {
+        } finally {
+            IOUtils.closeQuietly(channel);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.comcast.cereal.CerealCodec;
+
+/**
+ * A {@link CerealCodec} for the GZIP format (RFC 1952), recognized by its two magic bytes.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class GzipCodec implements CerealCodec {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final int level;
+    private final int bufferSize;
+
+    /**
+     * Create a new GzipCodec with the default compression level.
+     */
+    public GzipCodec() {
+        this(Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new GzipCodec.
+     *
+     * @param level
+     *            the compression level from <code>0</code> to <code>9</code> or
+     *            {@link Deflater#DEFAULT_COMPRESSION}
+     * @param bufferSize
+     *            the size of the buffer that compressed bytes are collected in before they are
+     *            written and that compressed bytes are read into
+     */
+    public GzipCodec(int level, int bufferSize) {
+        this.level = level;
+        this.bufferSize = bufferSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#getHeaderLength()
+     */
+    public int getHeaderLength() {
+        return 2;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#matches(byte[], int)
+     */
+    public boolean matches(byte[] header, int length) {
+        return length >= 2 && header[0] == (byte) 0x1F && header[1] == (byte) 0x8B;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#encode(java.io.OutputStream)
+     */
+    public OutputStream encode(OutputStream outputStream) throws IOException {
+        return new GZIPOutputStream(outputStream, bufferSize) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealCodec#decode(java.io.InputStream)
+     */
+    public InputStream decode(InputStream inputStream) throws IOException {
+        return new GZIPInputStream(inputStream, bufferSize);
+    }
+}
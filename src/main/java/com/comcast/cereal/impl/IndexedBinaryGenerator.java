@@ -0,0 +1,395 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import static com.comcast.cereal.impl.BinaryGenerator.MAGIC;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_BYTES;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_DOUBLE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_FALSE;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_INTEGER;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_LIST;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_NULL;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_OBJECT;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_STRING;
+import static com.comcast.cereal.impl.BinaryGenerator.TYPE_TRUE;
+import static com.comcast.cereal.impl.BinaryGenerator.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.engines.BinaryCerealEngine;
+
+/**
+ * A {@link CerealGenerator} that writes the indexed binary layout read by {@link CerealView}.
+ * Values are laid out bottom up, so every object and list is written after its values together
+ * with a table of their offsets. The document is kept in memory until {@link #flush()} fills in
+ * the offset of the root value and writes it out.
+ *
+ * @see BinaryCerealEngine
+ * @see CerealView
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class IndexedBinaryGenerator implements CerealGenerator {
+
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 6;
+
+    private final OutputStream outputStream;
+    private byte[] buffer = new byte[1024];
+    private int position = HEADER_SIZE;
+    private int root = -1;
+
+    /* The offset of every name written so far, names are only written once */
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+    /* The offsets of the names and values of every open object or list */
+    private int depth;
+    private int[][] offsets = new int[16][];
+    private int[] sizes = new int[16];
+    private int[] counts = new int[16];
+    private boolean[] objects = new boolean[16];
+
+    /**
+     * Create a new IndexedBinaryGenerator that writes a single document to the given output
+     * stream when it is flushed.
+     *
+     * @param outputStream
+     *            where to write the binary output to
+     */
+    public IndexedBinaryGenerator(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Entries are sorted by name when the object ends, so the order does not matter.
+     *
+     * @see com.comcast.cereal.CerealGenerator#orderNames(java.lang.String[])
+     */
+    public String[] orderNames(String[] names) {
+        return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartObject(int)
+     */
+    public void writeStartObject(int size) throws CerealException {
+        startContainer(size, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeName(java.lang.String)
+     */
+    public void writeName(String name) throws CerealException {
+        if (counts[depth - 1] == sizes[depth - 1]) {
+            throw new CerealException("More than " + sizes[depth - 1] + " values were written");
+        }
+
+        Integer offset = names.get(name);
+        if (null == offset) {
+            offset = position;
+            names.put(name, offset);
+            write(TYPE_STRING);
+            writeString(name);
+        }
+        offsets[depth - 1][2 * counts[depth - 1]] = offset;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndObject()
+     */
+    public void writeEndObject() throws CerealException {
+        int[] entries = endContainer();
+        int size = entries.length / 2;
+
+        /* Sort the entries by the bytes of their names so they can be found by binary search */
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        final int[] nameOffsets = entries;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return compareNames(nameOffsets[2 * a], nameOffsets[2 * b]);
+            }
+        });
+
+        int offset = position;
+        write(TYPE_OBJECT);
+        writeInt(size);
+        for (Integer i : order) {
+            writeInt(entries[2 * i]);
+            writeInt(entries[2 * i + 1]);
+        }
+        added(offset);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartArray(int)
+     */
+    public void writeStartArray(int size) throws CerealException {
+        if (size == UNKNOWN_SIZE) {
+            throw new CerealException("Binary cereal needs the size of every list up front");
+        }
+        startContainer(size, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndArray()
+     */
+    public void writeEndArray() throws CerealException {
+        int[] values = endContainer();
+
+        int offset = position;
+        write(TYPE_LIST);
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+        added(offset);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeValue(java.lang.Object)
+     */
+    public void writeValue(Object value) throws CerealException {
+        int offset = position;
+
+        if (null == value) {
+            write(TYPE_NULL);
+        } else if (value instanceof String) {
+            write(TYPE_STRING);
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            write(((Boolean) value) ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte
+                || (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64)) {
+            write(TYPE_INTEGER);
+            long l = ((Number) value).longValue();
+            writeVarLong((l << 1) ^ (l >> 63));
+        } else if (value instanceof Number) {
+            write(TYPE_DOUBLE);
+            long bits = Double.doubleToRawLongBits(((Number) value).doubleValue());
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            write(TYPE_BYTES);
+            writeVarLong(bytes.length);
+            write(bytes);
+        } else {
+            write(TYPE_STRING);
+            writeString(value.toString());
+        }
+
+        added(offset);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeCereal(java.lang.Object)
+     */
+    public void writeCereal(Object cereal) throws CerealException {
+        RecordingGenerator.writeCereal(this, cereal);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#fork()
+     */
+    public CerealGenerator fork() throws CerealException {
+        return new RecordingGenerator();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeFork(com.comcast.cereal.CerealGenerator)
+     */
+    public void writeFork(CerealGenerator fork) throws CerealException {
+        ((RecordingGenerator) fork).replay(this);
+    }
+
+    /**
+     * Write the document to the output stream. This must only be called once the root value is
+     * complete.
+     *
+     * @see com.comcast.cereal.CerealGenerator#flush()
+     */
+    public void flush() throws CerealException {
+        if (root < 0 || depth > 0) {
+            throw new CerealException("The root value has not been completely written");
+        }
+
+        buffer[0] = (byte) MAGIC;
+        buffer[1] = (byte) VERSION;
+        putInt(2, root);
+        try {
+            outputStream.write(buffer, 0, position);
+            outputStream.flush();
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing binary cereal", ioex);
+        }
+    }
+
+    /**
+     * Start collecting the offsets of the values of an object or list.
+     */
+    private void startContainer(int size, boolean object) {
+        if (depth == sizes.length) {
+            offsets = Arrays.copyOf(offsets, depth * 2);
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        offsets[depth] = new int[object ? 2 * size : size];
+        sizes[depth] = size;
+        counts[depth] = 0;
+        objects[depth] = object;
+        depth++;
+    }
+
+    /**
+     * Finish the current object or list.
+     *
+     * @return the offsets of its values, or of its names and values for an object
+     */
+    private int[] endContainer() throws CerealException {
+        depth--;
+        if (counts[depth] != sizes[depth]) {
+            throw new CerealException("Expected " + sizes[depth] + " values but " + counts[depth]
+                    + " were written");
+        }
+        int[] values = offsets[depth];
+        offsets[depth] = null;
+        return values;
+    }
+
+    /**
+     * Record a value that was written at the given offset in its object or list.
+     */
+    private void added(int offset) throws CerealException {
+        if (depth == 0) {
+            if (root >= 0) {
+                throw new CerealException("Only one root value can be written");
+            }
+            root = offset;
+            return;
+        }
+
+        int d = depth - 1;
+        if (counts[d] == sizes[d]) {
+            throw new CerealException("More than " + sizes[d] + " values were written");
+        }
+        offsets[d][objects[d] ? 2 * counts[d] + 1 : counts[d]] = offset;
+        counts[d]++;
+    }
+
+    /**
+     * Compare the bytes of the names written at the given offsets.
+     */
+    private int compareNames(int a, int b) {
+        int[] lengthA = readLength(a + 1);
+        int[] lengthB = readLength(b + 1);
+        int length = Math.min(lengthA[0], lengthB[0]);
+        for (int i = 0; i < length; i++) {
+            int diff = (buffer[lengthA[1] + i] & 0xFF) - (buffer[lengthB[1] + i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return lengthA[0] - lengthB[0];
+    }
+
+    /**
+     * Read back a varint length at the given offset.
+     *
+     * @return the length and the offset of the first byte after it
+     */
+    private int[] readLength(int offset) {
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = buffer[offset++];
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return new int[] { length, offset };
+            }
+        }
+    }
+
+    private void writeString(String string) {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarLong(bytes.length);
+        write(bytes);
+    }
+
+    /**
+     * Write an unsigned variable length integer, seven bits at a time with the lowest bits first.
+     */
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    /**
+     * Write a 4 byte big endian integer.
+     */
+    private void writeInt(int value) {
+        ensure(4);
+        putInt(position, value);
+        position += 4;
+    }
+
+    private void putInt(int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private void write(int b) {
+        ensure(1);
+        buffer[position++] = (byte) b;
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensure(int length) {
+        if (length > buffer.length - position) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.PrimitiveCerealGenerator;
+
+/**
+ * A {@link CerealGenerator} that writes JSON directly to a {@link Writer} through a reusable
+ * buffer. The output is formatted exactly like the <code>org.json</code> library formats the same
+ * cereal, including the order of object keys and the indentation used when pretty printing.
+ *
+ * @see com.comcast.cereal.engines.JsonCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class JsonGenerator implements PrimitiveCerealGenerator {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INDENT_FACTOR = 2;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private final int indentFactor;
+    private final boolean root;
+    private final char[] buffer;
+    private int position;
+
+    /* The declared size, number of values written and indent of every open object or list */
+    private int depth;
+    private int[] sizes = new int[16];
+    private int[] counts = new int[16];
+    private int[] indents = new int[16];
+    private boolean[] objects = new boolean[16];
+
+    /* The indent to use for the next value if it is an object or list */
+    private int valueIndent;
+
+    /**
+     * Create a new JsonGenerator that writes to the given writer.
+     *
+     * @param writer
+     *            where to write the JSON output to
+     * @param prettyPrint
+     *            if <code>true</code>, the JSON output will be indented, otherwise, whitespace
+     *            will be conserved
+     */
+    public JsonGenerator(Writer writer, boolean prettyPrint) {
+        this(writer, prettyPrint ? INDENT_FACTOR : 0, 0, true);
+    }
+
+    private JsonGenerator(Writer writer, int indentFactor, int valueIndent, boolean root) {
+        this.writer = writer;
+        this.indentFactor = indentFactor;
+        this.valueIndent = valueIndent;
+        this.root = root;
+        this.buffer = new char[root ? BUFFER_SIZE : 256];
+    }
+
+    /**
+     * The <code>org.json</code> library copies every map into a new {@link HashMap} before writing
+     * it, so this orders the names the same way.
+     *
+     * @see com.comcast.cereal.CerealGenerator#orderNames(java.lang.String[])
+     */
+    public String[] orderNames(String[] names) {
+        return StreamHelper.iterationOrder(names, -1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartObject(int)
+     */
+    public void writeStartObject(int size) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+        startContainer(size, '{');
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeName(java.lang.String)
+     */
+    public void writeName(String name) throws CerealException {
+        beforeValue();
+        quote(name);
+        write(':');
+        if (indentFactor > 0) {
+            write(' ');
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndObject()
+     */
+    public void writeEndObject() throws CerealException {
+        endContainer('}');
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartArray(int)
+     */
+    public void writeStartArray(int size) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+        startContainer(size, '[');
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndArray()
+     */
+    public void writeEndArray() throws CerealException {
+        endContainer(']');
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeValue(java.lang.Object)
+     */
+    public void writeValue(Object value) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+
+        if (null == value) {
+            write("null");
+        } else if (value instanceof String) {
+            quote((String) value);
+        } else if (root && depth == 0) {
+            /* Top level values are written as is */
+            write(value.toString());
+        } else if (value instanceof Number) {
+            write(numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            write(value.toString());
+        } else {
+            quote(value.toString());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeLong(long)
+     */
+    public void writeLong(long value) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+
+        if (Long.MIN_VALUE == value) {
+            write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+
+        /* Write the digits straight into the buffer from right to left */
+        int length = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        if (length > buffer.length - position) {
+            drain();
+        }
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        position += length;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeDouble(double)
+     */
+    public void writeDouble(double value) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+
+        if (root && depth == 0) {
+            write(Double.toString(value));
+        } else {
+            write(doubleToString(value));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.PrimitiveCerealGenerator#writeBoolean(boolean)
+     */
+    public void writeBoolean(boolean value) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+        write(value ? "true" : "false");
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeCereal(java.lang.Object)
+     */
+    @SuppressWarnings("rawtypes")
+    public void writeCereal(Object cereal) throws CerealException {
+        if (cereal instanceof Map) {
+            Map<String, Object> map = new HashMap<String, Object>();
+            for (Object o : ((Map) cereal).entrySet()) {
+                Entry entry = (Entry) o;
+                map.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+
+            writeStartObject(map.size());
+            for (Entry<String, Object> entry : map.entrySet()) {
+                writeName(entry.getKey());
+                writeCereal(entry.getValue());
+            }
+            writeEndObject();
+        } else if (cereal instanceof Collection) {
+            Collection collection = (Collection) cereal;
+            writeStartArray(collection.size());
+            for (Object value : collection) {
+                writeCereal(value);
+            }
+            writeEndArray();
+        } else if ((null != cereal) && cereal.getClass().isArray()) {
+            writeCereal(Arrays.asList(toObjectArray(cereal)));
+        } else {
+            writeValue(cereal);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#fork()
+     */
+    public CerealGenerator fork() throws CerealException {
+        return new JsonGenerator(new CharArrayWriter(), indentFactor, valueIndent, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeFork(com.comcast.cereal.CerealGenerator)
+     */
+    public void writeFork(CerealGenerator fork) throws CerealException {
+        if (depth > 0 && !isObject()) {
+            beforeValue();
+        }
+
+        JsonGenerator json = (JsonGenerator) fork;
+        json.flush();
+        char[] chars = ((CharArrayWriter) json.writer).toCharArray();
+        write(chars, chars.length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#flush()
+     */
+    public void flush() throws CerealException {
+        try {
+            writer.write(buffer, 0, position);
+            writer.flush();
+            position = 0;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing JSON", ioex);
+        }
+    }
+
+    /**
+     * Start an object or list whose first character is <code>c</code>.
+     */
+    private void startContainer(int size, char c) throws CerealException {
+        if (depth == sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+            indents = Arrays.copyOf(indents, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+
+        sizes[depth] = size;
+        counts[depth] = 0;
+        indents[depth] = valueIndent;
+        objects[depth] = (c == '{');
+        depth++;
+
+        /* Single values are written on the same line with the same indent */
+        valueIndent = (size == 1) ? valueIndent : valueIndent + indentFactor;
+        write(c);
+    }
+
+    /**
+     * End an object or list whose last character is <code>c</code>.
+     */
+    private void endContainer(char c) throws CerealException {
+        depth--;
+        int size = sizes[depth];
+        if (size != UNKNOWN_SIZE && counts[depth] != size) {
+            throw new CerealException("Expected " + size + " values but " + counts[depth]
+                    + " were written");
+        }
+
+        /* The values of a list of unknown size are always written on their own lines */
+        if (size > 1 || (size == UNKNOWN_SIZE && counts[depth] > 0)) {
+            if (indentFactor > 0) {
+                write('\n');
+            }
+            indent(indents[depth]);
+        }
+        valueIndent = indents[depth];
+        write(c);
+    }
+
+    /**
+     * Write the separator and indentation that comes before a value in the current list or before
+     * a name in the current object.
+     */
+    private void beforeValue() throws CerealException {
+        int index = depth - 1;
+        if (sizes[index] != 1) {
+            if (counts[index] > 0) {
+                write(',');
+            }
+            if (indentFactor > 0) {
+                write('\n');
+            }
+            indent(indents[index] + indentFactor);
+        }
+        counts[index]++;
+    }
+
+    /**
+     * Returns <code>true</code> if the innermost open container is an object. Values in an object
+     * are preceded by a name, which already wrote the separator.
+     */
+    private boolean isObject() {
+        return objects[depth - 1];
+    }
+
+    private void indent(int count) throws CerealException {
+        for (int i = 0; i < count; i++) {
+            write(' ');
+        }
+    }
+
+    /**
+     * Write a quoted and escaped string following the same rules as
+     * <code>org.json.JSONObject.quote</code>.
+     */
+    private void quote(String string) throws CerealException {
+        write('"');
+        char c = 0;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char b = c;
+            c = string.charAt(i);
+            switch (c) {
+            case '\\':
+            case '"':
+                write('\\');
+                write(c);
+                break;
+            case '/':
+                if (b == '<') {
+                    write('\\');
+                }
+                write(c);
+                break;
+            case '\b':
+                write("\\b");
+                break;
+            case '\t':
+                write("\\t");
+                break;
+            case '\n':
+                write("\\n");
+                break;
+            case '\f':
+                write("\\f");
+                break;
+            case '\r':
+                write("\\r");
+                break;
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                        || (c >= '\u2000' && c < '\u2100')) {
+                    write("\\u");
+                    write(HEX[(c >> 12) & 0xf]);
+                    write(HEX[(c >> 8) & 0xf]);
+                    write(HEX[(c >> 4) & 0xf]);
+                    write(HEX[c & 0xf]);
+                } else {
+                    write(c);
+                }
+            }
+        }
+        write('"');
+    }
+
+    /**
+     * Convert a number to a string following the same rules as
+     * <code>org.json.JSONObject.numberToString</code>.
+     */
+    private static String numberToString(Number number) throws CerealException {
+        double value = number.doubleValue();
+        if (((number instanceof Double) || (number instanceof Float))
+                && (Double.isInfinite(value) || Double.isNaN(value))) {
+            throw new CerealException("JSON does not allow non-finite numbers: " + number);
+        }
+        return trimZeros(number.toString());
+    }
+
+    /**
+     * Convert a <code>double</code> to a string exactly like {@link #numberToString(Number)}
+     * converts the boxed value.
+     */
+    private static String doubleToString(double value) throws CerealException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new CerealException("JSON does not allow non-finite numbers: " + value);
+        }
+        return trimZeros(Double.toString(value));
+    }
+
+    /**
+     * Shave off trailing zeros and decimal point, if possible.
+     */
+    private static String trimZeros(String string) {
+        if (string.indexOf('.') > 0 && string.indexOf('e') < 0 && string.indexOf('E') < 0) {
+            int end = string.length();
+            while (string.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (string.charAt(end - 1) == '.') {
+                end--;
+            }
+            string = string.substring(0, end);
+        }
+        return string;
+    }
+
+    private static Object[] toObjectArray(Object array) {
+        Object[] objects = new Object[Array.getLength(array)];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = Array.get(array, i);
+        }
+        return objects;
+    }
+
+    private void write(char c) throws CerealException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    private void write(String string) throws CerealException {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            write(string.charAt(i));
+        }
+    }
+
+    private void write(char[] chars, int length) throws CerealException {
+        if (length > buffer.length - position) {
+            drain();
+            try {
+                writer.write(chars, 0, length);
+            } catch (IOException ioex) {
+                throw new CerealException("Failed while writing JSON", ioex);
+            }
+        } else {
+            System.arraycopy(chars, 0, buffer, position, length);
+            position += length;
+        }
+    }
+
+    private void drain() throws CerealException {
+        try {
+            writer.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed while writing JSON", ioex);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.comcast.cereal.CerealException;
+
+/**
+ * A {@link com.comcast.cereal.CerealParser} that reads JSON characters from a {@link Reader}
+ * through a reusable buffer or straight out of a {@link CharSequence}.
+ *
+ * @see AbstractJsonParser
+ * @see com.comcast.cereal.engines.JsonCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class JsonParser extends AbstractJsonParser {
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+    private boolean eof;
+    private final StringBuilder builder = new StringBuilder();
+
+    /* Recently read object keys so that repeated keys share a single string */
+    private final String[] keys = new String[KEY_CACHE_SIZE];
+
+    /**
+     * Create a new JsonParser that reads from the given reader.
+     *
+     * @param reader
+     *            where to read the JSON input from
+     */
+    public JsonParser(Reader reader) {
+        this(reader, false);
+    }
+
+    /**
+     * Create a new JsonParser that reads from the given reader.
+     *
+     * @param reader
+     *            where to read the JSON input from
+     * @param multipleValues
+     *            if <code>true</code>, the input is a sequence of values separated by whitespace
+     *            (such as newline delimited JSON). Calling {@link #next()} after a value starts
+     *            the next one and {@link Token#END} is only returned at the end of the input.
+     */
+    public JsonParser(Reader reader, boolean multipleValues) {
+        super(multipleValues);
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Create a new JsonParser that reads the given characters. They are copied into the buffer
+     * once and parsed from there without going through a reader.
+     *
+     * @param json
+     *            the JSON input
+     */
+    public JsonParser(CharSequence json) {
+        this(json, false);
+    }
+
+    /**
+     * Create a new JsonParser that reads the given characters.
+     *
+     * @param json
+     *            the JSON input
+     * @param multipleValues
+     *            if <code>true</code>, the input is a sequence of values separated by whitespace
+     *
+     * @see #JsonParser(Reader, boolean)
+     */
+    public JsonParser(CharSequence json, boolean multipleValues) {
+        super(multipleValues);
+        this.reader = null;
+        this.buffer = json.toString().toCharArray();
+        this.limit = buffer.length;
+        this.eof = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readString(int)
+     */
+    String readString(int quote) throws CerealException {
+        /* Fast path for strings without escapes that are completely in the buffer */
+        for (int i = position; i < limit; i++) {
+            char c = buffer[i];
+            if (c == quote) {
+                String string = new String(buffer, position, i - position);
+                position = i + 1;
+                return string;
+            } else if (c == '\\' || c == '\n' || c == '\r') {
+                break;
+            }
+        }
+
+        builder.setLength(0);
+        for (;;) {
+            char c = read();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                builder.append(readEscape());
+                break;
+            default:
+                if (c == quote) {
+                    return builder.toString();
+                }
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Read the rest of an escape sequence. The backslash has already been read.
+     */
+    private char readEscape() throws CerealException {
+        char c = read();
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case 'u':
+            int result = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw syntaxError("Illegal escape.");
+                }
+                result = (result << 4) | digit;
+            }
+            return (char) result;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+            return c;
+        default:
+            throw syntaxError("Illegal escape.");
+        }
+    }
+
+    /**
+     * Keys that are completely in the buffer are looked up in the key cache without creating a
+     * new string.
+     *
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readKey(int)
+     */
+    String readKey(int quote) throws CerealException {
+        int hash = 0;
+        for (int i = position; i < limit; i++) {
+            char c = buffer[i];
+            if (c == quote) {
+                String key = intern(buffer, position, i - position, hash);
+                position = i + 1;
+                return key;
+            } else if (c == '\\' || c == '\n' || c == '\r') {
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+
+        String key = readString(quote);
+        return intern(key.toCharArray(), 0, key.length(), key.hashCode());
+    }
+
+    /**
+     * Get the cached key equal to the given characters, replacing whatever was cached in its slot
+     * if there is no match. The hash must be the same as {@link String#hashCode()}.
+     */
+    private String intern(char[] chars, int start, int length, int hash) {
+        int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+        String key = keys[slot];
+        if (null != key && key.length() == length) {
+            int i = 0;
+            while (i < length && key.charAt(i) == chars[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return key;
+            }
+        }
+        return keys[slot] = new String(chars, start, length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readUnquoted()
+     */
+    Object readUnquoted() throws CerealException {
+        /* Fast path for text that ends in the buffer, the first character is at position - 1 */
+        int start = position - 1;
+        for (int i = position; i < limit; i++) {
+            if (isStop(buffer[i])) {
+                position = i;
+                return toValue(buffer, start, i - start);
+            }
+        }
+
+        builder.setLength(0);
+        builder.append(buffer, start, limit - start);
+        position = limit;
+        char c = read();
+        while (c != 0 && !isStop(c)) {
+            builder.append(c);
+            c = read();
+        }
+        if (c != 0) {
+            position--;
+        }
+
+        char[] chars = new char[builder.length()];
+        builder.getChars(0, chars.length, chars, 0);
+        return toValue(chars, 0, chars.length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#nextClean()
+     */
+    int nextClean() throws CerealException {
+        for (;;) {
+            char c = read();
+            if (c == 0 || c > ' ') {
+                return c;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#back()
+     */
+    void back() {
+        position--;
+    }
+
+    /**
+     * Get the next character or <code>0</code> at the end of the input.
+     */
+    private char read() throws CerealException {
+        if (position >= limit && !fill()) {
+            /* Keep the position past the end so that stepping back is always safe */
+            position = limit + 1;
+            return 0;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws CerealException {
+        if (eof) {
+            return false;
+        }
+
+        try {
+            int count = reader.read(buffer, 0, buffer.length);
+            while (count == 0) {
+                count = reader.read(buffer, 0, buffer.length);
+            }
+
+            if (count < 0) {
+                eof = true;
+                return false;
+            }
+
+            offset += limit;
+            position = 0;
+            limit = count;
+            return true;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to read JSON", ioex);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#syntaxError(java.lang.String)
+     */
+    CerealException syntaxError(String message) {
+        return new CerealException(message + " at character " + (offset + position));
+    }
+}
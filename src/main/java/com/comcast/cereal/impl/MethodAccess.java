@@ -15,11 +15,16 @@
  */
 package com.comcast.cereal.impl;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 
 import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
 import com.comcast.cereal.Cerealizer;
 import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.Fixup;
+import com.comcast.cereal.ObjectCache.ForwardReference;
 
 /**
  * Provides CerealAccess for object {@link Method}s.
@@ -31,6 +36,11 @@ public class MethodAccess extends CerealAccess {
 
     private Method setter = null;
     private Method getter = null;
+    private MethodHandle setterHandle = null;
+    private MethodHandle getterHandle = null;
+    private String setterName = null;
+    private String getterName = null;
+    private Class<?> type = null;
 
     /**
      * Construct a new MethodAccess object that uses the given cerealizer to convert.
@@ -42,6 +52,31 @@ public class MethodAccess extends CerealAccess {
         super(cerealizer, true, null, null);
     }
 
+    /**
+     * Construct a new MethodAccess object for a subclass that calls the getter and setter itself
+     * by overriding {@link #invokeGetter(Object)} and {@link #invokeSetter(Object, Object)}. This
+     * is used by generated cerealizers, which call their methods directly instead of through
+     * reflection.
+     * 
+     * @param cerealizer
+     *            the cerealizer to use when converting
+     * @param getterName
+     *            the description of the getter method used in error messages or
+     *            <code>null</code> if there is no getter
+     * @param setterName
+     *            the description of the setter method used in error messages or
+     *            <code>null</code> if there is no setter
+     * @param type
+     *            the parameter type of the setter method
+     */
+    protected MethodAccess(Cerealizer cerealizer, String getterName, String setterName,
+            Class<?> type) {
+        super(cerealizer, true, null, null);
+        this.getterName = getterName;
+        this.setterName = setterName;
+        this.type = type;
+    }
+
     /**
      * Set the given method as the getter method to use when reading.
      * 
@@ -50,6 +85,7 @@ public class MethodAccess extends CerealAccess {
      */
     public void setGetter(Method getter) {
         this.getter = getter;
+        this.getterName = getter.toString();
     }
 
     /**
@@ -60,6 +96,17 @@ public class MethodAccess extends CerealAccess {
      */
     public void setSetter(Method setter) {
         this.setter = setter;
+        this.setterName = setter.toString();
+        this.type = setter.getParameterTypes()[0];
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#useMethodHandles()
+     */
+    public void useMethodHandles() {
+        this.getterHandle = (null == getter) ? null : ReflectionHelper.getterHandle(getter);
+        this.setterHandle = (null == setter) ? null : ReflectionHelper.setterHandle(setter);
     }
 
     /*
@@ -67,17 +114,89 @@ public class MethodAccess extends CerealAccess {
      * @see com.comcast.cereal.impl.CerealAccess#applyCereal(java.lang.Object, java.lang.Object)
      */
     public void applyCereal(Object cereal, Object target, ObjectCache objectCache) throws CerealException {
-        if (null == setter) {
+        if (null == setterName) {
             throw new CerealException("No setter method was associated with this value");
         }
 
+        Object value = convertCereal(cereal, objectCache);
+        try {
+            invokeSetter(target, value);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to invoke the setter method '" + setterName
+                    + "'", throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#convertCereal(java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object convertCereal(Object cereal, ObjectCache objectCache) throws CerealException {
         try {
             Object value = cerealizer.deCerealize(cereal, objectCache);
+            return ReflectionHelper.convert(value, getJavaType());
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to convert the value for '" + getterName + "'",
+                    throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#convertValue(java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object convertValue(Object value, ObjectCache objectCache) throws CerealException {
+        if (value instanceof ForwardReference) {
+            throw new CerealException("The value for '" + getterName
+                    + "' references an object that has not been read yet");
+        }
+        return ReflectionHelper.convert(value, getJavaType());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#readValue(com.comcast.cereal.CerealParser,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object readValue(CerealParser parser, ObjectCache objectCache) throws CerealException {
+        try {
+            return StreamHelper.read(cerealizer, parser, false, null, objectCache);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to invoke the setter method '" + setterName
+                    + "'", throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#setValue(java.lang.Object, java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public void setValue(Object value, final Object target, ObjectCache objectCache)
+            throws CerealException {
+        if (null == setterName) {
+            throw new CerealException("No setter method was associated with this value");
+        }
+
+        if (value instanceof ForwardReference) {
+            objectCache.addFixup((ForwardReference) value, new Fixup() {
+                public void resolve(Object object) throws CerealException {
+                    set(object, target);
+                }
+            });
+        } else {
+            set(value, target);
+        }
+    }
+
+    private void set(Object value, Object target) throws CerealException {
+        try {
             value = ReflectionHelper.convert(value, getJavaType());
-            setter.setAccessible(true);
-            setter.invoke(target, value);
+            invokeSetter(target, value);
         } catch (Throwable throwable) {
-            throw new CerealException("Failed to invoke the setter method '" + setter.toString()
+            throw new CerealException("Failed to invoke the setter method '" + setterName
                     + "'", throwable);
         }
     }
@@ -87,29 +206,88 @@ public class MethodAccess extends CerealAccess {
      * @see com.comcast.cereal.impl.CerealAccess#getCereal(java.lang.Object)
      */
     public Object getCereal(Object source, ObjectCache objectCache) throws CerealException {
-        if (null == getter) {
+        if (null == getterName) {
             throw new CerealException("No getter method was associated with this value");
         }
 
         try {
-            getter.setAccessible(true);
-            Object value = getter.invoke(source);
+            Object value = invokeGetter(source);
             return cerealizer.cerealize(value, objectCache);
         } catch (Throwable throwable) {
-            throw new CerealException("Failed to invoke the getter method '" + getter.toString()
+            throw new CerealException("Failed to invoke the getter method '" + getterName
+                    + "'", throwable);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.CerealAccess#writeCereal(java.lang.Object,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void writeCereal(Object source, CerealGenerator generator, ObjectCache objectCache)
+            throws CerealException {
+        if (null == getterName) {
+            throw new CerealException("No getter method was associated with this value");
+        }
+
+        try {
+            Object value = invokeGetter(source);
+            StreamHelper.write(cerealizer, value, null, generator, objectCache);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to invoke the getter method '" + getterName
                     + "'", throwable);
         }
     }
     
+    /**
+     * Call the getter method on the given object.
+     * 
+     * @param source
+     *            the object to read from
+     * 
+     * @return the value returned by the getter
+     * 
+     * @throws Throwable
+     *             if the getter could not be called or failed
+     */
+    protected Object invokeGetter(Object source) throws Throwable {
+        if (null != getterHandle) {
+            return (Object) getterHandle.invokeExact(source);
+        }
+        getter.setAccessible(true);
+        return getter.invoke(source);
+    }
+
+    /**
+     * Call the setter method on the given object with the given value, which has already been
+     * converted to the parameter type of the setter.
+     * 
+     * @param target
+     *            the object to write to
+     * @param value
+     *            the value to pass to the setter
+     * 
+     * @throws Throwable
+     *             if the setter could not be called or failed
+     */
+    protected void invokeSetter(Object target, Object value) throws Throwable {
+        if (null != setterHandle) {
+            setterHandle.invokeExact(target, value);
+        } else {
+            setter.setAccessible(true);
+            setter.invoke(target, value);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * @see com.comcast.cereal.impl.CerealAccess#getJavaType()
      */
     public Class getJavaType() throws CerealException {
-        if (null == setter) {
+        if (null == setterName) {
             throw new CerealException("No setter method was associated with this value");
         } else {
-            return setter.getParameterTypes()[0];
+            return type;
         }
     }
 }
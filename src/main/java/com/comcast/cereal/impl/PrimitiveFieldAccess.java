@@ -0,0 +1,509 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
+import com.comcast.cereal.Cerealizer;
+import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.PrimitiveCerealGenerator;
+
+/**
+ * Provides CerealAccess for fields with a primitive type that are converted with the standard
+ * cerealizer for that type. Values are read and written with the primitive accessors of
+ * {@link Field} (or primitive typed method handles), written to a
+ * {@link PrimitiveCerealGenerator} without boxing and applied straight from the {@link Number}
+ * or {@link Boolean} that was parsed without converting it first. Anything else, such as a
+ * number encoded as a string, is handled exactly like a {@link FieldAccess}.
+ * 
+ * <p>
+ * Generated cerealizers subclass the variants for each type and override their primitive typed
+ * accessors, such as {@link IntFieldAccess#getInt(Object)} and
+ * {@link IntFieldAccess#putInt(Object, int)}, to access the field directly.
+ * </p>
+ * 
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+@SuppressWarnings("rawtypes")
+public abstract class PrimitiveFieldAccess extends FieldAccess {
+
+    protected final Field field;
+    private final String member;
+    protected MethodHandle primitiveGetter;
+    protected MethodHandle primitiveSetter;
+
+    /**
+     * Construct a new PrimitiveFieldAccess object that targets the given field.
+     * 
+     * @see FieldAccess#FieldAccess(Field, Cerealizer, boolean, String, Class, CerealFactory,
+     *      boolean)
+     */
+    protected PrimitiveFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+            String defaultValue, Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+        super(field, cerealizer, requireValue, defaultValue, defaultObjectClass, cerealFactory,
+                false);
+        this.field = field;
+        this.member = field.toString();
+    }
+
+    /**
+     * Construct a new PrimitiveFieldAccess object for a subclass that reads and writes the field
+     * itself.
+     * 
+     * @see FieldAccess#FieldAccess(String, Class, Class, Cerealizer, boolean, String, Class,
+     *      CerealFactory, boolean)
+     */
+    protected PrimitiveFieldAccess(String member, Class<?> declaringClass, Class<?> type,
+            Cerealizer cerealizer, boolean requireValue, String defaultValue,
+            Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+        super(member, declaringClass, type, cerealizer, requireValue, defaultValue,
+                defaultObjectClass, cerealFactory, false);
+        this.field = null;
+        this.member = member;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#useMethodHandles()
+     */
+    public void useMethodHandles() {
+        super.useMethodHandles();
+        if (null == field) {
+            return;
+        }
+        this.primitiveGetter = ReflectionHelper.getterHandle(field, field.getType());
+        this.primitiveSetter = ReflectionHelper.setterHandle(field, field.getType());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#applyCereal(java.lang.Object, java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public void applyCereal(Object cereal, Object target, ObjectCache objectCache)
+            throws CerealException {
+        if (accepts(cereal)) {
+            apply(target, cereal);
+        } else {
+            super.applyCereal(cereal, target, objectCache);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#readValue(com.comcast.cereal.CerealParser,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object readValue(CerealParser parser, ObjectCache objectCache) throws CerealException {
+        if ((Token.VALUE == parser.getToken()) && accepts(parser.getValue())) {
+            return parser.getValue();
+        }
+        return super.readValue(parser, objectCache);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#setValue(java.lang.Object, java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public void setValue(Object value, Object target, ObjectCache objectCache)
+            throws CerealException {
+        if (accepts(value)) {
+            apply(target, value);
+        } else {
+            super.setValue(value, target, objectCache);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#convertValue(java.lang.Object,
+     * com.comcast.cereal.ObjectCache)
+     */
+    public Object convertValue(Object value, ObjectCache objectCache) throws CerealException {
+        if (accepts(value)) {
+            /* The value was not converted when it was read */
+            return convertCereal(value, objectCache);
+        }
+        return super.convertValue(value, objectCache);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.FieldAccess#writeCereal(java.lang.Object,
+     * com.comcast.cereal.CerealGenerator, com.comcast.cereal.ObjectCache)
+     */
+    public void writeCereal(Object source, CerealGenerator generator, ObjectCache objectCache)
+            throws CerealException {
+        if (generator instanceof PrimitiveCerealGenerator) {
+            try {
+                write(source, (PrimitiveCerealGenerator) generator);
+            } catch (Throwable throwable) {
+                throw new CerealException("Failed to get the value from '" + member + "'",
+                        throwable);
+            }
+        } else {
+            super.writeCereal(source, generator, objectCache);
+        }
+    }
+
+    private void apply(Object target, Object value) throws CerealException {
+        try {
+            putPrimitive(target, value);
+        } catch (Throwable throwable) {
+            throw new CerealException("Failed to set the value of '" + member + "'", throwable);
+        }
+    }
+
+    /**
+     * Check if the given parsed value can be applied without converting it.
+     * 
+     * @param value
+     *            the parsed value
+     * 
+     * @return <code>true</code> if the value can be given to {@link #putPrimitive(Object, Object)}
+     */
+    protected boolean accepts(Object value) {
+        return value instanceof Number;
+    }
+
+    /**
+     * Read the value of the field from the given object and write it to the given generator.
+     * 
+     * @param source
+     *            the object to read from
+     * @param generator
+     *            the generator to write to
+     * 
+     * @throws Throwable
+     *             if the field could not be read or the value could not be written
+     */
+    protected abstract void write(Object source, PrimitiveCerealGenerator generator)
+            throws Throwable;
+
+    /**
+     * Write the given value, which has been accepted by {@link #accepts(Object)}, to the field of
+     * the given object.
+     * 
+     * @param target
+     *            the object to write to
+     * @param value
+     *            the value to write
+     * 
+     * @throws Throwable
+     *             if the field could not be written
+     */
+    protected abstract void putPrimitive(Object target, Object value) throws Throwable;
+
+    /**
+     * Provides CerealAccess for <code>int</code> fields.
+     */
+    public static class IntFieldAccess extends PrimitiveFieldAccess {
+
+        public IntFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+                String defaultValue, Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+            super(field, cerealizer, requireValue, defaultValue, defaultObjectClass,
+                    cerealFactory);
+        }
+
+        /**
+         * Construct a new IntFieldAccess for a subclass that overrides {@link #getInt(Object)} and
+         * {@link #putInt(Object, int)} to access the field itself.
+         */
+        protected IntFieldAccess(String member, Class<?> declaringClass, Cerealizer cerealizer,
+                boolean requireValue, String defaultValue, Class<?> defaultObjectClass,
+                CerealFactory cerealFactory) {
+            super(member, declaringClass, int.class, cerealizer, requireValue, defaultValue,
+                    defaultObjectClass, cerealFactory);
+        }
+
+        @Override
+        protected void write(Object source, PrimitiveCerealGenerator generator) throws Throwable {
+            generator.writeLong(getInt(source));
+        }
+
+        @Override
+        protected void putPrimitive(Object target, Object value) throws Throwable {
+            putInt(target, ((Number) value).intValue());
+        }
+
+        /**
+         * Read the value of the field from the given object without boxing it.
+         * 
+         * @param source
+         *            the object to read from
+         * 
+         * @return the value of the field
+         * 
+         * @throws Throwable
+         *             if the field could not be read
+         */
+        protected int getInt(Object source) throws Throwable {
+            if (null != primitiveGetter) {
+                return (int) primitiveGetter.invokeExact(source);
+            }
+            field.setAccessible(true);
+            return field.getInt(source);
+        }
+
+        /**
+         * Write the given value to the field of the given object without boxing it.
+         * 
+         * @param target
+         *            the object to write to
+         * @param value
+         *            the value to write
+         * 
+         * @throws Throwable
+         *             if the field could not be written
+         */
+        protected void putInt(Object target, int value) throws Throwable {
+            if (null != primitiveSetter) {
+                primitiveSetter.invokeExact(target, value);
+            } else {
+                field.setAccessible(true);
+                field.setInt(target, value);
+            }
+        }
+    }
+
+    /**
+     * Provides CerealAccess for <code>long</code> fields.
+     */
+    public static class LongFieldAccess extends PrimitiveFieldAccess {
+
+        public LongFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+                String defaultValue, Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+            super(field, cerealizer, requireValue, defaultValue, defaultObjectClass,
+                    cerealFactory);
+        }
+
+        /**
+         * Construct a new LongFieldAccess for a subclass that overrides {@link #getLong(Object)} and
+         * {@link #putLong(Object, long)} to access the field itself.
+         */
+        protected LongFieldAccess(String member, Class<?> declaringClass, Cerealizer cerealizer,
+                boolean requireValue, String defaultValue, Class<?> defaultObjectClass,
+                CerealFactory cerealFactory) {
+            super(member, declaringClass, long.class, cerealizer, requireValue, defaultValue,
+                    defaultObjectClass, cerealFactory);
+        }
+
+        @Override
+        protected void write(Object source, PrimitiveCerealGenerator generator) throws Throwable {
+            generator.writeLong(getLong(source));
+        }
+
+        @Override
+        protected void putPrimitive(Object target, Object value) throws Throwable {
+            putLong(target, ((Number) value).longValue());
+        }
+
+        /**
+         * Read the value of the field from the given object without boxing it.
+         * 
+         * @param source
+         *            the object to read from
+         * 
+         * @return the value of the field
+         * 
+         * @throws Throwable
+         *             if the field could not be read
+         */
+        protected long getLong(Object source) throws Throwable {
+            if (null != primitiveGetter) {
+                return (long) primitiveGetter.invokeExact(source);
+            }
+            field.setAccessible(true);
+            return field.getLong(source);
+        }
+
+        /**
+         * Write the given value to the field of the given object without boxing it.
+         * 
+         * @param target
+         *            the object to write to
+         * @param value
+         *            the value to write
+         * 
+         * @throws Throwable
+         *             if the field could not be written
+         */
+        protected void putLong(Object target, long value) throws Throwable {
+            if (null != primitiveSetter) {
+                primitiveSetter.invokeExact(target, value);
+            } else {
+                field.setAccessible(true);
+                field.setLong(target, value);
+            }
+        }
+    }
+
+    /**
+     * Provides CerealAccess for <code>double</code> fields.
+     */
+    public static class DoubleFieldAccess extends PrimitiveFieldAccess {
+
+        public DoubleFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+                String defaultValue, Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+            super(field, cerealizer, requireValue, defaultValue, defaultObjectClass,
+                    cerealFactory);
+        }
+
+        /**
+         * Construct a new DoubleFieldAccess for a subclass that overrides {@link #getDouble(Object)} and
+         * {@link #putDouble(Object, double)} to access the field itself.
+         */
+        protected DoubleFieldAccess(String member, Class<?> declaringClass, Cerealizer cerealizer,
+                boolean requireValue, String defaultValue, Class<?> defaultObjectClass,
+                CerealFactory cerealFactory) {
+            super(member, declaringClass, double.class, cerealizer, requireValue, defaultValue,
+                    defaultObjectClass, cerealFactory);
+        }
+
+        @Override
+        protected void write(Object source, PrimitiveCerealGenerator generator) throws Throwable {
+            generator.writeDouble(getDouble(source));
+        }
+
+        @Override
+        protected void putPrimitive(Object target, Object value) throws Throwable {
+            putDouble(target, ((Number) value).doubleValue());
+        }
+
+        /**
+         * Read the value of the field from the given object without boxing it.
+         * 
+         * @param source
+         *            the object to read from
+         * 
+         * @return the value of the field
+         * 
+         * @throws Throwable
+         *             if the field could not be read
+         */
+        protected double getDouble(Object source) throws Throwable {
+            if (null != primitiveGetter) {
+                return (double) primitiveGetter.invokeExact(source);
+            }
+            field.setAccessible(true);
+            return field.getDouble(source);
+        }
+
+        /**
+         * Write the given value to the field of the given object without boxing it.
+         * 
+         * @param target
+         *            the object to write to
+         * @param value
+         *            the value to write
+         * 
+         * @throws Throwable
+         *             if the field could not be written
+         */
+        protected void putDouble(Object target, double value) throws Throwable {
+            if (null != primitiveSetter) {
+                primitiveSetter.invokeExact(target, value);
+            } else {
+                field.setAccessible(true);
+                field.setDouble(target, value);
+            }
+        }
+    }
+
+    /**
+     * Provides CerealAccess for <code>boolean</code> fields.
+     */
+    public static class BooleanFieldAccess extends PrimitiveFieldAccess {
+
+        public BooleanFieldAccess(Field field, Cerealizer cerealizer, boolean requireValue,
+                String defaultValue, Class<?> defaultObjectClass, CerealFactory cerealFactory) {
+            super(field, cerealizer, requireValue, defaultValue, defaultObjectClass,
+                    cerealFactory);
+        }
+
+        /**
+         * Construct a new BooleanFieldAccess for a subclass that overrides {@link #getBoolean(Object)} and
+         * {@link #putBoolean(Object, boolean)} to access the field itself.
+         */
+        protected BooleanFieldAccess(String member, Class<?> declaringClass, Cerealizer cerealizer,
+                boolean requireValue, String defaultValue, Class<?> defaultObjectClass,
+                CerealFactory cerealFactory) {
+            super(member, declaringClass, boolean.class, cerealizer, requireValue, defaultValue,
+                    defaultObjectClass, cerealFactory);
+        }
+
+        @Override
+        protected boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        protected void write(Object source, PrimitiveCerealGenerator generator) throws Throwable {
+            generator.writeBoolean(getBoolean(source));
+        }
+
+        @Override
+        protected void putPrimitive(Object target, Object value) throws Throwable {
+            putBoolean(target, ((Boolean) value).booleanValue());
+        }
+
+        /**
+         * Read the value of the field from the given object without boxing it.
+         * 
+         * @param source
+         *            the object to read from
+         * 
+         * @return the value of the field
+         * 
+         * @throws Throwable
+         *             if the field could not be read
+         */
+        protected boolean getBoolean(Object source) throws Throwable {
+            if (null != primitiveGetter) {
+                return (boolean) primitiveGetter.invokeExact(source);
+            }
+            field.setAccessible(true);
+            return field.getBoolean(source);
+        }
+
+        /**
+         * Write the given value to the field of the given object without boxing it.
+         * 
+         * @param target
+         *            the object to write to
+         * @param value
+         *            the value to write
+         * 
+         * @throws Throwable
+         *             if the field could not be written
+         */
+        protected void putBoolean(Object target, boolean value) throws Throwable {
+            if (null != primitiveSetter) {
+                primitiveSetter.invokeExact(target, value);
+            } else {
+                field.setAccessible(true);
+                field.setBoolean(target, value);
+            }
+        }
+    }
+}
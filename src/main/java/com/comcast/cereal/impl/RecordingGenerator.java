@@ -0,0 +1,176 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.TaggedCerealGenerator;
+
+/**
+ * A generator that records the calls made to it so they can be replayed to another
+ * {@link CerealGenerator} later. Generators whose output depends on everything written before a
+ * value use this for their forks.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+class RecordingGenerator implements TaggedCerealGenerator {
+
+    private static final Object START_OBJECT = new Object();
+    private static final Object END_OBJECT = new Object();
+    private static final Object START_ARRAY = new Object();
+    private static final Object END_ARRAY = new Object();
+    private static final Object NAME = new Object();
+    private static final Object TAG = new Object();
+    private static final Object VALUE = new Object();
+    private static final Object FORK = new Object();
+
+    /* Pairs of an event and its argument */
+    private final List<Object> events = new ArrayList<Object>();
+
+    private final boolean writesTags;
+
+    /**
+     * Create a recording generator that does not write tags.
+     */
+    RecordingGenerator() {
+        this(false);
+    }
+
+    /**
+     * Create a recording generator.
+     *
+     * @param writesTags
+     *            <code>true</code> if the generator it is replayed to writes tags
+     */
+    RecordingGenerator(boolean writesTags) {
+        this.writesTags = writesTags;
+    }
+
+    public String[] orderNames(String[] names) {
+        return names;
+    }
+
+    public void writeStartObject(int size) {
+        record(START_OBJECT, size);
+    }
+
+    public void writeName(String name) {
+        record(NAME, name);
+    }
+
+    public boolean writesTags() {
+        return writesTags;
+    }
+
+    public void writeTag(int tag) {
+        record(TAG, tag);
+    }
+
+    public void writeEndObject() {
+        record(END_OBJECT, null);
+    }
+
+    public void writeStartArray(int size) {
+        record(START_ARRAY, size);
+    }
+
+    public void writeEndArray() {
+        record(END_ARRAY, null);
+    }
+
+    public void writeValue(Object value) {
+        record(VALUE, value);
+    }
+
+    public void writeCereal(Object cereal) throws CerealException {
+        writeCereal(this, cereal);
+    }
+
+    public CerealGenerator fork() {
+        return new RecordingGenerator(writesTags);
+    }
+
+    public void writeFork(CerealGenerator fork) {
+        record(FORK, fork);
+    }
+
+    public void flush() {}
+
+    private void record(Object event, Object argument) {
+        events.add(event);
+        events.add(argument);
+    }
+
+    /**
+     * Make the recorded calls to the given generator.
+     */
+    void replay(CerealGenerator target) throws CerealException {
+        for (int i = 0; i < events.size(); i += 2) {
+            Object event = events.get(i);
+            Object argument = events.get(i + 1);
+            if (START_OBJECT == event) {
+                target.writeStartObject((Integer) argument);
+            } else if (END_OBJECT == event) {
+                target.writeEndObject();
+            } else if (START_ARRAY == event) {
+                target.writeStartArray((Integer) argument);
+            } else if (END_ARRAY == event) {
+                target.writeEndArray();
+            } else if (NAME == event) {
+                target.writeName((String) argument);
+            } else if (TAG == event) {
+                ((TaggedCerealGenerator) target).writeTag((Integer) argument);
+            } else if (VALUE == event) {
+                target.writeValue(argument);
+            } else {
+                ((RecordingGenerator) argument).replay(target);
+            }
+        }
+    }
+
+    /**
+     * Write the given cereal as calls to the given generator. Map entries are written in the
+     * order the map iterates them.
+     */
+    @SuppressWarnings("rawtypes")
+    static void writeCereal(CerealGenerator generator, Object cereal) throws CerealException {
+        if (cereal instanceof Map) {
+            Map map = (Map) cereal;
+            generator.writeStartObject(map.size());
+            for (Object o : map.entrySet()) {
+                Entry entry = (Entry) o;
+                generator.writeName(String.valueOf(entry.getKey()));
+                writeCereal(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (cereal instanceof Collection) {
+            Collection collection = (Collection) cereal;
+            generator.writeStartArray(collection.size());
+            for (Object value : collection) {
+                writeCereal(generator, value);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeValue(cereal);
+        }
+    }
+}
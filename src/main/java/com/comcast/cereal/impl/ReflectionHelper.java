@@ -15,6 +15,13 @@
  */
 package com.comcast.cereal.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.HashMap;
@@ -22,6 +29,8 @@ import java.util.Map;
 
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.beanutils.Converter;
+import org.objenesis.ObjenesisHelper;
+import org.objenesis.instantiator.ObjectInstantiator;
 
 /**
  * Simple utility class for ensuring that if a type read by a CerealEngine is too generic, it will
@@ -31,6 +40,25 @@ import org.apache.commons.beanutils.Converter;
  */
 public class ReflectionHelper {
 
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class,
+            Object.class);
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+    private static final MethodType CREATOR = MethodType.methodType(Object.class,
+            Object[].class);
+
+    /* Records are only available on newer runtimes, so they are looked up reflectively */
+    private static final Method GET_RECORD_COMPONENTS;
+    static {
+        Method method = null;
+        try {
+            method = Class.class.getMethod("getRecordComponents");
+        } catch (NoSuchMethodException ex) {
+            /* This runtime does not support records */
+        }
+        GET_RECORD_COMPONENTS = method;
+    }
+
     private static final Map<Class<?>, Class<?>> map;
     static {
         map = new HashMap<Class<?>, Class<?>>();
@@ -99,4 +127,270 @@ public class ReflectionHelper {
             return null;
         }
     }
+
+    /**
+     * Get a method handle that reads the given field. The handle takes the object to read from
+     * and returns the (boxed) value, so it is called as
+     * <code>(Object) handle.invokeExact(source)</code>.
+     * 
+     * @param field
+     *            the field to read
+     * 
+     * @return the handle or <code>null</code> if the field can not be read through a handle
+     */
+    public static MethodHandle getterHandle(Field field) {
+        return getterHandle(field, Object.class);
+    }
+
+    /**
+     * Get a method handle that reads the given field as the given type. A field with a primitive
+     * type can be read without boxing by passing the type of the field, in which case an
+     * <code>int</code> field is read as <code>(int) handle.invokeExact(source)</code>.
+     * 
+     * @param field
+     *            the field to read
+     * @param type
+     *            the type the handle returns
+     * 
+     * @return the handle or <code>null</code> if the field can not be read through a handle
+     */
+    public static MethodHandle getterHandle(Field field, Class<?> type) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field)
+                    .asType(MethodType.methodType(type, Object.class));
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a method handle that writes the given field. The handle takes the object to write to
+     * and the (boxed) value and is called as <code>handle.invokeExact(target, value)</code>.
+     * 
+     * @param field
+     *            the field to write
+     * 
+     * @return the handle or <code>null</code> if the field can not be written through a handle
+     */
+    public static MethodHandle setterHandle(Field field) {
+        return setterHandle(field, Object.class);
+    }
+
+    /**
+     * Get a method handle that writes the given field from a value of the given type. This is the
+     * counterpart of {@link #getterHandle(Field, Class)}.
+     * 
+     * @param field
+     *            the field to write
+     * @param type
+     *            the type of the value the handle takes
+     * 
+     * @return the handle or <code>null</code> if the field can not be written through a handle
+     */
+    public static MethodHandle setterHandle(Field field, Class<?> type) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, type));
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a method handle that calls the given getter method, typed like
+     * {@link #getterHandle(Field)}.
+     * 
+     * @param method
+     *            the getter method
+     * 
+     * @return the handle or <code>null</code> if the method can not be called through a handle
+     */
+    public static MethodHandle getterHandle(Method method) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(GETTER);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a method handle that calls the given setter method, typed like
+     * {@link #setterHandle(Field)}.
+     * 
+     * @param method
+     *            the setter method
+     * 
+     * @return the handle or <code>null</code> if the method can not be called through a handle
+     */
+    public static MethodHandle setterHandle(Method method) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(SETTER);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a method handle that calls the public no-argument constructor of the given class. The
+     * handle takes no arguments and is called as <code>(Object) handle.invokeExact()</code>. This
+     * only finds the constructors that {@link Class#newInstance()} is allowed to call for any
+     * caller, so abstract classes, interfaces and classes that are not public have none.
+     * 
+     * @param type
+     *            the class to construct
+     * 
+     * @return the handle or <code>null</code> if the class can not be constructed this way
+     */
+    public static MethodHandle constructorHandle(Class<?> type) {
+        int mods = type.getModifiers();
+        if (type.isInterface() || Modifier.isAbstract(mods) || !Modifier.isPublic(mods)) {
+            return null;
+        }
+
+        try {
+            Constructor<?> constructor = type.getConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get an instantiator that creates new, empty instances of the given class. It calls the
+     * constructor found by {@link #constructorHandle(Class)} and falls back to creating the
+     * object without calling any constructor if there is none or it fails. The instantiator
+     * should be kept and reused, as finding the way to create the objects is far more expensive
+     * than creating them.
+     * 
+     * @param type
+     *            the class to instantiate
+     * 
+     * @return the instantiator
+     */
+    public static ObjectInstantiator getInstantiator(Class<?> type) {
+        MethodHandle constructor = constructorHandle(type);
+        if (null == constructor) {
+            return ObjenesisHelper.getInstantiatorOf(type);
+        }
+        return new ConstructorInstantiator(type, constructor);
+    }
+
+    /**
+     * Get a method handle that calls the given constructor with its arguments in an array. The
+     * handle is called as <code>(Object) handle.invokeExact(arguments)</code> and unboxes the
+     * arguments of primitive parameters.
+     * 
+     * @param constructor
+     *            the constructor to call
+     * 
+     * @return the handle or <code>null</code> if the constructor can not be called through a
+     *         handle
+     */
+    public static MethodHandle creatorHandle(Constructor<?> constructor) {
+        try {
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterTypes().length)
+                    .asType(CREATOR);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the names of the components of the given record class in the order they are declared,
+     * which is also the order of the parameters of its canonical constructor.
+     * 
+     * @param type
+     *            the class
+     * 
+     * @return the names or <code>null</code> if the class is not a record
+     */
+    public static String[] getRecordComponentNames(Class<?> type) {
+        Object[] components = getRecordComponents(type);
+        if (null == components) {
+            return null;
+        }
+
+        String[] names = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            names[i] = (String) call(components[i], "getName");
+        }
+        return names;
+    }
+
+    /**
+     * Get the canonical constructor of the given record class, which takes the value of each of
+     * its components.
+     * 
+     * @param type
+     *            the class
+     * 
+     * @return the constructor or <code>null</code> if the class is not a record
+     */
+    public static Constructor<?> getCanonicalConstructor(Class<?> type) {
+        Object[] components = getRecordComponents(type);
+        if (null == components) {
+            return null;
+        }
+
+        Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            types[i] = (Class<?>) call(components[i], "getType");
+        }
+        try {
+            return type.getDeclaredConstructor(types);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private static Object[] getRecordComponents(Class<?> type) {
+        if (null == GET_RECORD_COMPONENTS) {
+            return null;
+        }
+        return (Object[]) invoke(GET_RECORD_COMPONENTS, type);
+    }
+
+    private static Object call(Object target, String method) {
+        try {
+            return invoke(target.getClass().getMethod(method), target);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Object invoke(Method method, Object target) {
+        try {
+            return method.invoke(target);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to call " + method, ex);
+        }
+    }
+
+    /**
+     * Creates objects with their constructor, creating them without it when it fails.
+     */
+    private static class ConstructorInstantiator implements ObjectInstantiator {
+        private final Class<?> type;
+        private final MethodHandle constructor;
+
+        private ConstructorInstantiator(Class<?> type, MethodHandle constructor) {
+            this.type = type;
+            this.constructor = constructor;
+        }
+
+        public Object newInstance() {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable throwable) {
+                return ObjenesisHelper.newInstance(type);
+            }
+        }
+    }
 }
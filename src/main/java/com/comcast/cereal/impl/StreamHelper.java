@@ -0,0 +1,401 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
+import com.comcast.cereal.Cerealizer;
+import com.comcast.cereal.ObjectCache;
+import com.comcast.cereal.ObjectCache.Fixup;
+import com.comcast.cereal.ObjectCache.ForwardReference;
+import com.comcast.cereal.PrimitiveCerealGenerator;
+import com.comcast.cereal.StreamingCerealizer;
+
+/**
+ * Helper class for writing cereal to a {@link CerealGenerator} and reading it from a
+ * {@link CerealParser} with or without the help of a {@link StreamingCerealizer}.
+ *
+ * @see CerealGenerator
+ * @see CerealParser
+ * @see StreamingCerealizer
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class StreamHelper {
+
+    public static final String KEY_CLASS = "--class";
+
+    private static final CerealGenerator NULL_GENERATOR = new NullGenerator();
+
+    /* The order of reference maps, with and without a class name, by generator type */
+    private static final Map<Class<?>, String[][]> REFERENCE_ORDERS =
+            new ConcurrentHashMap<Class<?>, String[][]>();
+
+    /**
+     * Convert the given object with the given cerealizer and write it to the generator. If the
+     * cerealizer does not support streaming, the object is cerealized and the result is written.
+     *
+     * @param cerealizer
+     *            the cerealizer to convert with
+     * @param object
+     *            the java object to convert
+     * @param className
+     *            if not <code>null</code>, the class name to include if the object is written as a
+     *            map
+     * @param generator
+     *            the generator to write to
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @throws CerealException
+     *             if the conversion or writing fails
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static void write(Cerealizer cerealizer, Object object, String className,
+            CerealGenerator generator, ObjectCache objectCache) throws CerealException {
+        if (cerealizer instanceof StreamingCerealizer) {
+            ((StreamingCerealizer) cerealizer).write(object, className, generator, objectCache);
+        } else {
+            Object cereal = cerealizer.cerealize(object, objectCache);
+            if ((null != className) && (cereal instanceof Map)) {
+                ((Map) cereal).put(KEY_CLASS, className);
+            }
+            generator.writeCereal(cereal);
+        }
+    }
+
+    /**
+     * Read the value that starts at the current token of the parser and convert it with the given
+     * cerealizer. If the cerealizer does not support streaming, the value is read into its cereal
+     * representation and de-cerealized.
+     *
+     * @param cerealizer
+     *            the cerealizer to convert with
+     * @param parser
+     *            the parser to read from
+     * @param useRuntimeType
+     *            if <code>true</code>, a <code>--class</code> entry on an object selects the
+     *            cerealizer used to convert it
+     * @param cerealFactory
+     *            the factory used to look up runtime cerealizers
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @return the java object or a {@link ForwardReference} if the value references an object
+     *         that has not been read yet
+     *
+     * @throws CerealException
+     *             if the reading or conversion fails
+     */
+    @SuppressWarnings("rawtypes")
+    public static Object read(Cerealizer cerealizer, CerealParser parser, boolean useRuntimeType,
+            CerealFactory cerealFactory, ObjectCache objectCache) throws CerealException {
+        if (cerealizer instanceof StreamingCerealizer) {
+            return ((StreamingCerealizer) cerealizer).read(parser, useRuntimeType, objectCache);
+        } else {
+            return deCerealize(cerealizer, parser, useRuntimeType, cerealFactory, objectCache);
+        }
+    }
+
+    /**
+     * Read the value that starts at the current token of the parser into its cereal
+     * representation and de-cerealize it. Streaming cerealizers use this for values they can not
+     * bind directly.
+     *
+     * @param cerealizer
+     *            the cerealizer to convert with
+     * @param parser
+     *            the parser to read from
+     * @param useRuntimeType
+     *            if <code>true</code>, a <code>--class</code> entry on an object selects the
+     *            cerealizer used to convert it
+     * @param cerealFactory
+     *            the factory used to look up runtime cerealizers
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @return the java object
+     *
+     * @throws CerealException
+     *             if the reading or conversion fails
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static Object deCerealize(Cerealizer cerealizer, CerealParser parser,
+            boolean useRuntimeType, CerealFactory cerealFactory, ObjectCache objectCache)
+            throws CerealException {
+        Object cereal = parser.readCereal();
+        Cerealizer cz = cerealizer;
+        if (useRuntimeType) {
+            cz = cerealFactory.getRuntimeCerealizer(cereal, cerealizer);
+        }
+        return cz.deCerealize(cereal, objectCache);
+    }
+
+    /**
+     * Read the remaining entries of the current object into the given map without converting
+     * them. Afterwards, the current token is the end of the object.
+     *
+     * @param parser
+     *            the parser to read from
+     * @param cereal
+     *            the map to put the entries in
+     *
+     * @throws CerealException
+     *             if reading fails
+     */
+    public static void readEntries(CerealParser parser, Map<String, Object> cereal)
+            throws CerealException {
+        while (Token.NAME == parser.next()) {
+            String name = parser.getName();
+            parser.next();
+            cereal.put(name, parser.readCereal());
+        }
+    }
+
+    /**
+     * Add a value read by a streaming cerealizer to a collection. If the value is a
+     * {@link ForwardReference}, the referenced object is added once it has been read. Lists
+     * reserve the position of the value so the order is kept.
+     *
+     * @param collection
+     *            the collection to add to
+     * @param value
+     *            the value to add
+     * @param objectCache
+     *            the cache used to track object references
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static void add(final Collection collection, Object value, ObjectCache objectCache) {
+        if (value instanceof ForwardReference) {
+            if (collection instanceof List) {
+                final int index = collection.size();
+                collection.add(null);
+                objectCache.addFixup((ForwardReference) value, new Fixup() {
+                    public void resolve(Object object) {
+                        ((List) collection).set(index, object);
+                    }
+                });
+            } else {
+                objectCache.addFixup((ForwardReference) value, new Fixup() {
+                    public void resolve(Object object) {
+                        collection.add(object);
+                    }
+                });
+            }
+        } else {
+            collection.add(value);
+        }
+    }
+
+    /**
+     * Put a value read by a streaming cerealizer in a map. If the value is a
+     * {@link ForwardReference}, the referenced object is put in place once it has been read.
+     *
+     * @param map
+     *            the map to put the value in
+     * @param key
+     *            the key of the value
+     * @param value
+     *            the value to put
+     * @param objectCache
+     *            the cache used to track object references
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static void put(final Map map, final Object key, Object value,
+            ObjectCache objectCache) {
+        if (value instanceof ForwardReference) {
+            map.put(key, null);
+            objectCache.addFixup((ForwardReference) value, new Fixup() {
+                public void resolve(Object object) {
+                    map.put(key, object);
+                }
+            });
+        } else {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Create an array of the given type from values read by a streaming cerealizer. Elements that
+     * are a {@link ForwardReference} are set once the referenced object has been read.
+     *
+     * @param componentType
+     *            the type of the array elements
+     * @param values
+     *            the values to put in the array
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @return the new array
+     */
+    public static Object toArray(Class<?> componentType, List<Object> values,
+            ObjectCache objectCache) {
+        final Object array = Array.newInstance(componentType, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof ForwardReference) {
+                final int index = i;
+                objectCache.addFixup((ForwardReference) value, new Fixup() {
+                    public void resolve(Object object) {
+                        Array.set(array, index, object);
+                    }
+                });
+            } else {
+                Array.set(array, i, value);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Walk the given object with the given cerealizer without writing anything. This assigns the
+     * object ids on an {@link ObjectCache} that was prepared with {@link ObjectCache#startScan()}.
+     *
+     * @param cerealizer
+     *            the cerealizer to convert with
+     * @param object
+     *            the java object to convert
+     * @param className
+     *            if not <code>null</code>, the class name to include if the object is written as a
+     *            map
+     * @param objectCache
+     *            the cache used to track object references
+     *
+     * @throws CerealException
+     *             if the conversion fails
+     */
+    @SuppressWarnings("rawtypes")
+    public static void scan(Cerealizer cerealizer, Object object, String className,
+            ObjectCache objectCache) throws CerealException {
+        write(cerealizer, object, className, NULL_GENERATOR, objectCache);
+    }
+
+    /**
+     * Write a reference to an object that has already been written. This is the streaming
+     * equivalent of the map returned from {@link ObjectCache#getReferenceCereal(Object)}.
+     *
+     * @param id
+     *            the object id of the referenced object
+     * @param className
+     *            if not <code>null</code>, the class name to include with the reference
+     * @param generator
+     *            the generator to write to
+     *
+     * @throws CerealException
+     *             if writing fails
+     */
+    public static void writeReference(int id, String className, CerealGenerator generator)
+            throws CerealException {
+        String[][] orders = REFERENCE_ORDERS.get(generator.getClass());
+        if (null == orders) {
+            /* Reference maps are created with an initial capacity of 1 */
+            orders = new String[][] {
+                    generator.orderNames(iterationOrder(new String[] { ObjectCache.KEY_REF }, 1)),
+                    generator.orderNames(iterationOrder(new String[] { ObjectCache.KEY_REF,
+                            KEY_CLASS }, 1)) };
+            REFERENCE_ORDERS.put(generator.getClass(), orders);
+        }
+
+        String[] names = orders[(null == className) ? 0 : 1];
+        generator.writeStartObject(names.length);
+        for (String name : names) {
+            generator.writeName(name);
+            generator.writeValue(KEY_CLASS.equals(name) ? className : (Object) id);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Get the order in which a {@link HashMap} iterates its keys if the given keys are put in it
+     * in the given order. Streaming cerealizers use this to write the entries of an object in the
+     * same order as the map that {@link Cerealizer#cerealize(Object, ObjectCache)} would return.
+     *
+     * @param names
+     *            the keys in insertion order
+     * @param initialCapacity
+     *            the initial capacity of the map or <code>-1</code> for the default capacity
+     *
+     * @return the keys in iteration order
+     */
+    public static String[] iterationOrder(String[] names, int initialCapacity) {
+        Map<String, Boolean> map = (initialCapacity < 0) ? new HashMap<String, Boolean>()
+                : new HashMap<String, Boolean>(initialCapacity);
+        for (String name : names) {
+            map.put(name, Boolean.TRUE);
+        }
+        return toArray(map.keySet());
+    }
+
+    /**
+     * Convert a collection of names to an array.
+     *
+     * @param names
+     *            the names
+     *
+     * @return the array of names in iteration order
+     */
+    public static String[] toArray(Collection<String> names) {
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * A generator that discards everything written to it. This is used when scanning.
+     */
+    private static class NullGenerator implements PrimitiveCerealGenerator {
+
+        public String[] orderNames(String[] names) {
+            return names;
+        }
+
+        public void writeStartObject(int size) {}
+
+        public void writeName(String name) {}
+
+        public void writeEndObject() {}
+
+        public void writeStartArray(int size) {}
+
+        public void writeEndArray() {}
+
+        public void writeValue(Object value) {}
+
+        public void writeLong(long value) {}
+
+        public void writeDouble(double value) {}
+
+        public void writeBoolean(boolean value) {}
+
+        public void writeCereal(Object cereal) {}
+
+        public CerealGenerator fork() {
+            return this;
+        }
+
+        public void writeFork(CerealGenerator fork) {}
+
+        public void flush() {}
+    }
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.comcast.cereal.CerealException;
+
+/**
+ * A {@link com.comcast.cereal.CerealParser} that reads JSON encoded as UTF-8 straight from the
+ * bytes, without decoding them to characters first. Only the contents of strings and unquoted
+ * values are decoded, and text that is entirely ASCII (such as most object keys and every number)
+ * is converted without a UTF-8 decoder. Malformed UTF-8 is replaced with <code>U+FFFD</code>.
+ *
+ * @see AbstractJsonParser
+ * @see com.comcast.cereal.engines.JsonCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class Utf8JsonParser extends AbstractJsonParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final InputStream inputStream;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+    private boolean eof;
+
+    /* Text that does not end in the buffer is collected here */
+    private byte[] bytes = new byte[64];
+    private int length;
+    private char[] chars = new char[32];
+    private final StringBuilder builder = new StringBuilder();
+
+    /* Recently read object keys so that repeated keys share a single string */
+    private final String[] keys = new String[KEY_CACHE_SIZE];
+
+    /**
+     * Create a new Utf8JsonParser that reads from the given input stream.
+     *
+     * @param inputStream
+     *            where to read the JSON input from
+     */
+    public Utf8JsonParser(InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    /**
+     * Create a new Utf8JsonParser that reads from the given input stream.
+     *
+     * @param inputStream
+     *            where to read the JSON input from
+     * @param multipleValues
+     *            if <code>true</code>, the input is a sequence of values separated by whitespace
+     *            (such as newline delimited JSON). Calling {@link #next()} after a value starts
+     *            the next one and {@link Token#END} is only returned at the end of the input.
+     */
+    public Utf8JsonParser(InputStream inputStream, boolean multipleValues) {
+        super(multipleValues);
+        this.inputStream = inputStream;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Create a new Utf8JsonParser that reads the remaining bytes of the given buffer.
+     *
+     * @param json
+     *            the JSON input
+     *
+     * @see #Utf8JsonParser(ByteBuffer, boolean)
+     */
+    public Utf8JsonParser(ByteBuffer json) {
+        this(json, false);
+    }
+
+    /**
+     * Create a new Utf8JsonParser that reads the remaining bytes of the given buffer. A buffer that
+     * is backed by an array is parsed in place, any other buffer (such as a file that was mapped
+     * into memory) is copied through a reusable buffer. Reading does not move the position of an
+     * array backed buffer.
+     *
+     * @param json
+     *            the JSON input
+     * @param multipleValues
+     *            if <code>true</code>, the input is a sequence of values separated by whitespace
+     *
+     * @see #Utf8JsonParser(InputStream, boolean)
+     */
+    public Utf8JsonParser(ByteBuffer json, boolean multipleValues) {
+        super(multipleValues);
+        if (json.hasArray()) {
+            this.inputStream = null;
+            this.buffer = json.array();
+            this.position = json.arrayOffset() + json.position();
+            this.limit = json.arrayOffset() + json.limit();
+            this.offset = -position;
+            this.eof = true;
+        } else {
+            this.inputStream = new ByteBufferInputStream(json);
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readString(int)
+     */
+    String readString(int quote) throws CerealException {
+        /* Fast path for strings without escapes that are completely in the buffer */
+        int ascii = 0;
+        for (int i = position; i < limit; i++) {
+            byte b = buffer[i];
+            if (b == quote) {
+                String string = decode(buffer, position, i - position, ascii >= 0);
+                position = i + 1;
+                return string;
+            } else if (b == '\\' || b == '\n' || b == '\r') {
+                break;
+            }
+            ascii |= b;
+        }
+
+        /*
+         * Bytes are collected until an escape, which is always ASCII so it can never split a
+         * character, and then decoded together
+         */
+        builder.setLength(0);
+        length = 0;
+        for (;;) {
+            int b = read();
+            switch (b) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                if (length > 0) {
+                    builder.append(decode(bytes, 0, length, false));
+                    length = 0;
+                }
+                builder.append(readEscape());
+                break;
+            default:
+                if (b == quote) {
+                    if (builder.length() == 0) {
+                        return decode(bytes, 0, length, false);
+                    }
+                    return builder.append(decode(bytes, 0, length, false)).toString();
+                }
+                collect(b);
+            }
+        }
+    }
+
+    /**
+     * Read the rest of an escape sequence. The backslash has already been read.
+     */
+    private char readEscape() throws CerealException {
+        int c = read();
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case 'u':
+            int result = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw syntaxError("Illegal escape.");
+                }
+                result = (result << 4) | digit;
+            }
+            return (char) result;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+            return (char) c;
+        default:
+            throw syntaxError("Illegal escape.");
+        }
+    }
+
+    /**
+     * ASCII keys that are completely in the buffer are looked up in the key cache without creating
+     * a new string.
+     *
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readKey(int)
+     */
+    String readKey(int quote) throws CerealException {
+        int hash = 0;
+        for (int i = position; i < limit; i++) {
+            byte b = buffer[i];
+            if (b == quote) {
+                String key = intern(i, hash);
+                position = i + 1;
+                return key;
+            } else if (b == '\\' || b == '\n' || b == '\r' || b < 0) {
+                break;
+            }
+            hash = 31 * hash + b;
+        }
+
+        String key = readString(quote);
+        int slot = slot(key.hashCode());
+        if (key.equals(keys[slot])) {
+            return keys[slot];
+        }
+        return keys[slot] = key;
+    }
+
+    /**
+     * Get the cached key equal to the ASCII bytes from the position to the given end, replacing
+     * whatever was cached in its slot if there is no match. The hash must be the same as
+     * {@link String#hashCode()}.
+     */
+    private String intern(int end, int hash) {
+        int slot = slot(hash);
+        int count = end - position;
+        String key = keys[slot];
+        if (null != key && key.length() == count) {
+            int i = 0;
+            while (i < count && key.charAt(i) == buffer[position + i]) {
+                i++;
+            }
+            if (i == count) {
+                return key;
+            }
+        }
+        return keys[slot] = new String(buffer, position, count, ASCII);
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+    }
+
+    /**
+     * Numbers and the literals are always ASCII, so they are converted from characters like
+     * {@link JsonParser} does. Other text is decoded and converted as a string.
+     *
+     * @see com.comcast.cereal.impl.AbstractJsonParser#readUnquoted()
+     */
+    Object readUnquoted() throws CerealException {
+        /* Fast path for text that ends in the buffer, the first byte is at position - 1 */
+        int start = position - 1;
+        int ascii = buffer[start];
+        for (int i = position; i < limit; i++) {
+            byte b = buffer[i];
+            if (b >= 0 && isStop(b)) {
+                position = i;
+                return toValue(buffer, start, i - start, ascii >= 0);
+            }
+            ascii |= b;
+        }
+
+        length = 0;
+        for (int i = start; i < limit; i++) {
+            collect(buffer[i]);
+        }
+        position = limit;
+        int b = read();
+        while (b != 0 && !isStop(b)) {
+            collect(b);
+            ascii |= (byte) b;
+            b = read();
+        }
+        if (b != 0) {
+            position--;
+        }
+        return toValue(bytes, 0, length, ascii >= 0);
+    }
+
+    /**
+     * Convert unquoted text to a value.
+     */
+    private Object toValue(byte[] text, int start, int count, boolean ascii) {
+        if (ascii) {
+            if (chars.length < count) {
+                chars = new char[Math.max(count, chars.length * 2)];
+            }
+            for (int i = 0; i < count; i++) {
+                chars[i] = (char) text[start + i];
+            }
+            return toValue(chars, 0, count);
+        }
+
+        /* Trailing spaces are part of unquoted text but are trimmed from the value */
+        while (count > 0 && text[start + count - 1] >= 0 && text[start + count - 1] <= ' ') {
+            count--;
+        }
+        return stringToValue(decode(text, start, count, false));
+    }
+
+    private static String decode(byte[] text, int start, int count, boolean ascii) {
+        return new String(text, start, count, ascii ? ASCII : UTF_8);
+    }
+
+    /**
+     * Add a byte to the text that is being collected.
+     */
+    private void collect(int b) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, length * 2);
+        }
+        bytes[length++] = (byte) b;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#nextClean()
+     */
+    int nextClean() throws CerealException {
+        for (;;) {
+            int b = read();
+            if (b == 0 || b > ' ') {
+                return b;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#back()
+     */
+    void back() {
+        position--;
+    }
+
+    /**
+     * Get the next unsigned byte or <code>0</code> at the end of the input.
+     */
+    private int read() throws CerealException {
+        if (position >= limit && !fill()) {
+            /* Keep the position past the end so that stepping back is always safe */
+            position = limit + 1;
+            return 0;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private boolean fill() throws CerealException {
+        if (eof) {
+            return false;
+        }
+
+        try {
+            int count = inputStream.read(buffer, 0, buffer.length);
+            while (count == 0) {
+                count = inputStream.read(buffer, 0, buffer.length);
+            }
+
+            if (count < 0) {
+                eof = true;
+                return false;
+            }
+
+            offset += limit;
+            position = 0;
+            limit = count;
+            return true;
+        } catch (IOException ioex) {
+            throw new CerealException("Failed to read JSON", ioex);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.impl.AbstractJsonParser#syntaxError(java.lang.String)
+     */
+    CerealException syntaxError(String message) {
+        return new CerealException(message + " at byte " + (offset + position));
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that encodes characters as UTF-8 straight into a reusable byte buffer and
+ * writes that to an {@link OutputStream}. Runs of ASCII characters, which make up names, numbers
+ * and most values, are copied without any further checks. Unlike an
+ * {@link java.io.OutputStreamWriter}, this does not depend on the platform charset and does not
+ * go through a {@link java.nio.charset.CharsetEncoder}. Unpaired surrogates are written as
+ * <code>'?'</code>, the same as {@link String#getBytes(java.nio.charset.Charset)} does it.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class Utf8Writer extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    /* The first half of a surrogate pair whose second half has not been written yet */
+    private char highSurrogate;
+
+    /* Used to copy strings out in chunks */
+    private char[] chars;
+
+    /**
+     * Create a new Utf8Writer that writes to the given output stream.
+     *
+     * @param outputStream
+     *            where to write the UTF-8 bytes to
+     */
+    public Utf8Writer(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Writer#write(int)
+     */
+    @Override
+    public void write(int c) throws IOException {
+        if (buffer.length - position < 4) {
+            drain();
+        }
+        encode((char) c);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (buffer.length - position < 4) {
+                drain();
+            }
+
+            char c = chars[i];
+            if (c < 0x80 && highSurrogate == 0) {
+                int limit = Math.min(end, i + buffer.length - position);
+                while (i < limit && (c = chars[i]) < 0x80) {
+                    buffer[position++] = (byte) c;
+                    i++;
+                }
+            } else {
+                encode(c);
+                i++;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Writer#write(java.lang.String, int, int)
+     */
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        if (null == chars) {
+            chars = new char[BUFFER_SIZE];
+        }
+        while (length > 0) {
+            int count = Math.min(length, chars.length);
+            string.getChars(offset, offset + count, chars, 0);
+            write(chars, 0, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Write out the buffer and flush the output stream. The first half of a surrogate pair is
+     * held back until the second half is written.
+     *
+     * @see java.io.Writer#flush()
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        outputStream.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.Writer#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            write('?');
+        }
+        drain();
+        outputStream.close();
+    }
+
+    /**
+     * Encode a single character. There must be room for at least four bytes in the buffer.
+     */
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+
+            /* There is still room for three bytes, which is enough for any single character */
+            buffer[position++] = '?';
+        }
+
+        if (c < 0x80) {
+            buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[position++] = '?';
+        } else {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void drain() throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+}
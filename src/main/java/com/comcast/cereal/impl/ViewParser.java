@@ -0,0 +1,167 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.util.Arrays;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+
+/**
+ * A {@link CerealParser} that walks a {@link CerealView}. Skipping a list or object does not read
+ * any of its values.
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+class ViewParser implements CerealParser {
+
+    private final CerealView root;
+
+    /* The open lists and objects and the index of the next value of each */
+    private CerealView[] containers = new CerealView[16];
+    private int[] indexes = new int[16];
+    private int[] sizes = new int[16];
+    private int depth;
+
+    private Token token;
+    private String name;
+    private CerealView current;
+    private Object value;
+
+    /**
+     * Create a parser that reads the given value.
+     *
+     * @param root
+     *            the view of the value to read
+     */
+    ViewParser(CerealView root) {
+        this.root = root;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#next()
+     */
+    public Token next() throws CerealException {
+        if (null == token) {
+            return start(root);
+        } else if (Token.NAME == token) {
+            return start(current);
+        } else if (Token.END == token || depth == 0) {
+            return token = Token.END;
+        }
+
+        int d = depth - 1;
+        CerealView container = containers[d];
+        if (indexes[d] == sizes[d]) {
+            return end();
+        }
+
+        int index = indexes[d]++;
+        if (CerealView.Type.LIST == container.getType()) {
+            return start(container.get(index));
+        }
+        name = container.getName(index);
+        current = container.get(index);
+        return token = Token.NAME;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getToken()
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getValue()
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#skipValue()
+     */
+    public void skipValue() throws CerealException {
+        if (Token.START_OBJECT == token || Token.START_ARRAY == token) {
+            end();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#readCereal()
+     */
+    public Object readCereal() throws CerealException {
+        switch (token) {
+        case VALUE:
+            return value;
+        case START_OBJECT:
+        case START_ARRAY:
+            Object cereal = current.toCereal();
+            end();
+            return cereal;
+        default:
+            throw new CerealException("Expected a value but found " + token);
+        }
+    }
+
+    /**
+     * Make the given view the current value, opening it if it is a list or object.
+     */
+    private Token start(CerealView view) throws CerealException {
+        current = view;
+        CerealView.Type type = view.getType();
+        if (CerealView.Type.LIST != type && CerealView.Type.OBJECT != type) {
+            value = view.getValue();
+            return token = Token.VALUE;
+        }
+
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            indexes = Arrays.copyOf(indexes, depth * 2);
+            sizes = Arrays.copyOf(sizes, depth * 2);
+        }
+        containers[depth] = view;
+        indexes[depth] = 0;
+        sizes[depth] = view.size();
+        depth++;
+        return token = (CerealView.Type.LIST == type) ? Token.START_ARRAY : Token.START_OBJECT;
+    }
+
+    /**
+     * Close the innermost list or object.
+     */
+    private Token end() {
+        depth--;
+        current = containers[depth];
+        containers[depth] = null;
+        return token = (CerealView.Type.LIST == current.getType()) ? Token.END_ARRAY
+                : Token.END_OBJECT;
+    }
+}
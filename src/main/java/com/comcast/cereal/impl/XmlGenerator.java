@@ -0,0 +1,370 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+import com.comcast.cereal.engines.XmlCerealEngine;
+
+/**
+ * A {@link CerealGenerator} that streams XML elements to a {@link Writer} with an
+ * {@link XMLStreamWriter}. The output follows the encoding rules documented on
+ * {@link XmlCerealEngine}, including the <code>_t_</code> type attributes, and is formatted the
+ * same way the DOM serializer formats it.
+ *
+ * @see XmlCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class XmlGenerator implements CerealGenerator {
+
+    static final String TYPE_KEY = "_t_";
+    static final String TYPE_STRING = "s";
+    static final String TYPE_LIST = "l";
+    static final String LIST_ELEMENT = "value";
+    static final String CLASS_ELEMENT = "__class";
+
+    private static final String INDENT = "    ";
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final XMLStreamWriter xml;
+    private final boolean prettyPrint;
+    private final String rootElementName;
+
+    /* The declared size and number of values written of every open object or list */
+    private int depth;
+    private int[] sizes = new int[16];
+    private int[] counts = new int[16];
+    private boolean[] objects = new boolean[16];
+
+    /* The element name for the next value when it is in an object */
+    private String name;
+
+    /**
+     * Create a new XmlGenerator that writes to the given writer.
+     *
+     * @param writer
+     *            where to write the XML output to
+     * @param prettyPrint
+     *            if <code>true</code>, the XML output will be indented, otherwise, whitespace will
+     *            be conserved
+     * @param rootElementName
+     *            the name of the root element
+     *
+     * @throws CerealException
+     *             if the XML writer can not be created
+     */
+    public XmlGenerator(Writer writer, boolean prettyPrint, String rootElementName)
+            throws CerealException {
+        try {
+            this.xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+        } catch (XMLStreamException xsex) {
+            throw new CerealException("Failed to create XML writer", xsex);
+        }
+        this.prettyPrint = prettyPrint;
+        this.rootElementName = rootElementName;
+    }
+
+    /**
+     * Elements are written in the same order the cereal {@link Map} iterates its keys.
+     *
+     * @see com.comcast.cereal.CerealGenerator#orderNames(java.lang.String[])
+     */
+    public String[] orderNames(String[] names) {
+        return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartObject(int)
+     */
+    public void writeStartObject(int size) throws CerealException {
+        startContainer(size, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeName(java.lang.String)
+     */
+    public void writeName(String name) throws CerealException {
+        if (name.equals(StreamHelper.KEY_CLASS)) {
+            // making the name a valid xml name
+            name = CLASS_ELEMENT;
+        } else if (!isValidName(name)) {
+            throw new CerealException("\"" + name + "\" is not a valid XML element name");
+        }
+        this.name = name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndObject()
+     */
+    public void writeEndObject() throws CerealException {
+        endContainer();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartArray(int)
+     */
+    public void writeStartArray(int size) throws CerealException {
+        startContainer(size, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndArray()
+     */
+    public void writeEndArray() throws CerealException {
+        endContainer();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeValue(java.lang.Object)
+     */
+    public void writeValue(Object value) throws CerealException {
+        try {
+            String element = beforeValue();
+            if (null == value) {
+                xml.writeStartElement(element);
+                xml.writeCharacters("null");
+                xml.writeEndElement();
+            } else if (value instanceof String) {
+                String string = (String) value;
+                if (string.length() == 0) {
+                    xml.writeEmptyElement(element);
+                    xml.writeAttribute(TYPE_KEY, TYPE_STRING);
+                } else {
+                    xml.writeStartElement(element);
+                    xml.writeAttribute(TYPE_KEY, TYPE_STRING); // for strings made up of numbers
+                    writeText(string);
+                    xml.writeEndElement();
+                }
+            } else if ((value instanceof Number) || (value instanceof Boolean)) {
+                xml.writeStartElement(element);
+                xml.writeCharacters(String.valueOf(value));
+                xml.writeEndElement();
+            } else {
+                /* Anything else has never had an XML encoding */
+                xml.writeEmptyElement(element);
+            }
+            afterValue();
+        } catch (XMLStreamException xsex) {
+            throw new CerealException("Failed while writing XML", xsex);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeCereal(java.lang.Object)
+     */
+    public void writeCereal(Object cereal) throws CerealException {
+        RecordingGenerator.writeCereal(this, cereal);
+    }
+
+    /**
+     * The element of a value is written by the value itself since its attributes depend on the
+     * type of the value, so forks record the calls made to them and replay them when written.
+     *
+     * @see com.comcast.cereal.CerealGenerator#fork()
+     */
+    public CerealGenerator fork() throws CerealException {
+        return new RecordingGenerator();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeFork(com.comcast.cereal.CerealGenerator)
+     */
+    public void writeFork(CerealGenerator fork) throws CerealException {
+        ((RecordingGenerator) fork).replay(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#flush()
+     */
+    public void flush() throws CerealException {
+        try {
+            xml.flush();
+        } catch (XMLStreamException xsex) {
+            throw new CerealException("Failed while writing XML", xsex);
+        }
+    }
+
+    /**
+     * Start the element of an object or list.
+     */
+    private void startContainer(int size, boolean object) throws CerealException {
+        try {
+            String element = beforeValue();
+            if (size == 0) {
+                xml.writeEmptyElement(element);
+            } else {
+                xml.writeStartElement(element);
+            }
+            if (!object) {
+                xml.writeAttribute(TYPE_KEY, TYPE_LIST); // to differentiate from an object
+            }
+        } catch (XMLStreamException xsex) {
+            throw new CerealException("Failed while writing XML", xsex);
+        }
+
+        if (depth == sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        sizes[depth] = size;
+        counts[depth] = 0;
+        objects[depth] = object;
+        depth++;
+    }
+
+    /**
+     * End the element of the current object or list.
+     */
+    private void endContainer() throws CerealException {
+        depth--;
+        int size = sizes[depth];
+        if (size != UNKNOWN_SIZE && counts[depth] != size) {
+            throw new CerealException("Expected " + size + " values but " + counts[depth]
+                    + " were written");
+        }
+
+        try {
+            if (size != 0) {
+                indent(depth);
+                xml.writeEndElement();
+            }
+            afterValue();
+        } catch (XMLStreamException xsex) {
+            throw new CerealException("Failed while writing XML", xsex);
+        }
+    }
+
+    /**
+     * Count the value in the current object or list, write the indentation that comes before it
+     * and get the name of its element.
+     */
+    private String beforeValue() throws CerealException, XMLStreamException {
+        if (depth == 0) {
+            return rootElementName;
+        }
+
+        int index = depth - 1;
+        counts[index]++;
+        indent(depth);
+
+        if (!objects[index]) {
+            return LIST_ELEMENT;
+        } else if (null == name) {
+            throw new CerealException("Expected a name before every value of an object");
+        }
+        String element = name;
+        name = null;
+        return element;
+    }
+
+    /**
+     * End the document after the root element.
+     */
+    private void afterValue() throws XMLStreamException {
+        if (depth == 0 && prettyPrint) {
+            xml.writeCharacters("\n");
+        }
+    }
+
+    private void indent(int level) throws XMLStreamException {
+        if (prettyPrint) {
+            xml.writeCharacters("\n");
+            for (int i = 0; i < level; i++) {
+                xml.writeCharacters(INDENT);
+            }
+        }
+    }
+
+    /**
+     * Write text, using character references for control characters and supplementary
+     * characters the same way the DOM serializer does. A carriage return would otherwise be
+     * normalized away when the XML is read.
+     */
+    private void writeText(String text) throws XMLStreamException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            boolean control = (c < ' ' && c != '\t' && c != '\n')
+                    || (c >= '\u007f' && c < '\u00a0');
+            boolean pair = Character.isHighSurrogate(c) && (i + 1 < length)
+                    && Character.isLowSurrogate(text.charAt(i + 1));
+            if (control || pair) {
+                if (i > start) {
+                    xml.writeCharacters(text.substring(start, i));
+                }
+                xml.writeEntityRef("#" + text.codePointAt(i));
+                if (pair) {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start == 0) {
+            xml.writeCharacters(text);
+        } else if (start < length) {
+            xml.writeCharacters(text.substring(start));
+        }
+    }
+
+    /**
+     * Determines if the given name can be used as an XML element name.
+     */
+    private static boolean isValidName(String name) {
+        int length = name.length();
+        if (length == 0 || !isNameStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = name.charAt(i);
+            if (!isNameStart(c) && !(c == '-' || c == '.' || (c >= '0' && c <= '9')
+                    || c == '\u00b7' || (c >= '\u0300' && c <= '\u036f')
+                    || (c >= '\u203f' && c <= '\u2040'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                || (c >= '\u00c0' && c <= '\u00d6') || (c >= '\u00d8' && c <= '\u00f6')
+                || (c >= '\u00f8' && c <= '\u02ff') || (c >= '\u0370' && c <= '\u037d')
+                || (c >= '\u037f' && c <= '\u1fff') || (c >= '\u200c' && c <= '\u200d')
+                || (c >= '\u2070' && c <= '\u218f') || (c >= '\u2c00' && c <= '\u2fef')
+                || (c >= '\u3001' && c <= '\ud7ff') || (c >= '\uf900' && c <= '\ufdcf')
+                || (c >= '\ufdf0' && c <= '\ufffd') || Character.isSurrogate(c);
+    }
+}
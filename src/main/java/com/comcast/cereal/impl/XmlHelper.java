@@ -16,6 +16,7 @@
 package com.comcast.cereal.impl;
 
 import java.io.InputStream;
+import java.io.Reader;
 import java.io.Writer;
 import java.text.NumberFormat;
 import java.text.ParseException;
@@ -24,20 +25,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Text;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.engines.XmlCerealEngine;
@@ -52,9 +42,10 @@ import com.comcast.cereal.engines.XmlCerealEngine;
  */
 public class XmlHelper {
 
-    private static final String TYPE_KEY = "_t_";
-    private static final String TYPE_STRING = "s";
-    private static final String TYPE_LIST = "l";
+    private static final String TYPE_KEY = XmlGenerator.TYPE_KEY;
+    private static final String TYPE_STRING = XmlGenerator.TYPE_STRING;
+    private static final String TYPE_LIST = XmlGenerator.TYPE_LIST;
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
 
     private final boolean prettyPrint;
     private final String rootElementName;
@@ -85,72 +76,9 @@ public class XmlHelper {
      *             if there was a problem writing or encoding the object(s)
      */
     public void write(Object cereal, Writer writer) throws Exception {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        Document document = dbf.newDocumentBuilder().newDocument();
-
-        Node root = createNode(rootElementName, cereal, document);
-        document.appendChild(root);
-
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.setOutputProperty(OutputKeys.INDENT, prettyPrint ? "yes" : "no");
-
-        DOMSource dom = new DOMSource(document);
-        Result result = new StreamResult(writer);
-        transformer.transform(dom, result);
-    }
-
-    /**
-     * Recursive method for creating XML {@link Node}s for each cereal-compatible object.
-     * 
-     * @param name
-     *            the name of the object (used as the tag)
-     * @param cereal
-     *            the cereal-compatible object
-     * @param document
-     *            the document the {@link Node} should be created in
-     * 
-     * @return the created {@link Node}
-     */
-    @SuppressWarnings("unchecked")
-    private Node createNode(String name, Object cereal, Document document) {
-        if (name.equals("--class")) {
-            // making the name a valid xml name
-            name = "__class";
-        }
-        Element node = document.createElement(name);
-
-        if (cereal == null) {
-            Text text = document.createTextNode("null");
-            node.appendChild(text);
-        } else if (cereal instanceof String) {
-            node.setAttribute(TYPE_KEY, TYPE_STRING); // for strings made up of numbers
-            Text text = document.createTextNode((String) cereal);
-            node.appendChild(text);
-        } else if (cereal instanceof Number) {
-            Text text = document.createTextNode(String.valueOf(cereal));
-            node.appendChild(text);
-        } else if (cereal instanceof Boolean) {
-            Text text = document.createTextNode(((Boolean) cereal).toString());
-            node.appendChild(text);
-        } else if (cereal instanceof List) {
-            List<Object> list = (List<Object>) cereal;
-            node.setAttribute(TYPE_KEY, TYPE_LIST); // to differentiate between a list and an object
-
-            for (Object value : list) {
-                node.appendChild(createNode("value", value, document));
-            }
-        } else if (cereal instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) cereal;
-
-            for (String key : map.keySet()) {
-                Object value = map.get(key);
-                node.appendChild(createNode(key, value, document));
-            }
-        }
-
-        return node;
+        XmlGenerator generator = new XmlGenerator(writer, prettyPrint, rootElementName);
+        generator.writeCereal(cereal);
+        generator.flush();
     }
 
     /**
@@ -166,134 +94,190 @@ public class XmlHelper {
      *             properly formatted
      */
     public Object read(InputStream inputStream) throws Exception {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        DocumentBuilder db = dbf.newDocumentBuilder();
+        return read(INPUT_FACTORY.createXMLStreamReader(inputStream));
+    }
 
-        Document document = db.parse(inputStream);
-        Element root = document.getDocumentElement();
+    /**
+     * Read cereal-compatible object(s) from the given reader.
+     * 
+     * @param reader
+     *            the reader to read from
+     * 
+     * @return the cereal-compatible object
+     * 
+     * @throws Exception
+     *             if there was a problem reading from the given reader or if the contents were not
+     *             properly formatted
+     */
+    public Object read(Reader reader) throws Exception {
+        return read(INPUT_FACTORY.createXMLStreamReader(reader));
+    }
 
-        return readNode(root);
+    private Object read(XMLStreamReader xml) throws Exception {
+        try {
+            while (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                /* Skip the prolog */
+            }
+            return readElement(xml, new ElementReader());
+        } finally {
+            xml.close();
+        }
     }
 
     /**
-     * Recursive method for reading each {@link Element} (node) within the XML document structure.
+     * Recursive method for reading each element within the XML document in a single pass. The
+     * reader must be on the start of the element and is left on its end.
+     * 
+     * @param xml
+     *            the reader positioned on the start of the element
+     * @param state
+     *            the reusable state for this read
      * 
-     * @param element
-     *            the element to read
      * @return the cereal-compatible object for that element (and possibly it's child elements)
      * 
      * @throws Exception
-     *             if there was a problem traversing the DOM or the XML is not properly formatted
+     *             if there was a problem reading or the XML is not properly formatted
      */
-    private Object readNode(Element element) throws Exception {
-        List<Node> children = getChildNodes(element);
-        if (children.size() == 0 && TYPE_STRING.equals(element.getAttribute(TYPE_KEY))) {
-            return "";
-        } else if (children.size() == 1 && children.get(0).getNodeType() == Node.TEXT_NODE) {
-            String text = ((Text) children.get(0)).getTextContent();
-            String lcText = text.toLowerCase();
+    private Object readElement(XMLStreamReader xml, ElementReader state) throws Exception {
+        String type = xml.getAttributeValue(null, TYPE_KEY);
 
-            if (TYPE_STRING.equals(element.getAttribute(TYPE_KEY))) {
-                return text;
-            } else if (lcText.equals("null")) {
-                return null;
-            } else if (lcText.equals("false")) {
-                return false;
-            } else if (lcText.equals("true")) {
-                return true;
-            } else {
-                try {
-                    NumberFormat numberFormat = NumberFormat.getInstance();
-                    return numberFormat.parse(text);
-                } catch (ParseException pex) {
-                    return text;
+        /*
+         * Only non-blank text between elements and comments counts as a child, just like the text
+         * nodes of a DOM. Values are only kept until it is known which kind of element this is.
+         */
+        StringBuilder segment = state.segment;
+        segment.setLength(0);
+        String text = null;
+        int textCount = 0;
+        int childCount = 0;
+        String firstName = null;
+        String secondName = null;
+        List<String> names = null;
+        List<Object> values = null;
+
+        for (;;) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                segment.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                continue;
+            }
+
+            if (segment.length() > 0) {
+                if (!isBlank(segment)) {
+                    childCount++;
+                    if (textCount++ == 0) {
+                        text = segment.toString();
+                    }
                 }
+                segment.setLength(0);
             }
-        } else if (isList(element, children)) {
-            List<Object> list = new ArrayList<Object>(children.size());
-            for (Node child : children) {
-                list.add(readNode((Element) child));
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = getName(xml);
+                if (childCount == 0) {
+                    firstName = name;
+                    names = new ArrayList<String>();
+                    values = new ArrayList<Object>();
+                } else if (childCount == 1) {
+                    secondName = name;
+                }
+                childCount++;
+                names.add(name);
+                values.add(readElement(xml, state));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
             }
-            return list;
+        }
+
+        if (childCount == 0 && TYPE_STRING.equals(type)) {
+            return "";
+        } else if (childCount == 1 && textCount == 1) {
+            return TYPE_STRING.equals(type) ? text : toValue(text, state);
+        } else if (textCount > 0) {
+            throw new CerealException("Failed to parse because a object or list contained mixed "
+                    + "types (not only elements) #text");
+        } else if (TYPE_LIST.equals(type) || (childCount >= 2 && firstName.equals(secondName))) {
+            return (null == values) ? new ArrayList<Object>(0) : values;
         } else {
-            Map<String, Object> map = new HashMap<String, Object>(children.size());
-            for (Node child : children) {
-                Element e = (Element) child;
-                String name = e.getNodeName();
-                if (name.equals("__class")) {
+            Map<String, Object> map = new HashMap<String, Object>(childCount);
+            for (int i = 0; i < childCount; i++) {
+                String name = names.get(i);
+                if (name.equals(XmlGenerator.CLASS_ELEMENT)) {
                     name = "--class";
                 }
-                Object value = readNode(e);
-
-                map.put(name, value);
+                map.put(name, values.get(i));
             }
             return map;
         }
-
     }
 
     /**
-     * Helper method to get a list of only {@link Text} and {@link Element} typed {@link Node}s.
-     * This is partially to workaround the difficulty of working with the {@link NodeList} object.
-     * 
-     * @param node
-     *            the node whose children to get
-     * 
-     * @return the filtered list of child nodes
+     * Convert the text of an element that is not marked as a string to a value.
      */
-    private static List<Node> getChildNodes(Node node) {
-        List<Node> children = new ArrayList<Node>();
-        NodeList nl = node.getChildNodes();
-        for (int i = 0; i < nl.getLength(); i++) {
-            Node child = nl.item(i);
-            short type = child.getNodeType();
-            if (type == Node.ELEMENT_NODE) {
-                children.add(child);
-            } else if (type == Node.TEXT_NODE) {
-                String text = ((Text) child).getTextContent().trim();
-                if (text.length() > 0) {
-                    children.add(child);
+    private static Object toValue(String text, ElementReader state) {
+        String lcText = text.toLowerCase();
+        if (lcText.equals("null")) {
+            return null;
+        } else if (lcText.equals("false")) {
+            return false;
+        } else if (lcText.equals("true")) {
+            return true;
+        }
+
+        /* Short runs of digits are always whole numbers, no matter what the locale is */
+        int length = text.length();
+        if (length > 0 && length <= 18) {
+            long number = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
                 }
+                number = number * 10 + (c - '0');
             }
+            if (i == length) {
+                return Long.valueOf(number);
+            }
+        }
+
+        try {
+            return state.getNumberFormat().parse(text);
+        } catch (ParseException pex) {
+            return text;
         }
-        return children;
     }
 
     /**
-     * Deteremines if a given element is a list or object based upon the current XML structure. This
-     * follows the rules defined on the {@link XmlCerealEngine}.
-     * 
-     * @param element
-     *            the element to determine if it is a list or not
-     * @param children
-     *            the children of that element
-     * 
-     * @return <code>true</code> if it is a list or <code>false</code> if it is an object
-     * 
-     * @throws CerealException
-     *             if there is a {@link Text} node in the list of children. This would indicate that
-     *             this has a "mixed" type definition which is not allowed.
+     * Get the name of the current element the same way a DOM without namespace support does.
      */
-    private static boolean isList(Element element, List<Node> children) throws CerealException {
-        /* First verify that everything is an element */
-        for (Node child : children) {
-            if (child.getNodeType() != Node.ELEMENT_NODE) {
-                throw new CerealException(
-                        "Failed to parse because a object or list contained mixed types (not only elements) "
-                                + child.getNodeName());
+    private static String getName(XMLStreamReader xml) {
+        String prefix = xml.getPrefix();
+        String localName = xml.getLocalName();
+        return (null == prefix || prefix.length() == 0) ? localName : prefix + ':' + localName;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
             }
         }
+        return true;
+    }
 
-        if (TYPE_LIST.equals(element.getAttribute(TYPE_KEY))) {
-            return true;
-        } else if (children.size() < 2) {
-            // assume object
-            return false;
-        }
+    /**
+     * The state that is reused for every element of a single read.
+     */
+    private static class ElementReader {
+        private final StringBuilder segment = new StringBuilder();
+        private NumberFormat numberFormat;
 
-        // if the first two tagged names are the same, it is a list
-        String firstName = ((Element) children.get(0)).getTagName();
-        String secondName = ((Element) children.get(1)).getTagName();
-        return firstName.equals(secondName);
+        NumberFormat getNumberFormat() {
+            if (null == numberFormat) {
+                numberFormat = NumberFormat.getInstance();
+            }
+            return numberFormat;
+        }
     }
 }
@@ -0,0 +1,405 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealGenerator;
+
+/**
+ * A {@link CerealGenerator} that feeds SnakeYAML {@link Event}s directly to an {@link Emitter}
+ * without representing the document as a node graph first. Scalars are represented and tagged the
+ * same way <code>Yaml.dump</code> does it, so the output is formatted exactly the same.
+ *
+ * <p>
+ * With the {@link FlowStyle#AUTO} flow style, an object or list uses flow style only if all of
+ * its values are plain scalars. The events of the innermost open object or list are held back
+ * until that is known.
+ * </p>
+ *
+ * @see com.comcast.cereal.engines.YamlCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class YamlGenerator implements CerealGenerator {
+
+    private final Writer writer;
+    private final Emitter emitter;
+    private final DumperOptions options;
+    private final Representer representer;
+    private final Resolver resolver;
+    private final boolean autoFlow;
+
+    /* Where the events of a fork are recorded instead of being emitted */
+    private final List<Event> recorded;
+    private boolean started;
+
+    /* The declared size and number of values written of every open object or list */
+    private int depth;
+    private int[] sizes = new int[16];
+    private int[] counts = new int[16];
+    private boolean[] objects = new boolean[16];
+
+    /* The events of the innermost open object or list while its flow style is undecided */
+    private List<Event> pending;
+
+    /**
+     * Create a new YamlGenerator that writes a single YAML document to the given writer.
+     *
+     * @param writer
+     *            where to write the YAML output to
+     * @param options
+     *            the options that control the flow style and formatting of the output
+     */
+    public YamlGenerator(Writer writer, DumperOptions options) {
+        this(writer, new Emitter(writer, options), options, null);
+    }
+
+    private YamlGenerator(Writer writer, Emitter emitter, DumperOptions options,
+            List<Event> recorded) {
+        this.writer = writer;
+        this.emitter = emitter;
+        this.options = options;
+        this.recorded = recorded;
+        this.autoFlow = (FlowStyle.AUTO == options.getDefaultFlowStyle());
+        this.resolver = new Resolver();
+        this.representer = new Representer();
+        this.representer.setDefaultFlowStyle(options.getDefaultFlowStyle());
+        this.representer.setDefaultScalarStyle(options.getDefaultScalarStyle());
+    }
+
+    /**
+     * Entries are written in the same order the cereal {@link Map} iterates its keys.
+     *
+     * @see com.comcast.cereal.CerealGenerator#orderNames(java.lang.String[])
+     */
+    public String[] orderNames(String[] names) {
+        return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartObject(int)
+     */
+    public void writeStartObject(int size) throws CerealException {
+        startContainer(size, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeName(java.lang.String)
+     */
+    public void writeName(String name) throws CerealException {
+        counts[depth - 1]++;
+        writeNode(representer.represent(name));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndObject()
+     */
+    public void writeEndObject() throws CerealException {
+        endContainer(new MappingEndEvent(null, null));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeStartArray(int)
+     */
+    public void writeStartArray(int size) throws CerealException {
+        startContainer(size, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeEndArray()
+     */
+    public void writeEndArray() throws CerealException {
+        endContainer(new SequenceEndEvent(null, null));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeValue(java.lang.Object)
+     */
+    public void writeValue(Object value) throws CerealException {
+        countValue();
+        writeNode(representer.represent(value));
+        afterValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeCereal(java.lang.Object)
+     */
+    @SuppressWarnings("rawtypes")
+    public void writeCereal(Object cereal) throws CerealException {
+        if (cereal instanceof Map) {
+            Map map = (Map) cereal;
+            writeStartObject(map.size());
+            for (Object o : map.entrySet()) {
+                Entry entry = (Entry) o;
+                counts[depth - 1]++;
+                writeNode(representer.represent(entry.getKey()));
+                writeCereal(entry.getValue());
+            }
+            writeEndObject();
+        } else if (cereal instanceof Collection) {
+            Collection collection = (Collection) cereal;
+            writeStartArray(collection.size());
+            for (Object value : collection) {
+                writeCereal(value);
+            }
+            writeEndArray();
+        } else {
+            writeValue(cereal);
+        }
+    }
+
+    /**
+     * Forks record their events, which are already complete since a fork always holds a single
+     * value.
+     *
+     * @see com.comcast.cereal.CerealGenerator#fork()
+     */
+    public CerealGenerator fork() throws CerealException {
+        YamlGenerator fork = new YamlGenerator(null, null, options, new ArrayList<Event>());
+        fork.started = true;
+        return fork;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#writeFork(com.comcast.cereal.CerealGenerator)
+     */
+    public void writeFork(CerealGenerator fork) throws CerealException {
+        List<Event> events = ((YamlGenerator) fork).recorded;
+        countValue();
+        if (!events.isEmpty()) {
+            beforeNode(isPlain(events.get(0)));
+            for (Event event : events) {
+                emit(event);
+            }
+        }
+        afterValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealGenerator#flush()
+     */
+    public void flush() throws CerealException {
+        if (null != writer) {
+            try {
+                writer.flush();
+            } catch (IOException ioex) {
+                throw new CerealException("Failed while writing YAML", ioex);
+            }
+        }
+    }
+
+    /**
+     * Start an object or list.
+     */
+    private void startContainer(int size, boolean object) throws CerealException {
+        countValue();
+        beforeNode(false);
+
+        if (depth == sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        sizes[depth] = size;
+        counts[depth] = 0;
+        objects[depth] = object;
+        depth++;
+
+        if (autoFlow && size != UNKNOWN_SIZE) {
+            pending = new ArrayList<Event>();
+        } else if (autoFlow) {
+            /* Holding back the values until the end would defeat not knowing the size */
+            emit(startEvent(object, false));
+        } else {
+            emit(startEvent(object, options.getDefaultFlowStyle().getStyleBoolean()));
+        }
+    }
+
+    /**
+     * End the current object or list with the given event.
+     */
+    private void endContainer(Event end) throws CerealException {
+        int size = sizes[depth - 1];
+        if (size != UNKNOWN_SIZE && counts[depth - 1] != size) {
+            throw new CerealException("Expected " + size + " values but " + counts[depth - 1]
+                    + " were written");
+        }
+
+        /* Everything in it was a plain scalar */
+        if (null != pending) {
+            decide(true);
+        }
+        depth--;
+        emit(end);
+        afterValue();
+    }
+
+    /**
+     * Count a value of the current list. Values of an object are counted with their names.
+     */
+    private void countValue() {
+        if (depth > 0 && !objects[depth - 1]) {
+            counts[depth - 1]++;
+        }
+    }
+
+    /**
+     * Start the document if this is the first value and decide the flow style of the current
+     * object or list if the next value can not be written in flow style.
+     */
+    private void beforeNode(boolean plain) throws CerealException {
+        if (!started) {
+            started = true;
+            emit(new StreamStartEvent(null, null));
+            emit(new DocumentStartEvent(null, null, options.isExplicitStart(), options
+                    .getVersion(), options.getTags()));
+        }
+        if (null != pending && !plain) {
+            decide(false);
+        }
+    }
+
+    /**
+     * End the document after the root value.
+     */
+    private void afterValue() throws CerealException {
+        if (depth == 0 && null == recorded) {
+            emit(new DocumentEndEvent(null, null, options.isExplicitEnd()));
+            emit(new StreamEndEvent(null, null));
+        }
+    }
+
+    /**
+     * Write the start of the current object or list with the given flow style, followed by the
+     * events that were held back.
+     */
+    private void decide(boolean flowStyle) throws CerealException {
+        List<Event> events = pending;
+        pending = null;
+        emit(startEvent(objects[depth - 1], flowStyle));
+        for (Event event : events) {
+            emit(event);
+        }
+    }
+
+    private static CollectionStartEvent startEvent(boolean object, Boolean flowStyle) {
+        if (object) {
+            return new MappingStartEvent(null, Tag.MAP.getValue(), true, null, null, flowStyle);
+        } else {
+            return new SequenceStartEvent(null, Tag.SEQ.getValue(), true, null, null, flowStyle);
+        }
+    }
+
+    /**
+     * Write a node the way the SnakeYAML serializer does, without anchors.
+     */
+    private void writeNode(Node node) throws CerealException {
+        if (node instanceof ScalarNode) {
+            ScalarNode scalar = (ScalarNode) node;
+            beforeNode(null == scalar.getStyle());
+
+            String value = scalar.getValue();
+            Tag tag = scalar.getTag();
+            ImplicitTuple implicit = new ImplicitTuple(tag.equals(resolver.resolve(
+                    NodeId.scalar, value, true)), tag.equals(resolver.resolve(NodeId.scalar,
+                    value, false)));
+            emit(new ScalarEvent(null, tag.getValue(), implicit, value, null, null, scalar
+                    .getStyle()));
+        } else if (node instanceof SequenceNode) {
+            SequenceNode sequence = (SequenceNode) node;
+            beforeNode(false);
+            emit(new SequenceStartEvent(null, node.getTag().getValue(), node.getTag().equals(
+                    resolver.resolve(NodeId.sequence, null, true)), null, null, sequence
+                    .getFlowStyle()));
+            for (Node child : sequence.getValue()) {
+                writeNode(child);
+            }
+            emit(new SequenceEndEvent(null, null));
+        } else {
+            MappingNode mapping = (MappingNode) node;
+            beforeNode(false);
+            emit(new MappingStartEvent(null, node.getTag().getValue(), node.getTag().equals(
+                    resolver.resolve(NodeId.mapping, null, true)), null, null, mapping
+                    .getFlowStyle()));
+            for (NodeTuple tuple : mapping.getValue()) {
+                writeNode(tuple.getKeyNode());
+                writeNode(tuple.getValueNode());
+            }
+            emit(new MappingEndEvent(null, null));
+        }
+    }
+
+    private static boolean isPlain(Event event) {
+        return (event instanceof ScalarEvent) && (null == ((ScalarEvent) event).getStyle());
+    }
+
+    private void emit(Event event) throws CerealException {
+        if (null != pending) {
+            pending.add(event);
+        } else if (null != recorded) {
+            recorded.add(event);
+        } else {
+            try {
+                emitter.emit(event);
+            } catch (IOException ioex) {
+                throw new CerealException("Failed while writing YAML", ioex);
+            }
+        }
+    }
+}
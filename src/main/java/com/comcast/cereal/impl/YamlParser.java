@@ -0,0 +1,556 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.impl;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+
+/**
+ * A {@link CerealParser} that reads a single YAML document from SnakeYAML parse events without
+ * composing a node graph. Scalars are resolved and constructed exactly like
+ * <code>Yaml.load</code> does it, but the names of object entries are always the text of the
+ * key.
+ *
+ * <p>
+ * Aliases are read as a copy of the anchored value and merge keys (<code>&lt;&lt;</code>) are
+ * read as the merged entries that the object does not define itself. Objects and lists with a
+ * tag other than the default one are read as a single {@link Token#VALUE}.
+ * </p>
+ *
+ * @see com.comcast.cereal.engines.YamlCerealEngine
+ *
+ * @author <a href="mailto:cmalmgren@gmail.com">Clark Malmgren</a>
+ */
+public class YamlParser implements CerealParser {
+
+    private final Iterator<Event> events;
+    private final Resolver resolver = new Resolver();
+    private final ValueConstructor constructor = new ValueConstructor();
+
+    /* The events of every completed anchored value and the anchored values still being read */
+    private final Map<String, List<Event>> anchors = new HashMap<String, List<Event>>();
+    private final List<Recording> recordings = new ArrayList<Recording>();
+
+    /* Events that are read before the next event of the document, like the value of an alias */
+    private final List<Iterator<Event>> replays = new ArrayList<Iterator<Event>>();
+
+    /* Anchors that are defined in the value being captured, their aliases are kept as is */
+    private Set<String> captured;
+
+    /* Whether each open container is an object (true) or an array (false) */
+    private boolean[] objects = new boolean[16];
+    private int[] nameStarts = new int[16];
+    private int depth;
+
+    /* The names of the entries read so far in every open object */
+    private final List<String> names = new ArrayList<String>();
+
+    private Token token;
+    private Event start;
+    private String name;
+    private Object value;
+
+    /**
+     * Create a new YamlParser that reads from the given reader.
+     *
+     * @param reader
+     *            where to read the YAML input from
+     */
+    public YamlParser(Reader reader) {
+        this.events = new Yaml().parse(reader).iterator();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#next()
+     */
+    public Token next() throws CerealException {
+        try {
+            if (null == token) {
+                return readRoot();
+            } else if (Token.NAME == token) {
+                return readValue(nextEvent(true));
+            } else if (Token.END == token) {
+                return token;
+            } else if (depth == 0) {
+                return readEnd();
+            }
+
+            Event event = nextEvent(true);
+            if (!objects[depth - 1]) {
+                if (event instanceof SequenceEndEvent) {
+                    return end(Token.END_ARRAY);
+                }
+                return readValue(event);
+            }
+
+            while (true) {
+                if (event instanceof MappingEndEvent) {
+                    return end(Token.END_OBJECT);
+                } else if (!(event instanceof ScalarEvent)) {
+                    throw new CerealException("Only scalar keys are supported: " + event);
+                }
+
+                ScalarEvent key = (ScalarEvent) event;
+                if (!isMerge(key)) {
+                    name = key.getValue();
+                    names.add(name);
+                    return token = Token.NAME;
+                }
+
+                replays.add(merge(nextEvent(true)).iterator());
+                event = nextEvent(true);
+            }
+        } catch (YAMLException yex) {
+            throw new CerealException("Failed to read YAML", yex);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getToken()
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#getValue()
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.comcast.cereal.CerealParser#skipValue()
+     */
+    public void skipValue() throws CerealException {
+        if (Token.START_OBJECT == token || Token.START_ARRAY == token) {
+            try {
+                readEvents(start, false);
+            } catch (YAMLException yex) {
+                throw new CerealException("Failed to read YAML", yex);
+            }
+            end(Token.START_OBJECT == token ? Token.END_OBJECT : Token.END_ARRAY);
+        }
+    }
+
+    /**
+     * Objects and lists are constructed exactly like <code>Yaml.load</code> constructs them, so
+     * the objects are {@link java.util.LinkedHashMap}s that keep the constructed keys.
+     *
+     * @see com.comcast.cereal.CerealParser#readCereal()
+     */
+    public Object readCereal() throws CerealException {
+        switch (token) {
+        case VALUE:
+            return value;
+        case START_OBJECT:
+        case START_ARRAY:
+            Token end = (Token.START_OBJECT == token) ? Token.END_OBJECT : Token.END_ARRAY;
+            Object cereal;
+            try {
+                cereal = construct(start);
+            } catch (YAMLException yex) {
+                throw new CerealException("Failed to read YAML", yex);
+            }
+            end(end);
+            return cereal;
+        default:
+            throw new CerealException("Expected a value but found " + token);
+        }
+    }
+
+    /**
+     * Skip to the root value of the document. An empty stream holds a single <code>null</code>
+     * value.
+     */
+    private Token readRoot() throws CerealException {
+        Event event = nextEvent(true);
+        if (event instanceof StreamStartEvent) {
+            event = nextEvent(true);
+        }
+        if (event instanceof StreamEndEvent) {
+            value = null;
+            return token = Token.VALUE;
+        }
+        if (event instanceof DocumentStartEvent) {
+            event = nextEvent(true);
+        }
+        return readValue(event);
+    }
+
+    /**
+     * Finish the document after the root value, there must not be another one.
+     */
+    private Token readEnd() throws CerealException {
+        if (replays.isEmpty() && !events.hasNext()) {
+            return token = Token.END;
+        }
+        Event event = nextEvent(true);
+        if (event instanceof DocumentEndEvent) {
+            event = nextEvent(true);
+        }
+        if (!(event instanceof StreamEndEvent)) {
+            throw new CerealException("Expected a single document in the stream but found "
+                    + event);
+        }
+        return token = Token.END;
+    }
+
+    /**
+     * Read the value that starts with the given event.
+     */
+    private Token readValue(Event event) throws CerealException {
+        if (event instanceof ScalarEvent) {
+            value = constructor.construct(toNode((ScalarEvent) event));
+            return token = Token.VALUE;
+        } else if (!(event instanceof CollectionStartEvent)) {
+            throw new CerealException("Expected a value but found " + event);
+        }
+
+        CollectionStartEvent collection = (CollectionStartEvent) event;
+        boolean object = (event instanceof MappingStartEvent);
+        String tag = collection.getTag();
+        if (null != tag && !"!".equals(tag)
+                && !tag.equals((object ? Tag.MAP : Tag.SEQ).getValue())) {
+            /* Sets, ordered maps and tagged classes only have a constructed representation */
+            value = construct(event);
+            return token = Token.VALUE;
+        }
+
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+            nameStarts = Arrays.copyOf(nameStarts, depth * 2);
+        }
+        objects[depth] = object;
+        nameStarts[depth] = names.size();
+        depth++;
+
+        start = event;
+        return token = object ? Token.START_OBJECT : Token.START_ARRAY;
+    }
+
+    private Token end(Token end) {
+        depth--;
+        if (objects[depth]) {
+            names.subList(nameStarts[depth], names.size()).clear();
+        }
+        return token = end;
+    }
+
+    /**
+     * Check if the given key is a merge key.
+     */
+    private boolean isMerge(ScalarEvent key) {
+        return "<<".equals(key.getValue()) && Tag.MERGE.equals(toNode(key).getTag());
+    }
+
+    /**
+     * Read the value of a merge key that starts with the given event and get the merged entries
+     * that the current object does not already define. Earlier entries take precedence just like
+     * they do when <code>Yaml.load</code> flattens the object.
+     */
+    private List<Event> merge(Event event) throws CerealException {
+        List<Event> merging = readEvents(event, true);
+        Set<String> defined = new HashSet<String>(names.subList(nameStarts[depth - 1],
+                names.size()));
+        List<Event> merged = new ArrayList<Event>();
+
+        if (event instanceof MappingStartEvent) {
+            addEntries(merging, 1, defined, merged);
+        } else if (event instanceof SequenceStartEvent) {
+            int i = 1;
+            while (i < merging.size() - 1) {
+                if (!(merging.get(i) instanceof MappingStartEvent)) {
+                    throw new CerealException("Expected a mapping for merging but found "
+                            + merging.get(i));
+                }
+                i = addEntries(merging, i + 1, defined, merged) + 1;
+            }
+        } else {
+            throw new CerealException("Expected a mapping or list of mappings for merging but "
+                    + "found " + event);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Add the entries of the object that starts before the given index to the merged entries
+     * unless they are already defined.
+     *
+     * @return the index of the end of the object
+     */
+    private static int addEntries(List<Event> events, int i, Set<String> defined,
+            List<Event> merged) {
+        while (!(events.get(i) instanceof MappingEndEvent)) {
+            int end = skip(events, skip(events, i));
+            Event key = events.get(i);
+            if (!(key instanceof ScalarEvent) || defined.add(((ScalarEvent) key).getValue())) {
+                merged.addAll(events.subList(i, end));
+            }
+            i = end;
+        }
+        return i;
+    }
+
+    /**
+     * Get the index after the value that starts at the given index.
+     */
+    private static int skip(List<Event> events, int i) {
+        int open = 0;
+        do {
+            Event event = events.get(i++);
+            if (event instanceof CollectionStartEvent) {
+                open++;
+            } else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                open--;
+            }
+        } while (open > 0);
+        return i;
+    }
+
+    /**
+     * Read all of the events of the value that starts with the given event.
+     */
+    private List<Event> readEvents(Event first, boolean keep) throws CerealException {
+        List<Event> list = keep ? new ArrayList<Event>() : null;
+        Event event = first;
+        int open = 0;
+        while (true) {
+            if (keep) {
+                list.add(event);
+            }
+            if (event instanceof CollectionStartEvent) {
+                open++;
+            } else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                open--;
+            }
+            if (open == 0) {
+                return list;
+            }
+            event = nextEvent(keep || !recordings.isEmpty());
+        }
+    }
+
+    /**
+     * Construct the value that starts with the given event the same way <code>Yaml.load</code>
+     * would construct it.
+     */
+    private Object construct(Event first) throws CerealException {
+        captured = new HashSet<String>();
+        List<Event> document;
+        try {
+            if (null != ((NodeEvent) first).getAnchor()) {
+                captured.add(((NodeEvent) first).getAnchor());
+            }
+            document = new ArrayList<Event>();
+            document.add(new StreamStartEvent(null, null));
+            document.add(new DocumentStartEvent(null, null, false, null, null));
+            document.addAll(readEvents(first, true));
+            document.add(new DocumentEndEvent(null, null, false));
+            document.add(new StreamEndEvent(null, null));
+        } finally {
+            captured = null;
+        }
+
+        constructor.setComposer(new Composer(new EventParser(document), resolver));
+        return constructor.getSingleData(Object.class);
+    }
+
+    /**
+     * Resolve the tag of a scalar the same way the SnakeYAML composer does.
+     */
+    private ScalarNode toNode(ScalarEvent event) {
+        String tag = event.getTag();
+        Tag nodeTag;
+        boolean resolved = false;
+        if (null == tag || "!".equals(tag)) {
+            nodeTag = resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit()
+                    .canOmitTagInPlainScalar());
+            resolved = true;
+        } else {
+            nodeTag = new Tag(tag);
+        }
+        return new ScalarNode(nodeTag, resolved, event.getValue(), event.getStartMark(), event
+                .getEndMark(), event.getStyle());
+    }
+
+    /**
+     * Get the next event of the document, reading the value of an alias in its place when
+     * needed.
+     */
+    private Event nextEvent(boolean expand) throws CerealException {
+        Event event;
+        boolean replayed;
+        while (true) {
+            replayed = !replays.isEmpty();
+            if (replayed) {
+                Iterator<Event> replay = replays.get(replays.size() - 1);
+                if (!replay.hasNext()) {
+                    replays.remove(replays.size() - 1);
+                    continue;
+                }
+                event = replay.next();
+            } else if (events.hasNext()) {
+                event = events.next();
+            } else {
+                throw new CerealException("Unexpected end of YAML input");
+            }
+
+            if (!(event instanceof AliasEvent) || !expand) {
+                break;
+            }
+
+            String anchor = ((AliasEvent) event).getAnchor();
+            if (null != captured && captured.contains(anchor)) {
+                break;
+            }
+            List<Event> anchored = anchors.get(anchor);
+            if (null == anchored) {
+                throw new CerealException("Found undefined alias " + anchor);
+            }
+            replays.add(anchored.iterator());
+        }
+
+        record(event, replayed);
+        return event;
+    }
+
+    /**
+     * Add the event to every anchored value that is being read and start recording a new one if
+     * it is anchored.
+     */
+    private void record(Event event, boolean replayed) {
+        if (event instanceof NodeEvent && !(event instanceof AliasEvent)) {
+            String anchor = ((NodeEvent) event).getAnchor();
+            if (null != anchor) {
+                if (null != captured) {
+                    captured.add(anchor);
+                }
+                if (!replayed) {
+                    recordings.add(new Recording(anchor));
+                }
+            }
+        }
+
+        for (int i = recordings.size() - 1; i >= 0; i--) {
+            Recording recording = recordings.get(i);
+            recording.events.add(event);
+            if (event instanceof CollectionStartEvent) {
+                recording.open++;
+            } else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                recording.open--;
+            }
+            if (recording.open == 0) {
+                anchors.put(recording.anchor, recording.events);
+                recordings.remove(i);
+            }
+        }
+    }
+
+    /**
+     * The events of an anchored value that is still being read.
+     */
+    private static class Recording {
+        private final String anchor;
+        private final List<Event> events = new ArrayList<Event>();
+        private int open;
+
+        private Recording(String anchor) {
+            this.anchor = anchor;
+        }
+    }
+
+    /**
+     * Feeds a list of events to a SnakeYAML {@link Composer}.
+     */
+    private static class EventParser implements Parser {
+        private final List<Event> events;
+        private int index;
+
+        private EventParser(List<Event> events) {
+            this.events = events;
+        }
+
+        public boolean checkEvent(Event.ID choice) {
+            return index < events.size() && events.get(index).is(choice);
+        }
+
+        public Event peekEvent() {
+            return index < events.size() ? events.get(index) : null;
+        }
+
+        public Event getEvent() {
+            return index < events.size() ? events.get(index++) : null;
+        }
+    }
+
+    /**
+     * The default SnakeYAML constructor, which can also construct a single scalar.
+     */
+    private static class ValueConstructor extends Constructor {
+
+        private Object construct(Node node) {
+            return getConstructor(node).construct(node);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+
+/**
+ * Verifies that the asynchronous file methods write and read the same files as the blocking ones.
+ */
+public class AsyncTest {
+
+    private File directory;
+    private File file;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("cereal", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "values");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        /* Large enough to keep every write buffer busy */
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < 50000; i++) {
+            values.add("value number " + i);
+        }
+
+        AbstractCerealEngine[] engines = new AbstractCerealEngine[] { new JsonCerealEngine(),
+                new YamlCerealEngine(), new BinaryCerealEngine() };
+        for (AbstractCerealEngine engine : engines) {
+            for (boolean atomic : new boolean[] { true, false }) {
+                CerealSettings settings = new CerealSettings();
+                settings.setAtomicFileWrites(atomic);
+                engine.setSettings(settings);
+
+                assertEquals(engine.writeAsync(values, file.toPath()).get(), null);
+                assertEquals(Arrays.asList(engine.read(file, String[].class)), values);
+                assertEquals(Arrays.asList(engine.readAsync(file.toPath(), String[].class).get()),
+                        values);
+
+                engine.writeAsync("short", String.class, file.toPath()).get();
+                assertEquals(engine.readAsync(file.toPath(), String.class).get(), "short");
+                assertEquals(directory.list(), new String[] { file.getName() });
+            }
+        }
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                count.incrementAndGet();
+                command.run();
+            }
+        });
+
+        Future<Void> write = engine.writeAsync("value", file.toPath());
+        assertTrue(write.isDone());
+        assertEquals(engine.readAsync(file.toPath(), String.class).get(), "value");
+        assertEquals(count.get(), 2);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        /* Fresh engines so that the cerealizers are created while the calls run */
+        for (AbstractCerealEngine engine : new AbstractCerealEngine[] { new JsonCerealEngine(),
+                new YamlCerealEngine(), new BinaryCerealEngine() }) {
+            List<Future<Void>> writes = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 32; i++) {
+                Entry entry = new Entry();
+                entry.name = "entry " + i;
+                entry.values = Arrays.asList(i, i + 1, i + 2);
+                writes.add(engine.writeAsync(entry, Entry.class,
+                        new File(directory, "entry" + i).toPath()));
+            }
+            for (Future<Void> write : writes) {
+                write.get();
+            }
+
+            List<Future<Entry>> reads = new ArrayList<Future<Entry>>();
+            for (int i = 0; i < 32; i++) {
+                reads.add(engine.readAsync(new File(directory, "entry" + i).toPath(),
+                        Entry.class));
+            }
+            for (int i = 0; i < 32; i++) {
+                Entry entry = reads.get(i).get();
+                assertEquals(entry.name, "entry " + i);
+                assertEquals(entry.values, Arrays.asList(i, i + 1, i + 2));
+            }
+        }
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        try {
+            engine.readAsync(file.toPath(), String.class).get();
+            assertTrue(false, "Expected the read to fail");
+        } catch (ExecutionException eex) {
+            assertTrue(eex.getCause() instanceof CerealException);
+        }
+
+        File missing = new File(new File(directory, "missing"), "values");
+        try {
+            engine.writeAsync("value", missing.toPath()).get();
+            assertTrue(false, "Expected the write to fail");
+        } catch (ExecutionException eex) {
+            assertTrue(eex.getCause() instanceof CerealException);
+        }
+    }
+
+    public static class Entry {
+        public String name;
+        public List<Integer> values;
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.impl.BinaryGenerator;
+import com.comcast.cereal.impl.BinaryParser;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that the binary engine reads back exactly what it writes and that streaming matches
+ * the cereal representation.
+ */
+public class BinaryEngineTest {
+
+    @DataProvider(name = "objectData")
+    public TestList objectData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            tl.add(object, true);
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            tl.add(object, false);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testRoundTrip(Object object, boolean useReferences) throws Exception {
+        JsonCerealEngine json = new JsonCerealEngine();
+        json.setSettings(settings(useReferences, false, false));
+        String expected = json.writeToString(object);
+
+        for (boolean stream : new boolean[] { false, true }) {
+            BinaryCerealEngine engine = new BinaryCerealEngine();
+            engine.setSettings(settings(useReferences, stream, stream));
+
+            byte[] bytes = engine.writeToBytes(object);
+            assertEquals(json.writeToString(engine.readFromBytes(bytes, object.getClass())),
+                    expected);
+
+            String string = engine.writeToString(object);
+            assertEquals(string.length(), bytes.length);
+            assertEquals(json.writeToString(engine.readFromString(string, object.getClass())),
+                    expected);
+        }
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testStreamMatchesTree(Object object, boolean useReferences) throws Exception {
+        BinaryCerealEngine treeEngine = new BinaryCerealEngine();
+        treeEngine.setSettings(settings(useReferences, false, false));
+        BinaryCerealEngine streamEngine = new BinaryCerealEngine();
+        streamEngine.setSettings(settings(useReferences, true, false));
+
+        assertEquals(streamEngine.writeToBytes(object), treeEngine.writeToBytes(object));
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testTaggedEngineRoundTrip(Object object, boolean useReferences) throws Exception {
+        JsonCerealEngine json = new JsonCerealEngine();
+        json.setSettings(settings(useReferences, false, false));
+        String expected = json.writeToString(object);
+
+        BinaryCerealEngine engine = new BinaryCerealEngine(true);
+        engine.setSettings(settings(useReferences, false, false));
+        Object result = engine.readFromBytes(engine.writeToBytes(object), object.getClass());
+        assertEquals(json.writeToString(result), expected);
+    }
+
+    @Test
+    public void testTags() throws Exception {
+        Tagged root = tagged("root", 1);
+        root.children.add(tagged("first child", 2));
+        root.children.add(tagged("second child", -3));
+
+        BinaryCerealEngine engine = new BinaryCerealEngine(true);
+        byte[] tagged = engine.writeToBytes(root);
+        byte[] named = new BinaryCerealEngine().writeToBytes(root);
+        assertTrue(tagged.length < named.length);
+
+        String chars = new String(tagged, "ISO-8859-1");
+        assertFalse(chars.contains("label"));
+        assertFalse(chars.contains("count"));
+        assertTrue(chars.contains("children"));
+
+        Tagged result = engine.readFromBytes(tagged, Tagged.class);
+        assertEquals(result.label, "root");
+        assertEquals(result.count, 1);
+        assertEquals(result.children.size(), 2);
+        assertEquals(result.children.get(0).label, "first child");
+        assertEquals(result.children.get(1).count, -3);
+    }
+
+    @Test
+    public void testUnknownTagsSkipped() throws Exception {
+        Extended extended = new Extended();
+        extended.label = "older readers";
+        extended.count = 5;
+        extended.children = new ArrayList<Tagged>();
+        extended.extra = Arrays.asList(tagged("skip", 6));
+
+        BinaryCerealEngine engine = new BinaryCerealEngine(true);
+        Tagged result = engine.readFromBytes(engine.writeToBytes(extended), Tagged.class);
+        assertEquals(result.label, "older readers");
+        assertEquals(result.count, 5);
+    }
+
+    @Test
+    public void testTagsWithReferencesAndClassNames() throws Exception {
+        Tagged root = tagged("root", 1);
+        Extended child = new Extended();
+        child.label = "child";
+        child.children = Arrays.asList(root);
+        child.extra = new ArrayList<Tagged>();
+        root.children.add(child);
+        root.children.add(child);
+
+        CerealSettings settings = settings(true, false, false);
+        settings.setIncludeClassName(true);
+        BinaryCerealEngine engine = new BinaryCerealEngine(true);
+        engine.setSettings(settings);
+
+        Tagged result = engine.readFromBytes(engine.writeToBytes(root), Tagged.class);
+        assertTrue(result.children.get(0) instanceof Extended);
+        assertSame(result.children.get(0), result.children.get(1));
+        assertSame(result.children.get(0).children.get(0), result);
+    }
+
+    @Test
+    public void testTaggedObjectsNeedTheirClass() throws Exception {
+        BinaryCerealEngine engine = new BinaryCerealEngine(true);
+        byte[] bytes = engine.writeToBytes(tagged("root", 1));
+
+        try {
+            read(bytes);
+            assertTrue(false, "Expected tagged entries to need their class");
+        } catch (CerealException ex) {
+            /* Expected */
+        }
+
+        try {
+            engine.writeToBytes(new Duplicate());
+            assertTrue(false, "Expected duplicate tags to fail");
+        } catch (CerealException ex) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        Map<String, Object> inner = new LinkedHashMap<String, Object>();
+        inner.put("name", "é中😀");
+        inner.put("empty", "");
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("ints", Arrays.<Object> asList(0, -1, 1, 63, -64, 64, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE));
+        map.put("doubles", Arrays.<Object> asList(0.0, -0.0, 2.5, Double.NaN,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE));
+        map.put("flags", Arrays.<Object> asList(true, false, null));
+        map.put("nested", Arrays.<Object> asList(inner, inner, new ArrayList<Object>(),
+                new HashMap<String, Object>()));
+        map.put("name", "outer");
+
+        Object cereal = write(map);
+        assertEquals(cereal, map);
+        assertEquals(write(7), 7);
+        assertEquals(write("top"), "top");
+        assertEquals(write(null), null);
+        assertEquals(write(3000000000L), 3000000000L);
+        assertEquals(write(1.5f), 1.5);
+
+        byte[] bytes = new byte[] { 0, 1, -1, 127, -128 };
+        assertTrue(Arrays.equals((byte[]) write(bytes), bytes));
+    }
+
+    @Test
+    public void testNamesWrittenOnce() throws Exception {
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> map = new HashMap<String, Object>();
+            map.put("a rather long name", 1);
+            list.add(map);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryGenerator generator = new BinaryGenerator(baos);
+        generator.writeCereal(list);
+        generator.flush();
+
+        /* Header, list, first entry with the name and 99 entries with a name index */
+        assertEquals(baos.size(), 2 + 2 + (2 + 1 + 19 + 2) + 99 * (2 + 1 + 2));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        byte[][] inputs = new byte[][] { {}, { 1, 1, 0 }, { (byte) 0xCE, 9, 0 },
+                { (byte) 0xCE, 1, 99 }, { (byte) 0xCE, 1, 8, 1, 5 }, { (byte) 0xCE, 1, 5, 10, 'a' },
+                { (byte) 0xCE, 1, 3, (byte) 0x80 } };
+        for (byte[] input : inputs) {
+            try {
+                read(input);
+                assertTrue(false, "Expected a failure reading " + Arrays.toString(input));
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+        }
+    }
+
+    private static Tagged tagged(String label, int count) {
+        Tagged tagged = new Tagged();
+        tagged.label = label;
+        tagged.count = count;
+        tagged.children = new ArrayList<Tagged>();
+        return tagged;
+    }
+
+    private static Object write(Object cereal) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryGenerator generator = new BinaryGenerator(baos);
+        generator.writeCereal(cereal);
+        generator.flush();
+        return read(baos.toByteArray());
+    }
+
+    private static Object read(byte[] bytes) throws CerealException {
+        BinaryParser parser = new BinaryParser(new ByteArrayInputStream(bytes));
+        parser.next();
+        return parser.readCereal();
+    }
+
+    private static CerealSettings settings(boolean useReferences, boolean streamWrites,
+            boolean streamReads) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamWrites(streamWrites);
+        settings.setStreamReads(streamReads);
+        return settings;
+    }
+
+    public static class Tagged {
+        @Cereal(tag = 1)
+        public String label;
+        @Cereal(tag = 2)
+        public int count;
+        public List<Tagged> children;
+    }
+
+    public static class Extended extends Tagged {
+        @Cereal(tag = 3)
+        public List<Tagged> extra;
+    }
+
+    public static class Duplicate {
+        @Cereal(tag = 1)
+        public String first;
+        @Cereal(tag = 1)
+        public String second;
+    }
+}
@@ -36,6 +36,7 @@ public abstract class CerealEngineTest {
         tl.add(new JsonCerealEngine());
         tl.add(new XmlCerealEngine());
         tl.add(new YamlCerealEngine());
+        tl.add(new BinaryCerealEngine());
         
         return tl;
     }
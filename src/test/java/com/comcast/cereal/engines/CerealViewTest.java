@@ -0,0 +1,235 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.BinaryParser;
+import com.comcast.cereal.impl.CerealView;
+import com.comcast.cereal.impl.CerealView.Type;
+import com.comcast.cereal.impl.IndexedBinaryGenerator;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.Team;
+
+/**
+ * Verifies that the indexed binary layout reads back what was written, both through a
+ * {@link CerealView} and by binding the view to objects.
+ */
+public class CerealViewTest {
+
+    @DataProvider(name = "objectData")
+    public TestList objectData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            tl.add(object, true);
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            tl.add(object, false);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testRoundTrip(Object object, boolean useReferences) throws Exception {
+        JsonCerealEngine json = new JsonCerealEngine();
+        json.setSettings(settings(useReferences));
+        String expected = json.writeToString(object);
+
+        BinaryCerealEngine engine = new BinaryCerealEngine();
+        engine.setSettings(settings(useReferences));
+        byte[] bytes = engine.writeToIndexedBytes(object);
+
+        for (ByteBuffer buffer : buffers(bytes)) {
+            CerealView view = CerealView.wrap(buffer);
+            assertEquals(json.writeToString(engine.readFromView(view, object.getClass())),
+                    expected);
+        }
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testMatchesSequential(Object object, boolean useReferences) throws Exception {
+        BinaryCerealEngine engine = new BinaryCerealEngine();
+        engine.setSettings(settings(useReferences));
+
+        BinaryParser parser = new BinaryParser(new ByteArrayInputStream(engine
+                .writeToBytes(object)));
+        parser.next();
+        Object expected = parser.readCereal();
+
+        CerealView view = CerealView.wrap(ByteBuffer.wrap(engine.writeToIndexedBytes(object)));
+        assertEquals(view.toCereal(), expected);
+    }
+
+    @Test
+    public void testAccessors() throws Exception {
+        Map<String, Object> inner = new LinkedHashMap<String, Object>();
+        inner.put("name", "é中😀");
+        inner.put("bytes", new byte[] { 1, 2, 3 });
+        inner.put("nothing", null);
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("zebra", Arrays.<Object> asList(1, -2L << 40, 2.5, true, inner));
+        map.put("apple", "first");
+        map.put("😀", "after every BMP name");
+        map.put("￿", "before supplementary names");
+        map.put("mango", new HashMap<String, Object>());
+
+        for (ByteBuffer buffer : buffers(write(map))) {
+            CerealView view = CerealView.wrap(buffer);
+            assertEquals(view.getType(), Type.OBJECT);
+            assertEquals(view.size(), 5);
+            assertEquals(view.getName(0), "apple");
+            assertEquals(view.getName(3), "￿");
+            assertEquals(view.getName(4), "😀");
+            for (String name : map.keySet()) {
+                assertTrue(view.has(name), name);
+            }
+            assertFalse(view.has("missing"));
+            assertNull(view.get("missing"));
+
+            assertEquals(view.get("apple").getString(), "first");
+            assertEquals(view.get("￿").getString(), "before supplementary names");
+            assertEquals(view.get("mango").size(), 0);
+
+            CerealView list = view.get("zebra");
+            assertEquals(list.getType(), Type.LIST);
+            assertEquals(list.size(), 5);
+            assertEquals(list.get(0).getLong(), 1);
+            assertEquals(list.get(0).getValue(), 1);
+            assertEquals(list.get(1).getValue(), -2L << 40);
+            assertEquals(list.get(2).getDouble(), 2.5);
+            assertEquals(list.get(0).getDouble(), 1.0);
+            assertTrue(list.get(3).getBoolean());
+            assertEquals(list.get(4).get("name").getString(), "é中😀");
+            assertEquals(list.get(4).get("bytes").getBytes(), new byte[] { 1, 2, 3 });
+            assertTrue(list.get(4).get("nothing").isNull());
+
+            assertEquals(buffer.position(), 3);
+            assertFails(view, "getString");
+            assertFails(list, "get(5)");
+            assertFails(list.get(2), "getLong");
+            assertFails(list.get(4), "getName(3)");
+        }
+    }
+
+    @Test
+    public void testSkippedValues() throws Exception {
+        Map<String, Object> extra = new HashMap<String, Object>();
+        extra.put("deep", Arrays.<Object> asList(1, Arrays.asList(2, 3),
+                new HashMap<String, Object>()));
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("name", "Cereal");
+        map.put("location", "Philadelphia");
+        map.put("extra", extra);
+        map.put("members", new ArrayList<Object>());
+        map.put("projects", Arrays.asList("one", "two"));
+
+        CerealView view = CerealView.wrap(ByteBuffer.wrap(write(map)));
+        Team team = new BinaryCerealEngine().readFromView(view, Team.class);
+
+        assertEquals(team.name, "Cereal");
+        assertEquals(team.location, "Philadelphia");
+        assertEquals(team.projects.size(), 2);
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        byte[] valid = write(Arrays.asList("a", "b"));
+        byte[][] inputs = new byte[][] { {}, { (byte) 0xCE, 2, 0, 0 },
+                new BinaryCerealEngine().writeToBytes("sequential"),
+                { (byte) 0xCE, 2, 0, 0, 0, 99 }, { (byte) 0xCE, 2, 0, 0, 0, 6, 42 },
+                Arrays.copyOf(valid, valid.length - 1) };
+        for (byte[] input : inputs) {
+            try {
+                CerealView.wrap(ByteBuffer.wrap(input)).toCereal();
+                assertTrue(false, "Expected a failure reading " + Arrays.toString(input));
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+        }
+    }
+
+    /**
+     * Write the given cereal in the indexed layout.
+     */
+    private static byte[] write(Object cereal) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        IndexedBinaryGenerator generator = new IndexedBinaryGenerator(baos);
+        generator.writeCereal(cereal);
+        generator.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Wrap the bytes in a heap buffer and a direct buffer, both starting after three other bytes.
+     */
+    private static List<ByteBuffer> buffers(byte[] bytes) {
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes.length + 3) : ByteBuffer
+                    .allocate(bytes.length + 3);
+            buffer.put(new byte[] { 9, 9, 9 });
+            buffer.put(bytes);
+            buffer.position(3);
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static void assertFails(CerealView view, String call) {
+        try {
+            if ("getString".equals(call)) {
+                view.getString();
+            } else if ("getLong".equals(call)) {
+                view.getLong();
+            } else if (call.startsWith("getName")) {
+                view.getName(Integer.parseInt(call.substring(8, call.length() - 1)));
+            } else {
+                view.get(Integer.parseInt(call.substring(4, call.length() - 1)));
+            }
+            assertTrue(false, "Expected " + call + " to fail");
+        } catch (CerealException ex) {
+            /* Expected */
+        }
+    }
+
+    private static CerealSettings settings(boolean useReferences) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        return settings;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that writing to and reading from buffers and channels matches the string and byte
+ * methods.
+ */
+public class ChannelTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @DataProvider(name = "objectData")
+    public TestList objectData() throws Exception {
+        TestList tl = new TestList();
+
+        /* Large enough to fill every pooled buffer more than once */
+        List<String> large = new ArrayList<String>();
+        for (int i = 0; i < 30000; i++) {
+            large.add("value number " + i);
+        }
+
+        List<Object> objects = StreamingWriteTest.objects(false);
+        objects.add(large);
+        for (Object object : objects) {
+            tl.add(new JsonCerealEngine(), object);
+            tl.add(new XmlCerealEngine(), object);
+            tl.add(new YamlCerealEngine(), object);
+            tl.add(new BinaryCerealEngine(), object);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testRoundTrip(AbstractCerealEngine engine, Object object) throws Exception {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(false);
+        engine.setSettings(settings);
+
+        JsonCerealEngine jsonEngine = new JsonCerealEngine();
+        jsonEngine.setSettings(settings);
+
+        /* Not every engine reads back every object exactly, so compare to what the string reads */
+        byte[] expected = bytes(engine, object);
+        String json = jsonEngine.writeToString(read(engine, expected, object.getClass()));
+
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+        buffer.position(3);
+        engine.write(object, buffer);
+        assertEquals(buffer.position(), expected.length + 3);
+        assertEquals(Arrays.copyOfRange(buffer.array(), 3, buffer.position()), expected);
+
+        buffer.flip().position(3);
+        Object result = engine.read(buffer, object.getClass());
+        assertEquals(jsonEngine.writeToString(result), json);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+        engine.write(object, direct);
+        direct.flip();
+        result = engine.read(direct, object.getClass());
+        assertEquals(jsonEngine.writeToString(result), json);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.write(object, Channels.newChannel(baos));
+        assertEquals(baos.toByteArray(), expected);
+
+        result = engine.read(Channels.newChannel(new ByteArrayInputStream(expected)),
+                object.getClass());
+        assertEquals(jsonEngine.writeToString(result), json);
+    }
+
+    @Test
+    public void testFileChannel() throws Exception {
+        File file = File.createTempFile("cereal", ".json");
+        try {
+            List<String> values = new ArrayList<String>();
+            for (int i = 0; i < 50000; i++) {
+                values.add("élément " + i);
+            }
+
+            JsonCerealEngine engine = new JsonCerealEngine();
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            try {
+                engine.write(values, channel);
+                engine.write("second", String.class, channel);
+                assertTrue(channel.isOpen());
+            } finally {
+                channel.close();
+            }
+
+            String expected = engine.writeToString(values) + "\"second\"";
+            assertEquals(FileUtils.readFileToString(file, "UTF-8"), expected);
+
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(expected.getBytes(UTF_8).length);
+                channel.read(buffer);
+                buffer.flip();
+                buffer.limit(buffer.limit() - "\"second\"".length());
+                assertEquals(Arrays.asList(engine.read(buffer, String[].class)), values);
+
+                channel.position(0);
+                engine.read(channel, String[].class);
+                assertTrue(channel.isOpen());
+            } finally {
+                channel.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBufferTooSmall() throws Exception {
+        AbstractCerealEngine[] engines = new AbstractCerealEngine[] { new JsonCerealEngine(),
+                new BinaryCerealEngine() };
+        for (AbstractCerealEngine engine : engines) {
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            buffer.position(5);
+            try {
+                engine.write(Arrays.asList("a value that does not fit"), buffer);
+                assertTrue(false, "Expected the write to fail");
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+            assertEquals(buffer.position(), 5);
+        }
+    }
+
+    private static byte[] bytes(AbstractCerealEngine engine, Object object) throws Exception {
+        if (engine instanceof BinaryCerealEngine) {
+            return ((BinaryCerealEngine) engine).writeToBytes(object);
+        }
+        return engine.writeToString(object).getBytes(UTF_8);
+    }
+
+    private static Object read(AbstractCerealEngine engine, byte[] bytes, Class<?> clazz)
+            throws Exception {
+        if (engine instanceof BinaryCerealEngine) {
+            return ((BinaryCerealEngine) engine).readFromBytes(bytes, clazz);
+        }
+        return engine.readFromString(new String(bytes, UTF_8), clazz);
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealCodec;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.CodecHelper;
+import com.comcast.cereal.impl.DeflateCodec;
+import com.comcast.cereal.impl.GzipCodec;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that output encoded by a codec is read back by detecting the codec.
+ */
+public class CodecTest {
+
+    @DataProvider(name = "engines")
+    public TestList engines() {
+        TestList tl = new TestList();
+        for (CerealCodec codec : new CerealCodec[] { new GzipCodec(), new DeflateCodec(),
+                new GzipCodec(9, 65536), new DeflateCodec(1, 512) }) {
+            tl.add(new JsonCerealEngine(), codec);
+            tl.add(new XmlCerealEngine(), codec);
+            tl.add(new YamlCerealEngine(), codec);
+            tl.add(new BinaryCerealEngine(), codec);
+        }
+        return tl;
+    }
+
+    @Test(dataProvider = "engines")
+    public void testRoundTrip(AbstractCerealEngine engine, CerealCodec codec) throws Exception {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            values.add("a very compressible value");
+        }
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        engine.writeTo(plain, values, null);
+
+        CerealSettings settings = new CerealSettings();
+        settings.setCodec(codec);
+        engine.setSettings(settings);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        engine.writeTo(encoded, values, null);
+        byte[] bytes = encoded.toByteArray();
+        assertTrue(bytes.length * 10 < plain.size());
+        assertEquals(IOUtils.toByteArray(codec.decode(new ByteArrayInputStream(bytes))),
+                plain.toByteArray());
+
+        /* The codec that is set reads its own output and plain input */
+        assertEquals(read(engine, new ByteArrayInputStream(bytes)), values);
+        assertEquals(read(engine, new ByteArrayInputStream(plain.toByteArray())), values);
+        assertEquals(Arrays.asList(engine.read(ByteBuffer.wrap(bytes), String[].class)), values);
+        assertEquals(Arrays.asList(engine.read(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), String[].class)), values);
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1024);
+        engine.write(values, buffer);
+        buffer.flip();
+        assertEquals(Arrays.asList(engine.read(buffer, String[].class)), values);
+
+        File file = File.createTempFile("cereal", ".gz");
+        try {
+            engine.write(values, file);
+            assertEquals(Arrays.asList(engine.read(file, String[].class)), values);
+        } finally {
+            file.delete();
+        }
+
+        /* Detection reads the output of any known codec */
+        settings.setCodec(null);
+        settings.setDetectCodecs(true);
+        assertEquals(read(engine, new ByteArrayInputStream(bytes)), values);
+        assertEquals(read(engine, new ByteArrayInputStream(plain.toByteArray())), values);
+        assertEquals(Arrays.asList(engine.read(ByteBuffer.wrap(bytes), String[].class)), values);
+
+        settings.setDetectCodecs(false);
+        try {
+            read(engine, new ByteArrayInputStream(bytes));
+            assertTrue(false, "Expected the encoded input to be read as is");
+        } catch (Exception ex) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testFiles() throws Exception {
+        File file = File.createTempFile("cereal", ".json.gz");
+        try {
+            List<String> values = Arrays.asList("a", "b", "c");
+            JsonCerealEngine engine = new JsonCerealEngine();
+            CerealSettings settings = new CerealSettings();
+            settings.setCodec(new GzipCodec());
+            settings.setMappedReadThreshold(0);
+            engine.setSettings(settings);
+
+            engine.write(values, file);
+            InputStream in = new GZIPInputStream(FileUtils.openInputStream(file));
+            try {
+                assertEquals(IOUtils.toString(in, "UTF-8"), "[\"a\",\"b\",\"c\"]");
+            } finally {
+                in.close();
+            }
+            assertEquals(Arrays.asList(engine.read(file, String[].class)), values);
+
+            engine.writeAll(values.iterator(), file);
+            assertEquals(Arrays.asList(engine.read(file, String[].class)), values);
+
+            engine.writeAsync(values, file.toPath()).get();
+            assertEquals(Arrays.asList(engine.readAsync(file.toPath(), String[].class).get()),
+                    values);
+
+            settings.setMappedReadThreshold(Long.MAX_VALUE);
+            assertEquals(Arrays.asList(engine.read(file, String[].class)), values);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDetection() throws Exception {
+        GzipCodec gzip = new GzipCodec();
+        DeflateCodec deflate = new DeflateCodec();
+        for (String text : new String[] { "", "{", "[1]", "\"x\"", "xy", "x\u0002" }) {
+            byte[] bytes = text.getBytes("UTF-8");
+            assertEquals(CodecHelper.detect(bytes, bytes.length, null), null, text);
+        }
+        byte[] magic = new byte[] { 0x1F, (byte) 0x8B };
+        assertTrue(CodecHelper.detect(magic, magic.length, null) instanceof GzipCodec);
+        assertTrue(gzip.matches(new byte[] { 0x1F, (byte) 0x8B, 0 }, 3));
+        assertFalse(gzip.matches(new byte[] { 0x1F }, 1));
+        for (int level = 0; level <= 9; level++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new DeflateCodec(level, 512).encode(baos).close();
+            assertTrue(deflate.matches(baos.toByteArray(), 2), "level " + level);
+        }
+        assertFalse(deflate.matches(new byte[] { 0x78 }, 1));
+    }
+
+    @Test
+    public void testDetectionIsOptIn() throws Exception {
+        /* Plain input that happens to pass the zlib header check */
+        byte[] bytes = "x^: 1".getBytes("UTF-8");
+        assertTrue(CodecHelper.detect(bytes, bytes.length, null) instanceof DeflateCodec);
+
+        YamlCerealEngine engine = new YamlCerealEngine();
+        assertFalse(engine.getSettings().shouldDetectCodecs());
+        Map<?, ?> map = engine.readFrom(new ByteArrayInputStream(bytes), Map.class);
+        assertEquals(map.get("x^"), 1);
+
+        /* Only the header of the codec that is set is checked */
+        engine.getSettings().setCodec(new GzipCodec());
+        map = engine.readFrom(new ByteArrayInputStream(bytes), Map.class);
+        assertEquals(map.get("x^"), 1);
+
+        engine.getSettings().setDetectCodecs(true);
+        try {
+            engine.readFrom(new ByteArrayInputStream(bytes), Map.class);
+            assertTrue(false, "Expected the plain input to be decoded");
+        } catch (Exception ex) {
+            /* Expected */
+        }
+    }
+
+    private static List<String> read(AbstractCerealEngine engine, InputStream in)
+            throws Exception {
+        return Arrays.asList(engine.readFrom(in, String[].class));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.cereal.annotations.CerealConstructor;
+
+/**
+ * Verifies that objects are created through their {@link CerealConstructor} or, for records, their
+ * canonical constructor.
+ */
+public class ConstructorTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Point point = new Point(3, -4, "corner");
+        for (AbstractCerealEngine engine : engines()) {
+            Point result = engine.readFromString(engine.writeToString(point), Point.class);
+            assertEquals(result.x, 3);
+            assertEquals(result.y, -4);
+            assertEquals(result.label, "corner");
+            assertEquals(result.constructed, 1);
+        }
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        Line line = new Line(new Point(1, 2, "start"), new Point(5, 6, "end"));
+        line.color = "red";
+        for (AbstractCerealEngine engine : engines()) {
+            Line result = engine.readFromString(engine.writeToString(line), Line.class);
+            assertEquals(result.start.label, "start");
+            assertEquals(result.end.x, 5);
+            assertEquals(result.color, "red");
+        }
+    }
+
+    @Test
+    public void testMissingValues() throws Exception {
+        for (AbstractCerealEngine engine : jsonEngines()) {
+            Point point = engine.readFromString("{\"x\":7}", Point.class);
+            assertEquals(point.x, 7);
+            assertEquals(point.y, 0);
+            assertEquals(point.label, "origin");
+        }
+    }
+
+    @Test(expectedExceptions = CerealException.class)
+    public void testRequiredValue() throws Exception {
+        new JsonCerealEngine().readFromString("{\"label\":\"none\"}", Point.class);
+    }
+
+    @Test(expectedExceptions = CerealException.class)
+    public void testUnknownName() throws Exception {
+        new JsonCerealEngine().readFromString("{}", Misnamed.class);
+    }
+
+    @Test
+    public void testRecord() throws Exception {
+        Class<?> type = compileRecord();
+
+        /* The record can not be found by name, so it is written without its class name */
+        for (AbstractCerealEngine engine : jsonEngines()) {
+            engine.getSettings().setIncludeClassName(false);
+
+            Object range = engine.readFromString("{\"low\":1,\"high\":9,\"label\":\"digits\"}",
+                    type);
+            assertEquals(type.getMethod("low").invoke(range), 1);
+            assertEquals(type.getMethod("high").invoke(range), 9);
+            assertEquals(type.getMethod("label").invoke(range), "digits");
+
+            Object result = engine.readFromString(engine.writeToString(range), type);
+            assertEquals(result, range);
+        }
+    }
+
+    private static AbstractCerealEngine[] engines() {
+        AbstractCerealEngine[] json = jsonEngines();
+        return new AbstractCerealEngine[] { json[0], json[1], new BinaryCerealEngine(),
+                new BinaryCerealEngine(true) };
+    }
+
+    private static AbstractCerealEngine[] jsonEngines() {
+        CerealSettings settings = new CerealSettings();
+        settings.setStreamReads(true);
+        settings.setStreamWrites(true);
+        JsonCerealEngine streaming = new JsonCerealEngine();
+        streaming.setSettings(settings);
+
+        return new AbstractCerealEngine[] { new JsonCerealEngine(), streaming };
+    }
+
+    /**
+     * Compile a record at runtime, as the tests are compiled for runtimes without records.
+     */
+    private static Class<?> compileRecord() throws Exception {
+        Method isRecord = null;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+        } catch (NoSuchMethodException ex) {
+            throw new SkipException("This runtime does not support records");
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (null == compiler) {
+            throw new SkipException("No compiler is available");
+        }
+
+        File dir = new File("target/records");
+        dir.mkdirs();
+        File source = new File(dir, "Range.java");
+        Writer writer = new FileWriter(source);
+        writer.write("public record Range(int low, int high, String label) {}");
+        writer.close();
+        assertEquals(compiler.run(null, null, null, source.getPath()), 0);
+
+        ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() });
+        Class<?> type = loader.loadClass("Range");
+        assertEquals(isRecord.invoke(type), true);
+        return type;
+    }
+
+    public static class Point {
+        private final int x;
+        @Cereal(requireValue = false)
+        private final int y;
+        @Cereal(defaultValue = "origin")
+        private final String label;
+        private transient int constructed;
+
+        @CerealConstructor({ "x", "y", "label" })
+        public Point(int x, int y, String label) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+            this.constructed++;
+        }
+    }
+
+    public static class Line {
+        private final Point start;
+        private final Point end;
+        private String color;
+
+        @CerealConstructor({ "start", "end" })
+        private Line(Point start, Point end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public static class Misnamed {
+        private final int value;
+
+        @CerealConstructor({ "other" })
+        public Misnamed(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealSettings;
+
+/**
+ * Verifies the atomic and synced file write modes.
+ */
+public class FileWriteTest {
+
+    private File directory;
+    private File file;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("cereal", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, "values.json");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testWriteModes() throws Exception {
+        List<String> values = Arrays.asList("a", "b");
+        for (boolean atomic : new boolean[] { true, false }) {
+            for (boolean sync : new boolean[] { true, false }) {
+                JsonCerealEngine engine = engine(atomic, sync);
+                FileUtils.writeStringToFile(file, "a much longer value that is replaced");
+
+                engine.write(values, file);
+                assertEquals(engine.readFromString(FileUtils.readFileToString(file),
+                        String[].class), new String[] { "a", "b" });
+                engine.write("c", String.class, file);
+                assertEquals(engine.read(file, String.class), "c");
+                engine.writeAll(values.iterator(), file);
+                assertEquals(engine.read(file, String[].class), new String[] { "a", "b" });
+
+                assertEquals(directory.list(), new String[] { file.getName() });
+            }
+        }
+    }
+
+    @Test
+    public void testFailedAtomicWrite() throws Exception {
+        FileUtils.writeStringToFile(file, "\"old\"");
+        JsonCerealEngine engine = engine(true, true);
+
+        Iterator<String> failing = new Iterator<String>() {
+            private int count;
+
+            public boolean hasNext() {
+                return true;
+            }
+
+            public String next() {
+                if (count++ > 2) {
+                    throw new IllegalStateException("Failed to produce the next value");
+                }
+                return "new";
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        try {
+            engine.writeAll(failing, String.class, file);
+            assertTrue(false, "Expected the write to fail");
+        } catch (IllegalStateException ex) {
+            /* Expected */
+        }
+
+        assertEquals(engine.read(file, String.class), "old");
+        assertEquals(directory.list(), new String[] { file.getName() });
+    }
+
+    @Test
+    public void testAtomicWriteKeepsPermissions() throws Exception {
+        if (!Files.getFileStore(directory.toPath()).supportsFileAttributeView(
+                PosixFileAttributeView.class)) {
+            return;
+        }
+
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        FileUtils.writeStringToFile(file, "\"old\"");
+        Files.setPosixFilePermissions(file.toPath(), permissions);
+
+        JsonCerealEngine engine = engine(true, false);
+        engine.write("new", String.class, file);
+        assertEquals(engine.read(file, String.class), "new");
+        assertEquals(Files.getPosixFilePermissions(file.toPath()), permissions);
+
+        engine.writeAsync("async", String.class, file.toPath()).get();
+        assertEquals(engine.read(file, String.class), "async");
+        assertEquals(Files.getPosixFilePermissions(file.toPath()), permissions);
+    }
+
+    private static JsonCerealEngine engine(boolean atomic, boolean sync) {
+        CerealSettings settings = new CerealSettings();
+        settings.setAtomicFileWrites(atomic);
+        settings.setSyncFileWrites(sync);
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings);
+        return engine;
+    }
+}
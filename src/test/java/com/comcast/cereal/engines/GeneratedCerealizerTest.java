@@ -0,0 +1,46 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealFactory;
+import com.comcast.cereal.convert.ClassCerealizer;
+
+/**
+ * Verifies that a broken registration of a generated cerealizer (the test resources register a
+ * class that does not exist) falls back to scanning the class with reflection.
+ */
+public class GeneratedCerealizerTest {
+
+    @Test
+    public void testStaleEntry() throws Exception {
+        CerealFactory factory = new CerealFactory();
+        assertEquals(factory.getCerealizer(Missing.class).getClass(), ClassCerealizer.class);
+
+        Missing missing = new Missing();
+        missing.value = "kept";
+        JsonCerealEngine engine = new JsonCerealEngine();
+        assertEquals(engine.readFromString(engine.writeToString(missing), Missing.class).value,
+                "kept");
+    }
+
+    public static class Missing {
+        private String value;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.impl.ReflectionHelper;
+
+/**
+ * Verifies that objects are created by their public no-argument constructor when they have one
+ * and without any constructor otherwise.
+ */
+public class InstantiationTest {
+
+    @Test
+    public void testConstructorHandle() {
+        assertNotNull(ReflectionHelper.constructorHandle(Counted.class));
+        assertNull(ReflectionHelper.constructorHandle(Immutable.class));
+        assertNull(ReflectionHelper.constructorHandle(Collection.class));
+        assertNull(ReflectionHelper.constructorHandle(Hidden.class));
+    }
+
+    @Test
+    public void testInstantiator() {
+        Counted counted = (Counted) ReflectionHelper.getInstantiator(Counted.class).newInstance();
+        assertEquals(counted.count, 1);
+
+        /* Created without calling any constructor */
+        Immutable immutable = (Immutable) ReflectionHelper.getInstantiator(Immutable.class)
+                .newInstance();
+        assertEquals(immutable.value, 0);
+
+        Failing failing = (Failing) ReflectionHelper.getInstantiator(Failing.class)
+                .newInstance();
+        assertEquals(failing.count, 0);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        for (int i = 0; i < 3; i++) {
+            Holder holder = new Holder();
+            holder.immutable = new Immutable(i);
+            holder.counted = new Counted();
+            holder.tree.put("key", i);
+            holder.set.add("value" + i);
+
+            Holder result = engine.readFromString(engine.writeToString(holder), Holder.class);
+            assertEquals(result.immutable.value, i);
+            assertEquals(result.counted.count, 1);
+            assertEquals(result.tree.get("key"), Integer.valueOf(i));
+            assertTrue(result.set.contains("value" + i));
+        }
+    }
+
+    public static class Counted {
+        private transient int count = 1;
+    }
+
+    public static class Immutable {
+        private final int value;
+
+        public Immutable(int value) {
+            this.value = value;
+        }
+    }
+
+    public static class Failing {
+        private transient int count = 1;
+
+        public Failing() {
+            throw new IllegalStateException();
+        }
+    }
+
+    static class Hidden {
+        public Hidden() {
+        }
+    }
+
+    public static class Holder {
+        private Immutable immutable;
+        private Counted counted;
+        private TreeMap<String, Integer> tree = new TreeMap<String, Integer>();
+        private TreeSet<String> set = new TreeSet<String>();
+    }
+}
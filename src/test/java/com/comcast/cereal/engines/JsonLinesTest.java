@@ -0,0 +1,169 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.mail.internet.InternetAddress;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.UncheckedCerealException;
+import com.comcast.testclasses.Member;
+import com.comcast.testclasses.Team;
+import com.comcast.testclasses.Title;
+
+/**
+ * Verifies that newline delimited JSON is read lazily, one value per line.
+ */
+public class JsonLinesTest {
+
+    @Test
+    public void testReadLines() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+
+        List<String> expected = new ArrayList<String>();
+        StringBuilder lines = new StringBuilder("\n");
+        for (boolean cycles : new boolean[] { true, false }) {
+            for (Object object : StreamingWriteTest.objects(cycles)) {
+                String json = engine.writeToString(object);
+                expected.add(json);
+                lines.append(json).append("\r\n\n");
+            }
+        }
+
+        List<String> actual = new ArrayList<String>();
+        CerealIterator<Object> iterator = engine.readLines(new StringReader(lines.toString()),
+                Object.class);
+        while (iterator.hasNext()) {
+            actual.add(engine.writeToString(iterator.next()));
+        }
+        assertEquals(actual, expected);
+        assertFalse(iterator.hasNext());
+
+        try {
+            iterator.next();
+            assertTrue(false, "Expected the iterator to be exhausted");
+        } catch (NoSuchElementException ex) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testReadTypedLines() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        String lines = engine.writeToString(member("Kevin", "Pearson")) + "\n"
+                + engine.writeToString(member("Clark", "Malmgren"));
+
+        CerealIterator<Member> iterator = engine.readLines(
+                new ByteArrayInputStream(lines.getBytes("UTF-8")), Member.class);
+        assertEquals(iterator.next().firstName, "Kevin");
+        assertEquals(iterator.next().lastName, "Malmgren");
+        assertFalse(iterator.hasNext());
+
+        CerealIterator<int[]> arrays = engine.readLines(new StringReader("[1, 2]\n[]\n[3]"),
+                int[].class);
+        assertTrue(Arrays.equals(arrays.next(), new int[] { 1, 2 }));
+        assertTrue(Arrays.equals(arrays.next(), new int[0]));
+        assertTrue(Arrays.equals(arrays.next(), new int[] { 3 }));
+        assertFalse(arrays.hasNext());
+
+        assertFalse(engine.readLines(new StringReader(" \n\n"), Member.class).hasNext());
+    }
+
+    @Test
+    public void testReferencesPerLine() throws Exception {
+        Member member = member("Kevin", "Pearson");
+        Team team = new Team();
+        team.members = new ArrayList<Member>(Arrays.asList(member, member));
+
+        JsonCerealEngine engine = new JsonCerealEngine();
+        String json = engine.writeToString(team);
+
+        CerealIterator<Team> iterator = engine.readLines(new StringReader(json + "\n" + json),
+                Team.class);
+        Team first = iterator.next();
+        Team second = iterator.next();
+        assertSame(first.members.get(0), first.members.get(1));
+        assertSame(second.members.get(0), second.members.get(1));
+        assertTrue(first.members.get(0) != second.members.get(0));
+    }
+
+    @Test
+    public void testReadFileLines() throws Exception {
+        File file = File.createTempFile("cereal", ".jsonl");
+        try {
+            FileUtils.writeStringToFile(file, "\"é中\"\n\"two\"\n", "UTF-8");
+
+            JsonCerealEngine engine = new JsonCerealEngine();
+            CerealIterator<String> iterator = engine.readLines(file, String.class);
+            assertEquals(iterator.next(), "é中");
+            assertEquals(iterator.next(), "two");
+            assertFalse(iterator.hasNext());
+
+            iterator = engine.readLines(file, String.class);
+            iterator.close();
+            assertFalse(iterator.hasNext());
+        } finally {
+            file.delete();
+        }
+
+        try {
+            new JsonCerealEngine().readLines(file, String.class);
+            assertTrue(false, "Expected a missing file to fail");
+        } catch (CerealException ex) {
+            /* Expected */
+        }
+    }
+
+    @Test
+    public void testMalformedLine() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        String lines = engine.writeToString(member("Kevin", "Pearson")) + "\n{\"first.name\":}";
+        CerealIterator<Member> iterator = engine.readLines(new StringReader(lines), Member.class);
+        assertEquals(iterator.next().firstName, "Kevin");
+
+        try {
+            iterator.next();
+            assertTrue(false, "Expected the second line to fail");
+        } catch (UncheckedCerealException ex) {
+            assertTrue(ex.getCause() instanceof CerealException);
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    private static Member member(String firstName, String lastName) throws Exception {
+        Member member = new Member();
+        member.firstName = firstName;
+        member.lastName = lastName;
+        member.title = Title.ENGINEER;
+        member.email = new InternetAddress(firstName.toLowerCase() + "@cable.comcast.com");
+        return member;
+    }
+}
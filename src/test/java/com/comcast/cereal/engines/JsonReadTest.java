@@ -0,0 +1,172 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.impl.JsonHelper;
+import com.comcast.cereal.impl.JsonParser;
+import com.comcast.cereal.impl.Utf8JsonParser;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that reading JSON produces exactly the same cereal as the <code>org.json</code>
+ * library.
+ */
+public class JsonReadTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @DataProvider(name = "jsonData")
+    public TestList jsonData() {
+        TestList tl = new TestList();
+
+        tl.add("{\"a\": 1, \"b\": [true, FALSE, Null, 2.50, -0, 007, 1e3, 12345678901, -7]}");
+        tl.add("{'single': 'quotes'; unquoted: text with spaces , \"trailing\": [1,],}");
+        tl.add("[1, , 3, {}, [], \"\\u00e9\\n\\t\\/\", 9223372036854775807, 9223372036854775808]");
+        tl.add("[123456789012345678, 1234567890123456789, -2147483648, 2147483648, +1, -, 0x10]");
+        tl.add("[Infinity, NaN, 1.5e400, .5, 5., -.5e-3]");
+        tl.add("  \"top level string\"  ");
+        tl.add("42");
+        tl.add("null");
+        tl.add("{\"\u00e9t\u00e9\": \"caf\u00e9 \ud83d\ude00\", na\u00efve: \u4e2d text \u00e9 , "
+                + "'\u00e9\\n\u00e9': [\u00e9, 1\u00e9, \"\\ud83d\\ude00\"]}");
+
+        /* Values and keys that cross the boundaries of the read buffer */
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 3000; i++) {
+            builder.append("{\"key\": ").append(i * 7919).append(", 'k\\u0065y").append(i % 5)
+                    .append("': word").append(i).append("},");
+        }
+        tl.add(builder.append("]").toString());
+
+        /* Characters of every UTF-8 length that cross the boundaries of the read buffer */
+        builder = new StringBuilder("[");
+        for (int i = 0; i < 3000; i++) {
+            builder.append("{\"\u00e9").append(i % 3).append("\": \"\u4e2d\ud83d\ude00").append(i)
+                    .append("\", \"a\\t\u00e9\": \u00e9").append(i).append(" },");
+        }
+        tl.add(builder.append("]").toString());
+
+        return tl;
+    }
+
+    @Test(dataProvider = "jsonData")
+    public void testMatchesOrgJson(String json) throws Exception {
+        Object expected = fromOrgJson(new JSONTokener(json).nextValue());
+        assertEquals(new JsonHelper().read(new StringReader(json)), expected);
+        assertEquals(new JsonHelper().read(new JsonParser(json)), expected);
+
+        byte[] bytes = json.getBytes(UTF_8);
+        assertEquals(new JsonHelper().read(new ByteArrayInputStream(bytes)), expected);
+        assertEquals(new JsonHelper().read(new Utf8JsonParser(ByteBuffer.wrap(bytes))), expected);
+    }
+
+    @Test
+    public void testMalformedUtf8() throws Exception {
+        byte[] bytes = new byte[] { '[', '"', 'a', (byte) 0xC3, '"', ',', 'b', (byte) 0xFF, ']' };
+        List<Object> expected = new ArrayList<Object>();
+        expected.add("a\uFFFD");
+        expected.add("b\uFFFD");
+        assertEquals(new JsonHelper().read(new ByteArrayInputStream(bytes)), expected);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testKeysShared() throws Exception {
+        List<Map<String, Object>> list = (List<Map<String, Object>>) new JsonHelper()
+                .read(new StringReader("[{\"name\": 1}, {\"name\": 2}, {\"n\\u0061me\": 3}]"));
+
+        String key = list.get(0).keySet().iterator().next();
+        assertSame(list.get(1).keySet().iterator().next(), key);
+        assertSame(list.get(2).keySet().iterator().next(), key);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testKeysSharedFromBytes() throws Exception {
+        String json = "[{\"name\": 1}, {\"name\": 2}, {\"n\\u0061me\": 3}, {\"\u00e9\": 4}, "
+                + "{\"\u00e9\": 5}]";
+        List<Map<String, Object>> list = (List<Map<String, Object>>) new JsonHelper()
+                .read(new ByteArrayInputStream(json.getBytes(UTF_8)));
+
+        String key = list.get(0).keySet().iterator().next();
+        assertSame(list.get(1).keySet().iterator().next(), key);
+        assertSame(list.get(2).keySet().iterator().next(), key);
+        assertSame(list.get(4).keySet().iterator().next(), list.get(3).keySet().iterator().next());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        for (String json : new String[] { "", "{", "{\"a\" 1}", "{\"a\": 1, \"a\": 2}", "[1, 2}",
+                "\"unterminated", "{\"a\": }", "\"\\x\"" }) {
+            try {
+                new JsonHelper().read(new StringReader(json));
+                assertEquals(json, "a failure");
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+            try {
+                new JsonHelper().read(new ByteArrayInputStream(json.getBytes(UTF_8)));
+                assertEquals(json, "a failure");
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object fromOrgJson(Object value) {
+        if (JSONObject.NULL.equals(value)) {
+            return null;
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            Map<String, Object> map = new HashMap<String, Object>();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                map.put(key, fromOrgJson(object.opt(key)));
+            }
+            return map;
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<Object>();
+            for (int i = 0; i < array.length(); i++) {
+                list.add(fromOrgJson(array.opt(i)));
+            }
+            return list;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.impl.JsonHelper;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that writing cereal produces exactly the same JSON as the <code>org.json</code>
+ * library.
+ */
+public class JsonWriteTest {
+
+    @DataProvider(name = "cerealData")
+    public TestList cerealData() {
+        TestList tl = new TestList();
+
+        Map<String, Object> single = new HashMap<String, Object>();
+        single.put("only", Arrays.asList("one"));
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 40; i++) {
+            map.put("key" + i, (i % 4 == 0) ? single : (Object) (i * 1.25));
+        }
+        map.put("text", "quote \" slash \\ </tag> \u0001 \u0085   \t\n\r\b\f é");
+        map.put("nothing", null);
+        map.put("numbers", Arrays.<Object> asList(1, 2L, 3.0, 4.5f, -0.0, 1e21, 123456789012L));
+        map.put("other", Arrays.<Object> asList('c', true, false, null));
+        map.put("empty", Arrays.asList(new HashMap<String, Object>(), new ArrayList<Object>()));
+        map.put("nested", Collections.singletonList(Collections.singletonList(single)));
+
+        for (boolean prettyPrint : new boolean[] { true, false }) {
+            tl.add(map, prettyPrint);
+            tl.add(single, prettyPrint);
+            tl.add(new ArrayList<Object>(Arrays.<Object> asList(map, "x", 2)), prettyPrint);
+            tl.add(new HashMap<String, Object>(), prettyPrint);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "cerealData")
+    public void testMatchesOrgJson(Object cereal, boolean prettyPrint) throws Exception {
+        Object json = toOrgJson(cereal);
+        String expected;
+        if (json instanceof JSONObject) {
+            expected = prettyPrint ? ((JSONObject) json).toString(2) : json.toString();
+        } else {
+            expected = prettyPrint ? ((JSONArray) json).toString(2) : json.toString();
+        }
+
+        StringWriter writer = new StringWriter();
+        new JsonHelper().write(writer, cereal, prettyPrint);
+        assertEquals(writer.toString(), expected);
+    }
+
+    @Test
+    public void testTopLevelValues() throws Exception {
+        Object[] values = { null, "a \"string\"", 12, 2.50, true };
+        String[] expected = { "null", "\"a \\\"string\\\"\"", "12", "2.5", "true" };
+
+        for (int i = 0; i < values.length; i++) {
+            StringWriter writer = new StringWriter();
+            new JsonHelper().write(writer, values[i], false);
+            assertEquals(writer.toString(), expected[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toOrgJson(Object cereal) throws Exception {
+        if (null == cereal) {
+            return JSONObject.NULL;
+        } else if (cereal instanceof Map) {
+            JSONObject object = new JSONObject();
+            for (Entry<String, Object> entry : ((Map<String, Object>) cereal).entrySet()) {
+                object.put(entry.getKey(), toOrgJson(entry.getValue()));
+            }
+            return object;
+        } else if (cereal instanceof List) {
+            JSONArray array = new JSONArray();
+            for (Object value : (List<Object>) cereal) {
+                array.put(toOrgJson(value));
+            }
+            return array;
+        }
+        return cereal;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.ByteBufferInputStream;
+import com.comcast.cereal.impl.ByteBufferReader;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.Team;
+
+/**
+ * Verifies that files read by mapping them into memory produce the same objects as files read
+ * through a stream.
+ */
+public class MappedReadTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @DataProvider(name = "mappedData")
+    public TestList mappedData() throws Exception {
+        TestList tl = new TestList();
+        AbstractCerealEngine[] engines = new AbstractCerealEngine[] { new JsonCerealEngine(),
+                new YamlCerealEngine(), new XmlCerealEngine(), new BinaryCerealEngine() };
+
+        for (AbstractCerealEngine engine : engines) {
+            for (boolean streamReads : new boolean[] { true, false }) {
+                for (Object object : StreamingWriteTest.objects(false)) {
+                    tl.add(engine, object, streamReads);
+                }
+            }
+        }
+        return tl;
+    }
+
+    @Test(dataProvider = "mappedData")
+    public void testMappedRead(AbstractCerealEngine engine, Object object, boolean streamReads)
+            throws Exception {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(false);
+        settings.setStreamReads(streamReads);
+        engine.setSettings(settings);
+
+        File file = File.createTempFile("cereal", ".cereal");
+        try {
+            engine.write(object, file);
+
+            settings.setMappedReadThreshold(Long.MAX_VALUE);
+            Object expected = engine.read(file, object.getClass());
+            settings.setMappedReadThreshold(0);
+            Object actual = engine.read(file, object.getClass());
+
+            JsonCerealEngine json = new JsonCerealEngine();
+            json.setSettings(settings);
+            assertEquals(json.writeToString(actual), json.writeToString(expected));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMappedApplyAndLines() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.getSettings().setMappedReadThreshold(0);
+
+        File file = File.createTempFile("cereal", ".json");
+        try {
+            FileUtils.writeStringToFile(file, "{\"name\": \"café 😀\"}", "UTF-8");
+            Team team = new Team();
+            engine.apply(file, team);
+            assertEquals(team.name, "café 😀");
+
+            FileUtils.writeStringToFile(file, "\"é\"\n\"中\"\n", "UTF-8");
+            CerealIterator<String> iterator = engine.readLines(file, String.class);
+            assertEquals(iterator.next(), "é");
+            assertEquals(iterator.next(), "中");
+            assertFalse(iterator.hasNext());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testByteBufferReader() throws Exception {
+        String string = "aé中😀z";
+        byte[] bytes = string.getBytes(UTF_8);
+
+        /* Single characters, including both halves of a surrogate pair */
+        Reader reader = new ByteBufferReader(ByteBuffer.wrap(bytes), UTF_8);
+        StringBuilder builder = new StringBuilder();
+        for (int c = reader.read(); c >= 0; c = reader.read()) {
+            builder.append((char) c);
+        }
+        assertEquals(builder.toString(), string);
+
+        /* Small arrays that split the input in every possible place */
+        for (int size = 2; size < 8; size++) {
+            reader = new ByteBufferReader(ByteBuffer.wrap(bytes), UTF_8);
+            char[] chars = new char[size];
+            builder = new StringBuilder();
+            for (int count = reader.read(chars); count >= 0; count = reader.read(chars)) {
+                builder.append(chars, 0, count);
+            }
+            assertEquals(builder.toString(), string);
+        }
+
+        /* Malformed input is replaced */
+        reader = new ByteBufferReader(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xC3 }), UTF_8);
+        assertEquals(IOUtils.toString(reader), "a\uFFFD");
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(1);
+        assertEquals(IOUtils.toByteArray(new ByteBufferInputStream(buffer)).length,
+                bytes.length - 1);
+    }
+}
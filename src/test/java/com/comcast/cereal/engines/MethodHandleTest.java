@@ -0,0 +1,103 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealSettings;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that cerealizers calling members through method handles convert exactly like those
+ * using reflection.
+ */
+public class MethodHandleTest {
+
+    @DataProvider(name = "objectData")
+    public TestList objectData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            tl.add(object, true);
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            tl.add(object, false);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "objectData")
+    public void testRoundTrip(Object object, boolean useReferences) throws Exception {
+        for (boolean stream : new boolean[] { false, true }) {
+            JsonCerealEngine reflection = engine(useReferences, stream, false);
+            JsonCerealEngine handles = engine(useReferences, stream, true);
+
+            String expected = reflection.writeToString(object);
+            assertEquals(handles.writeToString(object), expected);
+
+            Object result = handles.readFromString(expected, object.getClass());
+            assertEquals(reflection.writeToString(result), expected);
+        }
+    }
+
+    @Test
+    public void testPrivateAndFinalFields() throws Exception {
+        Hidden hidden = new Hidden(7, "seven");
+        JsonCerealEngine engine = engine(false, false, true);
+
+        String json = engine.writeToString(hidden);
+        assertEquals(json, new JsonCerealEngine().writeToString(hidden));
+
+        Hidden result = engine.readFromString(json, Hidden.class);
+        assertEquals(result.count, 7);
+        assertEquals(result.getLabel(), "seven");
+    }
+
+    private static JsonCerealEngine engine(boolean useReferences, boolean stream,
+            boolean useMethodHandles) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamWrites(stream);
+        settings.setStreamReads(stream);
+
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings);
+        engine.getCerealFactory().setUseMethodHandles(useMethodHandles);
+        return engine;
+    }
+
+    public static class Hidden {
+        private int count;
+        private final String label;
+
+        public Hidden() {
+            this(0, null);
+        }
+
+        public Hidden(int count, String label) {
+            this.count = count;
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+}
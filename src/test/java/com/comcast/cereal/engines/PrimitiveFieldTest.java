@@ -0,0 +1,155 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.PrimitiveCerealGenerator;
+import com.comcast.cereal.impl.BinaryGenerator;
+import com.comcast.cereal.impl.JsonGenerator;
+
+/**
+ * Verifies that primitive fields written and read without boxing convert exactly like their
+ * boxed values.
+ */
+public class PrimitiveFieldTest {
+
+    private static final long[] LONGS = { 0, 1, -1, 9, 10, -10, 99, 100, 123456789,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE };
+
+    private static final double[] DOUBLES = { 0.0, -0.0, 1.0, 0.5, -2.25, 100.0, 1e20, 1.0E-7,
+            Double.MIN_VALUE, Double.MAX_VALUE };
+
+    @Test
+    public void testJsonGenerator() throws Exception {
+        StringWriter boxed = new StringWriter();
+        write(new JsonGenerator(boxed, false), false);
+
+        StringWriter primitive = new StringWriter();
+        write(new JsonGenerator(primitive, false), true);
+
+        assertEquals(primitive.toString(), boxed.toString());
+    }
+
+    @Test
+    public void testBinaryGenerator() throws Exception {
+        ByteArrayOutputStream boxed = new ByteArrayOutputStream();
+        write(new BinaryGenerator(boxed, false), false);
+
+        ByteArrayOutputStream primitive = new ByteArrayOutputStream();
+        write(new BinaryGenerator(primitive, false), true);
+
+        assertEquals(primitive.toByteArray(), boxed.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Primitives primitives = new Primitives();
+        primitives.i = -42;
+        primitives.l = Long.MIN_VALUE;
+        primitives.d = 2.5;
+        primitives.b = true;
+        primitives.f = 1.1f;
+
+        String expected = new JsonCerealEngine().writeToString(primitives);
+        for (boolean useMethodHandles : new boolean[] { false, true }) {
+            CerealSettings settings = new CerealSettings();
+            settings.setStreamWrites(true);
+            settings.setStreamReads(true);
+
+            JsonCerealEngine json = new JsonCerealEngine();
+            json.setSettings(settings);
+            json.getCerealFactory().setUseMethodHandles(useMethodHandles);
+
+            String string = json.writeToString(primitives);
+            assertEquals(new JsonCerealEngine().readFromString(string, Map.class),
+                    new JsonCerealEngine().readFromString(expected, Map.class));
+            assertPrimitives(json.readFromString(string, Primitives.class), primitives);
+
+            BinaryCerealEngine binary = new BinaryCerealEngine(true);
+            binary.getCerealFactory().setUseMethodHandles(useMethodHandles);
+            byte[] bytes = binary.writeToBytes(primitives);
+            assertPrimitives(binary.readFromBytes(bytes, Primitives.class), primitives);
+        }
+    }
+
+    @Test
+    public void testConvertedValues() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        CerealSettings settings = new CerealSettings();
+        settings.setStreamReads(true);
+        engine.setSettings(settings);
+
+        Primitives primitives = engine.readFromString(
+                "{\"i\":4.5,\"l\":\"7\",\"d\":3,\"b\":\"true\",\"f\":2}", Primitives.class);
+        assertEquals(primitives.i, 4);
+        assertEquals(primitives.l, 7L);
+        assertEquals(primitives.d, 3.0);
+        assertEquals(primitives.b, true);
+        assertEquals(primitives.f, 2.0f);
+    }
+
+    private static void write(PrimitiveCerealGenerator generator, boolean primitive)
+            throws Exception {
+        generator.writeStartArray(LONGS.length + DOUBLES.length + 2);
+        for (long l : LONGS) {
+            if (primitive) {
+                generator.writeLong(l);
+            } else {
+                generator.writeValue(l);
+            }
+        }
+        for (double d : DOUBLES) {
+            if (primitive) {
+                generator.writeDouble(d);
+            } else {
+                generator.writeValue(d);
+            }
+        }
+        for (boolean b : new boolean[] { true, false }) {
+            if (primitive) {
+                generator.writeBoolean(b);
+            } else {
+                generator.writeValue(b);
+            }
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private static void assertPrimitives(Primitives actual, Primitives expected) {
+        assertEquals(actual.i, expected.i);
+        assertEquals(actual.l, expected.l);
+        assertEquals(actual.d, expected.d);
+        assertEquals(actual.b, expected.b);
+        assertEquals(actual.f, expected.f);
+    }
+
+    public static class Primitives {
+        private int i;
+        private long l;
+        private double d;
+        private boolean b;
+        private float f;
+    }
+}
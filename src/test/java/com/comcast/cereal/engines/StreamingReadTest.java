@@ -0,0 +1,184 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.annotations.Cereal;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.Team;
+
+/**
+ * Verifies that streaming reads produce the same objects as reads that build the cereal
+ * representation first.
+ */
+public class StreamingReadTest {
+
+    @DataProvider(name = "streamData")
+    public TestList streamData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            for (boolean includeClassName : new boolean[] { true, false }) {
+                tl.add(object, includeClassName, true);
+            }
+        }
+
+        for (Object object : StreamingWriteTest.objects(false)) {
+            for (boolean includeClassName : new boolean[] { true, false }) {
+                tl.add(object, includeClassName, false);
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "streamData")
+    public void testStreamMatchesTree(Object object, boolean includeClassName,
+            boolean useReferences) throws Exception {
+        JsonCerealEngine treeEngine = new JsonCerealEngine(true);
+        treeEngine.setSettings(settings(includeClassName, useReferences, false));
+        JsonCerealEngine streamEngine = new JsonCerealEngine(true);
+        streamEngine.setSettings(settings(includeClassName, useReferences, true));
+
+        String json = treeEngine.writeToString(object);
+        String expected = roundTrip(treeEngine, json, object.getClass(), false);
+        assertEquals(roundTrip(streamEngine, json, object.getClass(), false), expected);
+        assertEquals(roundTrip(streamEngine, json, object.getClass(), true), expected);
+    }
+
+    @Test
+    public void testUnknownValuesSkipped() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+
+        String json = "{'name': 'Cereal', 'extra': {'deep': [1, 2.5, {'a': 'b'}, [], null]}; "
+                + "'location': 'Philadelphia', 'members': null, 'more': [{}, {'x': true}], "
+                + "projects: null,}";
+        Team team = engine.readFromString(json, Team.class);
+
+        assertEquals(team.name, "Cereal");
+        assertEquals(team.location, "Philadelphia");
+        assertNull(team.members);
+        assertNull(team.projects);
+    }
+
+    @Test
+    public void testForwardReferences() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+
+        String json = "{\"a\": {\"--object-ref\": 0}, \"things\": [{\"--object-ref\": 0}, 1],"
+                + " \"list\": [{\"--object-ref\": 1}], \"--object-id\": 1, \"name\": \"root\","
+                + " \"b\": {\"--object-id\": 0, \"name\": \"leaf\", \"c\": {\"--object-ref\": 1}}}";
+        Link root = engine.readFromString(json, Link.class);
+
+        assertEquals(root.name, "root");
+        assertEquals(root.b.name, "leaf");
+        assertSame(root.a, root.b);
+        assertSame(root.things[0], root.b);
+        assertSame(root.list.get(0), root);
+        assertSame(root.b.c, root);
+    }
+
+    @Test
+    public void testTopLevelArray() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+
+        Link[] nodes = engine.readFromString(
+                "[{\"name\": \"a\", \"--object-id\": 0}, , {\"--object-ref\": 0}]", Link[].class);
+
+        assertEquals(nodes.length, 3);
+        assertEquals(nodes[0].name, "a");
+        assertNull(nodes[1]);
+        assertSame(nodes[2], nodes[0]);
+    }
+
+    @Test(expectedExceptions = CerealException.class)
+    public void testMissingReference() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+
+        engine.readFromString("{\"a\": {\"--object-ref\": 7}}", Link.class);
+    }
+
+    @Test
+    public void testMalformedInput() throws Exception {
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+
+        for (String json : new String[] { "{\"name\" \"x\"}", "{\"name\": \"x\"",
+                "{\"name\": \"x\\q\"}", "{\"things\": [1, 2}", "" }) {
+            try {
+                engine.readFromString(json, Link.class);
+                assertTrue(false, "Expected a failure reading " + json);
+            } catch (CerealException ex) {
+                /* Expected */
+            }
+        }
+    }
+
+    /**
+     * Read the JSON and write the result back out with the default settings.
+     */
+    private static String roundTrip(JsonCerealEngine engine, String json, Class<?> type,
+            boolean useReader) {
+        try {
+            Object object = useReader ? engine.read(new StringReader(json), type) : engine
+                    .readFromString(json, type);
+            return new JsonCerealEngine(true).writeToString(object);
+        } catch (Exception ex) {
+            /* Some objects can not be read back without class names */
+            return "failed";
+        }
+    }
+
+    private static CerealSettings settings(boolean includeClassName, boolean useReferences,
+            boolean streamReads) {
+        CerealSettings settings = new CerealSettings();
+        settings.setIncludeClassName(includeClassName);
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamReads(streamReads);
+        return settings;
+    }
+
+    public static class Link {
+        @Cereal(defaultValue = "null")
+        public String name;
+        @Cereal(defaultValue = "null")
+        public Link a;
+        @Cereal(defaultValue = "null")
+        public Link b;
+        @Cereal(defaultValue = "null")
+        public Link c;
+        @Cereal(defaultValue = "null")
+        public Object[] things;
+        @Cereal(defaultValue = "null")
+        public List<Link> list;
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.internet.InternetAddress;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealSettings;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.AnimalShelter;
+import com.comcast.testclasses.Cat;
+import com.comcast.testclasses.Dog;
+import com.comcast.testclasses.Employee;
+import com.comcast.testclasses.Member;
+import com.comcast.testclasses.Team;
+import com.comcast.testclasses.Title;
+
+/**
+ * Verifies that streaming writes produce exactly the same output as writes that build the cereal
+ * representation first.
+ */
+public class StreamingWriteTest {
+
+    @DataProvider(name = "streamData")
+    public TestList streamData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : objects(true)) {
+            for (boolean prettyPrint : new boolean[] { true, false }) {
+                for (boolean includeClassName : new boolean[] { true, false }) {
+                    tl.add(object, prettyPrint, includeClassName, true);
+                }
+            }
+        }
+
+        /* Without references the graphs can not contain cycles */
+        for (Object object : objects(false)) {
+            for (boolean prettyPrint : new boolean[] { true, false }) {
+                for (boolean includeClassName : new boolean[] { true, false }) {
+                    tl.add(object, prettyPrint, includeClassName, false);
+                }
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "streamData")
+    public void testStreamMatchesTree(Object object, boolean prettyPrint,
+            boolean includeClassName, boolean useReferences) throws Exception {
+        JsonCerealEngine treeEngine = new JsonCerealEngine(prettyPrint);
+        treeEngine.setSettings(settings(includeClassName, useReferences, false));
+        JsonCerealEngine streamEngine = new JsonCerealEngine(prettyPrint);
+        streamEngine.setSettings(settings(includeClassName, useReferences, true));
+
+        String expected = treeEngine.writeToString(object);
+        assertEquals(streamEngine.writeToString(object), expected);
+
+        StringWriter writer = new StringWriter();
+        streamEngine.write(object, writer);
+        assertEquals(writer.toString(), expected);
+    }
+
+    @Test
+    public void testStreamedRecursiveReadBack() throws Exception {
+        Node node = new Node();
+        node.name = "self";
+        node.a = node;
+        node.e = node;
+
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.setSettings(settings(true, true, true));
+        Node converted = engine.readFromString(engine.writeToString(node), Node.class);
+
+        assertSame(converted.a, converted);
+        assertSame(converted.e, converted);
+    }
+
+    @Test
+    public void testNullElements() throws Exception {
+        List<String> values = Arrays.asList("a", null, "b");
+        for (boolean includeClassName : new boolean[] { true, false }) {
+            JsonCerealEngine treeEngine = new JsonCerealEngine();
+            treeEngine.setSettings(settings(includeClassName, false, false));
+            JsonCerealEngine streamEngine = new JsonCerealEngine();
+            streamEngine.setSettings(settings(includeClassName, false, true));
+
+            assertEquals(treeEngine.writeToString(values), "[\"a\",null,\"b\"]");
+            assertEquals(streamEngine.writeToString(values), "[\"a\",null,\"b\"]");
+        }
+    }
+
+    private static CerealSettings settings(boolean includeClassName, boolean useReferences,
+            boolean streamWrites) {
+        CerealSettings settings = new CerealSettings();
+        settings.setIncludeClassName(includeClassName);
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamWrites(streamWrites);
+        return settings;
+    }
+
+    static List<Object> objects(boolean cycles) throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+
+        Member kevin = new Member();
+        kevin.firstName = "Kevin";
+        kevin.lastName = "Pearson";
+        kevin.title = Title.ENGINEER;
+        kevin.email = new InternetAddress("kevin@cable.comcast.com");
+        Member clark = new Member();
+        clark.firstName = "Clark \"</script>\"";
+        clark.lastName = "Malmgren\né ";
+        clark.title = Title.MANAGER;
+        clark.email = new InternetAddress("clark@cable.comcast.com");
+
+        Team team = new Team();
+        team.name = "Cereal";
+        team.location = null;
+        team.members = new ArrayList<Member>(Arrays.asList(kevin, clark, kevin));
+        team.projects = new HashSet<String>(Arrays.asList("cereal", "pantry", "xbo"));
+        objects.add(team);
+
+        AnimalShelter shelter = new AnimalShelter();
+        Dog dog = new Dog("Lab");
+        shelter.addAnimal(dog);
+        shelter.addAnimal(new Cat(true));
+        shelter.getAnimalMap().put("rex", dog);
+        shelter.getAnimalMap().put("tom", new Cat(false));
+        shelter.setLastAdopted(dog);
+        objects.add(shelter);
+
+        Employee employee = new Employee();
+        employee.firstName = "Jane";
+        employee.lastName = "Doe";
+        employee.startYear = 2004;
+        objects.add(employee);
+
+        Node leaf = new Node();
+        leaf.name = "leaf";
+        leaf.number = 2.50;
+        Node root = new Node();
+        root.name = "root";
+        root.number = 1e21;
+        root.b = leaf;
+        root.d = leaf;
+        root.things = new Object[] { leaf, "x", 3, 'c', null, Arrays.asList(leaf, 1L) };
+        root.map = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 20; i++) {
+            root.map.put("key" + i, (i % 3 == 0) ? leaf : (Object) i);
+        }
+        root.list = new ArrayList<Object>(Arrays.asList(new HashMap<String, Object>(), leaf));
+        if (cycles) {
+            leaf.c = root;
+            leaf.a = leaf;
+        }
+        objects.add(root);
+
+        objects.add(new ArrayList<Object>(Arrays.asList(leaf, "string", 1.0f, true)));
+        objects.add("top < / level");
+        objects.add(12.50);
+
+        return objects;
+    }
+
+    public static class Node {
+        public String name;
+        public double number;
+        public Node a;
+        public Node b;
+        public Node c;
+        public Node d;
+        public Node e;
+        public Object[] things;
+        public Map<String, Object> map;
+        public List<Object> list;
+    }
+}
@@ -30,6 +30,7 @@ import org.testng.annotations.Test;
 
 import com.comcast.cereal.CerealException;
 import com.comcast.cereal.Cerealizer;
+import com.comcast.cereal.engines.BinaryCerealEngine;
 import com.comcast.cereal.engines.CerealEngine;
 import com.comcast.cereal.engines.JsonCerealEngine;
 import com.comcast.cereal.engines.XmlCerealEngine;
@@ -54,11 +55,13 @@ public class TypeTest {
             tests.add(new Object[] { new JsonCerealEngine(), Math.abs(r.nextLong()) });
             tests.add(new Object[] { new YamlCerealEngine(), Math.abs(r.nextLong()) });
             tests.add(new Object[] { new XmlCerealEngine(), Math.abs(r.nextLong()) });
+            tests.add(new Object[] { new BinaryCerealEngine(), Math.abs(r.nextLong()) });
         }
 
         tests.add(new Object[] { new JsonCerealEngine(), 0 });
         tests.add(new Object[] { new YamlCerealEngine(), 0 });
         tests.add(new Object[] { new XmlCerealEngine(), 0 });
+        tests.add(new Object[] { new BinaryCerealEngine(), 0 });
 
         /*
          * JotaTime actually fails on Long.MAX_VALUE, but that is so far in the future that we will
@@ -68,6 +71,7 @@ public class TypeTest {
         tests.add(new Object[] { new JsonCerealEngine(), MAX_VALUE });
         tests.add(new Object[] { new YamlCerealEngine(), MAX_VALUE });
         tests.add(new Object[] { new XmlCerealEngine(), MAX_VALUE });
+        tests.add(new Object[] { new BinaryCerealEngine(), MAX_VALUE });
 
         return tests.iterator();
     }
@@ -97,11 +101,13 @@ public class TypeTest {
             tests.add(new Object[] { new JsonCerealEngine(), r, i });
             tests.add(new Object[] { new YamlCerealEngine(), r, i  });
             tests.add(new Object[] { new XmlCerealEngine(), r, i  });
+            tests.add(new Object[] { new BinaryCerealEngine(), r, i  });
         }
 
         tests.add(new Object[] { new JsonCerealEngine(), r, 0 });
         tests.add(new Object[] { new YamlCerealEngine(), r, 0 });
         tests.add(new Object[] { new XmlCerealEngine(), r, 0 });
+        tests.add(new Object[] { new BinaryCerealEngine(), r, 0 });
 
         return tests.iterator();
     }
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.impl.Utf8Writer;
+
+/**
+ * Verifies that the UTF-8 writer encodes exactly like {@link String#getBytes(Charset)}.
+ */
+public class Utf8WriterTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testEncoding() throws Exception {
+        String[] strings = new String[] { "", "ascii", "é", "中文", "😀", "a😀b", "\ud83d", "\ude00",
+                "\ud83dx", "x\ude00😀", "\u007f\u0080߿ࠀ￿" };
+        for (String string : strings) {
+            assertEquals(write(string, 1), string.getBytes(UTF_8), string);
+            assertEquals(write(string, 1000), string.getBytes(UTF_8), string);
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            char[] chars = new char[random.nextInt(20000)];
+            for (int j = 0; j < chars.length; j++) {
+                int kind = random.nextInt(4);
+                chars[j] = (char) ((kind == 0) ? random.nextInt(0x10000) : random.nextInt(0x80));
+            }
+            String string = new String(chars);
+            assertEquals(write(string, 1 + random.nextInt(100)), string.getBytes(UTF_8));
+        }
+    }
+
+    @Test
+    public void testEngineOutput() throws Exception {
+        String string = "é中😀";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new JsonCerealEngine().writeTo(baos, string, null);
+        assertEquals(baos.toByteArray(), ("\"" + string + "\"").getBytes(UTF_8));
+    }
+
+    /**
+     * Write the given string in chunks of the given size, alternating between the different write
+     * methods.
+     */
+    private static byte[] write(String string, int chunk) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(baos);
+        for (int i = 0, n = 0; i < string.length(); i += chunk, n++) {
+            int end = Math.min(string.length(), i + chunk);
+            if (end - i == 1) {
+                writer.write(string.charAt(i));
+            } else if (n % 2 == 0) {
+                writer.write(string, i, end - i);
+            } else {
+                writer.write(string.substring(i, end).toCharArray());
+            }
+        }
+        writer.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.mail.internet.InternetAddress;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.Member;
+import com.comcast.testclasses.Team;
+import com.comcast.testclasses.Title;
+
+/**
+ * Verifies that writing the objects of an iterator one at a time produces the same list as writing
+ * all of them at once.
+ */
+public class WriteAllTest {
+
+    @DataProvider(name = "engines")
+    public TestList engines() {
+        TestList tl = new TestList();
+        for (boolean pretty : new boolean[] { true, false }) {
+            tl.add(new JsonCerealEngine(pretty));
+            tl.add(new XmlCerealEngine(pretty));
+        }
+        tl.add(new YamlCerealEngine(true));
+        tl.add(new YamlCerealEngine(false));
+        return tl;
+    }
+
+    @Test(dataProvider = "engines")
+    public void testMatchesList(AbstractCerealEngine engine) throws Exception {
+        List<Team> teams = Arrays.asList(team("first", "Kevin", "Pearson"),
+                team("second", "Clark", "Malmgren"), team("third", "Mara", "Smith"));
+
+        for (boolean includeClassName : new boolean[] { true, false }) {
+            CerealSettings settings = new CerealSettings();
+            settings.setIncludeClassName(includeClassName);
+            settings.setUseObjectReferences(false);
+            engine.setSettings(settings);
+
+            StringWriter writer = new StringWriter();
+            engine.writeAll(teams.iterator(), writer);
+            assertEquals(writer.toString(), engine.writeToString(teams));
+
+            writer = new StringWriter();
+            engine.writeAll(teams.iterator(), Team.class, writer);
+            assertEquals(Arrays.asList(engine.readFromString(writer.toString(), Team[].class)),
+                    teams);
+        }
+    }
+
+    @Test(dataProvider = "engines")
+    public void testReadBack(AbstractCerealEngine engine) throws Exception {
+        /* XML element names can not hold object references */
+        boolean shared = !(engine instanceof XmlCerealEngine);
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(shared);
+        engine.setSettings(settings);
+
+        for (int count : new int[] { 0, 1, 2 }) {
+            List<Team> teams = new ArrayList<Team>();
+            for (int i = 0; i < count; i++) {
+                Team team = team("team " + i, "Kevin", "Pearson");
+                team.members.add(shared ? team.members.get(0) : member("Kevin", "Pearson"));
+                teams.add(team);
+            }
+
+            StringWriter writer = new StringWriter();
+            engine.writeAll(teams.iterator(), Team.class, writer);
+            Team[] result = engine.readFromString(writer.toString(), Team[].class);
+
+            assertEquals(Arrays.asList(result), teams);
+            for (Team team : result) {
+                assertEquals(team.members.get(0) == team.members.get(1), shared);
+            }
+            if (count == 2) {
+                assertTrue(result[0].members.get(0) != result[1].members.get(0));
+            }
+        }
+    }
+
+    @Test
+    public void testOneAtATime() throws Exception {
+        final StringWriter writer = new StringWriter();
+        final List<Integer> written = new ArrayList<Integer>();
+        Iterator<Member> iterator = new Iterator<Member>() {
+            private int index;
+
+            public boolean hasNext() {
+                written.add(writer.getBuffer().length());
+                return index < 3;
+            }
+
+            public Member next() {
+                index++;
+                return member("Kevin", "Pearson");
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        JsonCerealEngine engine = new JsonCerealEngine();
+        engine.writeAll(iterator, Member.class, writer);
+
+        /* Every object is in the writer before the next one is requested */
+        assertEquals(written.size(), 4);
+        for (int i = 1; i < written.size(); i++) {
+            assertTrue(written.get(i) > written.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        List<Member> members = Arrays.asList(member("Kevin", "Pearson"), null,
+                member("Clark", "Malmgren"));
+
+        File file = File.createTempFile("cereal", ".json");
+        try {
+            JsonCerealEngine engine = new JsonCerealEngine();
+            engine.writeAll(members.iterator(), file);
+            assertEquals(Arrays.asList(engine.read(file, Member[].class)), members);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBinaryNeedsSize() throws Exception {
+        try {
+            new BinaryCerealEngine().writeAll(Collections.emptyList().iterator(),
+                    new StringWriter());
+            assertTrue(false, "Expected the binary engine to need the size");
+        } catch (CerealException ex) {
+            /* Expected */
+        }
+    }
+
+    private static Team team(String name, String firstName, String lastName) throws Exception {
+        Team team = new Team();
+        team.name = name;
+        team.location = "Philadelphia";
+        team.members = new ArrayList<Member>(Arrays.asList(member(firstName, lastName)));
+        team.projects = new HashSet<String>(Arrays.asList("cereal"));
+        return team;
+    }
+
+    private static Member member(String firstName, String lastName) {
+        Member member = new Member();
+        member.firstName = firstName;
+        member.lastName = lastName;
+        member.title = Title.ENGINEER;
+        try {
+            member.email = new InternetAddress(firstName.toLowerCase() + "@cable.comcast.com");
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(ex);
+        }
+        return member;
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.impl.XmlHelper;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that reading XML produces the same cereal as reading the equivalent DOM.
+ */
+public class XmlReadTest {
+
+    @DataProvider(name = "xmlData")
+    public TestList xmlData() throws Exception {
+        TestList tl = new TestList();
+
+        tl.add("<data><a>1</a><b>2.5</b><c>-0</c><d>007</d><e>12abc</e><f>1,234</f></data>");
+        tl.add("<data><t>TRUE</t><f>false</f><n>NULL</n><s _t_=\"s\">null</s>"
+                + "<e _t_=\"s\"/></data>");
+        tl.add("<data><value>1</value><value>2</value><other>3</other></data>");
+        tl.add("<data><only>1</only></data>");
+        tl.add("<data _t_=\"l\"><only>1</only></data>");
+        tl.add("<data _t_=\"l\"/>");
+        tl.add("<data/>");
+        tl.add("<data>  spaced text\n </data>");
+        tl.add("<?xml version=\"1.0\"?>\n<!-- before -->\n<data>\n  <a>\n    <b _t_=\"s\">"
+                + "x &amp; &lt;y&gt; &#13;&#128512;</b>\n  </a><!-- between -->\n"
+                + "  <a>2</a>\n</data>");
+        tl.add("<data><a>x<!-- split -->y</a></data>");
+        tl.add("<data>text<a>1</a></data>");
+        tl.add("<data><a>1</a><a>2</a><a><__class _t_=\"s\">x.Y</__class><z>1</z></a></data>");
+        tl.add("<data><dup>1</dup><dup2>2</dup2><dup>3</dup></data>");
+
+        for (Object object : StreamingWriteTest.objects(false)) {
+            for (boolean prettyPrint : new boolean[] { true, false }) {
+                try {
+                    tl.add(new XmlCerealEngine(prettyPrint).writeToString(object));
+                } catch (CerealException ex) {
+                    /* Not every object can be written as XML */
+                }
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "xmlData")
+    public void testMatchesDom(String xml) throws Exception {
+        Object expected;
+        try {
+            Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new ByteArrayInputStream(xml.getBytes("UTF-8"))).getDocumentElement();
+            expected = readNode(root);
+        } catch (CerealException ex) {
+            expected = "failed";
+        }
+
+        XmlHelper helper = new XmlHelper(false, "data");
+        assertEquals(read(helper, xml, false), expected);
+        assertEquals(read(helper, xml, true), expected);
+    }
+
+    private static Object read(XmlHelper helper, String xml, boolean useReader) {
+        try {
+            return useReader ? helper.read(new StringReader(xml)) : helper
+                    .read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        } catch (Exception ex) {
+            return "failed";
+        }
+    }
+
+    /**
+     * The DOM decoding that the XML engine has always used.
+     */
+    private static Object readNode(Element element) throws Exception {
+        List<Node> children = new ArrayList<Node>();
+        NodeList nl = element.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            Node child = nl.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                    || (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim()
+                            .length() > 0)) {
+                children.add(child);
+            }
+        }
+
+        boolean string = "s".equals(element.getAttribute("_t_"));
+        if (children.size() == 0 && string) {
+            return "";
+        } else if (children.size() == 1 && children.get(0).getNodeType() == Node.TEXT_NODE) {
+            String text = ((Text) children.get(0)).getTextContent();
+            String lcText = text.toLowerCase();
+            if (string) {
+                return text;
+            } else if (lcText.equals("null")) {
+                return null;
+            } else if (lcText.equals("false")) {
+                return false;
+            } else if (lcText.equals("true")) {
+                return true;
+            }
+            try {
+                return NumberFormat.getInstance().parse(text);
+            } catch (ParseException pex) {
+                return text;
+            }
+        }
+
+        for (Node child : children) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                throw new CerealException("mixed");
+            }
+        }
+
+        if ("l".equals(element.getAttribute("_t_"))
+                || (children.size() >= 2 && children.get(0).getNodeName()
+                        .equals(children.get(1).getNodeName()))) {
+            List<Object> list = new ArrayList<Object>();
+            for (Node child : children) {
+                list.add(readNode((Element) child));
+            }
+            return list;
+        } else {
+            Map<String, Object> map = new HashMap<String, Object>();
+            for (Node child : children) {
+                String name = child.getNodeName();
+                map.put(name.equals("__class") ? "--class" : name, readNode((Element) child));
+            }
+            return map;
+        }
+    }
+}
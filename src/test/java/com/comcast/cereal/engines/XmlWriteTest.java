@@ -0,0 +1,179 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.XmlHelper;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that writing XML produces the same output as serializing the equivalent DOM and that
+ * streaming writes match writes that build the cereal representation first.
+ */
+public class XmlWriteTest {
+
+    @DataProvider(name = "cerealData")
+    public TestList cerealData() {
+        TestList tl = new TestList();
+
+        Map<String, Object> inner = new LinkedHashMap<String, Object>();
+        inner.put("--class", "com.example.Inner");
+        inner.put("number", 2.5);
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("text", "a < b > c & \"d\" 'e' \r\n\t \u0001 \u0085 é 😀 ]]>");
+        map.put("numeric", "12");
+        map.put("empty", "");
+        map.put("nothing", null);
+        map.put("flag", true);
+        map.put("list", Arrays.<Object> asList(1, 2L, "x", inner, new ArrayList<Object>(),
+                new HashMap<String, Object>(), Arrays.asList("nested")));
+        map.put("inner", inner);
+        map.put("none", new HashMap<String, Object>());
+
+        for (boolean prettyPrint : new boolean[] { true, false }) {
+            tl.add(map, prettyPrint);
+            tl.add(inner, prettyPrint);
+            tl.add(Arrays.<Object> asList(map, "y"), prettyPrint);
+            tl.add("top", prettyPrint);
+            tl.add(7, prettyPrint);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "cerealData")
+    public void testMatchesDom(Object cereal, boolean prettyPrint) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .newDocument();
+        document.appendChild(createElement("data", cereal, document));
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.INDENT, prettyPrint ? "yes" : "no");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        StringWriter expected = new StringWriter();
+        transformer.transform(new DOMSource(document), new StreamResult(expected));
+
+        StringWriter writer = new StringWriter();
+        new XmlHelper(prettyPrint, "data").write(cereal, writer);
+        assertEquals(writer.toString(), expected.toString());
+    }
+
+    @DataProvider(name = "streamData")
+    public TestList streamData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            for (boolean prettyPrint : new boolean[] { true, false }) {
+                tl.add(object, prettyPrint, true);
+            }
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            for (boolean prettyPrint : new boolean[] { true, false }) {
+                tl.add(object, prettyPrint, false);
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "streamData")
+    public void testStreamMatchesTree(Object object, boolean prettyPrint, boolean useReferences)
+            throws Exception {
+        XmlCerealEngine treeEngine = new XmlCerealEngine(prettyPrint);
+        treeEngine.setSettings(settings(useReferences, false));
+        XmlCerealEngine streamEngine = new XmlCerealEngine(prettyPrint);
+        streamEngine.setSettings(settings(useReferences, true));
+
+        assertEquals(write(streamEngine, object), write(treeEngine, object));
+    }
+
+    @Test(expectedExceptions = CerealException.class)
+    public void testInvalidElementName() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("not valid", 1);
+        new XmlCerealEngine().writeToString(map);
+    }
+
+    /**
+     * Write the object, object references do not have valid XML element names.
+     */
+    private static String write(XmlCerealEngine engine, Object object) {
+        try {
+            return engine.writeToString(object);
+        } catch (CerealException ex) {
+            return "failed";
+        }
+    }
+
+    private static CerealSettings settings(boolean useReferences, boolean streamWrites) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamWrites(streamWrites);
+        return settings;
+    }
+
+    /**
+     * The DOM encoding that the XML engine has always used.
+     */
+    @SuppressWarnings("unchecked")
+    private static Element createElement(String name, Object cereal, Document document) {
+        Element element = document.createElement(name.equals("--class") ? "__class" : name);
+
+        if (cereal instanceof String) {
+            element.setAttribute("_t_", "s");
+            element.appendChild(document.createTextNode((String) cereal));
+        } else if (cereal instanceof List) {
+            element.setAttribute("_t_", "l");
+            for (Object value : (List<Object>) cereal) {
+                element.appendChild(createElement("value", value, document));
+            }
+        } else if (cereal instanceof Map) {
+            for (Entry<String, Object> entry : ((Map<String, Object>) cereal).entrySet()) {
+                element.appendChild(createElement(entry.getKey(), entry.getValue(), document));
+            }
+        } else {
+            element.appendChild(document.createTextNode(String.valueOf(cereal)));
+        }
+
+        return element;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import com.comcast.cereal.CerealException;
+import com.comcast.cereal.CerealParser;
+import com.comcast.cereal.CerealParser.Token;
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.YamlParser;
+import com.comcast.pantry.test.TestList;
+import com.comcast.testclasses.Team;
+
+/**
+ * Verifies that reading YAML from parse events produces the same cereal as <code>Yaml.load</code>
+ * and that streaming reads produce the same objects as reads that build the cereal
+ * representation first.
+ */
+public class YamlReadTest {
+
+    @DataProvider(name = "yamlData")
+    public TestList yamlData() throws Exception {
+        TestList tl = new TestList();
+
+        tl.add("a: 1\nb: 2.5\nc: '3'\nd: true\ne: ~\nf: 0x1F\ng: 12345678901234567890\n"
+                + "h: 2001-12-14\ni: .inf\nj: [x, 'y', \"z\\n\"]\n");
+        tl.add("- 1\n- [a, b, {c: d}]\n- {}\n- []\n- |\n  block\n  text\n- >\n  folded\n");
+        tl.add("base: &base {x: 1, y: 2}\nother: *base\nlist: &l [1, *base]\ncopy: *l\n");
+        tl.add("base: &b\n  x: 1\n  y: 2\nmore: &m\n  y: 3\n  z: 4\n"
+                + "merged:\n  <<: *b\n  y: 5\nlate:\n  y: 6\n  <<: [*m, *b]\n"
+                + "nested:\n  <<: {<<: *m, w: 0}\n");
+        tl.add("set: !!set {a, b}\nomap: !!omap [a: 1, b: 2]\n");
+        tl.add("top");
+        tl.add("42");
+        tl.add("");
+        tl.add("--- 1\n...\n");
+        tl.add("--- 1\n--- 2\n");
+        tl.add("a: [1, 2\n");
+        tl.add("a: *missing\n");
+        tl.add("? [complex]\n: key\n");
+
+        for (Object object : StreamingWriteTest.objects(false)) {
+            for (boolean useBlockFlow : new boolean[] { true, false }) {
+                tl.add(new YamlCerealEngine(useBlockFlow).writeToString(object));
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "yamlData")
+    public void testMatchesLoad(String yaml) throws Exception {
+        Object expected;
+        try {
+            expected = new Yaml().load(yaml);
+        } catch (Exception ex) {
+            expected = "failed";
+        }
+
+        assertEquals(readCereal(yaml), expected);
+        if (!"failed".equals(expected) && !yaml.contains("?")) {
+            assertEquals(readTokens(yaml), withNameKeys(expected));
+        }
+    }
+
+    @DataProvider(name = "streamData")
+    public TestList streamData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            tl.add(object, true);
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            tl.add(object, false);
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "streamData")
+    public void testStreamMatchesTree(Object object, boolean useReferences) throws Exception {
+        YamlCerealEngine treeEngine = new YamlCerealEngine();
+        treeEngine.setSettings(settings(useReferences, false));
+        YamlCerealEngine streamEngine = new YamlCerealEngine();
+        streamEngine.setSettings(settings(useReferences, true));
+
+        String yaml = treeEngine.writeToString(object);
+        String expected = roundTrip(treeEngine, yaml, object.getClass());
+        assertEquals(roundTrip(streamEngine, yaml, object.getClass()), expected);
+    }
+
+    @Test
+    public void testMergedAndSkipped() throws Exception {
+        YamlCerealEngine engine = new YamlCerealEngine();
+        engine.setSettings(settings(false, true));
+
+        String yaml = "defaults: &defaults\n  location: Nowhere\n  extra: {deep: [1, {a: b}]}\n"
+                + "name: Cereal\n<<: *defaults\nlocation: Philadelphia\n"
+                + "members: []\nprojects: []\n";
+        Team team = engine.readFromString(yaml, Team.class);
+
+        assertEquals(team.name, "Cereal");
+        assertEquals(team.location, "Philadelphia");
+    }
+
+    /**
+     * Read the cereal with {@link CerealParser#readCereal()}.
+     */
+    private static Object readCereal(String yaml) {
+        try {
+            YamlParser parser = new YamlParser(new StringReader(yaml));
+            parser.next();
+            Object cereal = parser.readCereal();
+            parser.next();
+            return cereal;
+        } catch (CerealException ex) {
+            return "failed";
+        }
+    }
+
+    /**
+     * Read the cereal one token at a time, letting later entries replace earlier ones.
+     */
+    private static Object readTokens(String yaml) throws Exception {
+        YamlParser parser = new YamlParser(new StringReader(yaml));
+        parser.next();
+        Object cereal = readTokens(parser);
+        assertEquals(parser.next(), Token.END);
+        return cereal;
+    }
+
+    private static Object readTokens(CerealParser parser) throws Exception {
+        switch (parser.getToken()) {
+        case START_OBJECT:
+            Map<String, Object> map = new HashMap<String, Object>();
+            while (Token.NAME == parser.next()) {
+                String name = parser.getName();
+                parser.next();
+                map.put(name, readTokens(parser));
+            }
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<Object>();
+            while (Token.END_ARRAY != parser.next()) {
+                list.add(readTokens(parser));
+            }
+            return list;
+        default:
+            return parser.getValue();
+        }
+    }
+
+    /**
+     * Convert the constructed keys of every object to the names the parser reads.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object withNameKeys(Object cereal) {
+        if (cereal instanceof Map) {
+            Map<String, Object> map = new HashMap<String, Object>();
+            for (Entry<Object, Object> entry : ((Map<Object, Object>) cereal).entrySet()) {
+                map.put(String.valueOf(entry.getKey()), withNameKeys(entry.getValue()));
+            }
+            return map;
+        } else if (cereal instanceof List) {
+            List<Object> list = new ArrayList<Object>();
+            for (Object value : (List<Object>) cereal) {
+                list.add(withNameKeys(value));
+            }
+            return list;
+        }
+        return cereal;
+    }
+
+    /**
+     * Read the YAML and write the result back out with the default settings.
+     */
+    private static String roundTrip(YamlCerealEngine engine, String yaml, Class<?> type) {
+        try {
+            return new YamlCerealEngine().writeToString(engine.readFromString(yaml, type));
+        } catch (Exception ex) {
+            /* Some objects can not be read back */
+            return "failed";
+        }
+    }
+
+    private static CerealSettings settings(boolean useReferences, boolean streamReads) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamReads(streamReads);
+        return settings;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2012 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.cereal.engines;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.DumperOptions.FlowStyle;
+import org.yaml.snakeyaml.Yaml;
+
+import com.comcast.cereal.CerealSettings;
+import com.comcast.cereal.impl.YamlGenerator;
+import com.comcast.pantry.test.TestList;
+
+/**
+ * Verifies that writing YAML produces exactly the same output as <code>Yaml.dump</code> and that
+ * streaming writes match writes that build the cereal representation first.
+ */
+public class YamlWriteTest {
+
+    @DataProvider(name = "cerealData")
+    public TestList cerealData() {
+        TestList tl = new TestList();
+
+        Map<String, Object> flat = new LinkedHashMap<String, Object>();
+        flat.put("name", "value");
+        flat.put("number", "12");
+        flat.put("empty", "");
+        flat.put("yes", "true");
+
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("text", "multiple\nlines");
+        map.put("binary", "bell \u0007");
+        map.put("quoted", "a: b # c");
+        map.put("nothing", null);
+        map.put("numbers", Arrays.<Object> asList(1, 2L, 2.5, 1e21, Double.NaN, -0.0f));
+        map.put("mixed", Arrays.<Object> asList("x", flat, new ArrayList<Object>(),
+                new HashMap<String, Object>(), Arrays.asList("nested")));
+        map.put("flat", new LinkedHashMap<String, Object>(flat));
+        map.put("plain", Arrays.asList("a", "b"));
+        map.put("long", Arrays.asList("a long value that will need to wrap", "another value",
+                "and one more value so that the line is longer than the width"));
+
+        for (boolean useBlockFlow : new boolean[] { true, false }) {
+            for (int indent : new int[] { 2, 4 }) {
+                tl.add(map, useBlockFlow, indent);
+                tl.add(flat, useBlockFlow, indent);
+                tl.add(Arrays.<Object> asList(map, "y", null), useBlockFlow, indent);
+                tl.add(new HashMap<String, Object>(), useBlockFlow, indent);
+                tl.add("top: level", useBlockFlow, indent);
+                tl.add(7, useBlockFlow, indent);
+                tl.add(null, useBlockFlow, indent);
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "cerealData")
+    public void testMatchesDump(Object cereal, boolean useBlockFlow, int indent)
+            throws Exception {
+        DumperOptions options = new DumperOptions();
+        options.setWidth(100);
+        options.setIndent(indent);
+        options.setDefaultFlowStyle(useBlockFlow ? FlowStyle.BLOCK : FlowStyle.AUTO);
+
+        StringWriter writer = new StringWriter();
+        YamlGenerator generator = new YamlGenerator(writer, options);
+        generator.writeCereal(cereal);
+        generator.flush();
+
+        assertEquals(writer.toString(), new Yaml(options).dump(cereal));
+    }
+
+    @DataProvider(name = "streamData")
+    public TestList streamData() throws Exception {
+        TestList tl = new TestList();
+
+        for (Object object : StreamingWriteTest.objects(true)) {
+            for (boolean useBlockFlow : new boolean[] { true, false }) {
+                tl.add(object, useBlockFlow, true);
+            }
+        }
+        for (Object object : StreamingWriteTest.objects(false)) {
+            for (boolean useBlockFlow : new boolean[] { true, false }) {
+                tl.add(object, useBlockFlow, false);
+            }
+        }
+
+        return tl;
+    }
+
+    @Test(dataProvider = "streamData")
+    public void testStreamMatchesTree(Object object, boolean useBlockFlow, boolean useReferences)
+            throws Exception {
+        YamlCerealEngine treeEngine = new YamlCerealEngine(useBlockFlow);
+        treeEngine.setSettings(settings(useReferences, false));
+        YamlCerealEngine streamEngine = new YamlCerealEngine(useBlockFlow);
+        streamEngine.setSettings(settings(useReferences, true));
+
+        assertEquals(streamEngine.writeToString(object), treeEngine.writeToString(object));
+    }
+
+    private static CerealSettings settings(boolean useReferences, boolean streamWrites) {
+        CerealSettings settings = new CerealSettings();
+        settings.setUseObjectReferences(useReferences);
+        settings.setStreamWrites(streamWrites);
+        return settings;
+    }
+}